@@ -176,5 +176,14 @@ public class ControlMessageManagerTest {
         public long getDispatchTimeLimit() {
             return 0;
         }
+
+        @Override
+        public void setDispatchLoops(int count) {
+        }
+
+        @Override
+        public int getDispatchLoops() {
+            return 1;
+        }
     }
 }
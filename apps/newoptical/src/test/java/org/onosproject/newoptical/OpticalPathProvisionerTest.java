@@ -677,5 +677,14 @@ public class OpticalPathProvisionerTest {
         public long getDispatchTimeLimit() {
             return 0;
         }
+
+        @Override
+        public void setDispatchLoops(int count) {
+        }
+
+        @Override
+        public int getDispatchLoops() {
+            return 1;
+        }
     }
 }
\ No newline at end of file
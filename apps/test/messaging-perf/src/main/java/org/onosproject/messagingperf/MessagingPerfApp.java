@@ -107,6 +107,10 @@ public class MessagingPerfApp {
             label = "Set this to true to handle message on IO thread")
     private boolean receiveOnIOLoopThread = false;
 
+    @Property(name = "unicastOn", boolValue = false,
+            label = "Set this to true to stream unicast messages instead of request-reply")
+    private boolean unicastOn = false;
+
     protected int reportIntervalSeconds = 1;
 
     private Executor messageReceivingExecutor;
@@ -179,6 +183,7 @@ public class MessagingPerfApp {
             totalReceiverThreads = DEFAULT_RECEIVER_THREAD_POOL_SIZE;
             serializationOn = true;
             receiveOnIOLoopThread = false;
+            unicastOn = false;
             return;
         }
 
@@ -188,6 +193,7 @@ public class MessagingPerfApp {
         int newTotalReceiverThreads = totalReceiverThreads;
         boolean newSerializationOn = serializationOn;
         boolean newReceiveOnIOLoopThread = receiveOnIOLoopThread;
+        boolean newUnicastOn = unicastOn;
         try {
             String s = get(properties, "totalSenderThreads");
             newTotalSenderThreads = isNullOrEmpty(s)
@@ -205,6 +211,10 @@ public class MessagingPerfApp {
             newReceiveOnIOLoopThread = isNullOrEmpty(s)
                     ? receiveOnIOLoopThread : Boolean.parseBoolean(s.trim());
 
+            s = get(properties, "unicastOn");
+            newUnicastOn = isNullOrEmpty(s)
+                    ? unicastOn : Boolean.parseBoolean(s.trim());
+
         } catch (NumberFormatException | ClassCastException e) {
             return;
         }
@@ -212,7 +222,8 @@ public class MessagingPerfApp {
         boolean modified = newTotalSenderThreads != totalSenderThreads ||
                 newTotalReceiverThreads != totalReceiverThreads ||
                 newSerializationOn != serializationOn ||
-                newReceiveOnIOLoopThread != receiveOnIOLoopThread;
+                newReceiveOnIOLoopThread != receiveOnIOLoopThread ||
+                newUnicastOn != unicastOn;
 
         // If nothing has changed, simply return.
         if (!modified) {
@@ -226,6 +237,7 @@ public class MessagingPerfApp {
             ((ExecutorService) messageReceivingExecutor).shutdown();
         }
         receiveOnIOLoopThread = newReceiveOnIOLoopThread;
+        unicastOn = newUnicastOn;
 
         // restart test.
 
@@ -251,12 +263,13 @@ public class MessagingPerfApp {
 
     private void logConfig(String prefix) {
         log.info("{} with senderThreadPoolSize = {}; receivingThreadPoolSize = {}"
-                + " serializationOn = {}, receiveOnIOLoopThread = {}",
+                + " serializationOn = {}, receiveOnIOLoopThread = {}, unicastOn = {}",
                  prefix,
                  totalSenderThreads,
                  totalReceiverThreads,
                  serializationOn,
-                 receiveOnIOLoopThread);
+                 receiveOnIOLoopThread,
+                 unicastOn);
     }
 
     private void setupCodecs() {
@@ -285,7 +298,11 @@ public class MessagingPerfApp {
     }
 
     private void startTest() {
-        IntStream.range(0, totalSenderThreads).forEach(i -> requestReply());
+        if (unicastOn) {
+            IntStream.range(0, totalSenderThreads).forEach(i -> messageSendingExecutor.submit(this::unicast));
+        } else {
+            IntStream.range(0, totalSenderThreads).forEach(i -> requestReply());
+        }
     }
 
     private void stopTest() {
@@ -343,14 +360,20 @@ public class MessagingPerfApp {
     private NodeId randomPeer() {
         return clusterService.getNodes()
                     .stream()
-                    .filter(node -> clusterService.getLocalNode().equals(node))
+                    .filter(node -> !clusterService.getLocalNode().equals(node))
                     .findAny()
-                    .get()
+                    .orElse(clusterService.getLocalNode())
                     .id();
     }
 
     private void reportPerformance() {
-        log.info("Attempted: {} Completed: {}", attempted.getAndSet(0), completed.getAndSet(0));
+        if (unicastOn) {
+            log.info("Sent: {} Received: {} (messages/sec)",
+                     sent.getAndSet(0) / reportIntervalSeconds,
+                     received.getAndSet(0) / reportIntervalSeconds);
+        } else {
+            log.info("Attempted: {} Completed: {}", attempted.getAndSet(0), completed.getAndSet(0));
+        }
     }
 
     private static class Data {
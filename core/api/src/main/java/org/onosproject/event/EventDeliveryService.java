@@ -35,4 +35,19 @@ public interface EventDeliveryService extends EventDispatcher, EventSinkRegistry
      */
     long getDispatchTimeLimit();
 
+    /**
+     * Sets the number of loops dispatching events. All events destined to
+     * the same sink are dispatched by the same loop.
+     *
+     * @param count number of dispatch loops
+     */
+    void setDispatchLoops(int count);
+
+    /**
+     * Returns the number of loops dispatching events.
+     *
+     * @return number of dispatch loops
+     */
+    int getDispatchLoops();
+
 }
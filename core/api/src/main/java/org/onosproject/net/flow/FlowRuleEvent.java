@@ -15,13 +15,20 @@
  */
 package org.onosproject.net.flow;
 
+import com.google.common.collect.ImmutableList;
 import org.onosproject.event.AbstractEvent;
 
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * Describes flow rule event.
  */
 public class FlowRuleEvent extends AbstractEvent<FlowRuleEvent.Type, FlowRule> {
 
+    private final List<FlowEntry> flowEntries;
+
     /**
      * Type of flow rule events.
      */
@@ -41,6 +48,13 @@ public class FlowRuleEvent extends AbstractEvent<FlowRuleEvent.Type, FlowRule> {
          */
         RULE_UPDATED,
 
+        /**
+         * Signifies that the statistics of a batch of flow rules of one
+         * device have been updated; the updated entries are available via
+         * {@link FlowRuleEvent#flowEntries()}.
+         */
+        RULE_STATS_UPDATED,
+
         // internal event between Manager <-> Store
 
         /*
@@ -62,6 +76,7 @@ public class FlowRuleEvent extends AbstractEvent<FlowRuleEvent.Type, FlowRule> {
      */
     public FlowRuleEvent(Type type, FlowRule flowRule) {
         super(type, flowRule);
+        this.flowEntries = ImmutableList.of();
     }
 
     /**
@@ -73,6 +88,33 @@ public class FlowRuleEvent extends AbstractEvent<FlowRuleEvent.Type, FlowRule> {
      */
     public FlowRuleEvent(Type type, FlowRule flowRule, long time) {
         super(type, flowRule, time);
+        this.flowEntries = ImmutableList.of();
+    }
+
+    private FlowRuleEvent(List<FlowEntry> flowEntries) {
+        super(Type.RULE_STATS_UPDATED, flowEntries.get(0));
+        this.flowEntries = ImmutableList.copyOf(flowEntries);
     }
 
+    /**
+     * Creates an event signifying that the statistics of the specified flow
+     * entries have been updated. The first entry serves as the event subject.
+     *
+     * @param flowEntries non-empty list of updated flow entries of one device
+     * @return flow rule statistics event
+     */
+    public static FlowRuleEvent statsUpdated(List<FlowEntry> flowEntries) {
+        checkArgument(!flowEntries.isEmpty(), "Flow entries cannot be empty");
+        return new FlowRuleEvent(flowEntries);
+    }
+
+    /**
+     * Returns the flow entries whose statistics were updated. Only
+     * {@link Type#RULE_STATS_UPDATED} events carry flow entries.
+     *
+     * @return updated flow entries; empty for other event types
+     */
+    public List<FlowEntry> flowEntries() {
+        return flowEntries;
+    }
 }
@@ -51,6 +51,23 @@ public interface FlowRuleProviderService extends ProviderService<FlowRuleProvide
      */
     void pushFlowMetricsWithoutFlowMissing(DeviceId deviceId, Iterable<FlowEntry> flowEntries);
 
+    /**
+     * Pushes one part of the flow entries currently applied on the given
+     * device. Each part is reconciled with the store as it arrives; flow
+     * rules that none of the parts reported are handled as missing once the
+     * last part is pushed. Parts of a device must be pushed in order.
+     * <p>
+     * The parts of one report share a transaction id. A part with a new
+     * transaction id discards whatever was left of an earlier, unfinished
+     * report of the device.
+     *
+     * @param deviceId device identifier
+     * @param xid transaction id of the report the part belongs to
+     * @param flowEntries flow entries of this part
+     * @param lastPart true if this is the last part
+     */
+    void pushFlowMetricsPart(DeviceId deviceId, long xid, Iterable<FlowEntry> flowEntries, boolean lastPart);
+
     /**
      * Pushes the collection of table statistics entries currently extracted
      * from the given device.
@@ -15,6 +15,7 @@
  */
 package org.onosproject.net.flow;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.onosproject.net.DeviceId;
@@ -90,6 +91,20 @@ public interface FlowRuleStore extends Store<FlowRuleBatchEvent, FlowRuleStoreDe
      */
     FlowRuleEvent addOrUpdateFlowRule(FlowEntry rule);
 
+    /**
+     * Applies the statistics reported by a device for its flow entries in
+     * a single pass. Entries unknown to the store are ignored.
+     * <p>
+     * Only real state transitions, i.e. flows becoming added, are reported
+     * with individual events; all statistics-only updates are summarized by
+     * a single {@link FlowRuleEvent.Type#RULE_STATS_UPDATED} event.
+     *
+     * @param deviceId    device identifier
+     * @param flowEntries flow entries reported by the device
+     * @return ready to send events; empty if nothing was updated
+     */
+    List<FlowRuleEvent> updateFlowStatistics(DeviceId deviceId, Collection<FlowEntry> flowEntries);
+
     /**
      * @param rule the flow entry to remove
      * @return flow_removed event, or null if nothing removed
@@ -17,6 +17,7 @@
 package org.onosproject.store.service;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -29,6 +30,8 @@ import java.util.function.Predicate;
 import org.onosproject.store.primitives.DefaultConsistentMap;
 import org.onosproject.store.primitives.TransactionId;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.MoreExecutors;
 
 /**
@@ -109,6 +112,28 @@ public interface AsyncConsistentMap<K, V> extends DistributedPrimitive {
      */
     CompletableFuture<Versioned<V>> get(K key);
 
+    /**
+     * Returns the values (and versions) to which the specified keys are mapped.
+     * Keys that have no mapping are left out of the returned map.
+     * <p>
+     * The default implementation issues one get per key; implementations
+     * should override it to read the keys in as few requests as possible.
+     *
+     * @param keys keys whose associated values are to be returned
+     * @return map of the present keys to their values (and versions)
+     */
+    default CompletableFuture<Map<K, Versioned<V>>> getAll(Set<K> keys) {
+        Map<K, Versioned<V>> values = Maps.newConcurrentMap();
+        return CompletableFuture.allOf(keys.stream()
+                .map(key -> get(key).thenAccept(value -> {
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                }))
+                .toArray(CompletableFuture[]::new))
+                .thenApply(v -> ImmutableMap.copyOf(values));
+    }
+
     /**
      * If the specified key is not already associated with a value (or is mapped to null),
      * attempts to compute its value using the given mapping function and enters it into
@@ -202,6 +227,40 @@ public interface AsyncConsistentMap<K, V> extends DistributedPrimitive {
      */
     CompletableFuture<Versioned<V>> remove(K key);
 
+    /**
+     * Associates each of the specified values with its key in this map (optional operation).
+     * If a conflicting concurrent modification attempt is detected, the returned future
+     * will be completed exceptionally with ConsistentMapException.ConcurrentModification.
+     * <p>
+     * The default implementation issues one put per entry; implementations
+     * should override it to apply the entries in as few requests as possible.
+     *
+     * @param entries mappings to be stored in this map
+     * @return future that will be successfully completed when all entries are stored
+     */
+    default CompletableFuture<Void> putAll(Map<K, V> entries) {
+        return CompletableFuture.allOf(entries.entrySet().stream()
+                .map(entry -> put(entry.getKey(), entry.getValue()))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Removes the mappings for the specified keys from this map if present (optional operation).
+     * If a conflicting concurrent modification attempt is detected, the returned future
+     * will be completed exceptionally with ConsistentMapException.ConcurrentModification.
+     * <p>
+     * The default implementation issues one remove per key; implementations
+     * should override it to remove the keys in as few requests as possible.
+     *
+     * @param keys keys whose mappings are to be removed from the map
+     * @return future that will be successfully completed when all keys are removed
+     */
+    default CompletableFuture<Void> removeAll(Set<K> keys) {
+        return CompletableFuture.allOf(keys.stream()
+                .map(this::remove)
+                .toArray(CompletableFuture[]::new));
+    }
+
     /**
      * Removes all of the mappings from this map (optional operation).
      * The map will be empty after this call returns.
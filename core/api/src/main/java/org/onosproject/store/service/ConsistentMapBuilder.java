@@ -15,8 +15,13 @@
  */
 package org.onosproject.store.service;
 
+import java.util.function.ToIntBiFunction;
+
 import org.onosproject.store.primitives.DistributedPrimitiveBuilder;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Builder for {@link ConsistentMap} instances.
  *
@@ -27,6 +32,9 @@ public abstract class ConsistentMapBuilder<K, V>
     extends DistributedPrimitiveBuilder<ConsistentMapBuilder<K, V>, ConsistentMap<K, V>> {
 
     private boolean purgeOnUninstall = false;
+    private long nearCacheMaximumSize = 0;
+    private long nearCacheMaximumWeight = 0;
+    private ToIntBiFunction<? super K, ? super V> nearCacheWeigher;
 
     public ConsistentMapBuilder() {
         super(DistributedPrimitive.Type.CONSISTENT_MAP);
@@ -42,6 +50,77 @@ public abstract class ConsistentMapBuilder<K, V>
         return this;
     }
 
+    /**
+     * Serves reads from a local cache of up to the specified number of entries.
+     * <p>
+     * Cached entries are kept up to date by the map update events pushed to
+     * this node. Updates made through the built map are visible to reads
+     * through it right away, but updates made elsewhere become visible only
+     * once their event arrives.
+     *
+     * @param maximumSize maximum number of cached entries
+     * @return this builder
+     */
+    public ConsistentMapBuilder<K, V> withNearCache(long maximumSize) {
+        checkArgument(maximumSize > 0, "maximumSize must be positive");
+        nearCacheMaximumSize = maximumSize;
+        nearCacheMaximumWeight = 0;
+        nearCacheWeigher = null;
+        return this;
+    }
+
+    /**
+     * Serves reads from a local cache of entries up to the specified total weight.
+     *
+     * @param maximumWeight maximum total weight of the cached entries
+     * @param weigher weight of an entry; must not be negative
+     * @return this builder
+     * @see #withNearCache(long)
+     */
+    public ConsistentMapBuilder<K, V> withNearCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+        checkArgument(maximumWeight > 0, "maximumWeight must be positive");
+        nearCacheMaximumWeight = maximumWeight;
+        nearCacheWeigher = checkNotNull(weigher);
+        nearCacheMaximumSize = 0;
+        return this;
+    }
+
+    /**
+     * Returns if reads are served from a local cache.
+     *
+     * @return {@code true} if yes; {@code false} otherwise
+     */
+    public boolean nearCacheEnabled() {
+        return nearCacheMaximumSize > 0 || nearCacheWeigher != null;
+    }
+
+    /**
+     * Returns the maximum number of entries of the near cache.
+     *
+     * @return maximum size; 0 if the cache is bound by weight or disabled
+     */
+    public long nearCacheMaximumSize() {
+        return nearCacheMaximumSize;
+    }
+
+    /**
+     * Returns the maximum total weight of the near cache entries.
+     *
+     * @return maximum weight; 0 if the cache is bound by size or disabled
+     */
+    public long nearCacheMaximumWeight() {
+        return nearCacheMaximumWeight;
+    }
+
+    /**
+     * Returns the weigher of the near cache entries.
+     *
+     * @return weigher; null if the cache is bound by size or disabled
+     */
+    public ToIntBiFunction<? super K, ? super V> nearCacheWeigher() {
+        return nearCacheWeigher;
+    }
+
     /**
      * Returns if map entries need to be cleared when owning application is uninstalled.
      * @return {@code true} if yes; {@code false} otherwise.
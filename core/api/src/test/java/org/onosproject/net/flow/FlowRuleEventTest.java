@@ -21,8 +21,14 @@ import org.junit.Test;
 import org.onosproject.event.AbstractEventTest;
 import org.onosproject.net.intent.IntentTestsMocks;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.testing.EqualsTester;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
 /**
  * Unit Tests for the FlowRuleEvent class.
  */
@@ -74,4 +80,20 @@ public class FlowRuleEventTest extends AbstractEventTest {
         validateEvent(event, FlowRuleEvent.Type.RULE_UPDATED, flowRule, time,
                 time + TimeUnit.SECONDS.toMillis(30));
     }
+
+    /**
+     * Tests the aggregated statistics event.
+     */
+    @Test
+    public void testStatsUpdated() {
+        final FlowEntry entry1 = new DefaultFlowEntry(new IntentTestsMocks.MockFlowRule(1));
+        final FlowEntry entry2 = new DefaultFlowEntry(new IntentTestsMocks.MockFlowRule(2));
+        final FlowRuleEvent event = FlowRuleEvent.statsUpdated(ImmutableList.of(entry1, entry2));
+        assertThat(event.type(), is(FlowRuleEvent.Type.RULE_STATS_UPDATED));
+        assertThat(event.subject(), is(entry1));
+        assertThat(event.flowEntries(), contains(entry1, entry2));
+
+        final FlowRuleEvent single = new FlowRuleEvent(FlowRuleEvent.Type.RULE_UPDATED, entry1);
+        assertThat(single.flowEntries(), empty());
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.ConsistentMapException;
+import org.onosproject.store.service.Versioned;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests for the synchronous consistent map.
+ */
+public class DefaultConsistentMapTest {
+
+    private static <T> CompletableFuture<T> concurrentModification() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new ConsistentMapException.ConcurrentModification("lost race"));
+        return future;
+    }
+
+    /**
+     * Tests that a compute which exhausted its attempts on the asynchronous
+     * map is retried until it succeeds.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testComputeRetriesConcurrentModification() {
+        AsyncConsistentMap<String, String> asyncMap = createMock(AsyncConsistentMap.class);
+        expect(asyncMap.computeIf(eq("foo"), anyObject(Predicate.class), anyObject(BiFunction.class)))
+                .andReturn(concurrentModification())
+                .times(2);
+        expect(asyncMap.computeIf(eq("foo"), anyObject(Predicate.class), anyObject(BiFunction.class)))
+                .andReturn(CompletableFuture.completedFuture(new Versioned<>("bar", 3)));
+        replay(asyncMap);
+
+        DefaultConsistentMap<String, String> map = new DefaultConsistentMap<>(asyncMap, 1000);
+        Versioned<String> result = map.compute("foo", (k, v) -> "bar");
+        assertThat(result.value(), is("bar"));
+        assertThat(result.version(), is(3L));
+        verify(asyncMap);
+    }
+}
@@ -18,10 +18,15 @@ package org.onosproject.common;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.ImmutableSetMultimap.Builder;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.onlab.graph.DijkstraGraphSearch;
 import org.onlab.graph.DisjointPathPair;
 import org.onlab.graph.GraphPathSearch;
@@ -56,6 +61,7 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -82,6 +88,13 @@ public class DefaultTopology extends AbstractModel implements Topology {
     private static LinkWeight defaultLinkWeight = null;
     private static GraphPathSearch<TopologyVertex, TopologyEdge> defaultGraphPathSearch = null;
 
+    /**
+     * Default maximum number of shortest path results cached per topology.
+     */
+    public static final int DEFAULT_PATH_CACHE_SIZE = 10000;
+
+    private static volatile int pathCacheSize = DEFAULT_PATH_CACHE_SIZE;
+
     private final long time;
     private final long creationTime;
     private final long computeCost;
@@ -96,6 +109,14 @@ public class DefaultTopology extends AbstractModel implements Topology {
     private final Function<ConnectPoint, Boolean> broadcastFunction;
     private final Supplier<ClusterIndexes> clusterIndexes;
 
+    // Previous topology whose broadcast trees may be reused; released once
+    // the broadcast sets of this topology have been computed.
+    private volatile DefaultTopology previous;
+    private volatile boolean broadcastSetsComputed = false;
+
+    // Shortest paths computed on this topology; null if caching is disabled
+    private final Cache<PathKey, Set<Path>> pathCache;
+
     /**
      * Sets the default link-weight to be used when computing paths. If null is
      * specified, the builtin default link-weight measuring hop-counts will be
@@ -120,6 +141,19 @@ public class DefaultTopology extends AbstractModel implements Topology {
     }
 
 
+    /**
+     * Sets the maximum number of shortest path results cached by each
+     * topology created from now on. Zero disables caching.
+     *
+     * @param size maximum number of cached (source, destination, link-weight)
+     *             results per topology
+     */
+    public static void setPathCacheSize(int size) {
+        checkArgument(size >= 0, "Path cache size must not be negative");
+        log.info("Setting path cache size to {}", size);
+        pathCacheSize = size;
+    }
+
     /**
      * Creates a topology descriptor attributed to the specified provider.
      *
@@ -129,6 +163,26 @@ public class DefaultTopology extends AbstractModel implements Topology {
      */
     public DefaultTopology(ProviderId providerId, GraphDescription description,
                            Function<ConnectPoint, Boolean> broadcastFunction) {
+        this(providerId, description, broadcastFunction, null);
+    }
+
+    /**
+     * Creates a topology descriptor attributed to the specified provider,
+     * reusing the results of the previous topology where the change between
+     * the two leaves them intact.
+     * <p>
+     * The broadcast tree of a cluster whose devices and links are the same as
+     * in the previous topology is taken over rather than recomputed. Only
+     * results the previous topology has already computed are reused.
+     *
+     * @param providerId        identity of the provider
+     * @param description       data describing the new topology
+     * @param broadcastFunction broadcast point function
+     * @param previous          previous topology; may be null
+     */
+    public DefaultTopology(ProviderId providerId, GraphDescription description,
+                           Function<ConnectPoint, Boolean> broadcastFunction,
+                           DefaultTopology previous) {
         super(providerId);
         this.broadcastFunction = broadcastFunction;
         this.time = description.timestamp();
@@ -146,6 +200,12 @@ public class DefaultTopology extends AbstractModel implements Topology {
         this.hopCountWeight = new HopCountLinkWeight(graph.getVertexes().size());
         this.broadcastSets = Suppliers.memoize(() -> buildBroadcastSets());
         this.infrastructurePoints = Suppliers.memoize(() -> findInfrastructurePoints());
+        // Holding on to a topology with pending lazy results would chain all
+        // past topologies together, so only fully computed ones are kept.
+        this.previous = previous != null && previous.broadcastSetsComputed ? previous : null;
+        int cacheSize = pathCacheSize;
+        this.pathCache = cacheSize > 0 ?
+                CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build() : null;
         this.computeCost = Math.max(0, System.nanoTime() - time);
     }
 
@@ -329,7 +389,8 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
     /**
      * Computes on-demand the set of shortest paths between source and
-     * destination devices.
+     * destination devices. Results are cached for the lifetime of this
+     * topology, keyed by the identity of the link weight function.
      *
      * @param src    source device
      * @param dst    destination device
@@ -337,6 +398,28 @@ public class DefaultTopology extends AbstractModel implements Topology {
      * @return set of shortest paths
      */
     public Set<Path> getPaths(DeviceId src, DeviceId dst, LinkWeight weight) {
+        if (pathCache == null) {
+            return computePaths(src, dst, weight);
+        }
+        PathKey key = new PathKey(src, dst, weight);
+        Set<Path> paths = pathCache.getIfPresent(key);
+        if (paths == null) {
+            paths = computePaths(src, dst, weight);
+            pathCache.put(key, paths);
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the statistics of the shortest path cache of this topology.
+     *
+     * @return path cache statistics
+     */
+    public CacheStats pathCacheStats() {
+        return pathCache != null ? pathCache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    private Set<Path> computePaths(DeviceId src, DeviceId dst, LinkWeight weight) {
         DefaultTopologyVertex srcV = new DefaultTopologyVertex(src);
         DefaultTopologyVertex dstV = new DefaultTopologyVertex(dst);
         Set<TopologyVertex> vertices = graph.getVertexes();
@@ -529,11 +612,64 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
     // Processes a map of broadcast sets for each cluster.
     private ImmutableSetMultimap<ClusterId, ConnectPoint> buildBroadcastSets() {
+        DefaultTopology prior = previous;
+        Set<DeviceId> changedDevices = prior != null ? findChangedDevices(prior) : ImmutableSet.of();
+
         Builder<ClusterId, ConnectPoint> builder = ImmutableSetMultimap.builder();
         for (TopologyCluster cluster : clusters.get().values()) {
-            addClusterBroadcastSet(cluster, builder);
+            TopologyCluster priorCluster = prior != null ? unchangedCluster(prior, cluster, changedDevices) : null;
+            if (priorCluster != null) {
+                builder.putAll(cluster.id(), prior.broadcastPoints(priorCluster.id()));
+            } else {
+                addClusterBroadcastSet(cluster, builder);
+            }
         }
-        return builder.build();
+        ImmutableSetMultimap<ClusterId, ConnectPoint> broadcastSets = builder.build();
+        broadcastSetsComputed = true;
+        previous = null;
+        return broadcastSets;
+    }
+
+    // Finds the devices at either end of links added, removed or changed in
+    // state since the specified topology.
+    private Set<DeviceId> findChangedDevices(DefaultTopology prior) {
+        Map<Link, Link.State> priorLinks = Maps.newHashMapWithExpectedSize(prior.graph.getEdges().size());
+        for (TopologyEdge edge : prior.graph.getEdges()) {
+            priorLinks.put(edge.link(), edge.link().state());
+        }
+
+        Set<DeviceId> changed = Sets.newHashSet();
+        for (TopologyEdge edge : graph.getEdges()) {
+            Link link = edge.link();
+            if (priorLinks.remove(link) != link.state()) {
+                changed.add(link.src().deviceId());
+                changed.add(link.dst().deviceId());
+            }
+        }
+        for (Link link : priorLinks.keySet()) {
+            changed.add(link.src().deviceId());
+            changed.add(link.dst().deviceId());
+        }
+        return changed;
+    }
+
+    // Returns the cluster of the specified topology that is identical to the
+    // given cluster or null if there is none. With the same devices and none
+    // of their links changed, the two clusters span the same subgraph.
+    private TopologyCluster unchangedCluster(DefaultTopology prior, TopologyCluster cluster,
+                                             Set<DeviceId> changedDevices) {
+        TopologyCluster priorCluster = prior.getCluster(cluster.root().deviceId());
+        if (priorCluster == null || !priorCluster.root().equals(cluster.root()) ||
+                priorCluster.deviceCount() != cluster.deviceCount() ||
+                priorCluster.linkCount() != cluster.linkCount()) {
+            return null;
+        }
+        Set<DeviceId> devices = getClusterDevices(cluster);
+        if (devices.stream().anyMatch(changedDevices::contains) ||
+                !devices.equals(prior.getClusterDevices(priorCluster))) {
+            return null;
+        }
+        return priorCluster;
     }
 
     // Finds all broadcast points for the cluster. These are those connection
@@ -623,6 +759,39 @@ public class DefaultTopology extends AbstractModel implements Topology {
         }
     }
 
+    // Path cache key; link weights are told apart by identity as they
+    // generally do not implement equals.
+    private static final class PathKey {
+        private final DeviceId src;
+        private final DeviceId dst;
+        private final LinkWeight weight;
+
+        private PathKey(DeviceId src, DeviceId dst, LinkWeight weight) {
+            this.src = src;
+            this.dst = dst;
+            this.weight = weight;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(src, dst, System.identityHashCode(weight));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof PathKey) {
+                PathKey other = (PathKey) obj;
+                return Objects.equals(src, other.src) &&
+                        Objects.equals(dst, other.dst) &&
+                        weight == other.weight;
+            }
+            return false;
+        }
+    }
+
     static final class ClusterIndexes {
         final ImmutableMap<DeviceId, TopologyCluster> clustersByDevice;
         final ImmutableSetMultimap<TopologyCluster, DeviceId> devicesByCluster;
@@ -35,6 +35,8 @@ import org.onosproject.net.topology.LinkWeight;
 import org.onosproject.net.topology.TopologyCluster;
 import org.onosproject.net.topology.TopologyVertex;
 
+import com.google.common.collect.Sets;
+
 import java.util.Set;
 
 import static com.google.common.collect.ImmutableSet.of;
@@ -65,6 +67,7 @@ public class DefaultTopologyTest {
             edge.src().deviceId().equals(D4) || edge.dst().deviceId().equals(D4)
                     ? 2.0 : 1.0;
 
+    private GraphDescription graphDescription;
     private DefaultTopology dt;
 
     public static final ClusterId C0 = ClusterId.clusterId(0);
@@ -80,7 +83,7 @@ public class DefaultTopologyTest {
                              link("3", 2, "2", 2), link("2", 2, "3", 2),
                              link("1", 3, "4", 3), link("4", 3, "1", 3),
                              link("3", 4, "4", 4), link("4", 4, "3", 4));
-        GraphDescription graphDescription =
+        graphDescription =
                 new DefaultGraphDescription(now, System.currentTimeMillis(), devices, links);
 
         dt = new DefaultTopology(PID, graphDescription);
@@ -109,6 +112,39 @@ public class DefaultTopologyTest {
         assertEquals("incorrect path count", 1, paths.size());
     }
 
+    @Test
+    public void pathCaching() {
+        Set<Path> paths = dt.getPaths(D1, D3, WEIGHT);
+        assertSame("cached paths expected", paths, dt.getPaths(D1, D3, WEIGHT));
+        assertEquals("incorrect hit count", 1, dt.pathCacheStats().hitCount());
+        assertEquals("incorrect miss count", 1, dt.pathCacheStats().missCount());
+
+        // an equivalent but distinct weight function must not share entries
+        LinkWeight other = edge -> WEIGHT.weight(edge);
+        assertNotSame("fresh paths expected", paths, dt.getPaths(D1, D3, other));
+        assertEquals("incorrect miss count", 2, dt.pathCacheStats().missCount());
+    }
+
+    @Test
+    public void pathCacheBounds() {
+        try {
+            DefaultTopology.setPathCacheSize(1);
+            DefaultTopology topology = new DefaultTopology(PID, graphDescription);
+            Set<Path> paths = topology.getPaths(D1, D3, WEIGHT);
+            topology.getPaths(D1, D2, WEIGHT);
+            assertNotSame("evicted paths expected", paths, topology.getPaths(D1, D3, WEIGHT));
+            assertEquals("incorrect eviction count", 2, topology.pathCacheStats().evictionCount());
+
+            DefaultTopology.setPathCacheSize(0);
+            topology = new DefaultTopology(PID, graphDescription);
+            topology.getPaths(D1, D3, WEIGHT);
+            topology.getPaths(D1, D3, WEIGHT);
+            assertEquals("no cache requests expected", 0, topology.pathCacheStats().requestCount());
+        } finally {
+            DefaultTopology.setPathCacheSize(DefaultTopology.DEFAULT_PATH_CACHE_SIZE);
+        }
+    }
+
     @Test
     public void pointRelated() {
         assertTrue("should be infrastructure point",
@@ -129,6 +165,66 @@ public class DefaultTopologyTest {
         assertFalse("cluster should not contain D5", devs.contains(D5));
     }
 
+    @Test
+    public void incrementalRebuild() {
+        // attach a new device to D5; the cluster of D1..D4 is unaffected
+        Set<Device> devices = of(device("1"), device("2"), device("3"),
+                                 device("4"), device("5"), device("6"));
+        Set<Link> links = of(link("1", 1, "2", 1), link("2", 1, "1", 1),
+                             link("3", 2, "2", 2), link("2", 2, "3", 2),
+                             link("1", 3, "4", 3), link("4", 3, "1", 3),
+                             link("3", 4, "4", 4), link("4", 4, "3", 4),
+                             link("5", 1, "6", 1), link("6", 1, "5", 1));
+        assertSameBroadcastSets(devices, links);
+
+        // drop the links between D1 and D2; the cluster shrinks
+        links = of(link("3", 2, "2", 2), link("2", 2, "3", 2),
+                   link("1", 3, "4", 3), link("4", 3, "1", 3),
+                   link("3", 4, "4", 4), link("4", 4, "3", 4));
+        assertSameBroadcastSets(devices, links);
+    }
+
+    @Test
+    public void incrementalRebuildOfManyClusters() {
+        // rings of four devices each, one of which loses a link
+        Set<Device> devices = Sets.newHashSet();
+        Set<Link> links = Sets.newHashSet();
+        for (int r = 0; r < 50; r++) {
+            for (int i = 0; i < 4; i++) {
+                String a = r + "0" + i;
+                String b = r + "0" + ((i + 1) % 4);
+                devices.add(device(a));
+                links.add(link(a, 1, b, 2));
+                links.add(link(b, 2, a, 1));
+            }
+        }
+        assertSameBroadcastSets(devices, links);
+
+        links.remove(link("1000", 1, "1001", 2));
+        assertSameBroadcastSets(devices, links);
+    }
+
+    // Checks that a topology built on top of the current one carries the
+    // same broadcast sets as one built from scratch, then makes it current.
+    private void assertSameBroadcastSets(Set<Device> devices, Set<Link> links) {
+        long now = System.currentTimeMillis();
+        GraphDescription description =
+                new DefaultGraphDescription(now, System.currentTimeMillis(), devices, links);
+        dt.getClusters().forEach(c -> dt.broadcastPoints(c.id()));
+        DefaultTopology incremental = new DefaultTopology(PID, description, null, dt);
+        DefaultTopology full = new DefaultTopology(PID, description);
+
+        assertEquals("incorrect cluster count", full.clusterCount(), incremental.clusterCount());
+        for (TopologyCluster cluster : full.getClusters()) {
+            TopologyCluster other = incremental.getCluster(cluster.root().deviceId());
+            assertEquals("incorrect cluster devices",
+                         full.getClusterDevices(cluster), incremental.getClusterDevices(other));
+            assertEquals("incorrect broadcast set",
+                         full.broadcastPoints(cluster.id()), incremental.broadcastPoints(other.id()));
+        }
+        dt = incremental;
+    }
+
     // Short-hand for creating a link.
     public static Link link(String src, int sp, String dst, int dp) {
         return DefaultLink.builder().providerId(PID)
@@ -45,4 +45,13 @@ public class TestEventDispatcher extends DefaultEventSinkRegistry
     public long getDispatchTimeLimit() {
         return 0;
     }
+
+    @Override
+    public void setDispatchLoops(int count) {
+    }
+
+    @Override
+    public int getDispatchLoops() {
+        return 1;
+    }
 }
@@ -55,6 +55,7 @@ import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.List;
@@ -286,6 +287,27 @@ public class SimpleFlowRuleStore
         return null;
     }
 
+    @Override
+    public List<FlowRuleEvent> updateFlowStatistics(DeviceId deviceId, Collection<FlowEntry> flowEntries) {
+        List<FlowRuleEvent> events = new ArrayList<>();
+        List<FlowEntry> updated = new ArrayList<>();
+        for (FlowEntry rule : flowEntries) {
+            FlowRuleEvent event = addOrUpdateFlowRule(rule);
+            if (event == null) {
+                continue;
+            }
+            if (event.type() == Type.RULE_UPDATED) {
+                updated.add(rule);
+            } else {
+                events.add(event);
+            }
+        }
+        if (!updated.isEmpty()) {
+            events.add(FlowRuleEvent.statsUpdated(updated));
+        }
+        return events;
+    }
+
     @Override
     public FlowRuleEvent removeFlowRule(FlowEntry rule) {
         // This is where one could mark a rule as removed and still keep it in the store.
@@ -15,10 +15,19 @@
  */
 package org.onosproject.event.impl;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.SharedExecutors;
 import org.onosproject.event.AbstractEvent;
 import org.onosproject.event.DefaultEventSinkRegistry;
@@ -27,11 +36,20 @@ import org.onosproject.event.EventDeliveryService;
 import org.onosproject.event.EventSink;
 import org.slf4j.Logger;
 
+import java.util.List;
+import java.util.Map;
 import java.util.TimerTask;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
@@ -42,6 +60,11 @@ import static org.onosproject.security.AppPermission.Type.EVENT_WRITE;
 import static org.slf4j.LoggerFactory.getLogger;
 /**
  * Simple implementation of an event dispatching service.
+ * <p>
+ * Events are dispatched by one or more dispatch loops. All events destined
+ * to the same sink are dispatched by the same loop, which preserves the
+ * order in which each sink sees its events while letting a slow sink hold
+ * up only the sinks sharing its loop.
  */
 @Component(immediate = true)
 @Service
@@ -56,35 +79,74 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
     private static final long DEFAULT_EXECUTE_MS = 5_000; // ms
     private static final long WATCHDOG_MS = 250; // ms
 
-    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private static final int DEFAULT_DISPATCH_LOOPS = 1;
 
-    private final ExecutorService executor =
-            newSingleThreadExecutor(groupedThreads("onos/event", "dispatch-%d", log));
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
 
     @SuppressWarnings("unchecked")
     private static final Event KILL_PILL = new AbstractEvent(null, 0) {
     };
 
-    private DispatchLoop dispatchLoop;
+    private volatile List<DispatchShard> shards = createShards(DEFAULT_DISPATCH_LOOPS);
     private long maxProcessMillis = DEFAULT_EXECUTE_MS;
 
+    // Assignment of event classes to dispatch shards and their statistics
+    private final Map<Class<? extends Event>, Integer> shardAssignments = new ConcurrentHashMap<>();
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final Map<Class<? extends Event>, SinkStats> sinkStats = new ConcurrentHashMap<>();
+    private MetricsComponent metricsComponent;
+
     // Means to detect long-running sinks
     private TimerTask watchdog;
-    private EventSink lastSink;
-    private long lastStart = 0;
-    private Future<?> dispatchFuture;
 
     @Override
     public void post(Event event) {
-        if (!events.add(event)) {
+        SinkStats stats = sinkStats.get(event.getClass());
+        if (stats != null) {
+            stats.pending.incrementAndGet();
+        }
+        enqueue(event);
+    }
+
+    private void enqueue(Event event) {
+        if (!shardFor(event, shards).events.add(event)) {
             log.error("Unable to post event {}", event);
         }
     }
 
+    private DispatchShard shardFor(Event event, List<DispatchShard> current) {
+        return current.size() == 1 ? current.get(0) :
+                current.get(shardIndex(event.getClass(), current.size()));
+    }
+
+    // Sinks are spread round-robin across the shards as their events are first seen.
+    private int shardIndex(Class<? extends Event> eventClass, int shardCount) {
+        return shardAssignments.computeIfAbsent(eventClass, c -> nextShard.getAndIncrement()) % shardCount;
+    }
+
+    @Override
+    public <E extends Event> void addSink(Class<E> eventClass, EventSink<E> sink) {
+        super.addSink(eventClass, sink);
+        sinkStats.put(eventClass, new SinkStats(eventClass));
+    }
+
+    @Override
+    public <E extends Event> void removeSink(Class<E> eventClass) {
+        super.removeSink(eventClass);
+        SinkStats stats = sinkStats.remove(eventClass);
+        if (stats != null) {
+            stats.unregister();
+        }
+    }
+
     @Activate
     public void activate() {
-        dispatchLoop = new DispatchLoop();
-        dispatchFuture = executor.submit(dispatchLoop);
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent("EventDispatcher");
+            sinkStats.values().forEach(SinkStats::register);
+        }
+        shards.forEach(DispatchShard::start);
 
         if (maxProcessMillis != 0) {
             startWatchdog();
@@ -95,12 +157,36 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
 
     @Deactivate
     public void deactivate() {
-        dispatchLoop.stop();
         stopWatchdog();
-        post(KILL_PILL);
+        shards.forEach(DispatchShard::stop);
         log.info("Stopped");
     }
 
+    // Replaces the dispatch shards, preserving the per-sink event order.
+    private void reshard(int count) {
+        // Route new events to the new shards, but hold them until the old
+        // shards drained so that each sink still sees its events in order.
+        List<DispatchShard> oldShards = shards;
+        List<DispatchShard> newShards = createShards(count);
+        shards = newShards;
+        oldShards.forEach(DispatchShard::drain);
+
+        // Events left behind by a loop that did not drain in time are older
+        // than anything posted since, so they go to the head of the queues.
+        List<Event> leftovers = Lists.newArrayList();
+        oldShards.forEach(shard -> shard.events.stream()
+                .filter(event -> event != KILL_PILL)
+                .forEach(leftovers::add));
+        Lists.reverse(leftovers).forEach(event -> shardFor(event, newShards).events.addFirst(event));
+        newShards.forEach(DispatchShard::start);
+    }
+
+    private List<DispatchShard> createShards(int count) {
+        return ImmutableList.copyOf(IntStream.range(0, count)
+                .mapToObj(DispatchShard::new)
+                .collect(Collectors.toList()));
+    }
+
     private void startWatchdog() {
         log.info("Starting watchdog task");
         watchdog = new Watchdog();
@@ -135,18 +221,103 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
         return maxProcessMillis;
     }
 
+    @Override
+    public synchronized void setDispatchLoops(int count) {
+        checkPermission(EVENT_WRITE);
+        checkArgument(count > 0, "Number of dispatch loops must be positive");
+        if (count != shards.size()) {
+            reshard(count);
+            log.info("Reconfigured with {} dispatch loops", count);
+        }
+    }
+
+    @Override
+    public int getDispatchLoops() {
+        checkPermission(EVENT_READ);
+        return shards.size();
+    }
+
+    // Event queue along with the dispatch loop feeding off of it.
+    private class DispatchShard {
+        private final int index;
+        private final BlockingDeque<Event> events = new LinkedBlockingDeque<>();
+        private final ExecutorService executor;
+
+        private DispatchLoop dispatchLoop;
+        private Future<?> dispatchFuture;
+
+        // Means to detect long-running sinks
+        private volatile EventSink lastSink;
+        private volatile long lastStart = 0;
+
+        DispatchShard(int index) {
+            this.index = index;
+            this.executor = newSingleThreadExecutor(groupedThreads("onos/event", "dispatch-" + index + "-%d", log));
+        }
+
+        synchronized void start() {
+            dispatchLoop = new DispatchLoop(this);
+            dispatchFuture = executor.submit(dispatchLoop);
+        }
+
+        synchronized void stop() {
+            if (dispatchLoop != null) {
+                dispatchLoop.stop();
+            }
+            events.add(KILL_PILL);
+            executor.shutdown();
+        }
+
+        // Stops the loop once all events queued so far have been dispatched.
+        void drain() {
+            Future<?> future;
+            synchronized (this) {
+                events.add(KILL_PILL);
+                future = dispatchFuture;
+            }
+            try {
+                if (future != null) {
+                    future.get(maxProcessMillis == 0 ? DEFAULT_EXECUTE_MS : maxProcessMillis,
+                               TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Dispatch loop {} did not drain in time", index);
+                synchronized (this) {
+                    dispatchLoop.stop();
+                    dispatchFuture.cancel(true);
+                }
+            }
+            executor.shutdown();
+        }
+
+        // Cancels the current dispatch loop and submits a new one.
+        synchronized void restart() {
+            dispatchLoop.stop();
+            dispatchLoop = new DispatchLoop(this);
+            dispatchFuture.cancel(true);
+            dispatchFuture = executor.submit(dispatchLoop);
+        }
+    }
+
     // Auxiliary event dispatching loop that feeds off the events queue.
     private class DispatchLoop implements Runnable {
+        private final DispatchShard shard;
         private volatile boolean stopped;
 
+        DispatchLoop(DispatchShard shard) {
+            this.shard = shard;
+        }
+
         @Override
         public void run() {
             stopped = false;
-            log.info("Dispatch loop initiated");
+            log.info("Dispatch loop {} initiated", shard.index);
             while (!stopped) {
                 try {
                     // Fetch the next event and if it is the kill-pill, bail
-                    Event event = events.take();
+                    Event event = shard.events.take();
                     if (event == KILL_PILL) {
                         break;
                     }
@@ -157,18 +328,30 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
                     log.warn("Error encountered while dispatching event:", e);
                 }
             }
-            log.info("Dispatch loop terminated");
+            log.info("Dispatch loop {} terminated", shard.index);
         }
 
         // Locate the sink for the event class and use it to process the event
         @SuppressWarnings("unchecked")
         private void process(Event event) {
+            SinkStats stats = sinkStats.get(event.getClass());
+            if (stats != null) {
+                // events posted before the sink was added were not counted
+                stats.pending.updateAndGet(n -> n > 0 ? n - 1 : 0);
+            }
             EventSink sink = getSink(event.getClass());
             if (sink != null) {
-                lastSink = sink;
-                lastStart = System.currentTimeMillis();
-                sink.process(event);
-                lastStart = 0;
+                shard.lastSink = sink;
+                shard.lastStart = System.currentTimeMillis();
+                Timer.Context timer = stats != null && stats.latency != null ? stats.latency.time() : null;
+                try {
+                    sink.process(event);
+                } finally {
+                    if (timer != null) {
+                        timer.stop();
+                    }
+                    shard.lastStart = 0;
+                }
             } else {
                 log.warn("No sink registered for event class {}",
                          event.getClass().getName());
@@ -180,24 +363,57 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
         }
     }
 
+    // Queue depth and dispatch latency of a single event sink.
+    private class SinkStats {
+        private final Class<? extends Event> eventClass;
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile Timer latency;
+
+        SinkStats(Class<? extends Event> eventClass) {
+            this.eventClass = eventClass;
+            if (metricsComponent != null) {
+                register();
+            }
+        }
+
+        private MetricsFeature feature() {
+            return metricsComponent.registerFeature(eventClass.getName());
+        }
+
+        void register() {
+            MetricsFeature feature = feature();
+            latency = metricsService.createTimer(metricsComponent, feature, "dispatchLatency");
+            metricsService.removeMetric(metricsComponent, feature, "queueDepth");
+            metricsService.registerMetric(metricsComponent, feature, "queueDepth",
+                                          (Gauge<Integer>) pending::get);
+        }
+
+        void unregister() {
+            if (metricsComponent != null) {
+                metricsService.removeMetric(metricsComponent, feature(), "queueDepth");
+            }
+        }
+    }
+
     // Monitors event sinks to make sure none take too long to execute.
     private class Watchdog extends TimerTask {
         @Override
         public void run() {
-            long delta = System.currentTimeMillis() - lastStart;
-            if (lastStart > 0 && delta > maxProcessMillis) {
-                lastStart = 0;
-                log.warn("Event sink {} exceeded execution time limit: {} ms; spawning new dispatch loop",
-                          lastSink.getClass().getName(), delta);
+            for (DispatchShard shard : shards) {
+                long lastStart = shard.lastStart;
+                long delta = System.currentTimeMillis() - lastStart;
+                if (lastStart > 0 && delta > maxProcessMillis) {
+                    shard.lastStart = 0;
+                    EventSink lastSink = shard.lastSink;
+                    log.warn("Event sink {} exceeded execution time limit: {} ms; spawning new dispatch loop",
+                             lastSink.getClass().getName(), delta);
 
-                // Notify the sink that it has exceeded its time limit.
-                lastSink.onProcessLimit();
+                    // Notify the sink that it has exceeded its time limit.
+                    lastSink.onProcessLimit();
 
-                // Cancel the old dispatch loop and submit a new one.
-                dispatchLoop.stop();
-                dispatchLoop = new DispatchLoop();
-                dispatchFuture.cancel(true);
-                dispatchFuture = executor.submit(dispatchLoop);
+                    // Cancel the old dispatch loop and submit a new one.
+                    shard.restart();
+                }
             }
         }
     }
@@ -43,6 +43,7 @@ import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.CompletedBatchOperation;
 import org.onosproject.net.flow.DefaultFlowEntry;
 import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
 import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchEntry;
 import org.onosproject.net.flow.FlowRuleBatchEvent;
@@ -74,6 +75,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -119,6 +121,9 @@ public class FlowRuleManager
     private final FlowRuleStoreDelegate delegate = new InternalStoreDelegate();
     private final DeviceListener deviceListener = new InternalDeviceListener();
 
+    // flow entry reports that devices are still streaming in parts
+    private final Map<DeviceId, PartialFlowReport> partialFlowReports = Maps.newConcurrentMap();
+
     private final FlowRuleDriverProvider defaultProvider = new FlowRuleDriverProvider();
 
     protected ExecutorService deviceInstallers =
@@ -388,24 +393,6 @@ public class FlowRuleManager
             log.debug("Flow {} is on switch but not in store.", flowRule);
         }
 
-        private void flowAdded(FlowEntry flowEntry) {
-            checkNotNull(flowEntry, FLOW_RULE_NULL);
-            checkValidity();
-
-            if (checkRuleLiveness(flowEntry, store.getFlowEntry(flowEntry))) {
-                FlowRuleEvent event = store.addOrUpdateFlowRule(flowEntry);
-                if (event == null) {
-                    log.debug("No flow store event generated.");
-                } else {
-                    log.trace("Flow {} {}", flowEntry, event.type());
-                    post(event);
-                }
-            } else {
-                log.debug("Removing flow rules....");
-                removeFlowRules(flowEntry);
-            }
-        }
-
         private boolean checkRuleLiveness(FlowEntry swRule, FlowEntry storedRule) {
             if (storedRule == null) {
                 return false;
@@ -442,18 +429,84 @@ public class FlowRuleManager
             pushFlowMetricsInternal(deviceId, flowEntries, false);
         }
 
+        @Override
+        public void pushFlowMetricsPart(DeviceId deviceId, long xid, Iterable<FlowEntry> flowEntries,
+                                        boolean lastPart) {
+            checkValidity();
+            PartialFlowReport report = partialFlowReports.compute(deviceId, (id, current) -> {
+                if (current != null && current.xid != xid) {
+                    log.debug("Discarding unfinished flow report {} of {}", current.xid, deviceId);
+                }
+                return current != null && current.xid == xid ? current : new PartialFlowReport(xid);
+            });
+            reconcile(deviceId, flowEntries, rule -> {
+                FlowEntry storedRule = store.getFlowEntry(rule);
+                if (storedRule != null) {
+                    report.reported.add(storedRule.id());
+                }
+                return storedRule;
+            });
+
+            if (lastPart) {
+                partialFlowReports.remove(deviceId, report);
+                List<FlowEntry> missingRules = Lists.newArrayList();
+                for (FlowEntry rule : store.getFlowEntries(deviceId)) {
+                    if (!report.reported.contains(rule.id())) {
+                        missingRules.add(rule);
+                    }
+                }
+                missingRules.forEach(this::missingOnDevice);
+            }
+        }
+
         private void pushFlowMetricsInternal(DeviceId deviceId, Iterable<FlowEntry> flowEntries,
                                              boolean useMissingFlow) {
+            checkValidity();
             Map<FlowEntry, FlowEntry> storedRules = Maps.newHashMap();
             store.getFlowEntries(deviceId).forEach(f -> storedRules.put(f, f));
+            reconcile(deviceId, flowEntries, storedRules::remove);
+
+            // DO NOT reinstall
+            if (useMissingFlow) {
+                for (FlowEntry rule : storedRules.keySet()) {
+                    missingOnDevice(rule);
+                }
+            }
+        }
+
+        private void missingOnDevice(FlowEntry rule) {
+            try {
+                // there are rules in the store that aren't on the switch
+                log.debug("Adding rule in store, but not on switch {}", rule);
+                flowMissing(rule);
+            } catch (Exception e) {
+                log.debug("Can't add missing flow rule:", e);
+            }
+        }
+
+        /**
+         * Reconciles flow entries reported by a device with the store.
+         *
+         * @param deviceId device identifier
+         * @param flowEntries flow entries reported by the device
+         * @param lookup returns the stored entry for a reported entry, or null
+         */
+        private void reconcile(DeviceId deviceId, Iterable<FlowEntry> flowEntries,
+                               Function<FlowEntry, FlowEntry> lookup) {
+            List<FlowEntry> liveRules = Lists.newArrayList();
 
             for (FlowEntry rule : flowEntries) {
                 try {
-                    FlowEntry storedRule = storedRules.remove(rule);
+                    FlowEntry storedRule = lookup.apply(rule);
                     if (storedRule != null) {
                         if (storedRule.exactMatch(rule)) {
                             // we both have the rule, let's update some info then.
-                            flowAdded(rule);
+                            if (checkRuleLiveness(rule, storedRule)) {
+                                liveRules.add(rule);
+                            } else {
+                                log.debug("Removing flow rules....");
+                                removeFlowRules(rule);
+                            }
                         } else {
                             // the two rules are not an exact match - remove the
                             // switch's rule and install our rule
@@ -471,16 +524,11 @@ public class FlowRuleManager
                 }
             }
 
-            // DO NOT reinstall
-            if (useMissingFlow) {
-                for (FlowEntry rule : storedRules.keySet()) {
-                    try {
-                        // there are rules in the store that aren't on the switch
-                        log.debug("Adding rule in store, but not on switch {}", rule);
-                        flowMissing(rule);
-                    } catch (Exception e) {
-                        log.debug("Can't add missing flow rule:", e);
-                    }
+            // apply the statistics of all live rules to the store in one go
+            if (!liveRules.isEmpty()) {
+                for (FlowRuleEvent event : store.updateFlowStatistics(deviceId, liveRules)) {
+                    log.trace("Flow {} {}", event.subject(), event.type());
+                    post(event);
                 }
             }
         }
@@ -668,6 +716,8 @@ public class FlowRuleManager
                 case DEVICE_AVAILABILITY_CHANGED:
                     DeviceId deviceId = event.subject().id();
                     if (!deviceService.isAvailable(deviceId)) {
+                        // the rest of an unfinished flow report is not coming
+                        partialFlowReports.remove(deviceId);
                         if (purgeOnDisconnection) {
                             store.purgeFlowRule(deviceId);
                         }
@@ -678,4 +728,16 @@ public class FlowRuleManager
             }
         }
     }
+
+    /**
+     * Stored flows reported so far by the parts of one flow report of a device.
+     */
+    private static final class PartialFlowReport {
+        private final long xid;
+        private final Set<FlowId> reported = Sets.newHashSet();
+
+        private PartialFlowReport(long xid) {
+            this.xid = xid;
+        }
+    }
 }
@@ -15,7 +15,9 @@
  */
 package org.onosproject.net.intent.impl;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.onlab.util.AbstractAccumulator;
 import org.onosproject.net.intent.IntentBatchDelegate;
 import org.onosproject.net.intent.IntentData;
@@ -24,11 +26,15 @@ import org.onosproject.net.intent.Key;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
- * An accumulator for building batches of intent operations. Only one batch should
- * be in process per instance at a time.
+ * An accumulator for building batches of intent operations. By default only
+ * one batch is in process per instance at a time; when more batches are
+ * allowed in flight, batches never share intent keys with each other.
  */
 public class IntentAccumulator extends AbstractAccumulator<IntentData> {
 
@@ -42,7 +48,15 @@ public class IntentAccumulator extends AbstractAccumulator<IntentData> {
 
     private final IntentBatchDelegate delegate;
 
-    private volatile boolean ready;
+    // Guards the in-flight bookkeeping below
+    private final Object pipelineLock = new Object();
+    private int maxBatchesInFlight = 1;
+    private int batchesInFlight;
+    private final Set<Key> inFlightKeys = Sets.newHashSet();
+    // Operations held back because their key is part of a batch in flight
+    private final Map<Key, IntentData> deferred = Maps.newHashMap();
+    // Deferred operations given back to the accumulator; newer operations win
+    private final Map<Key, IntentData> resubmitted = Maps.newHashMap();
 
     /**
      * Creates an intent operation accumulator.
@@ -52,19 +66,52 @@ public class IntentAccumulator extends AbstractAccumulator<IntentData> {
     protected IntentAccumulator(IntentBatchDelegate delegate) {
         super(TIMER, DEFAULT_MAX_EVENTS, DEFAULT_MAX_BATCH_MS, DEFAULT_MAX_IDLE_MS);
         this.delegate = delegate;
-        // Assume that the delegate is ready for work at the start
-        ready = true; //TODO validate the assumption that delegate is ready
+    }
+
+    /**
+     * Sets the maximum number of batches handed to the delegate that may be
+     * in process at the same time.
+     *
+     * @param maxBatchesInFlight maximum number of batches in flight
+     */
+    public void setMaxBatchesInFlight(int maxBatchesInFlight) {
+        checkArgument(maxBatchesInFlight > 0, "maxBatchesInFlight must be positive");
+        synchronized (pipelineLock) {
+            this.maxBatchesInFlight = maxBatchesInFlight;
+        }
     }
 
     @Override
     public void processItems(List<IntentData> items) {
-        ready = false;
-        delegate.execute(reduce(items));
+        Collection<IntentData> batch = Lists.newArrayList();
+        synchronized (pipelineLock) {
+            for (IntentData op : reduce(items)) {
+                if (inFlightKeys.contains(op.key())) {
+                    // overlapping key; retry once the earlier batch completes
+                    deferred.put(op.key(), op);
+                } else {
+                    batch.add(op);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            batch.forEach(op -> inFlightKeys.add(op.key()));
+            batchesInFlight++;
+        }
+        delegate.execute(batch);
     }
 
     private Collection<IntentData> reduce(List<IntentData> ops) {
         Map<Key, IntentData> map = Maps.newHashMap();
         for (IntentData op : ops) {
+            if (resubmitted.get(op.key()) == op) {
+                resubmitted.remove(op.key());
+                // anything queued ahead of a resubmitted operation arrived after it was deferred
+                if (map.containsKey(op.key())) {
+                    continue;
+                }
+            }
             map.put(op.key(), op);
         }
         //TODO check the version... or maybe store will handle this.
@@ -73,10 +120,30 @@ public class IntentAccumulator extends AbstractAccumulator<IntentData> {
 
     @Override
     public boolean isReady() {
-        return ready;
+        synchronized (pipelineLock) {
+            return batchesInFlight < maxBatchesInFlight;
+        }
     }
 
-    public void ready() {
-        ready = true;
+    /**
+     * Signals that the delegate has finished processing the specified batch.
+     * Operations deferred because of overlapping keys are resubmitted.
+     *
+     * @param batch batch previously handed to the delegate
+     */
+    public void ready(Collection<IntentData> batch) {
+        List<IntentData> resubmit = Lists.newArrayList();
+        synchronized (pipelineLock) {
+            batchesInFlight--;
+            for (IntentData op : batch) {
+                inFlightKeys.remove(op.key());
+                IntentData next = deferred.remove(op.key());
+                if (next != null) {
+                    resubmitted.put(next.key(), next);
+                    resubmit.add(next);
+                }
+            }
+        }
+        resubmit.forEach(this::add);
     }
 }
@@ -15,6 +15,7 @@
  */
 package org.onosproject.net.intent.impl;
 
+import com.codahale.metrics.Timer;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -23,10 +24,12 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.CoreService;
 import org.onosproject.core.IdGenerator;
+import org.onosproject.core.MetricsHelper;
 import org.onosproject.event.AbstractListenerManager;
 import org.onosproject.net.flow.FlowRuleService;
 import org.onosproject.net.flowobjective.FlowObjectiveService;
@@ -62,6 +65,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.onlab.metrics.MetricsUtil.startTimer;
+import static org.onlab.metrics.MetricsUtil.stopTimer;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.intent.IntentState.*;
 import static org.onosproject.net.intent.constraint.PartialFailureConstraint.intentAllowsPartialFailure;
@@ -78,7 +83,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 @Service
 public class IntentManager
         extends AbstractListenerManager<IntentEvent, IntentListener>
-        implements IntentService, IntentExtensionService {
+        implements IntentService, IntentExtensionService, MetricsHelper {
 
     private static final Logger log = getLogger(IntentManager.class);
 
@@ -102,6 +107,13 @@ public class IntentManager
             label = "Number of worker threads")
     private int numThreads = DEFAULT_NUM_THREADS;
 
+    private static final int DEFAULT_MAX_BATCHES_IN_FLIGHT = 1;
+    @Property(name = "maxBatchesInFlight",
+            intValue = DEFAULT_MAX_BATCHES_IN_FLIGHT,
+            label = "Maximum number of intent batches processed concurrently; " +
+                    "batches in flight never share intent keys")
+    private int maxBatchesInFlight = DEFAULT_MAX_BATCHES_IN_FLIGHT;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
@@ -123,6 +135,9 @@ public class IntentManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService configService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     private ExecutorService batchExecutor;
     private ExecutorService workerExecutor;
 
@@ -137,6 +152,11 @@ public class IntentManager
 
     private final IntentAccumulator accumulator = new IntentAccumulator(batchDelegate);
 
+    private Timer compileTimer;
+    private Timer installTimer;
+    private Timer storeWriteTimer;
+    private Timer batchTimer;
+
     @Activate
     public void activate() {
         configService.registerProperties(getClass());
@@ -153,6 +173,10 @@ public class IntentManager
         workerExecutor = newFixedThreadPool(numThreads, groupedThreads("onos/intent", "worker-%d", log));
         idGenerator = coreService.getIdGenerator("intent-ids");
         Intent.bindIdGenerator(idGenerator);
+        compileTimer = createTimer("IntentManager", "pipeline", "compile");
+        installTimer = createTimer("IntentManager", "pipeline", "install");
+        storeWriteTimer = createTimer("IntentManager", "pipeline", "storeWrite");
+        batchTimer = createTimer("IntentManager", "pipeline", "batch");
         log.info("Started");
     }
 
@@ -206,6 +230,14 @@ public class IntentManager
             }
             logConfig("Reconfigured number of worker threads");
         }
+
+        s = Tools.get(context.getProperties(), "maxBatchesInFlight");
+        int newMaxBatchesInFlight = isNullOrEmpty(s) ? maxBatchesInFlight : Integer.parseInt(s.trim());
+        if (newMaxBatchesInFlight != maxBatchesInFlight && newMaxBatchesInFlight > 0) {
+            maxBatchesInFlight = newMaxBatchesInFlight;
+            accumulator.setMaxBatchesInFlight(maxBatchesInFlight);
+            log.info("Reconfigured maximum number of batches in flight to {}", maxBatchesInFlight);
+        }
     }
 
     private void logConfig(String prefix) {
@@ -391,8 +423,13 @@ public class IntentManager
             log.debug("Execute {} operation(s).", operations.size());
             log.trace("Execute operations: {}", operations);
 
-            // batchExecutor is single-threaded, so only one batch is in flight at a time
-            CompletableFuture.runAsync(() -> {
+            // The accumulator limits how many batches are in flight and keeps
+            // their keys disjoint. With more than one batch in flight, store
+            // writes may land out of batch order; that is safe because they
+            // touch disjoint keys, and a key is only handed out again once
+            // the write of its batch has completed (accumulator.ready below).
+            final Timer.Context batchTimerContext = startTimer(batchTimer);
+            CompletableFuture.supplyAsync(() -> {
                 // process intent until the phase reaches one of the final phases
                 List<CompletableFuture<IntentData>> futures = operations.stream()
                         .map(x -> CompletableFuture.completedFuture(x)
@@ -404,11 +441,17 @@ public class IntentManager
                                     log.warn("Future failed: {}", e);
                                     return null;
                                 })).collect(Collectors.toList());
-
+                return Tools.allOf(futures);
+            }, batchExecutor).thenCompose(f -> f).thenAcceptAsync(results -> {
                 // write multiple data to store in order
-                store.batchWrite(Tools.allOf(futures).join().stream()
-                                         .filter(Objects::nonNull)
-                                         .collect(Collectors.toList()));
+                final Timer.Context storeWriteTimerContext = startTimer(storeWriteTimer);
+                try {
+                    store.batchWrite(results.stream()
+                                             .filter(Objects::nonNull)
+                                             .collect(Collectors.toList()));
+                } finally {
+                    stopTimer(storeWriteTimerContext);
+                }
             }, batchExecutor).exceptionally(e -> {
                 log.error("Error submitting batches:", e);
                 // FIXME incomplete Intents should be cleaned up
@@ -418,11 +461,19 @@ public class IntentManager
                 // TODO: maybe we should do more?
                 log.error("Walk the plank, matey...");
                 return null;
-            }).thenRun(accumulator::ready);
+            }).thenRun(() -> {
+                stopTimer(batchTimerContext);
+                accumulator.ready(operations);
+            });
 
         }
     }
 
+    @Override
+    public MetricsService metricsService() {
+        return metricsService;
+    }
+
     private IntentProcessPhase createInitialPhase(IntentData data) {
         IntentData current = store.getIntentData(data.key());
         return newInitialPhase(processor, data, current);
@@ -431,12 +482,22 @@ public class IntentManager
     private class InternalIntentProcessor implements IntentProcessor {
         @Override
         public List<Intent> compile(Intent intent, List<Intent> previousInstallables) {
-            return compilerRegistry.compile(intent, previousInstallables);
+            final Timer.Context timer = startTimer(compileTimer);
+            try {
+                return compilerRegistry.compile(intent, previousInstallables);
+            } finally {
+                stopTimer(timer);
+            }
         }
 
         @Override
         public void apply(Optional<IntentData> toUninstall, Optional<IntentData> toInstall) {
-            intentInstaller.apply(toUninstall, toInstall);
+            final Timer.Context timer = startTimer(installTimer);
+            try {
+                intentInstaller.apply(toUninstall, toInstall);
+            } finally {
+                stopTimer(timer);
+            }
         }
     }
 
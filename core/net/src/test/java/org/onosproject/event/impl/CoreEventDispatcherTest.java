@@ -15,6 +15,7 @@
  */
 package org.onosproject.event.impl;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,11 +23,15 @@ import org.onosproject.event.AbstractEvent;
 import org.onosproject.event.EventSink;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test of the event dispatcher mechanism.
@@ -76,6 +81,83 @@ public class CoreEventDispatcherTest {
         validate(prickleSink);
     }
 
+    @Test
+    public void postWithMultipleLoops() throws Exception {
+        CoreEventDispatcher sharded = new CoreEventDispatcher();
+        PrickleSink prickles = new PrickleSink();
+        GooSink goos = new GooSink();
+        sharded.addSink(Prickle.class, prickles);
+        sharded.addSink(Goo.class, goos);
+        sharded.activate();
+        sharded.setDispatchLoops(4);
+        try {
+            assertEquals(4, sharded.getDispatchLoops());
+            prickles.latch = new CountDownLatch(3);
+            goos.latch = new CountDownLatch(1);
+            sharded.post(new Prickle("a"));
+            sharded.post(new Goo("boom"));
+            sharded.post(new Prickle("b"));
+            sharded.post(new Prickle("c"));
+            prickles.latch.await(100, TimeUnit.MILLISECONDS);
+            goos.latch.await(100, TimeUnit.MILLISECONDS);
+            // each sink sees its own events in order
+            validate(prickles, "a", "b", "c");
+            validate(goos, "boom");
+        } finally {
+            sharded.removeSink(Goo.class);
+            sharded.removeSink(Prickle.class);
+            sharded.deactivate();
+        }
+    }
+
+    @Test
+    public void reshardKeepsLeftoversFirst() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CoreEventDispatcher sharded = new CoreEventDispatcher();
+        PrickleSink prickles = new PrickleSink() {
+            @Override
+            public void process(Prickle event) {
+                if (event.subject().equals("a")) {
+                    blocked.countDown();
+                    Uninterruptibles.awaitUninterruptibly(release);
+                }
+                super.process(event);
+            }
+        };
+        sharded.addSink(Prickle.class, prickles);
+        sharded.activate();
+        sharded.setDispatchTimeLimit(250);
+        try {
+            prickles.latch = new CountDownLatch(4);
+            sharded.post(new Prickle("a"));
+            sharded.post(new Prickle("b"));
+            sharded.post(new Prickle("c"));
+            assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+            // the stuck loop keeps b and c past the drain deadline, while d
+            // is posted to the new loops in the meantime
+            Thread reshard = new Thread(() -> sharded.setDispatchLoops(2));
+            reshard.start();
+            while (sharded.getDispatchLoops() != 2) {
+                Thread.sleep(1);
+            }
+            sharded.post(new Prickle("d"));
+            reshard.join();
+            release.countDown();
+
+            assertTrue(prickles.latch.await(1, TimeUnit.SECONDS));
+            // a was cut off mid-dispatch; everything else stays in order
+            assertEquals(asList("b", "c", "d"), prickles.subjects.stream()
+                    .filter(subject -> !subject.equals("a"))
+                    .collect(Collectors.toList()));
+        } finally {
+            release.countDown();
+            sharded.removeSink(Prickle.class);
+            sharded.deactivate();
+        }
+    }
+
     private void validate(Sink sink, String... strings) {
         int i = 0;
         assertEquals("incorrect event count", strings.length, sink.subjects.size());
@@ -105,7 +187,7 @@ public class CoreEventDispatcherTest {
     }
 
     private static class Sink {
-        final List<String> subjects = new ArrayList<>();
+        final List<String> subjects = Collections.synchronizedList(new ArrayList<>());
         CountDownLatch latch;
 
         protected void process(String subject) {
@@ -39,6 +39,8 @@ import org.onosproject.net.Device;
 import org.onosproject.net.Device.Type;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.MastershipRole;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceServiceAdapter;
 import org.onosproject.net.driver.AbstractHandlerBehaviour;
 import org.onosproject.net.driver.DefaultDriver;
@@ -117,6 +119,7 @@ public class FlowRuleManagerTest {
     private ApplicationId appId;
 
     private TestDriverManager driverService;
+    private final TestDeviceService deviceService = new TestDeviceService();
 
 
     @Before
@@ -124,7 +127,7 @@ public class FlowRuleManagerTest {
         mgr = new FlowRuleManager();
         mgr.store = new SimpleFlowRuleStore();
         injectEventDispatcher(mgr, new TestEventDispatcher());
-        mgr.deviceService = new TestDeviceService();
+        mgr.deviceService = deviceService;
         mgr.mastershipService = new TestMastershipService();
         mgr.coreService = new TestCoreService();
         mgr.operationsService = MoreExecutors.newDirectExecutorService();
@@ -226,7 +229,10 @@ public class FlowRuleManagerTest {
         assertEquals("should still be 2 rules", 2, flowCount());
 
         providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
-        validateEvents(RULE_UPDATED, RULE_UPDATED);
+        // statistics of fe1 are summarized; fe2 is missing and goes pending
+        assertEquals("incorrect updated entries", ImmutableList.of(fe1),
+                     listener.events.get(0).flowEntries());
+        validateEvents(RULE_STATS_UPDATED, RULE_UPDATED);
     }
 
     private boolean validateState(Map<FlowRule, FlowEntryState> expected) {
@@ -392,6 +398,89 @@ public class FlowRuleManagerTest {
 
     }
 
+    /*
+     * Tests that flow entries pushed in parts are reconciled part by part and
+     * that missing rules are only handled after the last part.
+     */
+    @Test
+    public void flowMetricsParts() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+        FlowRule f3 = flowRule(3, 3);
+
+        FlowEntry fe1 = new DefaultFlowEntry(f1);
+        FlowEntry fe2 = new DefaultFlowEntry(f2);
+        mgr.applyFlowRules(f1, f2, f3);
+
+        mgr.removeFlowRules(f3);
+
+        providerService.pushFlowMetricsPart(DID, 1, Lists.newArrayList(fe1), false);
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADD_REQUESTED,
+                       RULE_REMOVE_REQUESTED, RULE_ADDED);
+
+        providerService.pushFlowMetricsPart(DID, 1, Lists.newArrayList(fe2), true);
+        validateEvents(RULE_ADDED, RULE_REMOVED);
+
+        assertTrue("Entries should be added.",
+                   validateState(ImmutableMap.of(
+                           f1, FlowEntryState.ADDED,
+                           f2, FlowEntryState.ADDED)));
+    }
+
+    /*
+     * Tests that the parts of an interrupted flow report are discarded once
+     * the device starts a new one.
+     */
+    @Test
+    public void flowMetricsPartsInterrupted() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+
+        FlowEntry fe1 = new DefaultFlowEntry(f1);
+        FlowEntry fe2 = new DefaultFlowEntry(f2);
+        mgr.applyFlowRules(f1, f2);
+
+        providerService.pushFlowMetricsPart(DID, 1, Lists.newArrayList(fe1), false);
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADDED);
+
+        // the report with xid 1 never finishes; f1 is missing from the new one
+        providerService.pushFlowMetricsPart(DID, 2, Lists.newArrayList(fe2), true);
+        validateEvents(RULE_ADDED, RULE_UPDATED);
+
+        assertTrue("Missing entry should be reinstalled.",
+                   validateState(ImmutableMap.of(
+                           f1, FlowEntryState.PENDING_ADD,
+                           f2, FlowEntryState.ADDED)));
+    }
+
+    /*
+     * Tests that the parts of a flow report are discarded when the device
+     * goes away in the middle of it.
+     */
+    @Test
+    public void flowMetricsPartsDeviceRemoved() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+
+        FlowEntry fe1 = new DefaultFlowEntry(f1);
+        FlowEntry fe2 = new DefaultFlowEntry(f2);
+        mgr.applyFlowRules(f1, f2);
+
+        providerService.pushFlowMetricsPart(DID, 1, Lists.newArrayList(fe1), false);
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADDED);
+
+        deviceService.listener.event(new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, DEV));
+
+        // the switch reconnects and reuses the xid; the earlier part must not count
+        providerService.pushFlowMetricsPart(DID, 1, Lists.newArrayList(fe2), true);
+        validateEvents(RULE_ADDED, RULE_UPDATED);
+
+        assertTrue("Missing entry should be reinstalled.",
+                   validateState(ImmutableMap.of(
+                           f1, FlowEntryState.PENDING_ADD,
+                           f2, FlowEntryState.ADDED)));
+    }
+
     @Test
     public void getByAppId() {
         FlowRule f1 = flowRule(1, 1);
@@ -473,6 +562,13 @@ public class FlowRuleManagerTest {
     }
 
     private static class TestDeviceService extends DeviceServiceAdapter {
+        private DeviceListener listener;
+
+        @Override
+        public void addListener(DeviceListener listener) {
+            this.listener = listener;
+        }
+
         @Override
         public int getDeviceCount() {
             return 2;
@@ -17,6 +17,9 @@ package org.onosproject.net.intent.impl;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
@@ -35,7 +38,10 @@ import org.onosproject.net.intent.MockIdGenerator;
 import com.google.common.collect.ImmutableList;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 /**
  * Unit tests for the intent accumulator.
@@ -156,5 +162,65 @@ public class IntentAccumulatorTest {
         accumulator.processItems(intentDataItems);
     }
 
+    /**
+     * Tests that batches in flight do not share intent keys and that
+     * operations held back for an overlapping key are processed once the
+     * earlier batch completes.
+     */
+    @Test
+    public void checkPipelinedBatches() throws InterruptedException {
+        BlockingQueue<Collection<IntentData>> batches = new LinkedBlockingQueue<>();
+        IntentAccumulator accumulator = new IntentAccumulator(batches::add);
+        accumulator.setMaxBatchesInFlight(2);
+
+        IntentData op1 = new IntentData(intent1, IntentState.INSTALL_REQ, new MockTimestamp(1));
+        IntentData op2 = new IntentData(intent2, IntentState.INSTALL_REQ, new MockTimestamp(1));
+        IntentData op2Again = new IntentData(intent2, IntentState.WITHDRAW_REQ, new MockTimestamp(2));
+        IntentData op3 = new IntentData(intent3, IntentState.INSTALL_REQ, new MockTimestamp(1));
+
+        accumulator.processItems(ImmutableList.of(op1, op2));
+        Collection<IntentData> first = batches.poll();
+        assertThat(first, hasSize(2));
+        assertThat(accumulator.isReady(), is(true));
+
+        // intent2 is still in flight, so only intent3 goes out now
+        accumulator.processItems(ImmutableList.of(op2Again, op3));
+        Collection<IntentData> second = batches.poll();
+        assertThat(second, contains(op3));
+        assertThat(accumulator.isReady(), is(false));
+
+        accumulator.ready(first);
+        assertThat(accumulator.isReady(), is(true));
+        Collection<IntentData> third = batches.poll(5, TimeUnit.SECONDS);
+        assertThat(third, contains(op2Again));
+    }
 
+    /**
+     * Tests that a batch completing ahead of an earlier one does not release
+     * the keys of the earlier batch, so batches may finish in any order.
+     */
+    @Test
+    public void checkOutOfOrderCompletion() throws InterruptedException {
+        BlockingQueue<Collection<IntentData>> batches = new LinkedBlockingQueue<>();
+        IntentAccumulator accumulator = new IntentAccumulator(batches::add);
+        accumulator.setMaxBatchesInFlight(3);
+
+        IntentData op1 = new IntentData(intent1, IntentState.INSTALL_REQ, new MockTimestamp(1));
+        IntentData op1Again = new IntentData(intent1, IntentState.WITHDRAW_REQ, new MockTimestamp(2));
+        IntentData op2 = new IntentData(intent2, IntentState.INSTALL_REQ, new MockTimestamp(1));
+
+        accumulator.processItems(ImmutableList.of(op1));
+        Collection<IntentData> first = batches.poll();
+        accumulator.processItems(ImmutableList.of(op2));
+        Collection<IntentData> second = batches.poll();
+        accumulator.processItems(ImmutableList.of(op1Again));
+        assertThat(batches.poll(), nullValue());
+
+        // the later batch finishes first; intent1 must stay held back
+        accumulator.ready(second);
+        assertThat(batches.poll(100, TimeUnit.MILLISECONDS), nullValue());
+
+        accumulator.ready(first);
+        assertThat(batches.poll(5, TimeUnit.SECONDS), contains(op1Again));
+    }
 }
@@ -24,6 +24,7 @@ public enum DecoderState {
     READ_SENDER_IP_VERSION,
     READ_SENDER_IP,
     READ_SENDER_PORT,
+    READ_MESSAGE_TYPE_ID,
     READ_MESSAGE_TYPE_LENGTH,
     READ_MESSAGE_TYPE,
     READ_MESSAGE_STATUS,
@@ -34,6 +34,9 @@ import static com.google.common.base.Preconditions.checkState;
 
 /**
  * Decoder for inbound messages.
+ * <p>
+ * Keeps the message type ids defined by the sending {@link MessageEncoder},
+ * which uses at most {@link MessageEncoder#MAX_MESSAGE_TYPES} of them.
  */
 public class MessageDecoder extends ReplayingDecoder<DecoderState> {
 
@@ -44,11 +47,14 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
     private Version ipVersion;
     private IpAddress senderIp;
     private int senderPort;
+    private int messageTypeId;
     private int messageTypeLength;
     private String messageType;
     private Status status;
     private int contentLength;
 
+    private final String[] messageTypes = new String[MessageEncoder.MAX_MESSAGE_TYPES + 1];
+
     public MessageDecoder() {
         super(DecoderState.READ_MESSAGE_PREAMBLE);
     }
@@ -77,6 +83,19 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
             checkpoint(DecoderState.READ_SENDER_PORT);
         case READ_SENDER_PORT:
             senderPort = buffer.readInt();
+            checkpoint(DecoderState.READ_MESSAGE_TYPE_ID);
+        case READ_MESSAGE_TYPE_ID:
+            messageTypeId = buffer.readInt();
+            checkState(messageTypeId != 0 && Math.abs(messageTypeId) <= MessageEncoder.MAX_MESSAGE_TYPES,
+                       "Invalid message type id %s", messageTypeId);
+            if (messageTypeId > 0) {
+                messageType = messageTypes[messageTypeId];
+                checkState(messageType != null, "Undefined message type id %s", messageTypeId);
+                // the type definition is skipped; decoding resumes with the
+                // status on the next pass
+                checkpoint(DecoderState.READ_MESSAGE_STATUS);
+                break;
+            }
             checkpoint(DecoderState.READ_MESSAGE_TYPE_LENGTH);
         case READ_MESSAGE_TYPE_LENGTH:
             messageTypeLength = buffer.readInt();
@@ -85,6 +104,7 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
             byte[] messageTypeBytes = new byte[messageTypeLength];
             buffer.readBytes(messageTypeBytes);
             messageType = new String(messageTypeBytes, Charsets.UTF_8);
+            messageTypes[-messageTypeId] = messageType;
             checkpoint(DecoderState.READ_MESSAGE_STATUS);
         case READ_MESSAGE_STATUS:
             status = Status.values()[buffer.readInt()];
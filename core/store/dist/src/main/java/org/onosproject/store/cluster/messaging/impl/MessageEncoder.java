@@ -17,9 +17,9 @@ package org.onosproject.store.cluster.messaging.impl;
 
 import com.google.common.base.Charsets;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpAddress.Version;
 import org.onosproject.store.cluster.messaging.Endpoint;
@@ -27,15 +27,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Encode InternalMessage out into a byte buffer.
+ * <p>
+ * Message types are sent as integer ids. The first message of a type sent
+ * over a channel carries the negated id followed by the type string, which
+ * defines the id until it is defined again. At most {@link #MAX_MESSAGE_TYPES}
+ * ids are in use; once they are, the id of the least recently sent type is
+ * redefined for the new one. The encoder therefore holds per-channel state and
+ * must not be shared between channels.
+ * <p>
+ * The header is written to a pooled direct buffer and the payload is wrapped
+ * rather than copied.
  */
-@Sharable
-public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
+public class MessageEncoder extends MessageToMessageEncoder<InternalMessage> {
+
+    /**
+     * Maximum number of message type ids defined on a channel at a time.
+     */
+    static final int MAX_MESSAGE_TYPES = 256;
 
     private final int preamble;
 
+    // ids of the message types defined on this channel, least recently sent
+    // first; only accessed from the event loop of the channel
+    private final LinkedHashMap<String, Integer> messageTypeIds = new LinkedHashMap<>(16, 0.75f, true);
+
     public MessageEncoder(int preamble) {
         super();
         this.preamble = preamble;
@@ -47,44 +69,65 @@ public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
     protected void encode(
             ChannelHandlerContext context,
             InternalMessage message,
-            ByteBuf out) throws Exception {
+            List<Object> out) throws Exception {
 
-        out.writeInt(this.preamble);
+        Endpoint sender = message.sender();
+        IpAddress senderIp = sender.host();
+        byte[] senderIpBytes = senderIp.toOctets();
+
+        Integer messageTypeId = messageTypeIds.get(message.type());
+        byte[] messageTypeBytes = null;
+        if (messageTypeId == null) {
+            if (messageTypeIds.size() < MAX_MESSAGE_TYPES) {
+                messageTypeId = messageTypeIds.size() + 1;
+            } else {
+                Iterator<Map.Entry<String, Integer>> eldest = messageTypeIds.entrySet().iterator();
+                messageTypeId = eldest.next().getValue();
+                eldest.remove();
+            }
+            messageTypeIds.put(message.type(), messageTypeId);
+            messageTypeBytes = message.type().getBytes(Charsets.UTF_8);
+        }
 
-        // write message id
-        out.writeLong(message.id());
+        byte[] payload = message.payload();
 
-        Endpoint sender = message.sender();
+        int headerLength = 4 + 8 + 1 + senderIpBytes.length + 4 + 4
+                + (messageTypeBytes == null ? 0 : 4 + messageTypeBytes.length) + 4 + 4;
+        ByteBuf header = context.alloc().directBuffer(headerLength);
+
+        header.writeInt(this.preamble);
+
+        // write message id
+        header.writeLong(message.id());
 
-        IpAddress senderIp = sender.host();
         if (senderIp.version() == Version.INET) {
-            out.writeByte(0);
+            header.writeByte(0);
         } else {
-            out.writeByte(1);
+            header.writeByte(1);
         }
-        out.writeBytes(senderIp.toOctets());
+        header.writeBytes(senderIpBytes);
 
         // write sender port
-        out.writeInt(sender.port());
-
-        byte[] messageTypeBytes = message.type().getBytes(Charsets.UTF_8);
-
-        // write length of message type
-        out.writeInt(messageTypeBytes.length);
+        header.writeInt(sender.port());
 
-        // write message type bytes
-        out.writeBytes(messageTypeBytes);
+        if (messageTypeBytes == null) {
+            // write id of a message type defined earlier
+            header.writeInt(messageTypeId);
+        } else {
+            // define the message type id: negated id, length and type bytes
+            header.writeInt(-messageTypeId);
+            header.writeInt(messageTypeBytes.length);
+            header.writeBytes(messageTypeBytes);
+        }
 
         // write message status value
-        out.writeInt(message.status().ordinal());
-
-        byte[] payload = message.payload();
+        header.writeInt(message.status().ordinal());
 
         // write payload length
-        out.writeInt(payload.length);
+        header.writeInt(payload.length);
 
         // write payload.
-        out.writeBytes(payload);
+        out.add(payload.length == 0 ? header : Unpooled.wrappedBuffer(header, Unpooled.wrappedBuffer(payload)));
     }
 
     @Override
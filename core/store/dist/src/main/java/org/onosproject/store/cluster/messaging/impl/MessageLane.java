@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+/**
+ * Lanes that separate the traffic to a peer by kind of message.
+ * <p>
+ * Every lane is carried over a connection of its own, so that large
+ * transfers do not hold up latency sensitive messages queued behind them.
+ */
+enum MessageLane {
+
+    /**
+     * Requests, replies and other latency sensitive messages.
+     */
+    CONTROL,
+
+    /**
+     * Raft replication and eventually consistent map updates.
+     */
+    REPLICATION,
+
+    /**
+     * Anti-entropy exchanges, state backups and any large payload.
+     */
+    BULK;
+
+    /**
+     * Payload size above which a message travels in the bulk lane
+     * regardless of its type.
+     */
+    static final int BULK_PAYLOAD_THRESHOLD = 64 * 1024;
+
+    /**
+     * Returns the lane a message travels in.
+     *
+     * @param type message type
+     * @param payloadLength length of the message payload
+     * @return message lane
+     */
+    static MessageLane of(String type, int payloadLength) {
+        if (payloadLength > BULK_PAYLOAD_THRESHOLD) {
+            return BULK;
+        }
+        // types are not memoized: copycat types embed a random connection id,
+        // so the set of types grows with every reconnect
+        if (type.contains("-anti-entropy") || type.endsWith("-backup")) {
+            return BULK;
+        }
+        if (type.startsWith("onos-copycat-") || (type.startsWith("ecm-") && type.endsWith("-update"))) {
+            return REPLICATION;
+        }
+        return CONTROL;
+    }
+}
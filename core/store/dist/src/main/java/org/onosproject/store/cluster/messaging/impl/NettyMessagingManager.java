@@ -15,11 +15,12 @@
  */
 package org.onosproject.store.cluster.messaging.impl;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import io.netty.bootstrap.Bootstrap;
@@ -41,15 +42,18 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
 
-import org.apache.commons.pool.KeyedPoolableObjectFactory;
-import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.Tools;
 import org.onosproject.cluster.ClusterMetadataService;
 import org.onosproject.cluster.ControllerNode;
@@ -68,10 +72,13 @@ import javax.net.ssl.TrustManagerFactory;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.security.KeyStore;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -82,6 +89,7 @@ import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
+import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.security.AppGuard.checkPermission;
 import static org.onosproject.security.AppPermission.Type.CLUSTER_WRITE;
 
@@ -92,8 +100,10 @@ import static org.onosproject.security.AppPermission.Type.CLUSTER_WRITE;
 @Service
 public class NettyMessagingManager implements MessagingService {
 
-    private static final int REPLY_TIME_OUT_SEC = 2;
+    private static final long DEFAULT_REPLY_TIMEOUT_MILLIS = 2000;
+    private static final long TIMEOUT_TICK_MILLIS = 10;
     private static final short MIN_KS_LENGTH = 6;
+    private static final int MAX_WRITES_PER_FLUSH = 256;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -104,20 +114,15 @@ public class NettyMessagingManager implements MessagingService {
     private final AtomicBoolean started = new AtomicBoolean(false);
     private final Map<String, Consumer<InternalMessage>> handlers = new ConcurrentHashMap<>();
     private final AtomicLong messageIdGenerator = new AtomicLong(0);
-    private final Cache<Long, Callback> callbacks = CacheBuilder.newBuilder()
-            .expireAfterWrite(REPLY_TIME_OUT_SEC, TimeUnit.SECONDS)
-            .removalListener(new RemovalListener<Long, Callback>() {
-                @Override
-                public void onRemoval(RemovalNotification<Long, Callback> entry) {
-                    if (entry.wasEvicted()) {
-                        entry.getValue().completeExceptionally(new TimeoutException("Timedout waiting for reply"));
-                    }
-                }
-            })
-            .build();
+    // requests awaiting a reply by message id; timed out by the wheel timer
+    private final Map<Long, Callback> callbacks = new ConcurrentHashMap<>();
+    private final Map<Endpoint, PeerStats> peerStats = new ConcurrentHashMap<>();
+    private HashedWheelTimer timeoutTimer;
 
-    private final GenericKeyedObjectPool<Endpoint, Connection> channels
-            = new GenericKeyedObjectPool<Endpoint, Connection>(new OnosCommunicationChannelFactory());
+    // one connection per peer and message lane
+    private final Map<MessageLane, Map<Endpoint, Connection>> connections = new EnumMap<>(MessageLane.class);
+    private final Map<MessageLane, Timer> laneTimers = new EnumMap<>(MessageLane.class);
+    private MetricsComponent metricsComponent;
 
     private EventLoopGroup serverGroup;
     private EventLoopGroup clientGroup;
@@ -135,10 +140,25 @@ public class NettyMessagingManager implements MessagingService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ClusterMetadataService clusterMetadataService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    // Reply timeouts come from system properties like the TLS settings: the
+    // component config service depends on storage, which depends on this.
+    protected long replyTimeoutMillis = DEFAULT_REPLY_TIMEOUT_MILLIS;
+    protected Map<String, Long> typeReplyTimeouts = ImmutableMap.of();
+
+    public NettyMessagingManager() {
+        for (MessageLane lane : MessageLane.values()) {
+            connections.put(lane, new ConcurrentHashMap<>());
+        }
+    }
+
     @Activate
     public void activate() throws Exception {
         ControllerNode localNode = clusterMetadataService.getLocalNode();
         getTlsParameters();
+        getTimeoutParameters();
 
         if (started.get()) {
             log.warn("Already running at local endpoint: {}", localEp);
@@ -146,29 +166,69 @@ public class NettyMessagingManager implements MessagingService {
         }
         this.preamble = clusterMetadataService.getClusterMetadata().getName().hashCode();
         this.localEp = new Endpoint(localNode.ip(), localNode.tcpPort());
-        channels.setLifo(true);
-        channels.setTestOnBorrow(true);
-        channels.setTestOnReturn(true);
-        channels.setMinEvictableIdleTimeMillis(60_000L);
-        channels.setTimeBetweenEvictionRunsMillis(30_000L);
+        registerMetrics();
+        timeoutTimer = new HashedWheelTimer(groupedThreads("onos/messaging", "timeout-%d"),
+                                            TIMEOUT_TICK_MILLIS, TimeUnit.MILLISECONDS);
         initEventLoopGroup();
         startAcceptingConnections();
         started.set(true);
-        serverGroup.scheduleWithFixedDelay(callbacks::cleanUp, 0, REPLY_TIME_OUT_SEC, TimeUnit.SECONDS);
         log.info("Started");
     }
 
     @Deactivate
     public void deactivate() throws Exception {
         if (started.get()) {
-            channels.close();
+            connections.values().forEach(lane -> {
+                lane.values().forEach(Connection::destroy);
+                lane.clear();
+            });
             serverGroup.shutdownGracefully();
             clientGroup.shutdownGracefully();
+            timeoutTimer.stop();
+            callbacks.keySet().forEach(messageId -> {
+                Callback callback = removeCallback(messageId);
+                if (callback != null) {
+                    callback.completeExceptionally(new MessagingException("Messaging service stopped"));
+                }
+            });
+            unregisterMetrics();
             started.set(false);
         }
         log.info("Stopped");
     }
 
+    private void getTimeoutParameters() {
+        // messagingReplyTimeoutMillis: time to wait for the reply to a request
+        // messagingTypeReplyTimeouts: comma separated type=milliseconds pairs
+        // overriding it for specific message types
+        try {
+            String s = System.getProperty("messagingReplyTimeoutMillis");
+            replyTimeoutMillis = Strings.isNullOrEmpty(s) ? DEFAULT_REPLY_TIMEOUT_MILLIS : Long.parseLong(s.trim());
+            s = System.getProperty("messagingTypeReplyTimeouts");
+            typeReplyTimeouts = Strings.isNullOrEmpty(s) ? ImmutableMap.of() :
+                    ImmutableMap.copyOf(Maps.transformValues(Splitter.on(',').trimResults().omitEmptyStrings()
+                            .withKeyValueSeparator('=').split(s), v -> Long.parseLong(v.trim())));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid reply timeout configuration", e);
+            replyTimeoutMillis = DEFAULT_REPLY_TIMEOUT_MILLIS;
+            typeReplyTimeouts = ImmutableMap.of();
+        }
+        log.info("Reply timeout is {} ms; per type timeouts are {}", replyTimeoutMillis, typeReplyTimeouts);
+    }
+
+    private void registerMetrics() {
+        metricsComponent = metricsService.registerComponent("NettyMessaging");
+        for (MessageLane lane : MessageLane.values()) {
+            MetricsFeature feature = metricsComponent.registerFeature(lane.name().toLowerCase());
+            laneTimers.put(lane, metricsService.createTimer(metricsComponent, feature, "send"));
+        }
+    }
+
+    private void unregisterMetrics() {
+        peerStats.values().forEach(PeerStats::unregister);
+        peerStats.clear();
+    }
+
     private void getTlsParameters() {
         String tempString = System.getProperty("enableNettyTLS");
         enableNettyTls = Strings.isNullOrEmpty(tempString) ? TLS_DISABLED : Boolean.parseBoolean(tempString);
@@ -236,21 +296,39 @@ public class NettyMessagingManager implements MessagingService {
             return CompletableFuture.completedFuture(null);
         }
 
+        MessageLane lane = MessageLane.of(message.type(), message.payload().length);
         CompletableFuture<Void> future = new CompletableFuture<>();
+        Timer.Context context = laneTimers.get(lane).time();
+        future.whenComplete((r, e) -> context.stop());
         try {
-            Connection connection = null;
-            try {
-                connection = channels.borrowObject(ep);
-                connection.send(message, future);
-            } finally {
-                channels.returnObject(ep, connection);
-            }
+            getConnection(ep, lane).send(message, future);
         } catch (Exception e) {
             future.completeExceptionally(e);
         }
         return future;
     }
 
+    /**
+     * Returns the connection to a peer for a message lane, replacing the
+     * current one if it failed or was closed.
+     *
+     * @param ep peer endpoint
+     * @param lane message lane
+     * @return connection
+     */
+    private Connection getConnection(Endpoint ep, MessageLane lane) {
+        return connections.get(lane).compute(ep, (endpoint, connection) -> {
+            if (connection != null && connection.validate()) {
+                return connection;
+            }
+            if (connection != null) {
+                log.debug("Closing {} connection to {}", lane, endpoint);
+                connection.destroy();
+            }
+            return connect(endpoint);
+        });
+    }
+
     @Override
     public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload) {
         checkPermission(CLUSTER_WRITE);
@@ -261,17 +339,51 @@ public class NettyMessagingManager implements MessagingService {
     public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload, Executor executor) {
         checkPermission(CLUSTER_WRITE);
         CompletableFuture<byte[]> response = new CompletableFuture<>();
-        Callback callback = new Callback(response, executor);
-        Long messageId = messageIdGenerator.incrementAndGet();
+        Callback callback = new Callback(peerStats(ep), response, executor);
+        long messageId = messageIdGenerator.incrementAndGet();
         callbacks.put(messageId, callback);
+        callback.stats.inFlight.incrementAndGet();
+        callback.timeout = timeoutTimer.newTimeout(t -> timeOut(messageId, callback),
+                                                   typeReplyTimeouts.getOrDefault(type, replyTimeoutMillis),
+                                                   TimeUnit.MILLISECONDS);
         InternalMessage message = new InternalMessage(preamble, messageId, localEp, type, payload);
         return sendAsync(ep, message).whenComplete((r, e) -> {
             if (e != null) {
-                callbacks.invalidate(messageId);
+                removeCallback(messageId);
             }
         }).thenCompose(v -> response);
     }
 
+    private void timeOut(long messageId, Callback callback) {
+        if (callbacks.remove(messageId, callback)) {
+            callback.stats.inFlight.decrementAndGet();
+            callback.stats.timeouts.incrementAndGet();
+            callback.completeExceptionally(new TimeoutException("Timedout waiting for reply"));
+        }
+    }
+
+    /**
+     * Removes the callback of a request and cancels its timeout.
+     *
+     * @param messageId message id of the request
+     * @return callback; null if the request was already answered or timed out
+     */
+    private Callback removeCallback(long messageId) {
+        Callback callback = callbacks.remove(messageId);
+        if (callback != null) {
+            callback.stats.inFlight.decrementAndGet();
+            Timeout timeout = callback.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+        return callback;
+    }
+
+    PeerStats peerStats(Endpoint ep) {
+        return peerStats.computeIfAbsent(ep, PeerStats::new);
+    }
+
     @Override
     public void registerHandler(String type, BiConsumer<Endpoint, byte[]> handler, Executor executor) {
         checkPermission(CLUSTER_WRITE);
@@ -337,69 +449,41 @@ public class NettyMessagingManager implements MessagingService {
         });
     }
 
-    private class OnosCommunicationChannelFactory
-            implements KeyedPoolableObjectFactory<Endpoint, Connection> {
-
-        @Override
-        public void activateObject(Endpoint endpoint,  Connection connection)
-                throws Exception {
-        }
-
-        @Override
-        public void destroyObject(Endpoint ep, Connection connection) throws Exception {
-            log.debug("Closing connection to {}", ep);
-            //Is this the right way to destroy?
-            connection.destroy();
+    private Connection connect(Endpoint ep) {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 10 * 64 * 1024);
+        bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 10 * 32 * 1024);
+        bootstrap.option(ChannelOption.SO_SNDBUF, 1048576);
+        bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 1000);
+        bootstrap.group(clientGroup);
+        // TODO: Make this faster:
+        // http://normanmaurer.me/presentations/2014-facebook-eng-netty/slides.html#37.0
+        bootstrap.channel(clientChannelClass);
+        bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
+        if (enableNettyTls) {
+            bootstrap.handler(new SslClientCommunicationChannelInitializer());
+        } else {
+            bootstrap.handler(new OnosCommunicationChannelInitializer());
         }
+        // Start the client.
+        CompletableFuture<Channel> retFuture = new CompletableFuture<>();
+        ChannelFuture f = bootstrap.connect(ep.host().toString(), ep.port());
 
-        @Override
-        public Connection makeObject(Endpoint ep) throws Exception {
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 10 * 64 * 1024);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 10 * 32 * 1024);
-            bootstrap.option(ChannelOption.SO_SNDBUF, 1048576);
-            bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 1000);
-            bootstrap.group(clientGroup);
-            // TODO: Make this faster:
-            // http://normanmaurer.me/presentations/2014-facebook-eng-netty/slides.html#37.0
-            bootstrap.channel(clientChannelClass);
-            bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
-            if (enableNettyTls) {
-                bootstrap.handler(new SslClientCommunicationChannelInitializer());
+        f.addListener(future -> {
+            if (future.isSuccess()) {
+                retFuture.complete(f.channel());
             } else {
-                bootstrap.handler(new OnosCommunicationChannelInitializer());
+                retFuture.completeExceptionally(future.cause());
             }
-            // Start the client.
-            CompletableFuture<Channel> retFuture = new CompletableFuture<>();
-            ChannelFuture f = bootstrap.connect(ep.host().toString(), ep.port());
-
-            f.addListener(future -> {
-                if (future.isSuccess()) {
-                    retFuture.complete(f.channel());
-                } else {
-                    retFuture.completeExceptionally(future.cause());
-                }
-            });
-            log.debug("Established a new connection to {}", ep);
-            return new Connection(retFuture);
-        }
-
-        @Override
-        public void passivateObject(Endpoint ep, Connection connection)
-                throws Exception {
-        }
-
-        @Override
-        public boolean validateObject(Endpoint ep, Connection connection) {
-            return connection.validate();
-        }
+        });
+        log.debug("Established a new connection to {}", ep);
+        return new Connection(retFuture);
     }
 
     private class SslServerCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
 
         private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder(preamble);
 
         @Override
         protected void initChannel(SocketChannel channel) throws Exception {
@@ -425,7 +509,7 @@ public class NettyMessagingManager implements MessagingService {
             serverSslEngine.setEnableSessionCreation(true);
 
             channel.pipeline().addLast("ssl", new io.netty.handler.ssl.SslHandler(serverSslEngine))
-                    .addLast("encoder", encoder)
+                    .addLast("encoder", new MessageEncoder(preamble))
                     .addLast("decoder", new MessageDecoder())
                     .addLast("handler", dispatcher);
         }
@@ -434,7 +518,6 @@ public class NettyMessagingManager implements MessagingService {
     private class SslClientCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
 
         private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder(preamble);
 
         @Override
         protected void initChannel(SocketChannel channel) throws Exception {
@@ -459,7 +542,7 @@ public class NettyMessagingManager implements MessagingService {
             clientSslEngine.setEnableSessionCreation(true);
 
             channel.pipeline().addLast("ssl", new io.netty.handler.ssl.SslHandler(clientSslEngine))
-                    .addLast("encoder", encoder)
+                    .addLast("encoder", new MessageEncoder(preamble))
                     .addLast("decoder", new MessageDecoder())
                     .addLast("handler", dispatcher);
         }
@@ -468,12 +551,11 @@ public class NettyMessagingManager implements MessagingService {
     private class OnosCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
 
         private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder(preamble);
 
         @Override
         protected void initChannel(SocketChannel channel) throws Exception {
             channel.pipeline()
-                    .addLast("encoder", encoder)
+                    .addLast("encoder", new MessageEncoder(preamble))
                     .addLast("decoder", new MessageDecoder())
                     .addLast("handler", dispatcher);
         }
@@ -504,26 +586,21 @@ public class NettyMessagingManager implements MessagingService {
         }
         String type = message.type();
         if (REPLY_MESSAGE_TYPE.equals(type)) {
-            try {
-                Callback callback =
-                        callbacks.getIfPresent(message.id());
-                if (callback != null) {
-                    if (message.status() == Status.OK) {
-                        callback.complete(message.payload());
-                    } else if (message.status() == Status.ERROR_NO_HANDLER) {
-                        callback.completeExceptionally(new MessagingException.NoRemoteHandler());
-                    } else if (message.status() == Status.ERROR_HANDLER_EXCEPTION) {
-                        callback.completeExceptionally(new MessagingException.RemoteHandlerFailure());
-                    } else if (message.status() == Status.PROTOCOL_EXCEPTION) {
-                        callback.completeExceptionally(new MessagingException.ProcotolException());
-                    }
-                } else {
-                    log.debug("Received a reply for message id:[{}]. "
-                                     + " from {}. But was unable to locate the"
-                                     + " request handle", message.id(), message.sender());
+            Callback callback = removeCallback(message.id());
+            if (callback != null) {
+                if (message.status() == Status.OK) {
+                    callback.complete(message.payload());
+                } else if (message.status() == Status.ERROR_NO_HANDLER) {
+                    callback.completeExceptionally(new MessagingException.NoRemoteHandler());
+                } else if (message.status() == Status.ERROR_HANDLER_EXCEPTION) {
+                    callback.completeExceptionally(new MessagingException.RemoteHandlerFailure());
+                } else if (message.status() == Status.PROTOCOL_EXCEPTION) {
+                    callback.completeExceptionally(new MessagingException.ProcotolException());
                 }
-            } finally {
-                callbacks.invalidate(message.id());
+            } else {
+                log.debug("Received a reply for message id:[{}]. "
+                                 + " from {}. But was unable to locate the"
+                                 + " request handle", message.id(), message.sender());
             }
             return;
         }
@@ -550,11 +627,24 @@ public class NettyMessagingManager implements MessagingService {
         });
     }
 
+    private static final class PendingWrite {
+        private final Object message;
+        private final CompletableFuture<Void> future;
+
+        private PendingWrite(Object message, CompletableFuture<Void> future) {
+            this.message = message;
+            this.future = future;
+        }
+    }
+
     private final class Callback {
+        private final PeerStats stats;
         private final CompletableFuture<byte[]> future;
         private final Executor executor;
+        private volatile Timeout timeout;
 
-        public Callback(CompletableFuture<byte[]> future, Executor executor) {
+        public Callback(PeerStats stats, CompletableFuture<byte[]> future, Executor executor) {
+            this.stats = stats;
             this.future = future;
             this.executor = executor;
         }
@@ -567,8 +657,30 @@ public class NettyMessagingManager implements MessagingService {
             executor.execute(() -> future.completeExceptionally(error));
         }
     }
+
+    /**
+     * Outstanding request statistics of a peer, exposed as metrics gauges.
+     */
+    final class PeerStats {
+        final AtomicLong inFlight = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        private final MetricsFeature feature;
+
+        PeerStats(Endpoint ep) {
+            feature = metricsComponent.registerFeature(ep.host() + ":" + ep.port());
+            metricsService.registerMetric(metricsComponent, feature, "inFlight", (Gauge<Long>) inFlight::get);
+            metricsService.registerMetric(metricsComponent, feature, "timeouts", (Gauge<Long>) timeouts::get);
+        }
+
+        void unregister() {
+            metricsService.removeMetric(metricsComponent, feature, "inFlight");
+            metricsService.removeMetric(metricsComponent, feature, "timeouts");
+        }
+    }
     private final class Connection {
         private final CompletableFuture<Channel> internalFuture;
+        private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
 
         public Connection(CompletableFuture<Channel> internalFuture) {
             this.internalFuture = internalFuture;
@@ -577,6 +689,9 @@ public class NettyMessagingManager implements MessagingService {
         /**
          * Sends a message out on its channel and associated the message with a
          * completable future used for signaling.
+         * <p>
+         * Messages are queued and written by the event loop of the channel,
+         * which flushes all messages queued in the meantime at once.
          * @param message the message to be sent
          * @param future a future that is completed normally or exceptionally if
          *               message sending succeeds or fails respectively
@@ -584,19 +699,53 @@ public class NettyMessagingManager implements MessagingService {
         public void send(Object message, CompletableFuture<Void> future) {
             internalFuture.whenComplete((channel, throwable) -> {
                 if (throwable == null) {
-                    channel.writeAndFlush(message).addListener(channelFuture -> {
-                        if (!channelFuture.isSuccess()) {
-                            future.completeExceptionally(channelFuture.cause());
-                        } else {
-                            future.complete(null);
-                        }
-                    });
+                    pendingWrites.add(new PendingWrite(message, future));
+                    scheduleFlush(channel);
                 } else {
                     future.completeExceptionally(throwable);
                 }
             });
         }
 
+        private void scheduleFlush(Channel channel) {
+            if (flushScheduled.compareAndSet(false, true)) {
+                try {
+                    channel.eventLoop().execute(() -> flush(channel));
+                } catch (RejectedExecutionException e) {
+                    // clear the flag first so that writes queued while the
+                    // pending ones are failed schedule their own flush
+                    flushScheduled.set(false);
+                    PendingWrite write;
+                    while ((write = pendingWrites.poll()) != null) {
+                        write.future.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+
+        private void flush(Channel channel) {
+            // messages queued from here on schedule another flush
+            flushScheduled.set(false);
+            int written = 0;
+            PendingWrite write;
+            while (written < MAX_WRITES_PER_FLUSH && (write = pendingWrites.poll()) != null) {
+                CompletableFuture<Void> future = write.future;
+                channel.write(write.message).addListener(channelFuture -> {
+                    if (!channelFuture.isSuccess()) {
+                        future.completeExceptionally(channelFuture.cause());
+                    } else {
+                        future.complete(null);
+                    }
+                });
+                written++;
+            }
+            channel.flush();
+            // yield the event loop to other channels before writing the rest
+            if (!pendingWrites.isEmpty()) {
+                scheduleFlush(channel);
+            }
+        }
+
         /**
          * Destroys a channel by closing its channel (if it exists) and
          * cancelling its future.
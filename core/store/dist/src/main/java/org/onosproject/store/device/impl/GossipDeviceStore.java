@@ -24,15 +24,20 @@ import org.apache.commons.lang3.RandomUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onlab.packet.ChassisId;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.NewConcurrentHashMap;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.NodeId;
+import org.onosproject.mastership.MastershipEvent;
+import org.onosproject.mastership.MastershipListener;
 import org.onosproject.mastership.MastershipService;
 import org.onosproject.mastership.MastershipTerm;
 import org.onosproject.mastership.MastershipTermService;
@@ -80,12 +85,14 @@ import org.onosproject.store.service.EventuallyConsistentMapListener;
 import org.onosproject.store.service.MultiValuedTimestamp;
 import org.onosproject.store.service.StorageService;
 import org.onosproject.store.service.WallClockTimestamp;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -94,19 +101,23 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Predicates.notNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.base.Verify.verify;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static org.apache.commons.lang3.concurrent.ConcurrentUtils.createIfAbsentUnchecked;
+import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onlab.util.Tools.minPriority;
 import static org.onosproject.cluster.ControllerNodeToNodeId.toNodeId;
@@ -131,6 +142,16 @@ public class GossipDeviceStore
     private static final String DEVICE_NOT_FOUND = "Device with ID %s not found";
     // Timeout in milliseconds to process device or ports on remote master node
     private static final int REMOTE_MASTER_TIMEOUT = 1000;
+    // Age in milliseconds after which port statistics fetched from a remote master are refreshed
+    private static final long REMOTE_PORT_STATS_REFRESH_MILLIS = 2000;
+    // Time in milliseconds after which unread remote port statistics are dropped
+    private static final long REMOTE_PORT_STATS_IDLE_MILLIS = 60000;
+
+    private static final boolean DEFAULT_LOCAL_PORT_STATS = false;
+
+    @Property(name = "localPortStatistics", boolValue = DEFAULT_LOCAL_PORT_STATS,
+            label = "Keep port statistics on the device master only and fetch them on demand")
+    private boolean localPortStatistics = DEFAULT_LOCAL_PORT_STATS;
 
     // innerMap is used to lock a Device, thus instance should never be replaced.
     // collection of Description given from various providers
@@ -146,6 +167,15 @@ public class GossipDeviceStore
     private final EventuallyConsistentMapListener<DeviceId, Map<PortNumber, PortStatistics>>
             portStatsListener = new InternalPortStatsListener();
 
+    // port statistics of the devices this node is master for, used instead
+    // of the maps above when localPortStatistics is set
+    private final ConcurrentMap<DeviceId, PortStatsSample> portStatsSamples = Maps.newConcurrentMap();
+    private final MastershipListener portStatsMastershipListener = new InternalPortStatsMastershipListener();
+    private final RemotePortStatsCache remotePortStats = new RemotePortStatsCache(
+            REMOTE_PORT_STATS_REFRESH_MILLIS, REMOTE_PORT_STATS_IDLE_MILLIS, System::currentTimeMillis);
+    private final RemotePortStatsCache remotePortDeltaStats = new RemotePortStatsCache(
+            REMOTE_PORT_STATS_REFRESH_MILLIS, REMOTE_PORT_STATS_IDLE_MILLIS, System::currentTimeMillis);
+
     // to be updated under Device lock
     private final Map<DeviceId, Timestamp> offline = Maps.newHashMap();
     private final Map<DeviceId, Timestamp> removalRequest = Maps.newHashMap();
@@ -171,6 +201,8 @@ public class GossipDeviceStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected MastershipTermService termService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
 
     protected static final StoreSerializer SERIALIZER = StoreSerializer.using(KryoNamespace.newBuilder()
                     .register(DistributedStoreSerializers.STORE_COMMON)
@@ -196,7 +228,9 @@ public class GossipDeviceStore
     private long periodSec = 5;
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        modified(context);
         executor = newCachedThreadPool(groupedThreads("onos/device", "fg-%d", log));
 
         backgroundExecutor =
@@ -225,6 +259,12 @@ public class GossipDeviceStore
                 GossipDeviceStoreMessageSubjects.DEVICE_INJECTED, new DeviceInjectedEventListener(), executor);
         clusterCommunicator.addSubscriber(
                 GossipDeviceStoreMessageSubjects.PORT_INJECTED, new PortInjectedEventListener(), executor);
+        clusterCommunicator.addSubscriber(PORT_STATS_REQ, SERIALIZER::decode,
+                (DeviceId deviceId) -> latestPortStatistics(deviceId, PortStatsSample::stats),
+                SERIALIZER::encode, executor);
+        clusterCommunicator.addSubscriber(PORT_DELTA_STATS_REQ, SERIALIZER::decode,
+                (DeviceId deviceId) -> latestPortStatistics(deviceId, PortStatsSample::deltaStats),
+                SERIALIZER::encode, executor);
 
         // start anti-entropy thread
         backgroundExecutor.scheduleAtFixedRate(new SendAdvertisementTask(),
@@ -252,13 +292,19 @@ public class GossipDeviceStore
                 .withTombstonesDisabled()
                 .build();
         devicePortStats.addListener(portStatsListener);
+        mastershipService.addListener(portStatsMastershipListener);
         log.info("Started");
     }
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
+        mastershipService.removeListener(portStatsMastershipListener);
+        clusterCommunicator.removeSubscriber(PORT_STATS_REQ);
+        clusterCommunicator.removeSubscriber(PORT_DELTA_STATS_REQ);
         devicePortStats.destroy();
         devicePortDeltaStats.destroy();
+        portStatsSamples.clear();
         executor.shutdownNow();
 
         backgroundExecutor.shutdownNow();
@@ -277,6 +323,28 @@ public class GossipDeviceStore
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        Dictionary<?, ?> properties = context != null ? context.getProperties() : new Properties();
+
+        boolean newLocalPortStatistics;
+        try {
+            String s = get(properties, "localPortStatistics");
+            newLocalPortStatistics = isNullOrEmpty(s) ? localPortStatistics : Boolean.parseBoolean(s.trim());
+        } catch (ClassCastException e) {
+            newLocalPortStatistics = DEFAULT_LOCAL_PORT_STATS;
+        }
+
+        if (newLocalPortStatistics != localPortStatistics) {
+            // samples are rebuilt from the next poll of each device
+            portStatsSamples.clear();
+            remotePortStats.invalidateAll();
+            remotePortDeltaStats.invalidateAll();
+        }
+        localPortStatistics = newLocalPortStatistics;
+        log.info("Settings: localPortStatistics={}", localPortStatistics);
+    }
+
     @Override
     public int getDeviceCount() {
         return devices.size();
@@ -858,11 +926,40 @@ public class GossipDeviceStore
     @Override
     public DeviceEvent updatePortStatistics(ProviderId providerId, DeviceId deviceId,
                                             Collection<PortStatistics> newStatsCollection) {
+        if (localPortStatistics) {
+            return updateLocalPortStatistics(deviceId, newStatsCollection);
+        }
 
-        Map<PortNumber, PortStatistics> prvStatsMap = devicePortStats.get(deviceId);
         Map<PortNumber, PortStatistics> newStatsMap = Maps.newHashMap();
         Map<PortNumber, PortStatistics> deltaStatsMap = Maps.newHashMap();
+        buildPortStatistics(deviceId, devicePortStats.get(deviceId), newStatsCollection,
+                            newStatsMap, deltaStatsMap);
+        devicePortDeltaStats.put(deviceId, deltaStatsMap);
+        devicePortStats.put(deviceId, newStatsMap);
+        // DeviceEvent returns null because of InternalPortStatsListener usage
+        return null;
+    }
+
+    // Keeps the latest statistics on this node only; peers fetch them from
+    // here on demand, so the event is raised on this node alone.
+    private DeviceEvent updateLocalPortStatistics(DeviceId deviceId,
+                                                  Collection<PortStatistics> newStatsCollection) {
+        portStatsSamples.compute(deviceId, (id, prvSample) -> {
+            Map<PortNumber, PortStatistics> newStatsMap = Maps.newHashMap();
+            Map<PortNumber, PortStatistics> deltaStatsMap = Maps.newHashMap();
+            buildPortStatistics(deviceId, prvSample == null ? null : prvSample.stats(),
+                                newStatsCollection, newStatsMap, deltaStatsMap);
+            return new PortStatsSample(newStatsMap, deltaStatsMap);
+        });
+        Device device = devices.get(deviceId);
+        return device == null ? null : new DeviceEvent(PORT_STATS_UPDATED, device);
+    }
 
+    private void buildPortStatistics(DeviceId deviceId,
+                                     Map<PortNumber, PortStatistics> prvStatsMap,
+                                     Collection<PortStatistics> newStatsCollection,
+                                     Map<PortNumber, PortStatistics> newStatsMap,
+                                     Map<PortNumber, PortStatistics> deltaStatsMap) {
         if (prvStatsMap != null) {
             for (PortStatistics newStats : newStatsCollection) {
                 PortNumber port = PortNumber.portNumber(newStats.port());
@@ -881,10 +978,6 @@ public class GossipDeviceStore
                 newStatsMap.put(port, newStats);
             }
         }
-        devicePortDeltaStats.put(deviceId, deltaStatsMap);
-        devicePortStats.put(deviceId, newStatsMap);
-        // DeviceEvent returns null because of InternalPortStatsListener usage
-        return null;
     }
 
     /**
@@ -924,6 +1017,10 @@ public class GossipDeviceStore
 
     @Override
     public List<PortStatistics> getPortStatistics(DeviceId deviceId) {
+        if (localPortStatistics) {
+            return getMasterPortStatistics(deviceId, PORT_STATS_REQ,
+                                           PortStatsSample::stats, remotePortStats);
+        }
         Map<PortNumber, PortStatistics> portStats = devicePortStats.get(deviceId);
         if (portStats == null) {
             return Collections.emptyList();
@@ -933,6 +1030,10 @@ public class GossipDeviceStore
 
     @Override
     public List<PortStatistics> getPortDeltaStatistics(DeviceId deviceId) {
+        if (localPortStatistics) {
+            return getMasterPortStatistics(deviceId, PORT_DELTA_STATS_REQ,
+                                           PortStatsSample::deltaStats, remotePortDeltaStats);
+        }
         Map<PortNumber, PortStatistics> portStats = devicePortDeltaStats.get(deviceId);
         if (portStats == null) {
             return Collections.emptyList();
@@ -940,6 +1041,31 @@ public class GossipDeviceStore
         return ImmutableList.copyOf(portStats.values());
     }
 
+    // Reads the statistics from the local sample if this node is the master,
+    // otherwise returns those last fetched from the master without waiting,
+    // refreshing them in the background when they are stale.
+    private List<PortStatistics> getMasterPortStatistics(
+            DeviceId deviceId, MessageSubject subject,
+            Function<PortStatsSample, Map<PortNumber, PortStatistics>> statsOf,
+            RemotePortStatsCache cache) {
+        NodeId master = mastershipService.getMasterFor(deviceId);
+        if (master == null || master.equals(clusterService.getLocalNode().id())) {
+            return latestPortStatistics(deviceId, statsOf);
+        }
+        return cache.get(deviceId, id -> clusterCommunicator.<DeviceId, List<PortStatistics>>sendAndReceive(
+                id, subject, SERIALIZER::encode, SERIALIZER::decode, master));
+    }
+
+    private List<PortStatistics> latestPortStatistics(
+            DeviceId deviceId,
+            Function<PortStatsSample, Map<PortNumber, PortStatistics>> statsOf) {
+        PortStatsSample sample = portStatsSamples.get(deviceId);
+        if (sample == null) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.copyOf(statsOf.apply(sample).values());
+    }
+
     @Override
     public Port getPort(DeviceId deviceId, PortNumber portNumber) {
         Map<PortNumber, Port> ports = devicePorts.get(deviceId);
@@ -1049,6 +1175,7 @@ public class GossipDeviceStore
                 ports.clear();
             }
             markOfflineInternal(deviceId, timestamp);
+            portStatsSamples.remove(deviceId);
             descs.clear();
             return device == null ? null :
                     new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, device, null);
@@ -1741,4 +1868,22 @@ public class GossipDeviceStore
             }
         }
     }
+
+    // Drops the port statistics of devices this node is no longer master
+    // for, so that deltas are never computed against a sample taken during
+    // an earlier mastership.
+    private class InternalPortStatsMastershipListener implements MastershipListener {
+        @Override
+        public void event(MastershipEvent event) {
+            if (event.type() != MastershipEvent.Type.MASTER_CHANGED) {
+                return;
+            }
+            DeviceId deviceId = event.subject();
+            if (!Objects.equals(event.roleInfo().master(), clusterService.getLocalNode().id())) {
+                portStatsSamples.remove(deviceId);
+            }
+            remotePortStats.invalidate(deviceId);
+            remotePortDeltaStats.invalidate(deviceId);
+        }
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.device.impl;
+
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.PortStatistics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Port statistics of a device taken at one poll, together with their change
+ * since the previous poll.
+ */
+final class PortStatsSample {
+
+    private final Map<PortNumber, PortStatistics> stats;
+    private final Map<PortNumber, PortStatistics> deltaStats;
+
+    /**
+     * Creates a sample.
+     *
+     * @param stats      statistics of each port
+     * @param deltaStats change of the statistics of each port
+     */
+    PortStatsSample(Map<PortNumber, PortStatistics> stats,
+                    Map<PortNumber, PortStatistics> deltaStats) {
+        this.stats = Collections.unmodifiableMap(stats);
+        this.deltaStats = Collections.unmodifiableMap(deltaStats);
+    }
+
+    /**
+     * Returns the statistics of each port.
+     *
+     * @return port statistics by port number
+     */
+    Map<PortNumber, PortStatistics> stats() {
+        return stats;
+    }
+
+    /**
+     * Returns the change of the statistics of each port since the
+     * previous sample.
+     *
+     * @return port delta statistics by port number
+     */
+    Map<PortNumber, PortStatistics> deltaStats() {
+        return deltaStats;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.device.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.PortStatistics;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Port statistics of devices mastered by other nodes.
+ * <p>
+ * Readers always get the cached statistics right away and never wait for
+ * the master. Statistics older than the refresh interval are refreshed in
+ * the background, with at most one request per device in flight. Until the
+ * first reply for a device arrives, readers get an empty list.
+ */
+final class RemotePortStatsCache {
+
+    private final Logger log = getLogger(getClass());
+
+    private final long refreshMillis;
+    private final LongSupplier clock;
+    private final Cache<DeviceId, Fetched> cache;
+    // token of the request in flight for each device
+    private final ConcurrentMap<DeviceId, Object> pending = Maps.newConcurrentMap();
+
+    /**
+     * Creates a cache.
+     *
+     * @param refreshMillis age in milliseconds after which statistics are refreshed
+     * @param idleMillis    time in milliseconds after which statistics no one
+     *                      reads are dropped
+     * @param clock         source of the current time in milliseconds
+     */
+    RemotePortStatsCache(long refreshMillis, long idleMillis, LongSupplier clock) {
+        this.refreshMillis = refreshMillis;
+        this.clock = clock;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterAccess(idleMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Returns the cached statistics of a device, starting a refresh if they
+     * are missing or stale.
+     *
+     * @param deviceId device identifier
+     * @param fetcher  function requesting the statistics from the master
+     * @return cached port statistics; empty if none have been fetched yet
+     */
+    List<PortStatistics> get(DeviceId deviceId,
+                             Function<DeviceId, CompletableFuture<List<PortStatistics>>> fetcher) {
+        Fetched fetched = cache.getIfPresent(deviceId);
+        if (fetched == null || clock.getAsLong() - fetched.time >= refreshMillis) {
+            refresh(deviceId, fetcher);
+        }
+        return fetched == null ? ImmutableList.of() : fetched.stats;
+    }
+
+    private void refresh(DeviceId deviceId,
+                         Function<DeviceId, CompletableFuture<List<PortStatistics>>> fetcher) {
+        Object request = new Object();
+        if (pending.putIfAbsent(deviceId, request) != null) {
+            return;
+        }
+        CompletableFuture<List<PortStatistics>> reply;
+        try {
+            reply = fetcher.apply(deviceId);
+        } catch (RuntimeException e) {
+            pending.remove(deviceId, request);
+            throw e;
+        }
+        reply.whenComplete((stats, error) -> {
+            // replies to requests dropped by invalidate() are discarded
+            if (!pending.remove(deviceId, request)) {
+                return;
+            }
+            if (error != null || stats == null) {
+                log.debug("Unable to fetch port statistics of {}", deviceId, error);
+            } else {
+                cache.put(deviceId, new Fetched(clock.getAsLong(), ImmutableList.copyOf(stats)));
+            }
+        });
+    }
+
+    /**
+     * Drops the statistics of a device and any reply still expected for it.
+     *
+     * @param deviceId device identifier
+     */
+    void invalidate(DeviceId deviceId) {
+        pending.remove(deviceId);
+        cache.invalidate(deviceId);
+    }
+
+    /**
+     * Drops the statistics of all devices and any replies still expected.
+     */
+    void invalidateAll() {
+        pending.clear();
+        cache.invalidateAll();
+    }
+
+    private static final class Fetched {
+        private final long time;
+        private final List<PortStatistics> stats;
+
+        private Fetched(long time, List<PortStatistics> stats) {
+            this.time = time;
+            this.stats = stats;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Compact flow table of a single device.
+ * <p>
+ * Entries are kept in an open addressing hash table keyed by the primitive
+ * flow id value. A slot holds the entry itself in the common case of a single
+ * entry per flow id and falls back to a small array of entries when distinct
+ * flow rules share a flow id. This avoids the boxed keys and the per flow id
+ * inner maps of a nested map structure.
+ * <p>
+ * All operations are synchronized on the table; a device table is only ever
+ * accessed by the few threads serving that device.
+ * <p>
+ * If a persistent map is supplied, the table is loaded from it on creation
+ * and every change to a flow id bucket is written through to it.
+ */
+final class DeviceFlowTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> persistentBuckets;
+
+    // slot i is in use iff slots[i] != null; it holds a StoredFlowEntry or a
+    // StoredFlowEntry[] of at least two entries for flow id ids[i]
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private Object[] slots = new Object[INITIAL_CAPACITY];
+    private int usedSlots;
+    private int size;
+
+    /**
+     * Creates an empty in-memory flow table.
+     */
+    DeviceFlowTable() {
+        this(null);
+    }
+
+    /**
+     * Creates a flow table backed by the specified persistent map.
+     *
+     * @param persistentBuckets persistent flow id buckets; null for in-memory only
+     */
+    DeviceFlowTable(Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> persistentBuckets) {
+        this.persistentBuckets = persistentBuckets;
+        if (persistentBuckets != null) {
+            persistentBuckets.forEach((flowId, bucket) -> putBucketInternal(flowId.value(), bucket.values()));
+        }
+    }
+
+    /**
+     * Returns the number of flow entries in the table.
+     *
+     * @return number of flow entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the stored entry equal to the specified flow rule.
+     *
+     * @param rule flow rule to look for
+     * @return stored flow entry; null if none
+     */
+    synchronized StoredFlowEntry get(FlowRule rule) {
+        int index = indexOf(rule.id().value());
+        if (index < 0) {
+            return null;
+        }
+        Object slot = slots[index];
+        if (slot instanceof StoredFlowEntry) {
+            return rule.equals(slot) ? (StoredFlowEntry) slot : null;
+        }
+        for (StoredFlowEntry entry : (StoredFlowEntry[]) slot) {
+            if (rule.equals(entry)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a flow entry, replacing the stored entry equal to it, if any.
+     *
+     * @param entry flow entry to add
+     */
+    synchronized void add(StoredFlowEntry entry) {
+        long flowId = entry.id().value();
+        int index = indexOf(flowId);
+        if (index < 0) {
+            insert(flowId, entry);
+            size++;
+        } else {
+            Object slot = slots[index];
+            if (slot instanceof StoredFlowEntry) {
+                if (entry.equals(slot)) {
+                    slots[index] = entry;
+                } else {
+                    slots[index] = new StoredFlowEntry[] {(StoredFlowEntry) slot, entry};
+                    size++;
+                }
+            } else {
+                StoredFlowEntry[] chain = (StoredFlowEntry[]) slot;
+                int position = position(chain, entry);
+                if (position >= 0) {
+                    chain[position] = entry;
+                } else {
+                    StoredFlowEntry[] longer = Arrays.copyOf(chain, chain.length + 1);
+                    longer[chain.length] = entry;
+                    slots[index] = longer;
+                    size++;
+                }
+            }
+        }
+        persist(flowId);
+    }
+
+    /**
+     * Removes the stored entry equal to the specified flow rule if it
+     * satisfies the given condition.
+     *
+     * @param rule      flow rule to remove
+     * @param condition condition the stored entry must satisfy to be removed
+     * @return removed flow entry; null if nothing was removed
+     */
+    synchronized StoredFlowEntry remove(FlowRule rule, Predicate<StoredFlowEntry> condition) {
+        long flowId = rule.id().value();
+        int index = indexOf(flowId);
+        if (index < 0) {
+            return null;
+        }
+        Object slot = slots[index];
+        StoredFlowEntry removed;
+        if (slot instanceof StoredFlowEntry) {
+            removed = (StoredFlowEntry) slot;
+            if (!rule.equals(removed) || !condition.test(removed)) {
+                return null;
+            }
+            delete(index);
+        } else {
+            StoredFlowEntry[] chain = (StoredFlowEntry[]) slot;
+            int position = position(chain, rule);
+            if (position < 0 || !condition.test(chain[position])) {
+                return null;
+            }
+            removed = chain[position];
+            slots[index] = chain.length == 2 ? chain[1 - position] : without(chain, position);
+        }
+        size--;
+        persist(flowId);
+        return removed;
+    }
+
+    /**
+     * Returns a snapshot of all flow entries in the table.
+     *
+     * @return set of flow entries
+     */
+    synchronized Set<FlowEntry> entries() {
+        Set<FlowEntry> entries = Sets.newHashSetWithExpectedSize(size);
+        for (Object slot : slots) {
+            if (slot instanceof StoredFlowEntry) {
+                entries.add((StoredFlowEntry) slot);
+            } else if (slot != null) {
+                entries.addAll(Arrays.asList((StoredFlowEntry[]) slot));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns a snapshot of the entries of the specified flow id.
+     *
+     * @param flowId flow id
+     * @return flow id bucket; empty if the table holds no such flow id
+     */
+    synchronized Map<StoredFlowEntry, StoredFlowEntry> bucket(FlowId flowId) {
+        int index = indexOf(flowId.value());
+        return index < 0 ? ImmutableMap.of() : bucketOf(slots[index]);
+    }
+
+    /**
+     * Returns a snapshot of the whole table grouped into flow id buckets.
+     *
+     * @return flow id buckets keyed by flow id
+     */
+    synchronized Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> buckets() {
+        ImmutableMap.Builder<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> buckets = ImmutableMap.builder();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                buckets.put(FlowId.valueOf(ids[i]), bucketOf(slots[i]));
+            }
+        }
+        return buckets.build();
+    }
+
+    /**
+     * Replaces all entries of the specified flow id.
+     *
+     * @param flowId  flow id
+     * @param entries new entries of the flow id; empty to remove the flow id
+     */
+    synchronized void putBucket(FlowId flowId, Collection<StoredFlowEntry> entries) {
+        putBucketInternal(flowId.value(), entries);
+        persist(flowId.value());
+    }
+
+    /**
+     * Removes all entries from the table.
+     */
+    synchronized void clear() {
+        ids = new long[INITIAL_CAPACITY];
+        slots = new Object[INITIAL_CAPACITY];
+        usedSlots = 0;
+        size = 0;
+        if (persistentBuckets != null) {
+            persistentBuckets.clear();
+        }
+    }
+
+    private void putBucketInternal(long flowId, Collection<StoredFlowEntry> entries) {
+        int index = indexOf(flowId);
+        if (index >= 0) {
+            Object slot = slots[index];
+            size -= slot instanceof StoredFlowEntry ? 1 : ((StoredFlowEntry[]) slot).length;
+            delete(index);
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        Object slot = entries.size() == 1 ?
+                entries.iterator().next() : entries.toArray(new StoredFlowEntry[entries.size()]);
+        insert(flowId, slot);
+        size += entries.size();
+    }
+
+    private void persist(long flowId) {
+        if (persistentBuckets == null) {
+            return;
+        }
+        int index = indexOf(flowId);
+        if (index < 0) {
+            persistentBuckets.remove(FlowId.valueOf(flowId));
+        } else {
+            persistentBuckets.put(FlowId.valueOf(flowId), bucketOf(slots[index]));
+        }
+    }
+
+    private static Map<StoredFlowEntry, StoredFlowEntry> bucketOf(Object slot) {
+        if (slot instanceof StoredFlowEntry) {
+            StoredFlowEntry entry = (StoredFlowEntry) slot;
+            return ImmutableMap.of(entry, entry);
+        }
+        ImmutableMap.Builder<StoredFlowEntry, StoredFlowEntry> bucket = ImmutableMap.builder();
+        for (StoredFlowEntry entry : (StoredFlowEntry[]) slot) {
+            bucket.put(entry, entry);
+        }
+        return bucket.build();
+    }
+
+    private static int position(StoredFlowEntry[] chain, FlowRule rule) {
+        for (int i = 0; i < chain.length; i++) {
+            if (rule.equals(chain[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static StoredFlowEntry[] without(StoredFlowEntry[] chain, int position) {
+        StoredFlowEntry[] shorter = new StoredFlowEntry[chain.length - 1];
+        System.arraycopy(chain, 0, shorter, 0, position);
+        System.arraycopy(chain, position + 1, shorter, position, chain.length - position - 1);
+        return shorter;
+    }
+
+    private int indexOf(long flowId) {
+        int mask = slots.length - 1;
+        for (int i = home(flowId, mask); slots[i] != null; i = (i + 1) & mask) {
+            if (ids[i] == flowId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Places a flow id known to be absent from the table.
+    private void insert(long flowId, Object slot) {
+        // keep the load factor at or below 3/4
+        if ((usedSlots + 1) * 4 > slots.length * 3) {
+            resize(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int i = home(flowId, mask);
+        while (slots[i] != null) {
+            i = (i + 1) & mask;
+        }
+        ids[i] = flowId;
+        slots[i] = slot;
+        usedSlots++;
+    }
+
+    // Frees a slot, shifting back subsequent entries of the probe sequence
+    // so that lookups never need tombstones.
+    private void delete(int index) {
+        int mask = slots.length - 1;
+        int free = index;
+        for (int i = (free + 1) & mask; slots[i] != null; i = (i + 1) & mask) {
+            int home = home(ids[i], mask);
+            // the entry may move to the free slot unless its home lies
+            // cyclically within (free, i]
+            boolean stays = free <= i ? free < home && home <= i : free < home || home <= i;
+            if (!stays) {
+                ids[free] = ids[i];
+                slots[free] = slots[i];
+                free = i;
+            }
+        }
+        ids[free] = 0;
+        slots[free] = null;
+        usedSlots--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        Object[] oldSlots = slots;
+        ids = new long[capacity];
+        slots = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] != null) {
+                int i = home(oldIds[j], mask);
+                while (slots[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                ids[i] = oldIds[j];
+                slots[i] = oldSlots[j];
+            }
+        }
+    }
+
+    // Flow ids carry the application id in their upper bits; spread all bits.
+    private static int home(long flowId, int mask) {
+        long h = flowId;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33)) & mask;
+    }
+}
@@ -15,9 +15,11 @@
  */
 package org.onosproject.store.flow.impl;
 
+ import com.codahale.metrics.Counter;
+ import com.codahale.metrics.Histogram;
  import com.google.common.collect.ImmutableList;
- import com.google.common.collect.ImmutableMap;
  import com.google.common.collect.Iterables;
+ import com.google.common.collect.Lists;
  import com.google.common.collect.Maps;
  import com.google.common.collect.Sets;
  import com.google.common.util.concurrent.Futures;
@@ -29,6 +31,9 @@ package org.onosproject.store.flow.impl;
  import org.apache.felix.scr.annotations.Reference;
  import org.apache.felix.scr.annotations.ReferenceCardinality;
  import org.apache.felix.scr.annotations.Service;
+ import org.onlab.metrics.MetricsComponent;
+ import org.onlab.metrics.MetricsFeature;
+ import org.onlab.metrics.MetricsService;
  import org.onlab.util.KryoNamespace;
  import org.onlab.util.Tools;
  import org.onosproject.cfg.ComponentConfigService;
@@ -78,6 +83,7 @@ package org.onosproject.store.flow.impl;
  import org.osgi.service.component.ComponentContext;
  import org.slf4j.Logger;
 
+ import java.util.Collection;
  import java.util.Collections;
  import java.util.Dictionary;
  import java.util.HashSet;
@@ -91,7 +97,8 @@ package org.onosproject.store.flow.impl;
  import java.util.concurrent.ScheduledFuture;
  import java.util.concurrent.TimeUnit;
  import java.util.concurrent.atomic.AtomicInteger;
- import java.util.concurrent.atomic.AtomicReference;
+ import java.util.concurrent.atomic.AtomicLong;
+ import java.util.function.Function;
  import java.util.stream.Collectors;
 
  import static com.google.common.base.Strings.isNullOrEmpty;
@@ -161,10 +168,17 @@ public class DistributedFlowRuleStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected PersistenceService persistenceService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     private Map<Long, NodeId> pendingResponses = Maps.newConcurrentMap();
     private ExecutorService messageHandlingExecutor;
 
     private ScheduledFuture<?> backupTask;
+    private Counter backupBytesSent;
+    private Counter fullBackupsSent;
+    private Counter deltaBackupsSent;
+    private Histogram backupRoundBytes;
     private final ScheduledExecutorService backupSenderExecutor =
             Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/flow", "backup-sender", log));
 
@@ -179,6 +193,7 @@ public class DistributedFlowRuleStore
             KryoNamespace.newBuilder()
                     .register(DistributedStoreSerializers.STORE_COMMON)
                     .nextId(DistributedStoreSerializers.STORE_CUSTOM_BEGIN)
+                    .register(FlowTableBackup.class)
                     .build("FlowRuleStore"));
 
     protected static final KryoNamespace.Builder SERIALIZER_BUILDER = KryoNamespace.newBuilder()
@@ -197,6 +212,13 @@ public class DistributedFlowRuleStore
 
         local = clusterService.getLocalNode().id();
 
+        MetricsComponent metricsComponent = metricsService.registerComponent("FlowRuleStore");
+        MetricsFeature backupFeature = metricsComponent.registerFeature("backup");
+        backupBytesSent = metricsService.createCounter(metricsComponent, backupFeature, "bytesSent");
+        fullBackupsSent = metricsService.createCounter(metricsComponent, backupFeature, "fullSnapshotsSent");
+        deltaBackupsSent = metricsService.createCounter(metricsComponent, backupFeature, "deltasSent");
+        backupRoundBytes = metricsService.createHistogram(metricsComponent, backupFeature, "bytesPerRound");
+
         messageHandlingExecutor = Executors.newFixedThreadPool(
                 msgHandlerPoolSize, groupedThreads("onos/store/flow", "message-handlers", log));
 
@@ -567,6 +589,41 @@ public class DistributedFlowRuleStore
         return null;
     }
 
+    @Override
+    public List<FlowRuleEvent> updateFlowStatistics(DeviceId deviceId, Collection<FlowEntry> flowEntries) {
+        NodeId master = mastershipService.getMasterFor(deviceId);
+        if (!Objects.equals(local, master)) {
+            log.warn("Tried to update statistics of {} flows of {} while the Node was not the master.",
+                     flowEntries.size(), deviceId);
+            return ImmutableList.of();
+        }
+
+        DeviceFlowTable table = flowTable.getFlowTable(deviceId);
+        List<FlowRuleEvent> events = Lists.newArrayList();
+        List<FlowEntry> updated = Lists.newArrayListWithCapacity(flowEntries.size());
+        for (FlowEntry rule : flowEntries) {
+            StoredFlowEntry stored = table.get(rule);
+            if (stored == null) {
+                continue;
+            }
+            //FIXME modification of "stored" flow entry outside of flow table
+            stored.setBytes(rule.bytes());
+            stored.setLife(rule.life());
+            stored.setPackets(rule.packets());
+            stored.setLastSeen();
+            if (stored.state() == FlowEntryState.PENDING_ADD) {
+                stored.setState(FlowEntryState.ADDED);
+                events.add(new FlowRuleEvent(Type.RULE_ADDED, rule));
+            } else {
+                updated.add(rule);
+            }
+        }
+        if (!updated.isEmpty()) {
+            events.add(FlowRuleEvent.statsUpdated(updated));
+        }
+        return events;
+    }
+
     @Override
     public FlowRuleEvent removeFlowRule(FlowEntry rule) {
         final DeviceId deviceId = rule.deviceId();
@@ -653,13 +710,19 @@ public class DistributedFlowRuleStore
 
     private class InternalFlowTable implements ReplicaInfoEventListener {
 
-        //TODO replace the Map<V,V> with ExtendedSet
-        private final Map<DeviceId, Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>>
-                flowEntries = Maps.newConcurrentMap();
+        private final Map<DeviceId, DeviceFlowTable> flowEntries = Maps.newConcurrentMap();
 
-        private final Map<DeviceId, Long> lastBackupTimes = Maps.newConcurrentMap();
-        private final Map<DeviceId, Long> lastUpdateTimes = Maps.newConcurrentMap();
+        // master side: flow ids changed since the last backup sent for each device
+        private final Map<DeviceId, Set<FlowId>> dirtyFlowIds = Maps.newConcurrentMap();
+        // master side: last backup version acknowledged by the backup node of each device
+        private final Map<DeviceId, Long> lastBackupVersions = Maps.newConcurrentMap();
         private final Map<DeviceId, NodeId> lastBackupNodes = Maps.newConcurrentMap();
+        private final Set<DeviceId> inFlightBackups = Sets.newConcurrentHashSet();
+        private final AtomicLong backupVersion = new AtomicLong();
+
+        // backup side: origin and version of the last backup applied for each device
+        private final Map<DeviceId, NodeId> appliedBackupOrigins = Maps.newConcurrentMap();
+        private final Map<DeviceId, Long> appliedBackupVersions = Maps.newConcurrentMap();
 
         @Override
         public void event(ReplicaInfoEvent event) {
@@ -687,67 +750,121 @@ public class DistributedFlowRuleStore
                     log.warn("Lost backup location {} for deviceId {} and no alternate backup node exists. "
                             + "Flows can be lost if the master goes down", currentBackupNode, deviceId);
                     lastBackupNodes.remove(deviceId);
-                    lastBackupTimes.remove(deviceId);
+                    lastBackupVersions.remove(deviceId);
                     return;
                     // TODO: Pick any available node as backup and ensure hand-off occurs when
                     // a new master is elected.
                 }
                 log.debug("Backup location for {} has changed from {} to {}.",
                         deviceId, currentBackupNode, newBackupNode);
-                backupSenderExecutor.schedule(() -> backupFlowEntries(newBackupNode, Sets.newHashSet(deviceId)),
+                backupSenderExecutor.schedule(() -> {
+                            long bytes = backupFlowEntries(newBackupNode, Sets.newHashSet(deviceId));
+                            backupRoundBytes.update(bytes);
+                        },
                         0,
                         TimeUnit.SECONDS);
             }
         }
 
-        private void sendBackups(NodeId nodeId, Set<DeviceId> deviceIds) {
+        private long sendBackups(NodeId nodeId, Set<DeviceId> deviceIds) {
             // split up the devices into smaller batches and send them separately.
-            Iterables.partition(deviceIds, FLOW_TABLE_BACKUP_BATCH_SIZE)
-                     .forEach(ids -> backupFlowEntries(nodeId, Sets.newHashSet(ids)));
+            long bytes = 0;
+            for (List<DeviceId> ids : Iterables.partition(deviceIds, FLOW_TABLE_BACKUP_BATCH_SIZE)) {
+                bytes += backupFlowEntries(nodeId, Sets.newHashSet(ids));
+            }
+            return bytes;
         }
 
-        private void backupFlowEntries(NodeId nodeId, Set<DeviceId> deviceIds) {
-            if (deviceIds.isEmpty()) {
-                return;
+        private long backupFlowEntries(NodeId nodeId, Set<DeviceId> deviceIds) {
+            // only one backup per device may be outstanding so that deltas are applied in order
+            Set<DeviceId> devicesToSend = deviceIds.stream()
+                    .filter(inFlightBackups::add)
+                    .collect(Collectors.toSet());
+            if (devicesToSend.isEmpty()) {
+                return 0;
             }
-            log.debug("Sending flowEntries for devices {} to {} as backup.", deviceIds, nodeId);
-            Map<DeviceId, Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>>
-                    deviceFlowEntries = Maps.newConcurrentMap();
-            deviceIds.forEach(id -> deviceFlowEntries.put(id, ImmutableMap.copyOf(getFlowTable(id))));
-            clusterCommunicator.<Map<DeviceId,
-                                 Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>>,
-                                 Set<DeviceId>>
-                    sendAndReceive(deviceFlowEntries,
+            log.debug("Sending flowEntries for devices {} to {} as backup.", devicesToSend, nodeId);
+            Map<DeviceId, FlowTableBackup> deviceBackups = Maps.newHashMap();
+            devicesToSend.forEach(id -> deviceBackups.put(id, prepareBackup(nodeId, id)));
+            byte[] payload;
+            try {
+                payload = SERIALIZER.encode(deviceBackups);
+            } catch (Exception e) {
+                devicesToSend.forEach(this::backupFailed);
+                throw e;
+            }
+            backupBytesSent.inc(payload.length);
+            clusterCommunicator.<byte[], Set<DeviceId>>
+                    sendAndReceive(payload,
                                    FLOW_TABLE_BACKUP,
-                                   SERIALIZER::encode,
+                                   Function.identity(),
                                    SERIALIZER::decode,
                                    nodeId)
                     .whenComplete((backedupDevices, error) -> {
                         Set<DeviceId> devicesNotBackedup = error != null ?
-                            deviceFlowEntries.keySet() :
-                            Sets.difference(deviceFlowEntries.keySet(), backedupDevices);
+                            deviceBackups.keySet() :
+                            Sets.difference(deviceBackups.keySet(), backedupDevices);
                         if (devicesNotBackedup.size() > 0) {
-                            log.warn("Failed to backup devices: {}. Reason: {}",
-                                     devicesNotBackedup, error.getMessage());
+                            log.warn("Failed to backup devices: {}. Reason: {}", devicesNotBackedup,
+                                     error != null ? error.getMessage() : "version gap on backup node");
+                            // next backup for these devices falls back to a full snapshot
+                            devicesNotBackedup.forEach(this::backupFailed);
                         }
                         if (backedupDevices != null) {
                             backedupDevices.forEach(id -> {
-                                lastBackupTimes.put(id, System.currentTimeMillis());
+                                lastBackupVersions.put(id, deviceBackups.get(id).version());
                                 lastBackupNodes.put(id, nodeId);
+                                inFlightBackups.remove(id);
                             });
                         }
                     });
+            return payload.length;
+        }
+
+        private FlowTableBackup prepareBackup(NodeId nodeId, DeviceId deviceId) {
+            long version = backupVersion.incrementAndGet();
+            Set<FlowId> changedFlowIds = dirtyFlowIds.remove(deviceId);
+            Long baseVersion = lastBackupVersions.get(deviceId);
+            DeviceFlowTable flowTable = getFlowTable(deviceId);
+
+            if (baseVersion == null || !Objects.equals(nodeId, lastBackupNodes.get(deviceId))) {
+                fullBackupsSent.inc();
+                return FlowTableBackup.fullSnapshot(local, version, flowTable.buckets());
+            }
+
+            Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> changedBuckets = Maps.newHashMap();
+            if (changedFlowIds != null) {
+                changedFlowIds.forEach(flowId -> changedBuckets.put(flowId, flowTable.bucket(flowId)));
+            }
+            deltaBackupsSent.inc();
+            return FlowTableBackup.delta(local, baseVersion, version, changedBuckets);
+        }
+
+        private void backupFailed(DeviceId deviceId) {
+            lastBackupVersions.remove(deviceId);
+            inFlightBackups.remove(deviceId);
+        }
+
+        private void markDirty(DeviceId deviceId, FlowId flowId) {
+            // compute is atomic with respect to the removal done in prepareBackup
+            dirtyFlowIds.compute(deviceId, (id, flowIds) -> {
+                Set<FlowId> changed = flowIds == null ? Sets.newHashSet() : flowIds;
+                changed.add(flowId);
+                return changed;
+            });
+            // local changes invalidate any backup previously applied for this device
+            appliedBackupVersions.remove(deviceId);
         }
 
         /**
          * Returns the flow table for specified device.
          *
          * @param deviceId identifier of the device
-         * @return Map representing Flow Table of given device.
+         * @return flow table of given device
          */
-        private Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> getFlowTable(DeviceId deviceId) {
+        private DeviceFlowTable getFlowTable(DeviceId deviceId) {
             if (persistenceEnabled) {
-                return flowEntries.computeIfAbsent(deviceId, id -> persistenceService
+                return flowEntries.computeIfAbsent(deviceId, id -> new DeviceFlowTable(persistenceService
                         .<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>persistentMapBuilder()
                         .withName("FlowTable:" + deviceId.toString())
                         .withSerializer(new Serializer() {
@@ -761,74 +878,48 @@ public class DistributedFlowRuleStore
                                 return SERIALIZER.decode(bytes);
                             }
                         })
-                        .build());
+                        .build()));
             } else {
-                return flowEntries.computeIfAbsent(deviceId, id -> Maps.newConcurrentMap());
+                return flowEntries.computeIfAbsent(deviceId, id -> new DeviceFlowTable());
             }
         }
 
-        private Map<StoredFlowEntry, StoredFlowEntry> getFlowEntriesInternal(DeviceId deviceId, FlowId flowId) {
-            return getFlowTable(deviceId).computeIfAbsent(flowId, id -> Maps.newConcurrentMap());
-        }
-
-        private StoredFlowEntry getFlowEntryInternal(FlowRule rule) {
-            return getFlowEntriesInternal(rule.deviceId(), rule.id()).get(rule);
-        }
-
-        private Set<FlowEntry> getFlowEntriesInternal(DeviceId deviceId) {
-            return getFlowTable(deviceId).values().stream()
-                        .flatMap(m -> m.values().stream())
-                        .collect(Collectors.toSet());
-        }
-
         public StoredFlowEntry getFlowEntry(FlowRule rule) {
-            return getFlowEntryInternal(rule);
+            return getFlowTable(rule.deviceId()).get(rule);
         }
 
         public Set<FlowEntry> getFlowEntries(DeviceId deviceId) {
-            return getFlowEntriesInternal(deviceId);
+            return getFlowTable(deviceId).entries();
         }
 
         public void add(FlowEntry rule) {
-            getFlowEntriesInternal(rule.deviceId(), rule.id())
-                    .compute((StoredFlowEntry) rule, (k, stored) -> {
-                        //TODO compare stored and rule timestamps
-                        //TODO the key is not updated
-                        return (StoredFlowEntry) rule;
-                    });
-            lastUpdateTimes.put(rule.deviceId(), System.currentTimeMillis());
+            //TODO compare stored and rule timestamps
+            getFlowTable(rule.deviceId()).add((StoredFlowEntry) rule);
+            markDirty(rule.deviceId(), rule.id());
         }
 
         public FlowEntry remove(DeviceId deviceId, FlowEntry rule) {
-            final AtomicReference<FlowEntry> removedRule = new AtomicReference<>();
-            getFlowEntriesInternal(rule.deviceId(), rule.id())
-                .computeIfPresent((StoredFlowEntry) rule, (k, stored) -> {
-                    if (rule instanceof DefaultFlowEntry) {
-                        DefaultFlowEntry toRemove = (DefaultFlowEntry) rule;
-                        if (stored instanceof DefaultFlowEntry) {
-                            DefaultFlowEntry storedEntry = (DefaultFlowEntry) stored;
-                            if (toRemove.created() < storedEntry.created()) {
-                                log.debug("Trying to remove more recent flow entry {} (stored: {})",
-                                          toRemove, stored);
-                                // the key is not updated, removedRule remains null
-                                return stored;
-                            }
-                        }
-                    }
-                    removedRule.set(stored);
-                    return null;
-                });
+            FlowEntry removedRule = getFlowTable(deviceId).remove(rule, stored -> {
+                if (rule instanceof DefaultFlowEntry && stored instanceof DefaultFlowEntry &&
+                        ((DefaultFlowEntry) rule).created() < ((DefaultFlowEntry) stored).created()) {
+                    log.debug("Trying to remove more recent flow entry {} (stored: {})", rule, stored);
+                    return false;
+                }
+                return true;
+            });
 
-            if (removedRule.get() != null) {
-                lastUpdateTimes.put(deviceId, System.currentTimeMillis());
-                return removedRule.get();
-            } else {
-                return null;
+            if (removedRule != null) {
+                markDirty(deviceId, rule.id());
             }
+            return removedRule;
         }
 
         public void purgeFlowRule(DeviceId deviceId) {
             flowEntries.remove(deviceId);
+            dirtyFlowIds.remove(deviceId);
+            lastBackupVersions.remove(deviceId);
+            appliedBackupVersions.remove(deviceId);
+            appliedBackupOrigins.remove(deviceId);
         }
 
         private NodeId getBackupNode(DeviceId deviceId) {
@@ -846,14 +937,13 @@ public class DistributedFlowRuleStore
                 Set<DeviceId> devicesToBackup = flowEntries.keySet()
                             .stream()
                             .filter(mastershipService::isLocalMaster)
+                            .filter(deviceId -> !inFlightBackups.contains(deviceId))
                             .filter(deviceId -> {
-                                Long lastBackupTime = lastBackupTimes.get(deviceId);
-                                Long lastUpdateTime = lastUpdateTimes.get(deviceId);
                                 NodeId lastBackupNode = lastBackupNodes.get(deviceId);
                                 NodeId newBackupNode = getBackupNode(deviceId);
-                                return lastBackupTime == null
-                                        ||  !Objects.equals(lastBackupNode, newBackupNode)
-                                        || (lastUpdateTime != null && lastUpdateTime > lastBackupTime);
+                                return !lastBackupVersions.containsKey(deviceId)
+                                        || !Objects.equals(lastBackupNode, newBackupNode)
+                                        || dirtyFlowIds.containsKey(deviceId);
                             })
                             .collect(Collectors.toSet());
 
@@ -867,26 +957,42 @@ public class DistributedFlowRuleStore
                     }
                 });
                 // send the device flow entries to their respective backup nodes
-                devicesToBackupByNode.forEach(this::sendBackups);
+                long bytes = 0;
+                for (Map.Entry<NodeId, Set<DeviceId>> entry : devicesToBackupByNode.entrySet()) {
+                    bytes += sendBackups(entry.getKey(), entry.getValue());
+                }
+                if (bytes > 0) {
+                    backupRoundBytes.update(bytes);
+                    log.debug("Backup round shipped {} bytes for {} devices", bytes, devicesToBackup.size());
+                }
             } catch (Exception e) {
                 log.error("Backup failed.", e);
             }
         }
 
-        private Set<DeviceId> onBackupReceipt(Map<DeviceId,
-                Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>> flowTables) {
+        private Set<DeviceId> onBackupReceipt(Map<DeviceId, FlowTableBackup> flowTables) {
             log.debug("Received flowEntries for {} to backup", flowTables.keySet());
             Set<DeviceId> backedupDevices = Sets.newHashSet();
             try {
-                flowTables.forEach((deviceId, deviceFlowTable) -> {
+                flowTables.forEach((deviceId, backup) -> {
                     // Only process those devices are that not managed by the local node.
-                    if (!Objects.equals(local, mastershipService.getMasterFor(deviceId))) {
-                        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> backupFlowTable =
-                                getFlowTable(deviceId);
+                    if (Objects.equals(local, mastershipService.getMasterFor(deviceId))) {
+                        return;
+                    }
+                    if (!backup.follows(appliedBackupOrigins.get(deviceId), appliedBackupVersions.get(deviceId))) {
+                        // a delta was missed; leave unacknowledged so that the master sends a full snapshot
+                        log.debug("Version gap in backup {} for {}", backup, deviceId);
+                        return;
+                    }
+                    DeviceFlowTable backupFlowTable = getFlowTable(deviceId);
+                    if (backup.isFullSnapshot()) {
                         backupFlowTable.clear();
-                        backupFlowTable.putAll(deviceFlowTable);
-                        backedupDevices.add(deviceId);
                     }
+                    backup.flowBuckets().forEach((flowId, bucket) ->
+                            backupFlowTable.putBucket(flowId, bucket.values()));
+                    appliedBackupOrigins.put(deviceId, backup.origin());
+                    appliedBackupVersions.put(deviceId, backup.version());
+                    backedupDevices.add(deviceId);
                 });
             } catch (Exception e) {
                 log.warn("Failure processing backup request", e);
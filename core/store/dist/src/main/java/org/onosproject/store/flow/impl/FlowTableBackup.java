@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.Map;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Backup of a single device flow table sent from the master to its standby.
+ * <p>
+ * A backup is either a full snapshot of the flow table or a delta that
+ * carries only the flow buckets changed since the last backup acknowledged
+ * by the standby. In a delta an empty bucket denotes a removed flow id.
+ */
+final class FlowTableBackup {
+
+    private static final long NO_VERSION = -1;
+
+    private final NodeId origin;
+    private final long baseVersion;
+    private final long version;
+    private final Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> flowBuckets;
+
+    /**
+     * Default constructor for serialization.
+     */
+    private FlowTableBackup() {
+        this.origin = null;
+        this.baseVersion = NO_VERSION;
+        this.version = NO_VERSION;
+        this.flowBuckets = ImmutableMap.of();
+    }
+
+    private FlowTableBackup(NodeId origin, long baseVersion, long version,
+                            Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> flowBuckets) {
+        this.origin = checkNotNull(origin);
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.flowBuckets = checkNotNull(flowBuckets);
+    }
+
+    /**
+     * Creates a backup holding the complete flow table of a device.
+     *
+     * @param origin node sending the backup
+     * @param version version of the flow table being sent
+     * @param flowTable complete flow table of the device
+     * @return full snapshot backup
+     */
+    static FlowTableBackup fullSnapshot(NodeId origin, long version,
+                                        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> flowTable) {
+        return new FlowTableBackup(origin, NO_VERSION, version, flowTable);
+    }
+
+    /**
+     * Creates a backup holding only the flow buckets changed since the
+     * specified base version.
+     *
+     * @param origin node sending the backup
+     * @param baseVersion version the standby must hold to apply this delta
+     * @param version version of the flow table after applying this delta
+     * @param changedBuckets changed flow buckets; empty for removed flow ids
+     * @return delta backup
+     */
+    static FlowTableBackup delta(NodeId origin, long baseVersion, long version,
+                                 Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> changedBuckets) {
+        return new FlowTableBackup(origin, baseVersion, version, changedBuckets);
+    }
+
+    /**
+     * Returns the node that sent this backup.
+     *
+     * @return origin node identifier
+     */
+    NodeId origin() {
+        return origin;
+    }
+
+    /**
+     * Returns the version of the flow table carried by this backup.
+     *
+     * @return flow table version
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Returns whether this backup is a full snapshot of the flow table.
+     *
+     * @return true if full snapshot; false if delta
+     */
+    boolean isFullSnapshot() {
+        return baseVersion == NO_VERSION;
+    }
+
+    /**
+     * Returns whether this delta can be applied on top of the specified
+     * previously applied backup.
+     *
+     * @param lastOrigin origin of the last applied backup; may be null
+     * @param lastVersion version of the last applied backup; may be null
+     * @return true if there is no version gap between the two backups
+     */
+    boolean follows(NodeId lastOrigin, Long lastVersion) {
+        return isFullSnapshot() ||
+                (Objects.equals(origin, lastOrigin) && lastVersion != null && lastVersion == baseVersion);
+    }
+
+    /**
+     * Returns the flow buckets carried by this backup.
+     *
+     * @return flow buckets keyed by flow id
+     */
+    Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> flowBuckets() {
+        return flowBuckets;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("origin", origin)
+                .add("baseVersion", baseVersion)
+                .add("version", version)
+                .add("flowBuckets", flowBuckets.size())
+                .toString();
+    }
+}
@@ -15,6 +15,9 @@
  */
 package org.onosproject.store.topology.impl;
 
+import com.codahale.metrics.Gauge;
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -24,6 +27,9 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onlab.graph.GraphPathSearch;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.common.DefaultTopology;
@@ -91,7 +97,7 @@ public class DistributedTopologyStore
 
     private final Logger log = getLogger(getClass());
 
-    private static final String FORMAT = "Settings: linkWeightFunction={}";
+    private static final String FORMAT = "Settings: linkWeightFunction={}, pathCacheSize={}";
 
     private volatile DefaultTopology current =
             new DefaultTopology(ProviderId.NONE,
@@ -114,6 +120,9 @@ public class DistributedTopologyStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DeviceService deviceService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     private static final String HOP_COUNT = "hopCount";
     private static final String LINK_METRIC = "linkMetric";
     private static final String GEO_DISTANCE = "geoDistance";
@@ -123,6 +132,16 @@ public class DistributedTopologyStore
             label = "Default link-weight function: hopCount, linkMetric, geoDistance")
     private String linkWeightFunction = DEFAULT_LINK_WEIGHT_FUNCTION;
 
+    @Property(name = "pathCacheSize", intValue = DefaultTopology.DEFAULT_PATH_CACHE_SIZE,
+            label = "Maximum number of shortest path results cached per topology; 0 disables caching")
+    private int pathCacheSize = DefaultTopology.DEFAULT_PATH_CACHE_SIZE;
+
+    // Path cache statistics of the topologies replaced so far
+    private CacheStats retiredPathCacheStats = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    private MetricsComponent metricsComponent;
+    private MetricsFeature pathCacheFeature;
+
     // Cluster root to broadcast points bindings to allow convergence to
     // a shared broadcast tree; node that is the master of the cluster root
     // is the primary.
@@ -143,12 +162,15 @@ public class DistributedTopologyStore
                 .withTimestampProvider((k, v) -> clockService.getTimestamp())
                 .build();
         broadcastPoints.addListener(listener);
+        registerPathCacheMetrics();
         log.info("Started");
     }
 
     @Deactivate
     protected void deactivate() {
         configService.unregisterProperties(getClass(), false);
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, "hits");
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, "misses");
         broadcastPoints.removeListener(listener);
         broadcastPoints.destroy();
         log.info("Stopped");
@@ -168,7 +190,35 @@ public class DistributedTopologyStore
                             new GeoDistanceLinkWeight(deviceService) : null;
             setDefaultLinkWeight(weight);
         }
-        log.info(FORMAT, linkWeightFunction);
+
+        int newPathCacheSize;
+        try {
+            String s = get(properties, "pathCacheSize");
+            newPathCacheSize = Strings.isNullOrEmpty(s) ? pathCacheSize : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            newPathCacheSize = DefaultTopology.DEFAULT_PATH_CACHE_SIZE;
+        }
+        if (newPathCacheSize >= 0 && newPathCacheSize != pathCacheSize) {
+            pathCacheSize = newPathCacheSize;
+            DefaultTopology.setPathCacheSize(pathCacheSize);
+        }
+        log.info(FORMAT, linkWeightFunction, pathCacheSize);
+    }
+
+    // Exposes path cache hits and misses accumulated over all topologies
+    private void registerPathCacheMetrics() {
+        metricsComponent = metricsService.registerComponent("TopologyStore");
+        pathCacheFeature = metricsComponent.registerFeature("pathCache");
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, "hits");
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, "hits",
+                                      (Gauge<Long>) () -> pathCacheStats().hitCount());
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, "misses");
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, "misses",
+                                      (Gauge<Long>) () -> pathCacheStats().missCount());
+    }
+
+    private synchronized CacheStats pathCacheStats() {
+        return retiredPathCacheStats.plus(current.pathCacheStats());
     }
 
     @Override
@@ -277,13 +327,17 @@ public class DistributedTopologyStore
             return null;
         }
 
-        // Have the default topology construct self from the description data.
+        // Have the default topology construct self from the description data,
+        // reusing whatever the change leaves intact in the current one.
         DefaultTopology newTopology =
-                new DefaultTopology(providerId, graphDescription, this::isBroadcastPoint);
+                new DefaultTopology(providerId, graphDescription, this::isBroadcastPoint, current);
         updateBroadcastPoints(newTopology);
 
         // Promote the new topology to current and return a ready-to-send event.
         synchronized (this) {
+            // Paths cached by the replaced topology are no longer valid;
+            // keep its statistics and let the cache go with it.
+            retiredPathCacheStats = retiredPathCacheStats.plus(current.pathCacheStats());
             current = newTopology;
             return new TopologyEvent(TOPOLOGY_CHANGED, current, reasons);
         }
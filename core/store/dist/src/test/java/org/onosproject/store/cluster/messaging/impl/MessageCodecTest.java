@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.util.Tools;
+import org.onosproject.store.cluster.messaging.Endpoint;
+import org.onosproject.store.cluster.messaging.impl.InternalMessage.Status;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the message encoder and decoder.
+ */
+public class MessageCodecTest {
+
+    private static final int PREAMBLE = 42;
+    private static final Endpoint SENDER = new Endpoint(IpAddress.valueOf("10.0.0.1"), 9876);
+
+    private final EmbeddedChannel encoder = new EmbeddedChannel(new MessageEncoder(PREAMBLE));
+    private final EmbeddedChannel decoder = new EmbeddedChannel(new MessageDecoder());
+
+    private ByteBuf encode(InternalMessage message) {
+        assertTrue(encoder.writeOutbound(message));
+        ByteBuf buffer = (ByteBuf) encoder.readOutbound();
+        // copy the possibly composite buffer as it would appear on the wire
+        ByteBuf bytes = Unpooled.copiedBuffer(buffer);
+        buffer.release();
+        return bytes;
+    }
+
+    private static void assertMessage(InternalMessage expected, InternalMessage actual) {
+        assertEquals(expected.preamble(), actual.preamble());
+        assertEquals(expected.id(), actual.id());
+        assertEquals(expected.sender(), actual.sender());
+        assertEquals(expected.type(), actual.type());
+        assertEquals(expected.status(), actual.status());
+        assertArrayEquals(expected.payload(), actual.payload());
+    }
+
+    /**
+     * Tests that messages survive encoding and decoding and that a message
+     * type is only spelled out the first time it is sent.
+     */
+    @Test
+    public void testRoundTrip() {
+        InternalMessage first = new InternalMessage(PREAMBLE, 1, SENDER, "foo", Tools.getBytesUtf8("hello"));
+        InternalMessage second = new InternalMessage(PREAMBLE, 2, SENDER, "foo", Tools.getBytesUtf8("world"));
+        InternalMessage third = new InternalMessage(PREAMBLE, 3, SENDER, "bar", new byte[0],
+                                                    Status.ERROR_NO_HANDLER);
+
+        ByteBuf firstBytes = encode(first);
+        ByteBuf secondBytes = encode(second);
+        ByteBuf thirdBytes = encode(third);
+        // type length and type bytes are omitted once the type is defined
+        assertEquals(firstBytes.readableBytes() - 4 - "foo".length(), secondBytes.readableBytes());
+
+        assertTrue(decoder.writeInbound(firstBytes, secondBytes, thirdBytes));
+        assertMessage(first, (InternalMessage) decoder.readInbound());
+        assertMessage(second, (InternalMessage) decoder.readInbound());
+        assertMessage(third, (InternalMessage) decoder.readInbound());
+        assertNull(decoder.readInbound());
+    }
+
+    /**
+     * Tests decoding of messages that arrive one byte at a time.
+     */
+    @Test
+    public void testFragmentedInput() {
+        InternalMessage first = new InternalMessage(PREAMBLE, 1, SENDER, "foo", Tools.getBytesUtf8("hello"));
+        InternalMessage second = new InternalMessage(PREAMBLE, 2, SENDER, "foo", Tools.getBytesUtf8("world"));
+        ByteBuf bytes = Unpooled.wrappedBuffer(encode(first), encode(second));
+        while (bytes.isReadable()) {
+            decoder.writeInbound(bytes.readBytes(1));
+        }
+        assertMessage(first, (InternalMessage) decoder.readInbound());
+        assertMessage(second, (InternalMessage) decoder.readInbound());
+        assertNull(decoder.readInbound());
+    }
+
+    /**
+     * Tests that type ids are reused once all are defined, least recently
+     * sent type first.
+     */
+    @Test
+    public void testTypeIdReuse() {
+        int id = 0;
+        for (int i = 0; i < MessageEncoder.MAX_MESSAGE_TYPES; i++) {
+            InternalMessage message = new InternalMessage(PREAMBLE, id++, SENDER, "type-" + i, new byte[0]);
+            assertTrue(decoder.writeInbound(encode(message)));
+            assertMessage(message, (InternalMessage) decoder.readInbound());
+        }
+        // type-0 becomes the most recently sent; type-1 is the first to go
+        InternalMessage refresh = new InternalMessage(PREAMBLE, id++, SENDER, "type-0", new byte[0]);
+        InternalMessage evicting = new InternalMessage(PREAMBLE, id++, SENDER, "new-type", new byte[0]);
+        InternalMessage redefined = new InternalMessage(PREAMBLE, id++, SENDER, "type-1", new byte[0]);
+        InternalMessage kept = new InternalMessage(PREAMBLE, id++, SENDER, "type-0", new byte[0]);
+
+        ByteBuf refreshBytes = encode(refresh);
+        int definedLength = refreshBytes.readableBytes();
+        assertTrue(decoder.writeInbound(refreshBytes));
+        assertMessage(refresh, (InternalMessage) decoder.readInbound());
+        ByteBuf evictingBytes = encode(evicting);
+        ByteBuf redefinedBytes = encode(redefined);
+        ByteBuf stillDefinedBytes = encode(kept);
+        // new-type and type-1 are spelled out; type-0 still is not
+        assertEquals(definedLength, stillDefinedBytes.readableBytes());
+        assertEquals(definedLength + 4 + "type-1".length(), redefinedBytes.readableBytes());
+
+        assertTrue(decoder.writeInbound(evictingBytes, redefinedBytes, stillDefinedBytes));
+        assertMessage(evicting, (InternalMessage) decoder.readInbound());
+        assertMessage(redefined, (InternalMessage) decoder.readInbound());
+        assertMessage(kept, (InternalMessage) decoder.readInbound());
+        assertNull(decoder.readInbound());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.onosproject.store.cluster.messaging.impl.MessageLane.BULK;
+import static org.onosproject.store.cluster.messaging.impl.MessageLane.BULK_PAYLOAD_THRESHOLD;
+import static org.onosproject.store.cluster.messaging.impl.MessageLane.CONTROL;
+import static org.onosproject.store.cluster.messaging.impl.MessageLane.REPLICATION;
+
+/**
+ * Unit tests for the assignment of messages to lanes.
+ */
+public class MessageLaneTest {
+
+    /**
+     * Tests the lanes of typical message types.
+     */
+    @Test
+    public void testTypeLanes() {
+        assertEquals(CONTROL, MessageLane.of("NETTY_MESSAGING_REQUEST_REPLY", 10));
+        assertEquals(CONTROL, MessageLane.of("peer-forward-apply-batch", 10));
+        assertEquals(REPLICATION, MessageLane.of("onos-copycat-1", 10));
+        assertEquals(REPLICATION, MessageLane.of("ecm-foo-update", 10));
+        assertEquals(BULK, MessageLane.of("ecm-foo-anti-entropy", 10));
+        assertEquals(BULK, MessageLane.of("ecm-foo-anti-entropy-buckets", 10));
+        assertEquals(BULK, MessageLane.of("peer-flow-table-backup", 10));
+        assertEquals(CONTROL, MessageLane.of("ecm-foo-update-request", 10));
+    }
+
+    /**
+     * Tests that large payloads travel in the bulk lane.
+     */
+    @Test
+    public void testLargePayloads() {
+        assertEquals(CONTROL, MessageLane.of("NETTY_MESSAGING_REQUEST_REPLY", BULK_PAYLOAD_THRESHOLD));
+        assertEquals(BULK, MessageLane.of("NETTY_MESSAGING_REQUEST_REPLY", BULK_PAYLOAD_THRESHOLD + 1));
+        assertEquals(BULK, MessageLane.of("onos-copycat-1", BULK_PAYLOAD_THRESHOLD + 1));
+    }
+}
@@ -17,17 +17,21 @@ package org.onosproject.store.cluster.messaging.impl;
 
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
 import org.onlab.packet.IpAddress;
 import org.onosproject.cluster.ClusterMetadata;
 import org.onosproject.cluster.ClusterMetadataEventListener;
@@ -63,11 +67,13 @@ public class NettyMessagingManagerTest {
         ep1 = new Endpoint(IpAddress.valueOf("127.0.0.1"), findAvailablePort(5001));
         netty1 = new NettyMessagingManager();
         netty1.clusterMetadataService = dummyMetadataService(DUMMY_NAME, IP_STRING, ep1);
+        netty1.metricsService = new MetricsManager();
         netty1.activate();
 
         ep2 = new Endpoint(IpAddress.valueOf("127.0.0.1"), findAvailablePort(5003));
         netty2 = new NettyMessagingManager();
         netty2.clusterMetadataService = dummyMetadataService(DUMMY_NAME, IP_STRING, ep2);
+        netty2.metricsService = new MetricsManager();
         netty2.activate();
     }
 
@@ -162,6 +168,27 @@ public class NettyMessagingManagerTest {
         assertEquals("handler-thread", handlerThreadName.get());
     }
 
+    /*
+     * Verifies that a request left unanswered times out after the reply timeout of its type
+     * and is accounted for in the statistics of the peer.
+     */
+    @Test
+    public void testSendAndReceiveTimeout() {
+        netty2.registerHandler("slow", (ep, data) -> new CompletableFuture<>());
+        netty1.typeReplyTimeouts = ImmutableMap.of("slow", 100L);
+
+        CompletableFuture<byte[]> response = netty1.sendAndReceive(ep2, "slow", "hello world".getBytes());
+        try {
+            response.join();
+            fail("Expected a timeout");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        NettyMessagingManager.PeerStats stats = netty1.peerStats(ep2);
+        assertEquals(1, stats.timeouts.get());
+        assertEquals(0, stats.inFlight.get());
+    }
+
     private ClusterMetadataService dummyMetadataService(String name, String ipAddress, Endpoint ep) {
         return new ClusterMetadataService() {
             @Override
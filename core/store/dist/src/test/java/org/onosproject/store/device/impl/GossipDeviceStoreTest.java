@@ -28,10 +28,14 @@ import org.junit.Test;
 import org.onlab.packet.ChassisId;
 import org.onlab.packet.IpAddress;
 import org.onlab.util.KryoNamespace;
+import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.DefaultControllerNode;
 import org.onosproject.cluster.NodeId;
+import org.onosproject.cluster.RoleInfo;
+import org.onosproject.mastership.MastershipEvent;
+import org.onosproject.mastership.MastershipListener;
 import org.onosproject.mastership.MastershipServiceAdapter;
 import org.onosproject.net.Annotations;
 import org.onosproject.net.DefaultAnnotations;
@@ -43,6 +47,7 @@ import org.onosproject.net.PortNumber;
 import org.onosproject.net.SparseAnnotations;
 import org.onosproject.net.device.DefaultDeviceDescription;
 import org.onosproject.net.device.DefaultPortDescription;
+import org.onosproject.net.device.DefaultPortStatistics;
 import org.onosproject.net.device.DeviceClockService;
 import org.onosproject.net.device.DeviceClockServiceAdapter;
 import org.onosproject.net.device.DeviceDescription;
@@ -50,6 +55,7 @@ import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.device.DeviceStore;
 import org.onosproject.net.device.DeviceStoreDelegate;
 import org.onosproject.net.device.PortDescription;
+import org.onosproject.net.device.PortStatistics;
 import org.onosproject.net.provider.ProviderId;
 import org.onosproject.store.Timestamp;
 import org.onosproject.store.cluster.StaticClusterService;
@@ -61,10 +67,13 @@ import org.onosproject.store.impl.MastershipBasedTimestamp;
 import org.onosproject.store.service.EventuallyConsistentMap;
 import org.onosproject.store.service.EventuallyConsistentMapBuilder;
 import org.onosproject.store.service.StorageService;
+import org.osgi.service.component.ComponentContext;
+
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -143,6 +152,7 @@ public class GossipDeviceStoreTest {
     private DeviceStore deviceStore;
 
     private DeviceClockService deviceClockService = new TestDeviceClockService();
+    private MastershipListener mastershipListener;
     private ClusterCommunicationService clusterCommunicator;
 
     @BeforeClass
@@ -182,9 +192,10 @@ public class GossipDeviceStoreTest {
 
         testGossipDeviceStore.storageService = testStorageService;
         testGossipDeviceStore.deviceClockService = deviceClockService;
+        testGossipDeviceStore.cfgService = new ComponentConfigAdapter();
 
         gossipDeviceStore = testGossipDeviceStore;
-        gossipDeviceStore.activate();
+        gossipDeviceStore.activate(null);
         deviceStore = gossipDeviceStore;
         verify(clusterCommunicator);
         reset(clusterCommunicator);
@@ -859,7 +870,81 @@ public class GossipDeviceStoreTest {
         assertTrue("Remove event fired", removeLatch.await(1, TimeUnit.SECONDS));
     }
 
+    private PortStatistics portStats(PortNumber port, long bytesReceived) {
+        return DefaultPortStatistics.builder()
+                .setDeviceId(DID1)
+                .setPort((int) port.toLong())
+                .setBytesReceived(bytesReceived)
+                .build();
+    }
+
+    @Test
+    public final void testLocalPortStatistics() {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put("localPortStatistics", "true");
+        ComponentContext context = createMock(ComponentContext.class);
+        expect(context.getProperties()).andReturn(properties).anyTimes();
+        replay(context);
+        gossipDeviceStore.modified(context);
+
+        putDevice(DID1, SW1);
+        // fail on any use of the replicated maps
+        resetToDefault(ecMap);
+        replay(ecMap);
+
+        DeviceEvent event = deviceStore.updatePortStatistics(PID, DID1, asList(portStats(P1, 100)));
+        assertEquals(PORT_STATS_UPDATED, event.type());
+        assertEquals(DID1, event.subject().id());
+
+        deviceStore.updatePortStatistics(PID, DID1, asList(portStats(P1, 250)));
+        List<PortStatistics> stats = deviceStore.getPortStatistics(DID1);
+        assertEquals(1, stats.size());
+        assertEquals(250, stats.get(0).bytesReceived());
+        List<PortStatistics> deltaStats = deviceStore.getPortDeltaStatistics(DID1);
+        assertEquals(1, deltaStats.size());
+        assertEquals(150, deltaStats.get(0).bytesReceived());
+        assertTrue(deviceStore.getPortStatistics(DID2).isEmpty());
+
+        resetToNice(ecMap);
+        replay(ecMap);
+    }
+
+    @Test
+    public final void testLocalPortStatisticsMastershipLoss() {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put("localPortStatistics", "true");
+        ComponentContext context = createMock(ComponentContext.class);
+        expect(context.getProperties()).andReturn(properties).anyTimes();
+        replay(context);
+        gossipDeviceStore.modified(context);
+
+        putDevice(DID1, SW1);
+        deviceStore.updatePortStatistics(PID, DID1, asList(portStats(P1, 100)));
+        assertEquals(1, deviceStore.getPortStatistics(DID1).size());
+
+        // backup changes keep the sample
+        mastershipListener.event(new MastershipEvent(MastershipEvent.Type.BACKUPS_CHANGED, DID1,
+                                                     new RoleInfo(NID1, asList(NID2))));
+        assertEquals(1, deviceStore.getPortStatistics(DID1).size());
+
+        mastershipListener.event(new MastershipEvent(MastershipEvent.Type.MASTER_CHANGED, DID1,
+                                                     new RoleInfo(NID2, asList(NID1))));
+        assertTrue(deviceStore.getPortStatistics(DID1).isEmpty());
+
+        // regaining mastership starts from a fresh sample without deltas
+        mastershipListener.event(new MastershipEvent(MastershipEvent.Type.MASTER_CHANGED, DID1,
+                                                     new RoleInfo(NID1, asList(NID2))));
+        deviceStore.updatePortStatistics(PID, DID1, asList(portStats(P1, 250)));
+        assertEquals(250, deviceStore.getPortStatistics(DID1).get(0).bytesReceived());
+        assertTrue(deviceStore.getPortDeltaStatistics(DID1).isEmpty());
+    }
+
     private final class TestMastershipService extends MastershipServiceAdapter {
+        @Override
+        public void addListener(MastershipListener listener) {
+            mastershipListener = listener;
+        }
+
         @Override
         public NodeId getMasterFor(DeviceId deviceId) {
             return NID1;
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.device.impl;
+
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DefaultPortStatistics;
+import org.onosproject.net.device.PortStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the cache of port statistics fetched from remote masters.
+ */
+public class RemotePortStatsCacheTest {
+
+    private static final long REFRESH_MILLIS = 2000;
+    private static final DeviceId DID = DeviceId.deviceId("of:foo");
+
+    private long now = 1;
+    private final List<CompletableFuture<List<PortStatistics>>> requests = new ArrayList<>();
+    private final RemotePortStatsCache cache = new RemotePortStatsCache(REFRESH_MILLIS, 60000, () -> now);
+
+    private List<PortStatistics> get() {
+        return cache.get(DID, deviceId -> {
+            CompletableFuture<List<PortStatistics>> request = new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        });
+    }
+
+    private static List<PortStatistics> stats(long bytesReceived) {
+        return asList(DefaultPortStatistics.builder()
+                              .setDeviceId(DID)
+                              .setPort(1)
+                              .setBytesReceived(bytesReceived)
+                              .build());
+    }
+
+    /**
+     * Tests that reads return immediately and that only one request per
+     * device is in flight.
+     */
+    @Test
+    public void readsDoNotWait() {
+        assertTrue(get().isEmpty());
+        assertTrue(get().isEmpty());
+        assertEquals(1, requests.size());
+
+        requests.get(0).complete(stats(100));
+        assertEquals(100, get().get(0).bytesReceived());
+        assertEquals(1, requests.size());
+    }
+
+    /**
+     * Tests that stale statistics are returned while they are refreshed.
+     */
+    @Test
+    public void staleStatisticsRefreshed() {
+        get();
+        requests.get(0).complete(stats(100));
+
+        now += REFRESH_MILLIS;
+        assertEquals(100, get().get(0).bytesReceived());
+        assertEquals(2, requests.size());
+
+        requests.get(1).complete(stats(250));
+        assertEquals(250, get().get(0).bytesReceived());
+        assertEquals(2, requests.size());
+    }
+
+    /**
+     * Tests that a failed refresh keeps the previous statistics and is
+     * retried on the next read.
+     */
+    @Test
+    public void failedRefresh() {
+        get();
+        requests.get(0).complete(stats(100));
+
+        now += REFRESH_MILLIS;
+        get();
+        requests.get(1).completeExceptionally(new RuntimeException("timeout"));
+        assertEquals(100, get().get(0).bytesReceived());
+        assertEquals(3, requests.size());
+    }
+
+    /**
+     * Tests that replies to requests sent before an invalidation are
+     * discarded.
+     */
+    @Test
+    public void invalidateDiscardsPendingReplies() {
+        get();
+        cache.invalidate(DID);
+        requests.get(0).complete(stats(100));
+        assertTrue(get().isEmpty());
+        assertEquals(2, requests.size());
+
+        requests.get(1).complete(stats(250));
+        cache.invalidateAll();
+        assertTrue(get().isEmpty());
+    }
+}
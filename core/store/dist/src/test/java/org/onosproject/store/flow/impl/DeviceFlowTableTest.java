@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Unit tests for the compact device flow table.
+ */
+public class DeviceFlowTableTest {
+
+    private static final DeviceId DID = DeviceId.deviceId("of:1");
+
+    private static StoredFlowEntry entry(long flowId, int priority) {
+        return new DefaultFlowEntry(DefaultFlowRule.builder()
+                .forDevice(DID)
+                .withCookie(flowId)
+                .withPriority(priority)
+                .makePermanent()
+                .build());
+    }
+
+    /**
+     * Tests adding, replacing and removing single entries.
+     */
+    @Test
+    public void testSingleEntries() {
+        DeviceFlowTable table = new DeviceFlowTable();
+        StoredFlowEntry entry = entry(1, 10);
+        table.add(entry);
+        assertThat(table.size(), is(1));
+        assertThat(table.get(entry(1, 10)), sameInstance(entry));
+        assertThat(table.get(entry(2, 10)), nullValue());
+
+        StoredFlowEntry replacement = entry(1, 10);
+        table.add(replacement);
+        assertThat(table.size(), is(1));
+        assertThat(table.get(entry), sameInstance(replacement));
+
+        assertThat(table.remove(entry, e -> false), nullValue());
+        assertThat(table.remove(entry, e -> true), sameInstance(replacement));
+        assertThat(table.size(), is(0));
+        assertThat(table.get(entry), nullValue());
+    }
+
+    /**
+     * Tests distinct flow rules sharing a flow id.
+     */
+    @Test
+    public void testSharedFlowId() {
+        DeviceFlowTable table = new DeviceFlowTable();
+        StoredFlowEntry first = entry(7, 10);
+        StoredFlowEntry second = entry(7, 20);
+        StoredFlowEntry third = entry(7, 30);
+        table.add(first);
+        table.add(second);
+        table.add(third);
+        assertThat(table.size(), is(3));
+        assertThat(table.bucket(FlowId.valueOf(7)).keySet(), is(ImmutableSet.of(first, second, third)));
+
+        assertThat(table.remove(second, e -> true), sameInstance(second));
+        assertThat(table.get(first), sameInstance(first));
+        assertThat(table.get(second), nullValue());
+        assertThat(table.get(third), sameInstance(third));
+
+        assertThat(table.remove(first, e -> true), sameInstance(first));
+        assertThat(table.remove(third, e -> true), sameInstance(third));
+        assertThat(table.size(), is(0));
+        assertThat(table.bucket(FlowId.valueOf(7)).isEmpty(), is(true));
+    }
+
+    /**
+     * Tests the table against a reference map across growth and removals.
+     */
+    @Test
+    public void testRandomOperations() {
+        DeviceFlowTable table = new DeviceFlowTable();
+        Map<FlowEntry, FlowEntry> reference = Maps.newHashMap();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            // few distinct ids and priorities to exercise probing and sharing
+            StoredFlowEntry entry = entry(random.nextInt(2_000) << 20, random.nextInt(3));
+            if (random.nextInt(3) == 0) {
+                assertThat(table.remove(entry, e -> true), is(reference.remove(entry)));
+            } else {
+                table.add(entry);
+                reference.put(entry, entry);
+            }
+        }
+        assertThat(table.size(), is(reference.size()));
+        assertThat(table.entries(), is(reference.keySet()));
+        reference.keySet().forEach(e -> assertThat(table.get(e), sameInstance(reference.get(e))));
+    }
+
+    /**
+     * Tests that buckets round-trip and changes are written through.
+     */
+    @Test
+    public void testBucketsAndPersistence() {
+        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> persistent = Maps.newHashMap();
+        DeviceFlowTable table = new DeviceFlowTable(persistent);
+        StoredFlowEntry first = entry(1, 10);
+        StoredFlowEntry second = entry(2, 10);
+        table.add(first);
+        table.add(second);
+        assertThat(persistent, is(table.buckets()));
+
+        table.remove(first, e -> true);
+        assertThat(persistent.containsKey(FlowId.valueOf(1)), is(false));
+
+        DeviceFlowTable restored = new DeviceFlowTable(persistent);
+        assertThat(restored.entries(), is(ImmutableSet.of(second)));
+
+        DeviceFlowTable backup = new DeviceFlowTable();
+        table.buckets().forEach((flowId, bucket) -> backup.putBucket(flowId, bucket.values()));
+        assertThat(backup.entries(), is(table.entries()));
+        backup.putBucket(FlowId.valueOf(2), ImmutableList.of());
+        assertThat(backup.size(), is(0));
+    }
+}
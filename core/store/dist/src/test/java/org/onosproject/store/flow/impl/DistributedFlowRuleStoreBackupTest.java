@@ -0,0 +1,434 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.junit.TestUtils;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.mastership.MastershipServiceAdapter;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.MastershipRole;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationServiceAdapter;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.flow.ReplicaInfo;
+import org.onosproject.store.flow.ReplicaInfoEventListener;
+import org.onosproject.store.flow.ReplicaInfoService;
+import org.onosproject.store.service.TestStorageService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.FLOW_TABLE_BACKUP;
+
+/**
+ * Tests of the incremental flow table backups of the distributed flow rule
+ * store, exchanged between a master and its standbys through a test cluster
+ * communicator.
+ */
+public class DistributedFlowRuleStoreBackupTest {
+
+    private static final NodeId NID1 = new NodeId("foo");
+    private static final NodeId NID2 = new NodeId("bar");
+    private static final NodeId NID3 = new NodeId("baz");
+    private static final DeviceId DID1 = DeviceId.deviceId("of:1");
+    private static final DeviceId DID2 = DeviceId.deviceId("of:2");
+
+    // backup request handlers of the cluster members, keyed by node
+    private final Map<NodeId, Function<byte[], byte[]>> backupHandlers = Maps.newHashMap();
+    // backups sent by the master, in order
+    private final List<SentBackup> sentBackups = Lists.newArrayList();
+    private boolean failSends;
+
+    private NodeId master = NID1;
+    private List<NodeId> standbys = ImmutableList.of(NID2, NID3);
+
+    private DistributedFlowRuleStore masterStore;
+    private MetricsManager masterMetrics;
+    private DistributedFlowRuleStore standbyStore;
+    private DistributedFlowRuleStore otherStandbyStore;
+
+    @Before
+    public void setUp() throws Exception {
+        masterMetrics = new MetricsManager();
+        masterStore = createStore(NID1, masterMetrics);
+        standbyStore = createStore(NID2, new MetricsManager());
+        otherStandbyStore = createStore(NID3, new MetricsManager());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (DistributedFlowRuleStore store : ImmutableList.of(masterStore, standbyStore, otherStandbyStore)) {
+            // no backup task was scheduled by activate
+            TestUtils.setField(store, "backupEnabled", false);
+            store.deactivate(null);
+        }
+    }
+
+    private DistributedFlowRuleStore createStore(NodeId nodeId, MetricsManager metrics) throws Exception {
+        DistributedFlowRuleStore store = new DistributedFlowRuleStore();
+        store.clusterService = new TestClusterService(nodeId);
+        store.clusterCommunicator = new TestClusterCommunicator(nodeId);
+        store.mastershipService = new TestMastershipService(nodeId);
+        store.replicaInfoManager = new TestReplicaInfoService();
+        store.coreService = new TestCoreService();
+        store.configService = new ComponentConfigAdapter();
+        store.storageService = new TestStorageService();
+        store.metricsService = metrics;
+        // backup rounds are run by the tests rather than by the backup task
+        TestUtils.setField(store, "backupEnabled", false);
+        store.activate(null);
+        TestUtils.setField(store, "backupEnabled", true);
+        return store;
+    }
+
+    private static FlowRule rule(DeviceId deviceId, long flowId) {
+        return DefaultFlowRule.builder()
+                .forDevice(deviceId)
+                .withCookie(flowId)
+                .withPriority(10)
+                .makePermanent()
+                .build();
+    }
+
+    private void backupRound() throws Exception {
+        Object flowTable = TestUtils.getField(masterStore, "flowTable");
+        TestUtils.callMethod(flowTable, "backup", new Class<?>[]{});
+    }
+
+    private SentBackup lastBackup() {
+        return Iterables.getLast(sentBackups);
+    }
+
+    /**
+     * Returns the flow entries the standby holds for a device by making it
+     * the master of the device, as happens on failover.
+     *
+     * @param store    store of the standby
+     * @param nodeId   identifier of the standby
+     * @param deviceId device identifier
+     * @return flow entries of the device held by the standby
+     */
+    private Set<FlowEntry> entriesAfterFailover(DistributedFlowRuleStore store, NodeId nodeId, DeviceId deviceId) {
+        master = nodeId;
+        return ImmutableSet.copyOf(store.getFlowEntries(deviceId));
+    }
+
+    private static Set<FlowId> flowIds(Set<FlowEntry> entries) {
+        return entries.stream().map(FlowEntry::id).collect(Collectors.toSet());
+    }
+
+    /**
+     * Tests that once a full snapshot has been acknowledged only the buckets
+     * of the changed flow ids are sent.
+     */
+    @Test
+    public void testDeltaCarriesChangedBuckets() throws Exception {
+        masterStore.storeFlowRule(rule(DID1, 1));
+        masterStore.storeFlowRule(rule(DID1, 2));
+        backupRound();
+        assertThat(sentBackups, hasSize(1));
+        FlowTableBackup snapshot = lastBackup().backups.get(DID1);
+        assertThat(lastBackup().nodeId, is(NID2));
+        assertThat(snapshot.isFullSnapshot(), is(true));
+        assertThat(snapshot.flowBuckets().keySet(),
+                   is(ImmutableSet.of(FlowId.valueOf(1), FlowId.valueOf(2))));
+
+        // nothing changed, nothing sent
+        backupRound();
+        assertThat(sentBackups, hasSize(1));
+
+        masterStore.storeFlowRule(rule(DID1, 3));
+        masterStore.removeFlowRule(masterStore.getFlowEntry(rule(DID1, 1)));
+        backupRound();
+        assertThat(sentBackups, hasSize(2));
+        FlowTableBackup delta = lastBackup().backups.get(DID1);
+        assertThat(delta.isFullSnapshot(), is(false));
+        assertThat(delta.follows(NID1, snapshot.version()), is(true));
+        assertThat(delta.flowBuckets().keySet(),
+                   is(ImmutableSet.of(FlowId.valueOf(1), FlowId.valueOf(3))));
+        // the bucket of a removed flow id is sent empty
+        assertThat(delta.flowBuckets().get(FlowId.valueOf(1)).isEmpty(), is(true));
+    }
+
+    /**
+     * Tests that the standby applies deltas onto the full snapshot it
+     * applied before.
+     */
+    @Test
+    public void testStandbyAppliesDeltas() throws Exception {
+        masterStore.storeFlowRule(rule(DID1, 1));
+        masterStore.storeFlowRule(rule(DID1, 2));
+        backupRound();
+        masterStore.storeFlowRule(rule(DID1, 3));
+        backupRound();
+        masterStore.removeFlowRule(masterStore.getFlowEntry(rule(DID1, 1)));
+        backupRound();
+        assertThat(sentBackups, hasSize(3));
+        assertThat(sentBackups.get(2).backups.get(DID1).isFullSnapshot(), is(false));
+
+        assertThat(flowIds(entriesAfterFailover(standbyStore, NID2, DID1)),
+                   is(ImmutableSet.of(FlowId.valueOf(2), FlowId.valueOf(3))));
+    }
+
+    /**
+     * Tests that a delta the standby cannot apply is not acknowledged and
+     * that the master then falls back to a full snapshot.
+     */
+    @Test
+    public void testFullSnapshotAfterVersionGap() throws Exception {
+        masterStore.storeFlowRule(rule(DID1, 1));
+        backupRound();
+
+        // the standby loses the backup it applied
+        standbyStore.purgeFlowRule(DID1);
+        masterStore.storeFlowRule(rule(DID1, 2));
+        backupRound();
+        assertThat(lastBackup().backups.get(DID1).isFullSnapshot(), is(false));
+        assertThat(lastBackup().acknowledged.isEmpty(), is(true));
+
+        backupRound();
+        assertThat(sentBackups, hasSize(3));
+        FlowTableBackup snapshot = lastBackup().backups.get(DID1);
+        assertThat(snapshot.isFullSnapshot(), is(true));
+        assertThat(lastBackup().acknowledged, is(ImmutableSet.of(DID1)));
+
+        assertThat(flowIds(entriesAfterFailover(standbyStore, NID2, DID1)),
+                   is(ImmutableSet.of(FlowId.valueOf(1), FlowId.valueOf(2))));
+    }
+
+    /**
+     * Tests that a full snapshot is sent to a new backup node.
+     */
+    @Test
+    public void testFullSnapshotOnBackupNodeChange() throws Exception {
+        masterStore.storeFlowRule(rule(DID1, 1));
+        backupRound();
+
+        standbys = ImmutableList.of(NID3, NID2);
+        masterStore.storeFlowRule(rule(DID1, 2));
+        backupRound();
+        assertThat(sentBackups, hasSize(2));
+        assertThat(lastBackup().nodeId, is(NID3));
+        assertThat(lastBackup().backups.get(DID1).isFullSnapshot(), is(true));
+        assertThat(lastBackup().acknowledged, is(ImmutableSet.of(DID1)));
+
+        assertThat(flowIds(entriesAfterFailover(otherStandbyStore, NID3, DID1)),
+                   is(ImmutableSet.of(FlowId.valueOf(1), FlowId.valueOf(2))));
+    }
+
+    /**
+     * Tests that a full snapshot is sent after a backup could not be
+     * delivered.
+     */
+    @Test
+    public void testFullSnapshotAfterSendFailure() throws Exception {
+        masterStore.storeFlowRule(rule(DID1, 1));
+        backupRound();
+
+        failSends = true;
+        masterStore.storeFlowRule(rule(DID1, 2));
+        backupRound();
+        assertThat(sentBackups, hasSize(2));
+        assertThat(lastBackup().backups.get(DID1).isFullSnapshot(), is(false));
+
+        failSends = false;
+        backupRound();
+        assertThat(sentBackups, hasSize(3));
+        assertThat(lastBackup().backups.get(DID1).isFullSnapshot(), is(true));
+
+        assertThat(flowIds(entriesAfterFailover(standbyStore, NID2, DID1)),
+                   is(ImmutableSet.of(FlowId.valueOf(1), FlowId.valueOf(2))));
+    }
+
+    /**
+     * Tests the backup metrics: the bytes of each round are recorded once,
+     * summed over all devices backed up in the round.
+     */
+    @Test
+    public void testBytesPerRoundMetric() throws Exception {
+        Histogram bytesPerRound = masterMetrics.getHistograms(
+                (name, metric) -> name.equals("FlowRuleStore.backup.bytesPerRound")).values().iterator().next();
+        Counter bytesSent = masterMetrics.getCounters(
+                (name, metric) -> name.equals("FlowRuleStore.backup.bytesSent")).values().iterator().next();
+
+        masterStore.storeFlowRule(rule(DID1, 1));
+        masterStore.storeFlowRule(rule(DID2, 1));
+        backupRound();
+        // the devices are sent in separate batches
+        assertThat(sentBackups, hasSize(2));
+        long roundBytes = sentBackups.get(0).bytes + sentBackups.get(1).bytes;
+        assertThat(bytesPerRound.getCount(), is(1L));
+        assertThat(bytesPerRound.getSnapshot().getMax(), is(roundBytes));
+        assertThat(bytesSent.getCount(), is(roundBytes));
+
+        // rounds without anything to send are not recorded
+        backupRound();
+        assertThat(bytesPerRound.getCount(), is(1L));
+
+        masterStore.storeFlowRule(rule(DID1, 2));
+        backupRound();
+        assertThat(sentBackups, hasSize(3));
+        assertThat(bytesPerRound.getCount(), is(2L));
+        assertThat(bytesPerRound.getSnapshot().getMin(), is((long) lastBackup().bytes));
+        assertThat(bytesSent.getCount(), is(roundBytes + lastBackup().bytes));
+    }
+
+    /**
+     * Backup sent by the master.
+     */
+    private static final class SentBackup {
+        private final NodeId nodeId;
+        private final Map<DeviceId, FlowTableBackup> backups;
+        private final int bytes;
+        private Set<DeviceId> acknowledged = ImmutableSet.of();
+
+        private SentBackup(NodeId nodeId, Map<DeviceId, FlowTableBackup> backups, int bytes) {
+            this.nodeId = nodeId;
+            this.backups = backups;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Cluster communicator delivering backups synchronously to the backup
+     * request handler of the target node.
+     */
+    private class TestClusterCommunicator extends ClusterCommunicationServiceAdapter {
+        private final NodeId localNodeId;
+
+        TestClusterCommunicator(NodeId localNodeId) {
+            this.localNodeId = localNodeId;
+        }
+
+        @Override
+        public <M, R> void addSubscriber(MessageSubject subject,
+                                         Function<byte[], M> decoder, Function<M, R> handler,
+                                         Function<R, byte[]> encoder, Executor executor) {
+            if (FLOW_TABLE_BACKUP.equals(subject)) {
+                backupHandlers.put(localNodeId, payload -> encoder.apply(handler.apply(decoder.apply(payload))));
+            }
+        }
+
+        @Override
+        public <M, R> CompletableFuture<R> sendAndReceive(M message,
+                                                          MessageSubject subject, Function<M, byte[]> encoder,
+                                                          Function<byte[], R> decoder, NodeId toNodeId) {
+            CompletableFuture<R> reply = new CompletableFuture<>();
+            if (!FLOW_TABLE_BACKUP.equals(subject)) {
+                reply.completeExceptionally(new UnsupportedOperationException(subject.toString()));
+                return reply;
+            }
+            byte[] payload = encoder.apply(message);
+            SentBackup sent = new SentBackup(toNodeId, DistributedFlowRuleStore.SERIALIZER.decode(payload),
+                                             payload.length);
+            sentBackups.add(sent);
+            if (failSends) {
+                reply.completeExceptionally(new IOException("unreachable"));
+                return reply;
+            }
+            byte[] response = backupHandlers.get(toNodeId).apply(payload);
+            sent.acknowledged = DistributedFlowRuleStore.SERIALIZER.decode(response);
+            reply.complete(decoder.apply(response));
+            return reply;
+        }
+    }
+
+    private static class TestClusterService extends ClusterServiceAdapter {
+        private final ControllerNode localNode;
+
+        TestClusterService(NodeId nodeId) {
+            localNode = new DefaultControllerNode(nodeId, IpAddress.valueOf("127.0.0.1"));
+        }
+
+        @Override
+        public ControllerNode getLocalNode() {
+            return localNode;
+        }
+    }
+
+    private class TestMastershipService extends MastershipServiceAdapter {
+        private final NodeId localNodeId;
+
+        TestMastershipService(NodeId localNodeId) {
+            this.localNodeId = localNodeId;
+        }
+
+        @Override
+        public NodeId getMasterFor(DeviceId deviceId) {
+            return master;
+        }
+
+        @Override
+        public MastershipRole getLocalRole(DeviceId deviceId) {
+            return localNodeId.equals(master) ? MastershipRole.MASTER : MastershipRole.STANDBY;
+        }
+    }
+
+    private class TestReplicaInfoService implements ReplicaInfoService {
+        @Override
+        public ReplicaInfo getReplicaInfoFor(DeviceId deviceId) {
+            return new ReplicaInfo(master, standbys);
+        }
+
+        @Override
+        public void addListener(ReplicaInfoEventListener listener) {
+        }
+
+        @Override
+        public void removeListener(ReplicaInfoEventListener listener) {
+        }
+    }
+
+    private static class TestCoreService extends CoreServiceAdapter {
+        private final AtomicLong ids = new AtomicLong();
+
+        @Override
+        public IdGenerator getIdGenerator(String topic) {
+            return ids::incrementAndGet;
+        }
+    }
+}
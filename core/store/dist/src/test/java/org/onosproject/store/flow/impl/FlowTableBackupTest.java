@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.onosproject.cluster.NodeId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link FlowTableBackup}.
+ */
+public class FlowTableBackupTest {
+
+    private static final NodeId NID1 = new NodeId("foo");
+    private static final NodeId NID2 = new NodeId("bar");
+
+    @Test
+    public void testFullSnapshot() {
+        FlowTableBackup backup = FlowTableBackup.fullSnapshot(NID1, 5, ImmutableMap.of());
+        assertTrue(backup.isFullSnapshot());
+        assertEquals(5, backup.version());
+        assertEquals(NID1, backup.origin());
+        // a full snapshot can always be applied
+        assertTrue(backup.follows(null, null));
+        assertTrue(backup.follows(NID2, 3L));
+    }
+
+    @Test
+    public void testDelta() {
+        FlowTableBackup backup = FlowTableBackup.delta(NID1, 4, 5, ImmutableMap.of());
+        assertFalse(backup.isFullSnapshot());
+        assertEquals(5, backup.version());
+        assertTrue(backup.follows(NID1, 4L));
+        // version gap
+        assertFalse(backup.follows(NID1, 3L));
+        assertFalse(backup.follows(null, null));
+        // same version from a different master
+        assertFalse(backup.follows(NID2, 4L));
+    }
+}
@@ -16,7 +16,6 @@
 
 package org.onosproject.persistence.impl;
 
-import org.mapdb.DB;
 import org.onosproject.persistence.PersistentMapBuilder;
 import org.onosproject.store.service.Serializer;
 
@@ -26,20 +25,19 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Default builder for persistent maps stored in the mapDB local database via the persistence service.
+ * Default builder for persistent maps stored in the local log store via the persistence service.
  */
 public class DefaultPersistentMapBuilder<K, V> implements PersistentMapBuilder<K, V> {
 
-    private final DB localDB;
+    private final LogStore localStore;
 
     private String name = null;
 
     private Serializer serializer = null;
 
 
-    public DefaultPersistentMapBuilder(DB localDB) {
-        checkNotNull(localDB, "The local database cannot be null.");
-        this.localDB = localDB;
+    public DefaultPersistentMapBuilder(LogStore localStore) {
+        this.localStore = checkNotNull(localStore, "The local store cannot be null.");
     }
 
     public PersistentMapBuilder<K, V> withName(String name) {
@@ -58,6 +56,6 @@ public class DefaultPersistentMapBuilder<K, V> implements PersistentMapBuilder<K
         checkNotNull(name, "The name must be assigned.");
         checkNotNull(serializer, "The key serializer must be assigned.");
 
-        return new PersistentMap<K, V>(serializer, localDB, name);
+        return new PersistentMap<K, V>(serializer, localStore, name);
     }
 }
\ No newline at end of file
@@ -16,7 +16,6 @@
 
 package org.onosproject.persistence.impl;
 
-import org.mapdb.DB;
 import org.onosproject.persistence.PersistentSetBuilder;
 import org.onosproject.store.service.Serializer;
 
@@ -24,18 +23,18 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Default builder for persistent sets stored in the mapDB local database via the persistence service..
+ * Default builder for persistent sets stored in the local log store via the persistence service..
  */
 public class DefaultPersistentSetBuilder<E> implements PersistentSetBuilder<E> {
 
-    private final DB localDB;
+    private final LogStore localStore;
 
     private String name = null;
 
     private Serializer serializer = null;
 
-    public DefaultPersistentSetBuilder(DB localDB) {
-        this.localDB = checkNotNull(localDB, "The local database cannot be null.");
+    public DefaultPersistentSetBuilder(LogStore localStore) {
+        this.localStore = checkNotNull(localStore, "The local store cannot be null.");
     }
 
     public PersistentSetBuilder<E> withName(String name) {
@@ -54,6 +53,6 @@ public class DefaultPersistentSetBuilder<E> implements PersistentSetBuilder<E> {
         checkNotNull(name, "The name must be assigned.");
         checkNotNull(serializer, "The serializer must be assigned.");
 
-        return new PersistentSet<E>(serializer, localDB, name);
+        return new PersistentSet<E>(serializer, localStore, name);
     }
 }
\ No newline at end of file
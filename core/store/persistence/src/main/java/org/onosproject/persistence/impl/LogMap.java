@@ -0,0 +1,447 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.persistence.impl;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Map of byte arrays, compared by content, that is persisted as an append-only
+ * log file.
+ * <p>
+ * All entries are held in memory. Every update is appended to an in-memory
+ * buffer and becomes durable with the next {@link #commit() commit}, which
+ * writes all updates since the previous one at once. On opening, the log is
+ * read through a memory mapping and replayed; a torn record at the end of the
+ * log, left by a crash in the middle of a write, is cut off. Superseded
+ * records accumulate in the log until it is {@link #compact() compacted}.
+ * <p>
+ * A record consists of the key length, the value length, the key, the value
+ * and a CRC32 checksum of the key and value. A value length of -1 marks the
+ * removal of the key and a key length of -1 marks the removal of all keys.
+ */
+final class LogMap extends AbstractMap<byte[], byte[]> {
+
+    private static final int HEADER_LENGTH = 8;
+    private static final int CHECKSUM_LENGTH = 4;
+    private static final int ABSENT = -1;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * Log length below which a log is never compacted.
+     */
+    static final long MIN_COMPACTION_LENGTH = 1024 * 1024;
+
+    /**
+     * Ratio of log length to live record length above which a log is compacted.
+     */
+    static final int COMPACTION_RATIO = 2;
+
+    private final Logger log = getLogger(getClass());
+
+    private final Path file;
+    private final Map<ByteBuffer, byte[]> entries = new ConcurrentHashMap<>();
+
+    // guards updates of the entries and the pending buffer
+    private final Object updateLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long liveLength;
+
+    // the log file is only accessed while holding the monitor of the map
+    private FileChannel channel;
+    private volatile long logLength;
+
+    /**
+     * Opens the log map stored in the specified file, creating it if needed.
+     *
+     * @param file log file
+     * @throws IOException if the log can not be read
+     */
+    LogMap(Path file) throws IOException {
+        this.file = checkNotNull(file);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new PersistenceException("Log " + file + " is too large to be loaded");
+        }
+        long validLength = 0;
+        if (size > 0) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            while (replay(buffer)) {
+                validLength = buffer.position();
+            }
+        }
+        if (validLength < size) {
+            log.warn("Discarding {} bytes of incomplete records at the end of {}", size - validLength, file);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        logLength = validLength;
+        entries.forEach((key, value) -> liveLength += recordLength(key.remaining(), value.length));
+    }
+
+    /**
+     * Applies the record at the position of the buffer and advances past it.
+     *
+     * @return true if a complete record was applied
+     */
+    private boolean replay(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_LENGTH + CHECKSUM_LENGTH) {
+            return false;
+        }
+        int keyLength = buffer.getInt();
+        int valueLength = buffer.getInt();
+        if (keyLength < ABSENT || valueLength < ABSENT
+                || (keyLength == ABSENT && valueLength != 0)
+                || buffer.remaining() < (long) Math.max(keyLength, 0) + Math.max(valueLength, 0) + CHECKSUM_LENGTH) {
+            return false;
+        }
+        byte[] key = keyLength == ABSENT ? null : new byte[keyLength];
+        byte[] value = valueLength == ABSENT ? null : new byte[valueLength];
+        if (key != null) {
+            buffer.get(key);
+        }
+        if (value != null) {
+            buffer.get(value);
+        }
+        if (buffer.getInt() != checksum(key, value)) {
+            return false;
+        }
+        if (key == null) {
+            entries.clear();
+        } else if (value == null) {
+            entries.remove(ByteBuffer.wrap(key));
+        } else {
+            entries.put(ByteBuffer.wrap(key), value);
+        }
+        return true;
+    }
+
+    private static int checksum(byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        if (key != null) {
+            crc.update(key);
+        }
+        if (value != null) {
+            crc.update(value);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static int recordLength(int keyLength, int valueLength) {
+        return HEADER_LENGTH + keyLength + valueLength + CHECKSUM_LENGTH;
+    }
+
+    /**
+     * Writes a record to the buffer, replacing the buffer by a larger one if
+     * the record does not fit.
+     *
+     * @return buffer holding the record
+     */
+    private static ByteBuffer writeRecord(ByteBuffer buffer, byte[] key, byte[] value) {
+        int length = recordLength(key == null ? 0 : key.length, value == null ? 0 : value.length);
+        if (buffer.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            buffer = larger.put(buffer);
+        }
+        buffer.putInt(key == null ? ABSENT : key.length);
+        buffer.putInt(value == null ? (key == null ? 0 : ABSENT) : value.length);
+        if (key != null) {
+            buffer.put(key);
+        }
+        if (value != null) {
+            buffer.put(value);
+        }
+        buffer.putInt(checksum(key, value));
+        return buffer;
+    }
+
+    private static ByteBuffer wrap(Object key) {
+        return ByteBuffer.wrap((byte[]) checkNotNull(key));
+    }
+
+    @Override
+    public byte[] get(Object key) {
+        return entries.get(wrap(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entries.containsKey(wrap(key));
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public byte[] put(byte[] key, byte[] value) {
+        checkNotNull(value);
+        synchronized (updateLock) {
+            byte[] previous = entries.put(wrap(key), value);
+            pending = writeRecord(pending, key, value);
+            liveLength += recordLength(key.length, value.length);
+            if (previous != null) {
+                liveLength -= recordLength(key.length, previous.length);
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public byte[] remove(Object key) {
+        synchronized (updateLock) {
+            byte[] previous = entries.remove(wrap(key));
+            if (previous != null) {
+                byte[] bytes = (byte[]) key;
+                pending = writeRecord(pending, bytes, null);
+                liveLength -= recordLength(bytes.length, previous.length);
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (updateLock) {
+            entries.clear();
+            pending = writeRecord(pending, null, null);
+            liveLength = 0;
+        }
+    }
+
+    @Override
+    public Set<Entry<byte[], byte[]>> entrySet() {
+        return new AbstractSet<Entry<byte[], byte[]>>() {
+            @Override
+            public Iterator<Entry<byte[], byte[]>> iterator() {
+                Iterator<Entry<ByteBuffer, byte[]>> iterator = entries.entrySet().iterator();
+                return new Iterator<Entry<byte[], byte[]>>() {
+                    private byte[] lastKey;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<byte[], byte[]> next() {
+                        Entry<ByteBuffer, byte[]> entry = iterator.next();
+                        lastKey = entry.getKey().array();
+                        return Maps.immutableEntry(lastKey, entry.getValue());
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (lastKey == null) {
+                            throw new IllegalStateException();
+                        }
+                        LogMap.this.remove(lastKey);
+                        lastKey = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+
+            @Override
+            public void clear() {
+                LogMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns a set view of the keys of this map to which keys can be added.
+     * Added keys are mapped to an empty value.
+     *
+     * @return set of keys
+     */
+    Set<byte[]> asSet() {
+        return new AbstractSet<byte[]>() {
+            @Override
+            public Iterator<byte[]> iterator() {
+                return Iterators.transform(entrySet().iterator(), Entry::getKey);
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public boolean add(byte[] item) {
+                return put(item, EMPTY) == null;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return LogMap.this.remove(o) != null;
+            }
+
+            @Override
+            public void clear() {
+                LogMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Makes all updates so far durable.
+     *
+     * @throws IOException if the log can not be written
+     */
+    synchronized void commit() throws IOException {
+        ByteBuffer updates;
+        synchronized (updateLock) {
+            if (pending.position() == 0) {
+                return;
+            }
+            updates = pending;
+            pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+        updates.flip();
+        int length = updates.remaining();
+        while (updates.hasRemaining()) {
+            channel.write(updates);
+        }
+        channel.force(false);
+        logLength += length;
+    }
+
+    /**
+     * Returns if superseded records take up enough of the log to make
+     * compacting it worthwhile.
+     *
+     * @return true if the log should be compacted
+     */
+    boolean needsCompaction() {
+        synchronized (updateLock) {
+            long length = logLength + pending.position();
+            return length > MIN_COMPACTION_LENGTH && length > COMPACTION_RATIO * liveLength;
+        }
+    }
+
+    /**
+     * Rewrites the log so that it only holds the current entries.
+     * <p>
+     * Updates made while the log is rewritten are appended to the new log by
+     * the next commit.
+     *
+     * @throws IOException if the log can not be rewritten
+     */
+    synchronized void compact() throws IOException {
+        commit();
+        Map<ByteBuffer, byte[]> snapshot;
+        synchronized (updateLock) {
+            snapshot = Maps.newHashMap(entries);
+        }
+        Path compacted = file.resolveSibling(file.getFileName() + ".compacted");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE * 16);
+            for (Entry<ByteBuffer, byte[]> entry : snapshot.entrySet()) {
+                buffer = writeRecord(buffer, entry.getKey().array(), entry.getValue());
+                if (buffer.position() >= INITIAL_BUFFER_SIZE * 16) {
+                    write(out, buffer);
+                }
+            }
+            write(out, buffer);
+            out.force(true);
+        }
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logLength = channel.size();
+        channel.position(logLength);
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the length of the log file.
+     *
+     * @return log length in bytes
+     */
+    long logLength() {
+        return logLength;
+    }
+
+    /**
+     * Commits all updates and closes the log file.
+     *
+     * @throws IOException if the log can not be written
+     */
+    synchronized void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes and deletes the log file.
+     *
+     * @throws IOException if the log can not be deleted
+     */
+    synchronized void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
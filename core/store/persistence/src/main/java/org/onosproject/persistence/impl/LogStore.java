@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.persistence.impl;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Directory of log maps, one log file per persistent map or set.
+ * <p>
+ * Keeping a log per structure lets every structure be written, committed
+ * and compacted without contending with the others.
+ */
+public class LogStore {
+
+    private static final String LOG_SUFFIX = ".log";
+
+    private final Logger log = getLogger(getClass());
+
+    private final Path directory;
+    private final Map<String, LogMap> maps = Maps.newConcurrentMap();
+
+    /**
+     * Creates a store keeping its logs in the specified directory.
+     *
+     * @param directory log directory; created if it does not exist
+     */
+    public LogStore(Path directory) {
+        this.directory = checkNotNull(directory);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.error("Could not create the store directory {}", directory, e);
+            throw new PersistenceException("Store directory could not be created.");
+        }
+    }
+
+    /**
+     * Returns the map of the specified name, loading it from its log if it
+     * is not open yet.
+     *
+     * @param name map name
+     * @return map of byte arrays
+     */
+    public Map<byte[], byte[]> map(String name) {
+        return open(name);
+    }
+
+    /**
+     * Returns the set of the specified name, loading it from its log if it
+     * is not open yet.
+     *
+     * @param name set name
+     * @return set of byte arrays
+     */
+    public Set<byte[]> set(String name) {
+        return open(name).asSet();
+    }
+
+    private LogMap open(String name) {
+        return maps.computeIfAbsent(checkNotNull(name), n -> {
+            Path file = directory.resolve(fileName(n));
+            try {
+                long start = System.currentTimeMillis();
+                LogMap map = new LogMap(file);
+                log.debug("Loaded {} entries of {} in {} ms", map.size(), n, System.currentTimeMillis() - start);
+                return map;
+            } catch (IOException e) {
+                log.error("Could not load {} from {}", n, file, e);
+                throw new PersistenceException("Could not load " + n + ".");
+            }
+        });
+    }
+
+    private static String fileName(String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8") + LOG_SUFFIX;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Makes the updates of all structures durable.
+     */
+    public void commit() {
+        maps.forEach((name, map) -> {
+            try {
+                map.commit();
+            } catch (IOException e) {
+                log.error("Could not commit {}", name, e);
+            }
+        });
+    }
+
+    /**
+     * Compacts the logs that hold mostly superseded records.
+     */
+    public void compact() {
+        maps.forEach((name, map) -> {
+            if (map.needsCompaction()) {
+                try {
+                    long length = map.logLength();
+                    map.compact();
+                    log.debug("Compacted {} from {} to {} bytes", name, length, map.logLength());
+                } catch (IOException e) {
+                    log.error("Could not compact {}", name, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Commits and closes all structures, deleting the empty ones.
+     */
+    public void close() {
+        maps.forEach((name, map) -> {
+            try {
+                if (map.isEmpty()) {
+                    map.delete();
+                } else {
+                    map.close();
+                }
+            } catch (IOException e) {
+                log.error("Could not close {}", name, e);
+            }
+        });
+        maps.clear();
+    }
+}
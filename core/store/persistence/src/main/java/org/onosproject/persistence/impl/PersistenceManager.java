@@ -20,8 +20,6 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Service;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
 import org.onosproject.persistence.PersistenceService;
 import org.onosproject.persistence.PersistentMapBuilder;
 import org.onosproject.persistence.PersistentSetBuilder;
@@ -31,8 +29,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Map;
-import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -41,14 +37,15 @@ import static org.onosproject.security.AppPermission.Type.PERSISTENCE_WRITE;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
- * Service that maintains local disk backed maps and sets.  This implementation automatically deletes empty structures
- * on shutdown.
+ * Service that maintains local disk backed maps and sets.  Every structure is kept in a log of its own, which is
+ * committed periodically and compacted once it is mostly made up of superseded records.  This implementation
+ * automatically deletes empty structures on shutdown.
  */
 @Component(immediate = true)
 @Service
 public class PersistenceManager implements PersistenceService {
 
-    private static final String DATABASE_PATH = "../data/localDB";
+    private static final String DATABASE_PATH = "../data/localStore";
     private static final String ENCLOSING_FOLDER = "../data";
 
     static final String MAP_PREFIX = "map:";
@@ -57,14 +54,18 @@ public class PersistenceManager implements PersistenceService {
 
     private final Logger log = getLogger(getClass());
 
-    private DB localDB = null;
+    private LogStore localStore = null;
 
     private static final int FLUSH_FREQUENCY_MILLIS = 3000;
 
+    private static final int COMPACTION_FREQUENCY_MILLIS = 60000;
+
     private Timer timer;
 
     private final CommitTask commitTask = new CommitTask();
 
+    private final CompactionTask compactionTask = new CompactionTask();
+
     @Activate
     public void activate() {
         timer = new Timer();
@@ -80,64 +81,51 @@ public class PersistenceManager implements PersistenceService {
                 throw new PersistenceException("Database folder could not be created.");
             }
         }
-        //Notify if the database file does not exist.
-        boolean dbFound = Files.exists(dbPath);
+        //Notify if the store directory does not exist.
+        boolean dbFound = Files.isDirectory(dbPath);
         if (!dbFound) {
-            log.info("The database file could not be located, a new database will be constructed.");
+            log.info("The local store could not be located, a new store will be constructed.");
 
         } else {
-            log.info("A previous database file has been found.");
+            log.info("A previous local store has been found.");
         }
-        localDB = DBMaker.newFileDB(dbPath.toFile())
-                .asyncWriteEnable()
-                .closeOnJvmShutdown()
-                .make();
+        localStore = new LogStore(dbPath);
         timer.schedule(commitTask, FLUSH_FREQUENCY_MILLIS, FLUSH_FREQUENCY_MILLIS);
+        timer.schedule(compactionTask, COMPACTION_FREQUENCY_MILLIS, COMPACTION_FREQUENCY_MILLIS);
         log.info("Started");
     }
 
     @Deactivate
     public void deactivate() {
         timer.cancel();
-        for (Map.Entry<String, Object> entry : localDB.getAll().entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-                //This is a map implementation to be handled as such
-            if (value instanceof Map) {
-                Map asMap = (Map) value;
-                if (asMap.isEmpty()) {
-                    //the map is empty and may be deleted
-                    localDB.delete(key);
-                }
-                //This is a set implementation and can be handled as such
-            } else if (value instanceof Set) {
-                Set asSet = (Set) value;
-                if (asSet.isEmpty()) {
-                    //the set is empty and may be deleted
-                    localDB.delete(key);
-                }
-            }
-        }
-        localDB.commit();
-        localDB.close();
+        //Empty maps and sets are deleted when the store is closed
+        localStore.close();
         log.info("Stopped");
     }
 
     public <K, V> PersistentMapBuilder<K, V> persistentMapBuilder() {
         checkPermission(PERSISTENCE_WRITE);
-        return new DefaultPersistentMapBuilder<>(localDB);
+        return new DefaultPersistentMapBuilder<>(localStore);
     }
 
     public <E> PersistentSetBuilder<E> persistentSetBuilder() {
         checkPermission(PERSISTENCE_WRITE);
-        return new DefaultPersistentSetBuilder<>(localDB);
+        return new DefaultPersistentSetBuilder<>(localStore);
     }
 
     private class CommitTask extends TimerTask {
 
         @Override
         public void run() {
-            localDB.commit();
+            localStore.commit();
+        }
+    }
+
+    private class CompactionTask extends TimerTask {
+
+        @Override
+        public void run() {
+            localStore.compact();
         }
     }
 }
\ No newline at end of file
@@ -17,9 +17,6 @@
 package org.onosproject.persistence.impl;
 
 import com.google.common.collect.Iterators;
-import org.mapdb.DB;
-import org.mapdb.Hasher;
-import org.mapdb.Serializer;
 
 import java.util.Collection;
 import java.util.Iterator;
@@ -35,22 +32,15 @@ public class PersistentSet<E> implements Set<E> {
 
     private final org.onosproject.store.service.Serializer serializer;
 
-    private final org.mapdb.DB database;
-
     private final Set<byte[]> items;
 
     private final String name;
 
-    public PersistentSet(org.onosproject.store.service.Serializer serializer, DB database, String name) {
+    public PersistentSet(org.onosproject.store.service.Serializer serializer, LogStore store, String name) {
         this.serializer = checkNotNull(serializer);
-        this.database = checkNotNull(database);
         this.name = checkNotNull(name);
 
-        items = database
-                .createHashSet(name)
-                .serializer(Serializer.BYTE_ARRAY)
-                .hasher(Hasher.BYTE_ARRAY)
-                .makeOrGet();
+        items = checkNotNull(store).set(name);
     }
 
     public void readInto(Set<E> items) {
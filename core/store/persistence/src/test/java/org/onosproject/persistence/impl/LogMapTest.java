@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.persistence.impl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the log backed map.
+ */
+public class LogMapTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = tmpFolder.getRoot().toPath().resolve("map.log");
+    }
+
+    private static byte[] bytes(int i) {
+        return new byte[]{(byte) i, (byte) (i >> 8)};
+    }
+
+    /**
+     * Tests that committed updates are recovered when the log is reopened.
+     *
+     * @throws Exception if the log can not be accessed
+     */
+    @Test
+    public void testReopen() throws Exception {
+        LogMap map = new LogMap(file);
+        for (int i = 0; i < 10; i++) {
+            map.put(bytes(i), bytes(i * 2));
+        }
+        map.put(bytes(3), bytes(42));
+        map.remove(bytes(5));
+        assertArrayEquals(bytes(42), map.get(bytes(3)));
+        map.close();
+
+        LogMap reopened = new LogMap(file);
+        assertEquals(9, reopened.size());
+        assertArrayEquals(bytes(42), reopened.get(bytes(3)));
+        assertArrayEquals(bytes(8), reopened.get(bytes(4)));
+        assertNull(reopened.get(bytes(5)));
+        assertEquals(Files.size(file), reopened.logLength());
+        reopened.close();
+    }
+
+    /**
+     * Tests that uncommitted updates are not written and that a torn record
+     * at the end of the log is discarded.
+     *
+     * @throws Exception if the log can not be accessed
+     */
+    @Test
+    public void testTornTail() throws Exception {
+        LogMap map = new LogMap(file);
+        map.put(bytes(1), bytes(1));
+        map.put(bytes(2), bytes(2));
+        map.commit();
+        long committed = Files.size(file);
+        map.put(bytes(3), bytes(3));
+        assertEquals(committed, Files.size(file));
+        map.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+
+        LogMap reopened = new LogMap(file);
+        assertEquals(2, reopened.size());
+        assertNull(reopened.get(bytes(3)));
+        assertEquals(committed, Files.size(file));
+
+        reopened.put(bytes(4), bytes(4));
+        reopened.close();
+        assertEquals(3, new LogMap(file).size());
+    }
+
+    /**
+     * Tests that clearing the map survives reopening.
+     *
+     * @throws Exception if the log can not be accessed
+     */
+    @Test
+    public void testClear() throws Exception {
+        LogMap map = new LogMap(file);
+        map.put(bytes(1), bytes(1));
+        map.clear();
+        map.put(bytes(2), bytes(2));
+        map.close();
+
+        LogMap reopened = new LogMap(file);
+        assertEquals(1, reopened.size());
+        assertTrue(reopened.containsKey(bytes(2)));
+        reopened.close();
+    }
+
+    /**
+     * Tests that compaction drops superseded records and keeps current ones.
+     *
+     * @throws Exception if the log can not be accessed
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        LogMap map = new LogMap(file);
+        byte[] value = new byte[2048];
+        map.put(bytes(1), bytes(1));
+        for (int i = 0; i < 1000; i++) {
+            value[0] = (byte) i;
+            map.put(bytes(2), value);
+        }
+        map.commit();
+        assertTrue(map.needsCompaction());
+
+        map.compact();
+        assertFalse(map.needsCompaction());
+        assertTrue(map.logLength() < LogMap.MIN_COMPACTION_LENGTH);
+        assertEquals(Files.size(file), map.logLength());
+
+        map.put(bytes(3), bytes(3));
+        map.close();
+
+        LogMap reopened = new LogMap(file);
+        assertEquals(3, reopened.size());
+        assertArrayEquals(value, reopened.get(bytes(2)));
+        reopened.close();
+    }
+
+    /**
+     * Tests the set view of the map.
+     *
+     * @throws Exception if the log can not be accessed
+     */
+    @Test
+    public void testSet() throws Exception {
+        LogMap map = new LogMap(file);
+        Set<byte[]> set = map.asSet();
+        assertTrue(set.add(bytes(1)));
+        assertFalse(set.add(bytes(1)));
+        assertTrue(set.add(bytes(2)));
+        assertTrue(set.contains(bytes(2)));
+        assertTrue(set.remove(bytes(1)));
+        assertFalse(set.remove(bytes(1)));
+        map.close();
+
+        Set<byte[]> reopened = new LogMap(file).asSet();
+        assertEquals(1, reopened.size());
+        assertTrue(reopened.contains(bytes(2)));
+    }
+}
@@ -19,44 +19,34 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
 
 /**
- * Utils for Tests using MapDB.
+ * Utils for Tests using a log store.
  */
-public abstract class MapDBTest {
+public abstract class LogStoreTest {
 
     @Rule
     public TemporaryFolder tmpFolder = new TemporaryFolder();
 
-    protected DB fakeDB = null;
+    protected LogStore fakeStore = null;
 
     /**
-     * Set up the database.
+     * Set up the store.
      *
      * @throws Exception if instantiation fails
      */
     @Before
-    public void setUpDB() throws Exception {
-        // Creates a db
-        fakeDB = DBMaker
-                .newFileDB(tmpFolder.newFile())
-                .asyncWriteEnable()
-                .commitFileSyncDisable()
-                .mmapFileEnableIfSupported()
-                .closeOnJvmShutdown()
-                .deleteFilesAfterClose()
-                .make();
+    public void setUpStore() throws Exception {
+        fakeStore = new LogStore(tmpFolder.newFolder().toPath());
     }
 
     /**
-     * Closes the database.
+     * Closes the store.
      *
      * @throws Exception if shutdown fails
      */
     @After
-    public void tearDownDB() throws Exception {
-        fakeDB.close();
+    public void tearDownStore() throws Exception {
+        fakeStore.close();
     }
 }
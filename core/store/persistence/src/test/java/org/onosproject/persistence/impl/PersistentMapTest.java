@@ -32,7 +32,7 @@ import static org.junit.Assert.assertTrue;
 /**
  * Test suite for Persistent Map.
  */
-public class PersistentMapTest extends MapDBTest {
+public class PersistentMapTest extends LogStoreTest {
 
     private PersistentMap<Integer, Integer> map = null;
 
@@ -74,7 +74,7 @@ public class PersistentMapTest extends MapDBTest {
 
                 return (T) Integer.valueOf(num);
             }
-        }, fakeDB, "map");
+        }, fakeStore, "map");
     }
 
     @Test
@@ -116,7 +116,7 @@ public class PersistentMapTest extends MapDBTest {
 
     @Test
     public void testContains() throws Exception {
-        //Checks both containsKey and containsValue be aware the implementations vary widely (value does not use mapDB
+        //Checks both containsKey and containsValue be aware the implementations vary widely (value does not use the log map
         //due to object '=='being an insufficient check)
         for (int i = 0; i < 10; i++) {
             assertFalse("Map should not contain the key", map.containsKey(i));
@@ -35,7 +35,7 @@ import static org.junit.Assert.assertTrue;
 /**
  * Test suite for Persistent Set.
  */
-public class PersistentSetTest extends MapDBTest {
+public class PersistentSetTest extends LogStoreTest {
 
     private PersistentSet<Integer> set = null;
 
@@ -72,7 +72,7 @@ public class PersistentSetTest extends MapDBTest {
 
                 return (T) Integer.valueOf(num);
             }
-        }, fakeDB, "set");
+        }, fakeStore, "set");
 
     }
 
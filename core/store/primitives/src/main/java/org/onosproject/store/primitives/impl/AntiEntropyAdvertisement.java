@@ -17,10 +17,12 @@ package org.onosproject.store.primitives.impl;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import org.onosproject.cluster.NodeId;
 
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -31,6 +33,7 @@ public class AntiEntropyAdvertisement<K> {
 
     private final NodeId sender;
     private final Map<K, MapValue.Digest> digest;
+    private final Set<Integer> buckets;
 
     /**
      * Creates a new anti entropy advertisement message.
@@ -40,8 +43,23 @@ public class AntiEntropyAdvertisement<K> {
      */
     public AntiEntropyAdvertisement(NodeId sender,
                                     Map<K, MapValue.Digest> digest) {
+        this(sender, digest, ImmutableSet.of());
+    }
+
+    /**
+     * Creates a new anti entropy advertisement message covering only the
+     * entries in the specified buckets.
+     *
+     * @param sender the sender's node ID
+     * @param digest for map entries in the advertised buckets
+     * @param buckets advertised buckets; empty for the whole map
+     */
+    public AntiEntropyAdvertisement(NodeId sender,
+                                    Map<K, MapValue.Digest> digest,
+                                    Set<Integer> buckets) {
         this.sender = checkNotNull(sender);
         this.digest = ImmutableMap.copyOf(checkNotNull(digest));
+        this.buckets = ImmutableSet.copyOf(checkNotNull(buckets));
     }
 
     /**
@@ -62,11 +80,21 @@ public class AntiEntropyAdvertisement<K> {
         return digest;
     }
 
+    /**
+     * Returns the buckets covered by this advertisement.
+     *
+     * @return advertised bucket indices; empty if the whole map is advertised
+     */
+    public Set<Integer> buckets() {
+        return buckets;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(getClass())
                 .add("sender", sender)
                 .add("totalEntries", digest.size())
+                .add("buckets", buckets.size())
                 .toString();
     }
 }
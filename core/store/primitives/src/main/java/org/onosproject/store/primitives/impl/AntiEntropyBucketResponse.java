@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reply to a bucket hash advertisement, returned by the receiver.
+ */
+public class AntiEntropyBucketResponse {
+
+    private final AntiEntropyResponse status;
+    private final Set<Integer> differingBuckets;
+
+    /**
+     * Creates a new bucket hash advertisement reply.
+     *
+     * @param status status of the exchange
+     * @param differingBuckets buckets whose hashes differ on the receiver
+     */
+    public AntiEntropyBucketResponse(AntiEntropyResponse status, Set<Integer> differingBuckets) {
+        this.status = checkNotNull(status);
+        this.differingBuckets = ImmutableSet.copyOf(checkNotNull(differingBuckets));
+    }
+
+    /**
+     * Returns the status of the exchange.
+     *
+     * @return anti-entropy status
+     */
+    public AntiEntropyResponse status() {
+        return status;
+    }
+
+    /**
+     * Returns the buckets whose hashes differ on the receiver. Empty if the
+     * replicas are in sync or the advertisement was not processed.
+     *
+     * @return indices of differing buckets
+     */
+    public Set<Integer> differingBuckets() {
+        return differingBuckets;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("status", status)
+                .add("differingBuckets", differingBuckets.size())
+                .toString();
+    }
+}
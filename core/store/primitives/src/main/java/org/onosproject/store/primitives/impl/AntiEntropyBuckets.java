@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Incrementally maintained bucket hashes of the entries of an eventually
+ * consistent map.
+ * <p>
+ * Keys are spread over a fixed number of buckets. The hash of a bucket is the
+ * XOR of the hashes of its entries, where the hash of an entry covers the key
+ * and the digest of its value. Because XOR is its own inverse the bucket
+ * hashes can be updated in constant time on every change to the map, and two
+ * replicas holding the same entries in a bucket arrive at the same hash
+ * regardless of the order in which the updates were applied.
+ * <p>
+ * Bucket assignment relies on {@code hashCode} of keys and timestamps being
+ * the same on all instances. Types that do not satisfy this still converge
+ * correctly; their buckets simply never match and anti-entropy degrades to
+ * exchanging digests for the whole map.
+ */
+final class AntiEntropyBuckets {
+
+    /**
+     * Number of buckets; must be a power of two.
+     */
+    static final int NUM_BUCKETS = 1024;
+
+    private final AtomicLongArray hashes = new AtomicLongArray(NUM_BUCKETS);
+
+    /**
+     * Returns the bucket the specified key belongs to.
+     *
+     * @param key map key
+     * @return bucket index
+     */
+    static int bucket(Object key) {
+        return (int) mix(key.hashCode()) & (NUM_BUCKETS - 1);
+    }
+
+    /**
+     * Accounts for a change of the value stored for a key.
+     *
+     * @param key map key
+     * @param oldValue value replaced by the change; null if none
+     * @param newValue value stored by the change; null if the entry was removed
+     */
+    void update(Object key, MapValue<?> oldValue, MapValue<?> newValue) {
+        long delta = entryHash(key, oldValue) ^ entryHash(key, newValue);
+        if (delta != 0) {
+            hashes.getAndAccumulate(bucket(key), delta, (a, b) -> a ^ b);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the bucket hashes.
+     *
+     * @return bucket hashes indexed by bucket
+     */
+    long[] hashes() {
+        long[] snapshot = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            snapshot[i] = hashes.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the buckets whose hashes differ from the specified ones.
+     *
+     * @param remoteHashes bucket hashes of a peer
+     * @return indices of differing buckets
+     */
+    Set<Integer> diff(long[] remoteHashes) {
+        ImmutableSet.Builder<Integer> differing = ImmutableSet.builder();
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            if (i >= remoteHashes.length || hashes.get(i) != remoteHashes[i]) {
+                differing.add(i);
+            }
+        }
+        return differing.build();
+    }
+
+    private static long entryHash(Object key, MapValue<?> value) {
+        if (value == null) {
+            return 0;
+        }
+        return mix(((long) key.hashCode() << 32) ^ (value.digest().hashCode() & 0xFFFFFFFFL));
+    }
+
+    // Finalizer of the SplitMix64 generator; spreads the input bits evenly.
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
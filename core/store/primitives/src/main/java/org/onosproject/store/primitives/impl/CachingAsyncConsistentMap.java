@@ -17,19 +17,32 @@ package org.onosproject.store.primitives.impl;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
 
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onlab.osgi.DefaultServiceDirectory;
 import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.MapEvent;
 import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.Versioned;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import static org.onosproject.store.service.DistributedPrimitive.Status.INACTIVE;
 import static org.onosproject.store.service.DistributedPrimitive.Status.SUSPENDED;
@@ -37,22 +50,37 @@ import static org.onosproject.store.service.DistributedPrimitive.Status.SUSPENDE
 /**
  * {@code AsyncConsistentMap} that caches entries on read.
  * <p>
- * The cache entries are automatically invalidated when updates are detected either locally or
- * remotely.
+ * The cache entries are automatically updated or invalidated when updates are detected either locally or
+ * remotely. Every cached entry carries the version it was read at, so that a response or event that arrives
+ * late never replaces a newer entry. Removals leave a versioned absent entry behind for the same reason.
+ * Updates made through this map are visible to subsequent reads through it.
  * <p> This implementation only attempts to serve cached entries for {@link AsyncConsistentMap#get get}
- * calls. All other calls skip the cache and directly go the backing map.
+ * and {@link AsyncConsistentMap#getAll getAll} calls. All other calls skip the cache and directly
+ * go the backing map.
  *
  * @param <K> key type
  * @param <V> value type
  */
 public class CachingAsyncConsistentMap<K, V> extends DelegatingAsyncConsistentMap<K, V> {
-    private static final int DEFAULT_CACHE_SIZE = 10000;
+    static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final String METRICS_COMPONENT = "consistentMapCache";
+    private static final String HIT_RATIO = "hitRatio";
+    private static final String EVICTIONS = "evictions";
+    private static final String SIZE = "size";
+    private static final String STALENESS = "stalenessMillis";
     private final Logger log = getLogger(getClass());
 
-    private final LoadingCache<K, CompletableFuture<Versioned<V>>> cache;
+    private final Cache<K, CachedValue<V>> cache;
+    // reads of keys not in the cache, shared by concurrent readers of a key
+    private final Map<K, CompletableFuture<Versioned<V>>> pendingLoads = Maps.newConcurrentMap();
 
     private final MapEventListener<K, V> cacheUpdater;
     private final Consumer<Status> statusListener;
+    private MetricsService metricsService;
+    private MetricsComponent metricsComponent;
+    private MetricsFeature metricsFeature;
+    private List<Gauge<?>> gauges;
+    private Histogram staleness;
 
     /**
      * Default constructor.
@@ -70,18 +98,45 @@ public class CachingAsyncConsistentMap<K, V> extends DelegatingAsyncConsistentMa
      * @param cacheSize the maximum size of the cache
      */
     public CachingAsyncConsistentMap(AsyncConsistentMap<K, V> backingMap, int cacheSize) {
+        this(backingMap, CacheBuilder.newBuilder().maximumSize(cacheSize), false);
+    }
+
+    /**
+     * Constructor to configure a weight bound cache.
+     *
+     * @param backingMap a distributed, strongly consistent map for backing
+     * @param maximumWeight the maximum total weight of the cached entries
+     * @param weigher weight of an entry; absent entries weigh {@code 1}
+     * @param meteringEnabled whether cache statistics are published as metrics
+     */
+    public CachingAsyncConsistentMap(AsyncConsistentMap<K, V> backingMap,
+                                     long maximumWeight,
+                                     ToIntBiFunction<? super K, ? super V> weigher,
+                                     boolean meteringEnabled) {
+        this(backingMap, CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((K key, CachedValue<V> cached) ->
+                        cached.value == null ? 1 : weigher.applyAsInt(key, cached.value.value())),
+             meteringEnabled);
+    }
+
+    /**
+     * Constructor to configure a size bound cache.
+     *
+     * @param backingMap a distributed, strongly consistent map for backing
+     * @param cacheSize the maximum size of the cache
+     * @param meteringEnabled whether cache statistics are published as metrics
+     */
+    public CachingAsyncConsistentMap(AsyncConsistentMap<K, V> backingMap, long cacheSize, boolean meteringEnabled) {
+        this(backingMap, CacheBuilder.newBuilder().maximumSize(cacheSize), meteringEnabled);
+    }
+
+    private CachingAsyncConsistentMap(AsyncConsistentMap<K, V> backingMap,
+                                      CacheBuilder<? super K, ? super CachedValue<V>> cacheBuilder,
+                                      boolean meteringEnabled) {
         super(backingMap);
-        cache = CacheBuilder.newBuilder()
-                            .maximumSize(cacheSize)
-                            .build(CacheLoader.from(CachingAsyncConsistentMap.super::get));
-        cacheUpdater = event -> {
-            Versioned<V> newValue = event.newValue();
-            if (newValue == null) {
-                cache.invalidate(event.key());
-            } else {
-                cache.put(event.key(), CompletableFuture.completedFuture(newValue));
-            }
-        };
+        cache = cacheBuilder.recordStats().build();
+        cacheUpdater = this::updateCache;
         statusListener = status -> {
             log.debug("{} status changed to {}", this.name(), status);
             // If the status of the underlying map is SUSPENDED or INACTIVE
@@ -92,22 +147,125 @@ public class CachingAsyncConsistentMap<K, V> extends DelegatingAsyncConsistentMa
         };
         super.addListener(cacheUpdater);
         super.addStatusChangeListener(statusListener);
+        if (meteringEnabled) {
+            registerMetrics();
+        }
+    }
+
+    private void registerMetrics() {
+        metricsService = DefaultServiceDirectory.getService(MetricsService.class);
+        metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+        metricsFeature = metricsComponent.registerFeature(name());
+        // a map instance built later under the same name takes over the gauges
+        metricsService.removeMetric(metricsComponent, metricsFeature, HIT_RATIO);
+        metricsService.removeMetric(metricsComponent, metricsFeature, EVICTIONS);
+        metricsService.removeMetric(metricsComponent, metricsFeature, SIZE);
+        gauges = ImmutableList.<Gauge<?>>of(
+                metricsService.registerMetric(metricsComponent, metricsFeature, HIT_RATIO,
+                                              (Gauge<Double>) () -> cache.stats().hitRate()),
+                metricsService.registerMetric(metricsComponent, metricsFeature, EVICTIONS,
+                                              (Gauge<Long>) () -> cache.stats().evictionCount()),
+                metricsService.registerMetric(metricsComponent, metricsFeature, SIZE, (Gauge<Long>) cache::size));
+        // milliseconds between an update being applied and the cache learning about it;
+        // only as accurate as the clock synchronization between the nodes
+        staleness = metricsService.createHistogram(metricsComponent, metricsFeature, STALENESS);
+    }
+
+    /**
+     * Removes the gauges of this map unless a newer map of the same name
+     * has already replaced them.
+     */
+    private void unregisterMetrics() {
+        metricsService.removeMatching((name, metric) -> gauges.stream().anyMatch(gauge -> gauge == metric));
+    }
+
+    private void updateCache(MapEvent<K, V> event) {
+        Versioned<V> newValue = event.newValue();
+        if (newValue == null) {
+            Versioned<V> oldValue = event.oldValue();
+            if (oldValue == null) {
+                cache.invalidate(event.key());
+            } else {
+                update(event.key(), new CachedValue<>(null, oldValue.version()));
+            }
+        } else {
+            update(event.key(), new CachedValue<>(newValue, newValue.version()));
+            if (staleness != null) {
+                staleness.update(Math.max(0, System.currentTimeMillis() - newValue.creationTime()));
+            }
+        }
+    }
+
+    /**
+     * Caches an entry unless a newer version of it is already cached.
+     */
+    private void update(K key, CachedValue<V> value) {
+        cache.asMap().merge(key, value, (cached, candidate) -> cached.version > candidate.version ? cached : candidate);
+    }
+
+    /**
+     * Caches the result of a read, which is older than any entry cached in the meantime.
+     */
+    private void updateRead(K key, Versioned<V> value) {
+        if (value == null) {
+            cache.asMap().putIfAbsent(key, new CachedValue<>(null, 0));
+        } else {
+            update(key, new CachedValue<>(value, value.version()));
+        }
     }
 
     @Override
     public CompletableFuture<Void> destroy() {
         super.removeStatusChangeListener(statusListener);
+        if (metricsService != null) {
+            unregisterMetrics();
+        }
         return super.destroy().thenCompose(v -> removeListener(cacheUpdater));
     }
 
     @Override
     public CompletableFuture<Versioned<V>> get(K key) {
-        return cache.getUnchecked(key)
-                .whenComplete((r, e) -> {
-                    if (e != null) {
-                        cache.invalidate(key);
-                    }
-                });
+        CachedValue<V> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.value);
+        }
+        CompletableFuture<Versioned<V>> load = new CompletableFuture<>();
+        CompletableFuture<Versioned<V>> pending = pendingLoads.putIfAbsent(key, load);
+        if (pending != null) {
+            return pending;
+        }
+        super.get(key).whenComplete((r, e) -> {
+            pendingLoads.remove(key, load);
+            if (e == null) {
+                updateRead(key, r);
+                load.complete(r);
+            } else {
+                load.completeExceptionally(e);
+            }
+        });
+        return load;
+    }
+
+    @Override
+    public CompletableFuture<Map<K, Versioned<V>>> getAll(Set<K> keys) {
+        Map<K, CachedValue<V>> cached = cache.getAllPresent(keys);
+        Set<K> missing = Sets.difference(keys, cached.keySet()).immutableCopy();
+        Map<K, Versioned<V>> values = Maps.newConcurrentMap();
+        cached.forEach((key, value) -> {
+            if (value.value != null) {
+                values.put(key, value.value);
+            }
+        });
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(values);
+        }
+        // the missing keys are read in one go; entries updated by events
+        // in the meantime take precedence over the values read
+        return super.getAll(missing).thenApply(r -> {
+            missing.forEach(key -> updateRead(key, r.get(key)));
+            values.putAll(r);
+            return values;
+        });
     }
 
     @Override
@@ -115,7 +273,13 @@ public class CachingAsyncConsistentMap<K, V> extends DelegatingAsyncConsistentMa
             Predicate<? super V> condition,
             BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         return super.computeIf(key, condition, remappingFunction)
-                .whenComplete((r, e) -> cache.invalidate(key));
+                .whenComplete((r, e) -> {
+                    if (r != null) {
+                        update(key, new CachedValue<>(r, r.version()));
+                    } else {
+                        cache.invalidate(key);
+                    }
+                });
     }
 
     @Override
@@ -127,7 +291,13 @@ public class CachingAsyncConsistentMap<K, V> extends DelegatingAsyncConsistentMa
     @Override
     public CompletableFuture<Versioned<V>> putAndGet(K key, V value) {
         return super.putAndGet(key, value)
-                .whenComplete((r, e) -> cache.invalidate(key));
+                .whenComplete((r, e) -> {
+                    if (r != null) {
+                        update(key, new CachedValue<>(r, r.version()));
+                    } else {
+                        cache.invalidate(key);
+                    }
+                });
     }
 
     @Override
@@ -136,6 +306,18 @@ public class CachingAsyncConsistentMap<K, V> extends DelegatingAsyncConsistentMa
                 .whenComplete((r, e) -> cache.invalidate(key));
     }
 
+    @Override
+    public CompletableFuture<Void> putAll(Map<K, V> entries) {
+        return super.putAll(entries)
+                .whenComplete((r, e) -> cache.invalidateAll(entries.keySet()));
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAll(Set<K> keys) {
+        return super.removeAll(keys)
+                .whenComplete((r, e) -> cache.invalidateAll(keys));
+    }
+
     @Override
     public CompletableFuture<Void> clear() {
         return super.clear()
@@ -187,4 +369,17 @@ public class CachingAsyncConsistentMap<K, V> extends DelegatingAsyncConsistentMa
                     }
                 });
     }
+
+    /**
+     * Cached entry; a null value stands for an absent key.
+     */
+    private static final class CachedValue<V> {
+        private final Versioned<V> value;
+        private final long version;
+
+        private CachedValue(Versioned<V> value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
 }
@@ -42,7 +42,15 @@ public class DefaultConsistentMapBuilder<K, V> extends ConsistentMapBuilder<K, V
     @Override
     public AsyncConsistentMap<K, V> buildAsyncMap() {
         AsyncConsistentMap<K, V> map = primitiveCreator.newAsyncConsistentMap(name(), serializer());
-        map = relaxedReadConsistency() ? DistributedPrimitives.newCachingMap(map) : map;
+        if (nearCacheWeigher() != null) {
+            map = DistributedPrimitives.newCachingMap(map, nearCacheMaximumWeight(), nearCacheWeigher(),
+                                                      meteringEnabled());
+        } else if (nearCacheEnabled()) {
+            map = DistributedPrimitives.newCachingMap(map, nearCacheMaximumSize(), meteringEnabled());
+        } else if (relaxedReadConsistency()) {
+            map = DistributedPrimitives.newCachingMap(map, CachingAsyncConsistentMap.DEFAULT_CACHE_SIZE,
+                                                      meteringEnabled());
+        }
         map = readOnly() ? DistributedPrimitives.newUnmodifiableMap(map) : map;
         return meteringEnabled() ? DistributedPrimitives.newMeteredMap(map) : map;
     }
@@ -16,6 +16,7 @@
 package org.onosproject.store.primitives.impl;
 
 import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
 
 import org.onosproject.store.service.AsyncConsistentMap;
 import org.onosproject.store.service.AsyncDistributedSet;
@@ -62,6 +63,40 @@ public final class DistributedPrimitives {
         return new CachingAsyncConsistentMap<>(map);
     }
 
+    /**
+     * Creates an instance of {@code AsyncConsistentMap} that caches up to a number of entries on get.
+     *
+     * @param map backing map
+     * @param maximumSize maximum number of cached entries
+     * @param meteringEnabled whether cache statistics are published as metrics
+     * @return caching map
+     * @param <K> map key type
+     * @param <V> map value type
+     */
+    public static <K, V> AsyncConsistentMap<K, V> newCachingMap(AsyncConsistentMap<K, V> map,
+                                                                long maximumSize,
+                                                                boolean meteringEnabled) {
+        return new CachingAsyncConsistentMap<>(map, maximumSize, meteringEnabled);
+    }
+
+    /**
+     * Creates an instance of {@code AsyncConsistentMap} that caches entries up to a total weight on get.
+     *
+     * @param map backing map
+     * @param maximumWeight maximum total weight of the cached entries
+     * @param weigher weight of an entry
+     * @param meteringEnabled whether cache statistics are published as metrics
+     * @return caching map
+     * @param <K> map key type
+     * @param <V> map value type
+     */
+    public static <K, V> AsyncConsistentMap<K, V> newCachingMap(AsyncConsistentMap<K, V> map,
+                                                                long maximumWeight,
+                                                                ToIntBiFunction<? super K, ? super V> weigher,
+                                                                boolean meteringEnabled) {
+        return new CachingAsyncConsistentMap<>(map, maximumWeight, weigher, meteringEnabled);
+    }
+
     /**
      * Creates an instance of {@code AsyncConsistentMap} that disallows updates.
      *
@@ -15,6 +15,7 @@
  */
 package org.onosproject.store.primitives.impl;
 
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.NodeId;
@@ -56,6 +57,7 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
     private boolean persistent = false;
     private boolean persistentMap = false;
     private final PersistenceService persistenceService;
+    private final MetricsService metricsService;
 
     /**
      * Creates a new eventually consistent map builder.
@@ -67,9 +69,26 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
     public EventuallyConsistentMapBuilderImpl(ClusterService clusterService,
                                               ClusterCommunicationService clusterCommunicator,
                                               PersistenceService persistenceService) {
+        this(clusterService, clusterCommunicator, persistenceService, null);
+    }
+
+    /**
+     * Creates a new eventually consistent map builder whose maps publish
+     * their entry counts as metrics.
+     *
+     * @param clusterService cluster service
+     * @param clusterCommunicator cluster communication service
+     * @param persistenceService persistence service
+     * @param metricsService metrics service; may be null
+     */
+    public EventuallyConsistentMapBuilderImpl(ClusterService clusterService,
+                                              ClusterCommunicationService clusterCommunicator,
+                                              PersistenceService persistenceService,
+                                              MetricsService metricsService) {
         this.persistenceService = persistenceService;
         this.clusterService = checkNotNull(clusterService);
         this.clusterCommunicator = checkNotNull(clusterCommunicator);
+        this.metricsService = metricsService;
     }
 
     @Override
@@ -174,6 +193,7 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
                                                  antiEntropyTimeUnit,
                                                  convergeFaster,
                                                  persistent,
-                                                 persistenceService);
+                                                 persistenceService,
+                                                 metricsService);
     }
 }
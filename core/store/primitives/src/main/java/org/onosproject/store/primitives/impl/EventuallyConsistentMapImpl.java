@@ -15,13 +15,18 @@
  */
 package org.onosproject.store.primitives.impl;
 
+import com.codahale.metrics.Gauge;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang3.tuple.Pair;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.AbstractAccumulator;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.SlidingWindowCounter;
@@ -57,6 +62,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
@@ -79,6 +85,9 @@ public class EventuallyConsistentMapImpl<K, V>
     private static final Logger log = LoggerFactory.getLogger(EventuallyConsistentMapImpl.class);
 
     private final Map<K, MapValue<V>> items;
+    private final AntiEntropyBuckets digestBuckets = new AntiEntropyBuckets();
+    private final AtomicInteger liveEntries = new AtomicInteger();
+    private final AtomicInteger tombstones = new AtomicInteger();
 
     private final ClusterService clusterService;
     private final ClusterCommunicationService clusterCommunicator;
@@ -90,6 +99,7 @@ public class EventuallyConsistentMapImpl<K, V>
 
     private final MessageSubject updateMessageSubject;
     private final MessageSubject antiEntropyAdvertisementSubject;
+    private final MessageSubject antiEntropyBucketsSubject;
     private final MessageSubject updateRequestSubject;
 
     private final Set<EventuallyConsistentMapListener<K, V>> listeners
@@ -127,6 +137,18 @@ public class EventuallyConsistentMapImpl<K, V>
 
     private static final String PERSISTENT_LOCAL_MAP_NAME = "itemsMap";
 
+    private static final String METRICS_COMPONENT = "EventuallyConsistentMap";
+    private static final String LIVE_ENTRIES_METRIC = "liveEntries";
+    private static final String TOMBSTONES_METRIC = "tombstones";
+    private final MetricsService metricsService;
+    private MetricsComponent metricsComponent;
+    private MetricsFeature metricsFeature;
+    private Gauge<Integer> liveEntriesGauge;
+    private Gauge<Integer> tombstonesGauge;
+
+    // maps smaller than this advertise the digest of every entry right away
+    private static final int BUCKETED_ANTI_ENTROPY_THRESHOLD = AntiEntropyBuckets.NUM_BUCKETS;
+
 
     /**
      * Creates a new eventually consistent map shared amongst multiple instances.
@@ -155,6 +177,7 @@ public class EventuallyConsistentMapImpl<K, V>
      * @param convergeFaster        make anti-entropy try to converge faster
      * @param persistent            persist data to disk
      * @param persistenceService    persistence service
+     * @param metricsService        metrics service; may be null
      */
     EventuallyConsistentMapImpl(String mapName,
                                 ClusterService clusterService,
@@ -170,7 +193,8 @@ public class EventuallyConsistentMapImpl<K, V>
                                 TimeUnit antiEntropyTimeUnit,
                                 boolean convergeFaster,
                                 boolean persistent,
-                                PersistenceService persistenceService) {
+                                PersistenceService persistenceService,
+                                MetricsService metricsService) {
         this.mapName = mapName;
         this.serializer = createSerializer(ns);
         this.persistenceService = persistenceService;
@@ -184,6 +208,7 @@ public class EventuallyConsistentMapImpl<K, V>
         } else {
             items = Maps.newConcurrentMap();
         }
+        items.forEach((key, value) -> accountUpdate(key, null, value));
         senderPending = Maps.newConcurrentMap();
         destroyedMessage = mapName + ERROR_DESTROYED;
 
@@ -191,6 +216,9 @@ public class EventuallyConsistentMapImpl<K, V>
         this.clusterCommunicator = clusterCommunicator;
         this.localNodeId = clusterService.getLocalNode().id();
 
+        this.metricsService = metricsService;
+        registerMetrics();
+
         this.timestampProvider = timestampProvider;
 
         if (peerUpdateFunction != null) {
@@ -245,6 +273,13 @@ public class EventuallyConsistentMapImpl<K, V>
                                           serializer::encode,
                                           this.backgroundExecutor);
 
+        antiEntropyBucketsSubject = new MessageSubject("ecm-" + mapName + "-anti-entropy-buckets");
+        clusterCommunicator.addSubscriber(antiEntropyBucketsSubject,
+                                          serializer::decode,
+                                          this::handleBucketAdvertisement,
+                                          serializer::encode,
+                                          this.backgroundExecutor);
+
         updateRequestSubject = new MessageSubject("ecm-" + mapName + "-update-request");
         clusterCommunicator.addSubscriber(updateRequestSubject,
                                           serializer::decode,
@@ -266,6 +301,29 @@ public class EventuallyConsistentMapImpl<K, V>
         this.bootstrap();
     }
 
+    private void registerMetrics() {
+        if (metricsService == null) {
+            return;
+        }
+        metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+        metricsFeature = metricsComponent.registerFeature(mapName);
+        // replace the gauges of a previous map instance with the same name, if any
+        metricsService.removeMetric(metricsComponent, metricsFeature, LIVE_ENTRIES_METRIC);
+        metricsService.removeMetric(metricsComponent, metricsFeature, TOMBSTONES_METRIC);
+        liveEntriesGauge = metricsService.registerMetric(metricsComponent, metricsFeature, LIVE_ENTRIES_METRIC,
+                                                         (Gauge<Integer>) liveEntries::get);
+        tombstonesGauge = metricsService.registerMetric(metricsComponent, metricsFeature, TOMBSTONES_METRIC,
+                                                        (Gauge<Integer>) tombstones::get);
+    }
+
+    /**
+     * Removes the gauges of this map unless a newer map of the same name
+     * has already replaced them.
+     */
+    private void unregisterMetrics() {
+        metricsService.removeMatching((name, metric) -> metric == liveEntriesGauge || metric == tombstonesGauge);
+    }
+
     private StoreSerializer createSerializer(KryoNamespace ns) {
         return StoreSerializer.using(KryoNamespace.newBuilder()
                          .register(ns)
@@ -281,6 +339,8 @@ public class EventuallyConsistentMapImpl<K, V>
                          .register(MapValue.class)
                          .register(MapValue.Digest.class)
                          .register(UpdateRequest.class)
+                         .register(AntiEntropyBucketAdvertisement.class)
+                         .register(AntiEntropyBucketResponse.class)
                          .build(name() + "-ecmap"));
     }
 
@@ -292,8 +352,7 @@ public class EventuallyConsistentMapImpl<K, V>
     @Override
     public int size() {
         checkState(!destroyed, destroyedMessage);
-        // TODO: Maintain a separate counter for tracking live elements in map.
-        return Maps.filterValues(items, MapValue::isAlive).size();
+        return liveEntries.get();
     }
 
     @Override
@@ -397,6 +456,7 @@ public class EventuallyConsistentMapImpl<K, V>
             }
             if (updated.get()) {
                 previousValue.set(existing);
+                accountUpdate(k, existing, tombstone.orElse(null));
                 return tombstone.orElse(null);
             } else {
                 return existing;
@@ -421,7 +481,9 @@ public class EventuallyConsistentMapImpl<K, V>
                 updated.set(true);
                 // We return a copy to ensure updates to peers can be serialized.
                 // This prevents replica divergence due to serialization failures.
-                return serializer.copy(newValue);
+                MapValue<V> copy = serializer.copy(newValue);
+                accountUpdate(k, mv, copy);
+                return copy;
             } else {
                 return mv;
             }
@@ -492,6 +554,7 @@ public class EventuallyConsistentMapImpl<K, V>
         items.compute(key, (k, existing) -> {
             if (existing == null || newValue.isNewerThan(existing)) {
                 updated.set(true);
+                accountUpdate(k, existing, newValue);
                 return newValue;
             }
             return existing;
@@ -499,6 +562,24 @@ public class EventuallyConsistentMapImpl<K, V>
         return updated.get();
     }
 
+    /**
+     * Updates the anti-entropy bucket hashes and the entry counters after
+     * the value stored for a key has changed.
+     *
+     * @param key key
+     * @param oldValue value replaced by the change; null if none
+     * @param newValue value stored by the change; null if the entry was removed
+     */
+    private void accountUpdate(K key, MapValue<V> oldValue, MapValue<V> newValue) {
+        digestBuckets.update(key, oldValue, newValue);
+        if (oldValue != null) {
+            (oldValue.isAlive() ? liveEntries : tombstones).decrementAndGet();
+        }
+        if (newValue != null) {
+            (newValue.isAlive() ? liveEntries : tombstones).incrementAndGet();
+        }
+    }
+
     @Override
     public void addListener(EventuallyConsistentMapListener<K, V> listener) {
         checkState(!destroyed, destroyedMessage);
@@ -526,6 +607,11 @@ public class EventuallyConsistentMapImpl<K, V>
         clusterCommunicator.removeSubscriber(updateMessageSubject);
         clusterCommunicator.removeSubscriber(updateRequestSubject);
         clusterCommunicator.removeSubscriber(antiEntropyAdvertisementSubject);
+        clusterCommunicator.removeSubscriber(antiEntropyBucketsSubject);
+
+        if (metricsService != null) {
+            unregisterMetrics();
+        }
         return CompletableFuture.completedFuture(null);
     }
 
@@ -576,7 +662,40 @@ public class EventuallyConsistentMapImpl<K, V>
 
     private void sendAdvertisementToPeer(NodeId peer) {
         long adCreationTime = System.currentTimeMillis();
-        AntiEntropyAdvertisement<K> ad = createAdvertisement();
+        if (items.size() < BUCKETED_ANTI_ENTROPY_THRESHOLD) {
+            sendAdvertisementToPeer(peer, createAdvertisement(), adCreationTime);
+        } else {
+            sendBucketAdvertisementToPeer(peer, adCreationTime);
+        }
+    }
+
+    /**
+     * Sends the bucket hashes to the peer and follows up with the digests of
+     * the entries in the buckets the peer reports as differing.
+     */
+    private void sendBucketAdvertisementToPeer(NodeId peer, long adCreationTime) {
+        AntiEntropyBucketAdvertisement ad =
+                new AntiEntropyBucketAdvertisement(localNodeId, digestBuckets.hashes());
+        clusterCommunicator.<AntiEntropyBucketAdvertisement, AntiEntropyBucketResponse>sendAndReceive(ad,
+                antiEntropyBucketsSubject,
+                serializer::encode,
+                serializer::decode,
+                peer)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.debug("Failed to send anti-entropy bucket advertisement to {}", peer, error);
+                    } else if (result.status() == AntiEntropyResponse.PROCESSED) {
+                        if (result.differingBuckets().isEmpty()) {
+                            antiEntropyTimes.put(peer, adCreationTime);
+                        } else if (!destroyed) {
+                            backgroundExecutor.execute(() -> sendAdvertisementToPeer(peer,
+                                    createAdvertisement(result.differingBuckets()), adCreationTime));
+                        }
+                    }
+                });
+    }
+
+    private void sendAdvertisementToPeer(NodeId peer, AntiEntropyAdvertisement<K> ad, long adCreationTime) {
         clusterCommunicator.sendAndReceive(ad,
                 antiEntropyAdvertisementSubject,
                 serializer::encode,
@@ -609,6 +728,33 @@ public class EventuallyConsistentMapImpl<K, V>
                 ImmutableMap.copyOf(Maps.transformValues(items, MapValue::digest)));
     }
 
+    private AntiEntropyAdvertisement<K> createAdvertisement(Set<Integer> buckets) {
+        ImmutableMap.Builder<K, MapValue.Digest> digest = ImmutableMap.builder();
+        items.forEach((key, value) -> {
+            if (buckets.contains(AntiEntropyBuckets.bucket(key))) {
+                digest.put(key, value.digest());
+            }
+        });
+        return new AntiEntropyAdvertisement<>(localNodeId, digest.build(), buckets);
+    }
+
+    private AntiEntropyBucketResponse handleBucketAdvertisement(AntiEntropyBucketAdvertisement ad) {
+        if (destroyed || underHighLoad()) {
+            return new AntiEntropyBucketResponse(AntiEntropyResponse.IGNORED, ImmutableSet.of());
+        }
+        try {
+            Set<Integer> differingBuckets = digestBuckets.diff(ad.bucketHashes());
+            if (log.isTraceEnabled()) {
+                log.trace("Received anti-entropy bucket advertisement from {} for {} with {} differing buckets",
+                        ad.sender(), mapName, differingBuckets.size());
+            }
+            return new AntiEntropyBucketResponse(AntiEntropyResponse.PROCESSED, differingBuckets);
+        } catch (Exception e) {
+            log.warn("Error handling anti-entropy bucket advertisement", e);
+            return new AntiEntropyBucketResponse(AntiEntropyResponse.FAILED, ImmutableSet.of());
+        }
+    }
+
     private AntiEntropyResponse handleAntiEntropyAdvertisement(AntiEntropyAdvertisement<K> ad) {
         if (destroyed || underHighLoad()) {
             return AntiEntropyResponse.IGNORED;
@@ -631,6 +777,8 @@ public class EventuallyConsistentMapImpl<K, V>
      * 1. If peer has an old entry, updates peer.
      * 2. If peer indicates an entry is removed and has a more recent
      * timestamp than the local entry, update local state.
+     * If the ad covers only some buckets, local entries in other buckets are
+     * left out of the comparison.
      */
     private List<EventuallyConsistentMapEvent<K, V>> antiEntropyCheckLocalItems(
             AntiEntropyAdvertisement<K> ad) {
@@ -639,8 +787,12 @@ public class EventuallyConsistentMapImpl<K, V>
         final List<NodeId> peers = ImmutableList.of(sender);
         Set<K> staleOrMissing = new HashSet<>();
         Set<K> locallyUnknown = new HashSet<>(ad.digest().keySet());
+        Set<Integer> buckets = ad.buckets();
 
         items.forEach((key, localValue) -> {
+            if (!buckets.isEmpty() && !buckets.contains(AntiEntropyBuckets.bucket(key))) {
+                return;
+            }
             locallyUnknown.remove(key);
             MapValue.Digest remoteValueDigest = ad.digest().get(key);
             if (remoteValueDigest == null || localValue.isNewerThan(remoteValueDigest.timestamp())) {
@@ -703,7 +855,11 @@ public class EventuallyConsistentMapImpl<K, V>
                                           .filter(e -> e.getValue().creationTime() <= currentSafeTombstonePurgeTime)
                                           .collect(Collectors.toList());
         previousTombstonePurgeTime = currentSafeTombstonePurgeTime;
-        tombStonesToDelete.forEach(entry -> items.remove(entry.getKey(), entry.getValue()));
+        tombStonesToDelete.forEach(entry -> {
+            if (items.remove(entry.getKey(), entry.getValue())) {
+                accountUpdate(entry.getKey(), entry.getValue(), null);
+            }
+        });
     }
 
     private void processUpdates(Collection<UpdateEntry<K, V>> updates) {
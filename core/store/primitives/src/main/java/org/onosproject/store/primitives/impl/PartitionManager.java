@@ -18,7 +18,10 @@ package org.onosproject.store.primitives.impl;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import io.atomix.copycat.server.storage.StorageLevel;
+
 import java.io.File;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +35,7 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.Tools;
 import org.onosproject.cluster.ClusterMetadata;
 import org.onosproject.cluster.ClusterMetadataDiff;
@@ -53,6 +57,9 @@ import org.onosproject.store.service.PartitionClientInfo;
 import org.onosproject.store.service.PartitionInfo;
 import org.slf4j.Logger;
 
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
@@ -78,12 +85,26 @@ public class PartitionManager extends AbstractListenerManager<PartitionEvent, Pa
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ClusterService clusterService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    // Storage settings come from system properties: the component config
+    // service is backed by the partitions this component opens.
+    private StorageLevel storageLevel = StoragePartitionConfig.DEFAULT_STORAGE_LEVEL;
+    private int maxEntriesPerSegment = StoragePartitionConfig.DEFAULT_MAX_ENTRIES_PER_SEGMENT;
+    private double compactionThreshold = StoragePartitionConfig.DEFAULT_COMPACTION_THRESHOLD;
+    private Map<String, Double> partitionCompactionThresholds = ImmutableMap.of();
+    private long minorCompactionIntervalSec = StoragePartitionConfig.DEFAULT_MINOR_COMPACTION_INTERVAL.getSeconds();
+    private long majorCompactionIntervalSec = StoragePartitionConfig.DEFAULT_MAJOR_COMPACTION_INTERVAL.getSeconds();
+    private int maxCommandBatchSize = StoragePartitionConfig.DEFAULT_MAX_COMMAND_BATCH_SIZE;
+
     private final Map<PartitionId, StoragePartition> partitions = Maps.newConcurrentMap();
     private final AtomicReference<ClusterMetadata> currentClusterMetadata = new AtomicReference<>();
     private final InternalClusterMetadataListener metadataListener = new InternalClusterMetadataListener();
 
     @Activate
     public void activate() {
+        readStorageConfiguration();
         eventDispatcher.addSink(PartitionEvent.class, listenerRegistry);
         currentClusterMetadata.set(metadataService.getClusterMetadata());
         metadataService.addListener(metadataListener);
@@ -94,7 +115,9 @@ public class PartitionManager extends AbstractListenerManager<PartitionEvent, Pa
                                messagingService,
                                clusterService,
                                CatalystSerializers.getSerializer(),
-                               new File(System.getProperty("karaf.data") + "/partitions/" + partition.getId()))));
+                               new File(System.getProperty("karaf.data") + "/partitions/" + partition.getId()),
+                               storageConfig(partition.getId()),
+                               metricsService)));
 
         CompletableFuture<Void> openFuture = CompletableFuture.allOf(partitions.values()
                                                                                .stream()
@@ -117,6 +140,66 @@ public class PartitionManager extends AbstractListenerManager<PartitionEvent, Pa
         log.info("Stopped");
     }
 
+    /**
+     * Reads the partition storage settings from the system properties.
+     * <ul>
+     * <li>partitionStorageLevel: DISK, MAPPED or MEMORY</li>
+     * <li>partitionMaxEntriesPerSegment: maximum number of entries per log segment</li>
+     * <li>partitionCompactionThreshold: fraction of released entries at which
+     * a log segment is compacted</li>
+     * <li>partitionCompactionThresholds: comma separated partition=threshold
+     * pairs overriding it for specific partitions</li>
+     * <li>partitionMinorCompactionIntervalSec and
+     * partitionMajorCompactionIntervalSec: compaction intervals in seconds</li>
+     * <li>partitionMaxCommandBatchSize: maximum number of map updates submitted
+     * as one command; 1 disables batching</li>
+     * </ul>
+     * Partition servers are built on activation, so the settings are read once.
+     */
+    private void readStorageConfiguration() {
+        try {
+            String s = System.getProperty("partitionStorageLevel");
+            storageLevel = Strings.isNullOrEmpty(s) ? storageLevel : StorageLevel.valueOf(s.trim().toUpperCase());
+            s = System.getProperty("partitionMaxEntriesPerSegment");
+            maxEntriesPerSegment = Strings.isNullOrEmpty(s) ? maxEntriesPerSegment : Integer.parseInt(s.trim());
+            s = System.getProperty("partitionCompactionThreshold");
+            compactionThreshold = Strings.isNullOrEmpty(s) ? compactionThreshold : Double.parseDouble(s.trim());
+            s = System.getProperty("partitionCompactionThresholds");
+            partitionCompactionThresholds = Strings.isNullOrEmpty(s) ? ImmutableMap.of() :
+                    ImmutableMap.copyOf(Maps.transformValues(Splitter.on(',').trimResults().omitEmptyStrings()
+                            .withKeyValueSeparator('=').split(s), v -> Double.parseDouble(v.trim())));
+            s = System.getProperty("partitionMinorCompactionIntervalSec");
+            minorCompactionIntervalSec = Strings.isNullOrEmpty(s) ?
+                    minorCompactionIntervalSec : Long.parseLong(s.trim());
+            s = System.getProperty("partitionMajorCompactionIntervalSec");
+            majorCompactionIntervalSec = Strings.isNullOrEmpty(s) ?
+                    majorCompactionIntervalSec : Long.parseLong(s.trim());
+            s = System.getProperty("partitionMaxCommandBatchSize");
+            maxCommandBatchSize = Strings.isNullOrEmpty(s) ? maxCommandBatchSize : Integer.parseInt(s.trim());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid partition storage configuration", e);
+        }
+        log.info("Storage level is {}; compaction threshold is {} with overrides {}",
+                 storageLevel, compactionThreshold, partitionCompactionThresholds);
+    }
+
+    private StoragePartitionConfig storageConfig(PartitionId partitionId) {
+        try {
+            StoragePartitionConfig config =
+                    new StoragePartitionConfig(storageLevel,
+                                               maxEntriesPerSegment,
+                                               compactionThreshold,
+                                               Duration.ofSeconds(minorCompactionIntervalSec),
+                                               Duration.ofSeconds(majorCompactionIntervalSec))
+                            .withMaxCommandBatchSize(maxCommandBatchSize);
+            Double threshold = partitionCompactionThresholds.get(partitionId.toString());
+            return threshold == null ? config : config.withCompactionThreshold(threshold);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid storage configuration for partition {}; using defaults", partitionId, e);
+            return StoragePartitionConfig.defaultConfig();
+        }
+    }
+
     @Override
     public int getNumberOfPartitions() {
         checkPermission(PARTITION_READ);
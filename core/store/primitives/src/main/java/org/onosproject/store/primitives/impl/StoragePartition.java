@@ -27,6 +27,9 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.NodeId;
@@ -37,6 +40,8 @@ import org.onosproject.store.primitives.resources.impl.AtomixConsistentMap;
 import org.onosproject.store.primitives.resources.impl.AtomixLeaderElector;
 import org.onosproject.store.service.PartitionInfo;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableSet;
 
@@ -50,6 +55,10 @@ public class StoragePartition implements Managed<StoragePartition> {
     private final MessagingService messagingService;
     private final ClusterService clusterService;
     private final File logFolder;
+    private final StoragePartitionConfig config;
+    private final MetricsService metricsService;
+    private final MetricsComponent metricsComponent;
+    private final MetricsFeature metricsFeature;
     private Partition partition;
     private NodeId localNodeId;
     private StoragePartitionServer server;
@@ -63,13 +72,19 @@ public class StoragePartition implements Managed<StoragePartition> {
             MessagingService messagingService,
             ClusterService clusterService,
             Serializer serializer,
-            File logFolder) {
+            File logFolder,
+            StoragePartitionConfig config,
+            MetricsService metricsService) {
         this.partition = partition;
         this.messagingService = messagingService;
         this.clusterService = clusterService;
         this.localNodeId = clusterService.getLocalNode().id();
         this.serializer = serializer;
         this.logFolder = logFolder;
+        this.config = config;
+        this.metricsService = metricsService;
+        this.metricsComponent = metricsService.registerComponent("StoragePartitions");
+        this.metricsFeature = metricsComponent.registerFeature(partition.getId().toString());
     }
 
     /**
@@ -112,6 +127,36 @@ public class StoragePartition implements Managed<StoragePartition> {
         return partition.getMembers();
     }
 
+    /**
+     * Returns the timer of the named startup step of this partition, such as
+     * the recovery of its server or the opening of a primitive.
+     *
+     * @param name step name
+     * @return timer
+     */
+    Timer startupTimer(String name) {
+        return metricsService.createTimer(metricsComponent, metricsFeature, name);
+    }
+
+    /**
+     * Returns the named histogram of this partition.
+     *
+     * @param name histogram name
+     * @return histogram
+     */
+    Histogram histogram(String name) {
+        return metricsService.createHistogram(metricsComponent, metricsFeature, name);
+    }
+
+    /**
+     * Returns the storage and batching settings of this partition.
+     *
+     * @return partition settings
+     */
+    StoragePartitionConfig config() {
+        return config;
+    }
+
     /**
      * Returns the {@link Address addresses} of partition members.
      * @return partition member addresses
@@ -134,8 +179,10 @@ public class StoragePartition implements Managed<StoragePartition> {
                 () -> new CopycatTransport(CopycatTransport.Mode.SERVER,
                                      partition.getId(),
                                      messagingService),
-                logFolder);
-        return server.open().thenRun(() -> this.server = server);
+                logFolder,
+                config);
+        Timer.Context timer = startupTimer("serverOpen").time();
+        return server.open().whenComplete((r, e) -> timer.stop()).thenRun(() -> this.server = server);
     }
 
     /**
@@ -153,8 +200,12 @@ public class StoragePartition implements Managed<StoragePartition> {
                 () -> new CopycatTransport(CopycatTransport.Mode.SERVER,
                                      partition.getId(),
                                      messagingService),
-                logFolder);
-        return server.join(Collections2.transform(otherMembers, this::toAddress)).thenRun(() -> this.server = server);
+                logFolder,
+                config);
+        Timer.Context timer = startupTimer("serverJoin").time();
+        return server.join(Collections2.transform(otherMembers, this::toAddress))
+                     .whenComplete((r, e) -> timer.stop())
+                     .thenRun(() -> this.server = server);
     }
 
     private CompletableFuture<StoragePartitionClient> openClient() {
@@ -163,7 +214,8 @@ public class StoragePartition implements Managed<StoragePartition> {
                 new CopycatTransport(CopycatTransport.Mode.CLIENT,
                                      partition.getId(),
                                      messagingService));
-        return client.open().thenApply(v -> client);
+        Timer.Context timer = startupTimer("clientOpen").time();
+        return client.open().whenComplete((r, e) -> timer.stop()).thenApply(v -> client);
     }
 
     /**
@@ -33,6 +33,7 @@ import io.atomix.variables.DistributedLong;
 import java.util.Collection;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -53,6 +54,8 @@ import org.onosproject.store.service.PartitionClientInfo;
 import org.onosproject.store.service.Serializer;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 
@@ -68,6 +71,8 @@ public class StoragePartitionClient implements DistributedPrimitiveCreator, Mana
     private final io.atomix.catalyst.serializer.Serializer serializer;
     private AtomixClient client;
     private ResourceClient resourceClient;
+    private final Histogram commandBatchSizes;
+    private final Histogram commandBatchLatencies;
     private static final String ATOMIC_VALUES_CONSISTENT_MAP_NAME = "onos-atomic-values";
     private final Supplier<AsyncConsistentMap<String, byte[]>> onosAtomicValuesMap =
             Suppliers.memoize(() -> newAsyncConsistentMap(ATOMIC_VALUES_CONSISTENT_MAP_NAME,
@@ -91,6 +96,8 @@ public class StoragePartitionClient implements DistributedPrimitiveCreator, Mana
         this.partition = partition;
         this.serializer = serializer;
         this.transport = transport;
+        this.commandBatchSizes = partition.histogram("commandBatchSize");
+        this.commandBatchLatencies = partition.histogram("commandBatchLatencyMicros");
     }
 
     @Override
@@ -119,7 +126,20 @@ public class StoragePartitionClient implements DistributedPrimitiveCreator, Mana
 
     @Override
     public <K, V> AsyncConsistentMap<K, V> newAsyncConsistentMap(String name, Serializer serializer) {
-        AtomixConsistentMap atomixConsistentMap = client.getResource(name, AtomixConsistentMap.class).join();
+        Timer.Context timer = partition.startupTimer("openConsistentMap." + name).time();
+        AtomixConsistentMap atomixConsistentMap;
+        try {
+            atomixConsistentMap = client.getResource(name, AtomixConsistentMap.class).join();
+        } finally {
+            timer.stop();
+        }
+        int maxCommandBatchSize = partition.config().maxCommandBatchSize();
+        if (maxCommandBatchSize > 1) {
+            atomixConsistentMap.enableBatching(maxCommandBatchSize, (size, latencyNanos) -> {
+                commandBatchSizes.update(size);
+                commandBatchLatencies.update(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            });
+        }
         Consumer<State> statusListener = state -> {
             atomixConsistentMap.statusChangeListeners()
                                .forEach(listener -> listener.accept(mapper.apply(state)));
@@ -148,7 +168,13 @@ public class StoragePartitionClient implements DistributedPrimitiveCreator, Mana
 
     @Override
     public AsyncAtomicCounter newAsyncCounter(String name) {
-        DistributedLong distributedLong = client.getLong(name).join();
+        Timer.Context timer = partition.startupTimer("openCounter." + name).time();
+        DistributedLong distributedLong;
+        try {
+            distributedLong = client.getLong(name).join();
+        } finally {
+            timer.stop();
+        }
         return new AtomixCounter(name, distributedLong);
     }
 
@@ -165,9 +191,15 @@ public class StoragePartitionClient implements DistributedPrimitiveCreator, Mana
 
     @Override
     public AsyncLeaderElector newAsyncLeaderElector(String name) {
-        AtomixLeaderElector leaderElector = client.getResource(name, AtomixLeaderElector.class)
-                                                  .thenCompose(AtomixLeaderElector::setupCache)
-                                                  .join();
+        Timer.Context timer = partition.startupTimer("openLeaderElector." + name).time();
+        AtomixLeaderElector leaderElector;
+        try {
+            leaderElector = client.getResource(name, AtomixLeaderElector.class)
+                                  .thenCompose(AtomixLeaderElector::setupCache)
+                                  .join();
+        } finally {
+            timer.stop();
+        }
         Consumer<State> statusListener = state -> {
             leaderElector.statusChangeListeners()
                          .forEach(listener -> listener.accept(mapper.apply(state)));
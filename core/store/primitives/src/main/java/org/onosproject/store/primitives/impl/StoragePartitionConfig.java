@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import io.atomix.copycat.server.storage.Storage;
+import io.atomix.copycat.server.storage.StorageLevel;
+
+import java.io.File;
+import java.time.Duration;
+
+import com.google.common.base.MoreObjects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Log storage and compaction settings of a {@link StoragePartition} server,
+ * along with the command batching settings of its client.
+ */
+public final class StoragePartitionConfig {
+
+    public static final StorageLevel DEFAULT_STORAGE_LEVEL = StorageLevel.MAPPED;
+    public static final int DEFAULT_MAX_ENTRIES_PER_SEGMENT = 32768;
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+    public static final Duration DEFAULT_MINOR_COMPACTION_INTERVAL = Duration.ofMinutes(1);
+    public static final Duration DEFAULT_MAJOR_COMPACTION_INTERVAL = Duration.ofHours(1);
+    public static final int DEFAULT_MAX_COMMAND_BATCH_SIZE = 128;
+
+    private final StorageLevel storageLevel;
+    private final int maxEntriesPerSegment;
+    private final double compactionThreshold;
+    private final Duration minorCompactionInterval;
+    private final Duration majorCompactionInterval;
+    private final int maxCommandBatchSize;
+
+    /**
+     * Creates storage settings.
+     *
+     * @param storageLevel            level at which the log is stored
+     * @param maxEntriesPerSegment    maximum number of entries per log segment
+     * @param compactionThreshold     fraction of released entries at which a
+     *                                segment is rewritten by minor compaction
+     * @param minorCompactionInterval interval between minor compactions
+     * @param majorCompactionInterval interval between major compactions
+     */
+    public StoragePartitionConfig(StorageLevel storageLevel,
+                                  int maxEntriesPerSegment,
+                                  double compactionThreshold,
+                                  Duration minorCompactionInterval,
+                                  Duration majorCompactionInterval) {
+        this(storageLevel, maxEntriesPerSegment, compactionThreshold,
+             minorCompactionInterval, majorCompactionInterval, DEFAULT_MAX_COMMAND_BATCH_SIZE);
+    }
+
+    private StoragePartitionConfig(StorageLevel storageLevel,
+                                   int maxEntriesPerSegment,
+                                   double compactionThreshold,
+                                   Duration minorCompactionInterval,
+                                   Duration majorCompactionInterval,
+                                   int maxCommandBatchSize) {
+        checkArgument(maxEntriesPerSegment > 0, "maxEntriesPerSegment must be positive");
+        checkArgument(maxCommandBatchSize > 0, "maxCommandBatchSize must be positive");
+        checkArgument(compactionThreshold > 0 && compactionThreshold <= 1,
+                      "compactionThreshold must be in (0, 1]");
+        this.storageLevel = checkNotNull(storageLevel);
+        this.maxEntriesPerSegment = maxEntriesPerSegment;
+        this.compactionThreshold = compactionThreshold;
+        this.minorCompactionInterval = checkNotNull(minorCompactionInterval);
+        this.majorCompactionInterval = checkNotNull(majorCompactionInterval);
+        this.maxCommandBatchSize = maxCommandBatchSize;
+    }
+
+    /**
+     * Returns the default storage settings.
+     *
+     * @return default settings
+     */
+    public static StoragePartitionConfig defaultConfig() {
+        return new StoragePartitionConfig(DEFAULT_STORAGE_LEVEL,
+                                          DEFAULT_MAX_ENTRIES_PER_SEGMENT,
+                                          DEFAULT_COMPACTION_THRESHOLD,
+                                          DEFAULT_MINOR_COMPACTION_INTERVAL,
+                                          DEFAULT_MAJOR_COMPACTION_INTERVAL);
+    }
+
+    /**
+     * Returns a copy of these settings with a different compaction threshold.
+     *
+     * @param compactionThreshold compaction threshold
+     * @return new settings
+     */
+    public StoragePartitionConfig withCompactionThreshold(double compactionThreshold) {
+        return new StoragePartitionConfig(storageLevel,
+                                          maxEntriesPerSegment,
+                                          compactionThreshold,
+                                          minorCompactionInterval,
+                                          majorCompactionInterval,
+                                          maxCommandBatchSize);
+    }
+
+    /**
+     * Returns a copy of these settings with a different maximum command
+     * batch size.
+     *
+     * @param maxCommandBatchSize maximum number of updates per batch; 1
+     *                            disables batching
+     * @return new settings
+     */
+    public StoragePartitionConfig withMaxCommandBatchSize(int maxCommandBatchSize) {
+        return new StoragePartitionConfig(storageLevel,
+                                          maxEntriesPerSegment,
+                                          compactionThreshold,
+                                          minorCompactionInterval,
+                                          majorCompactionInterval,
+                                          maxCommandBatchSize);
+    }
+
+    /**
+     * Returns the level at which the log is stored.
+     *
+     * @return storage level
+     */
+    public StorageLevel storageLevel() {
+        return storageLevel;
+    }
+
+    /**
+     * Returns the maximum number of entries per log segment.
+     *
+     * @return maximum entries per segment
+     */
+    public int maxEntriesPerSegment() {
+        return maxEntriesPerSegment;
+    }
+
+    /**
+     * Returns the fraction of released entries at which minor compaction
+     * rewrites a segment.
+     *
+     * @return compaction threshold
+     */
+    public double compactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Returns the interval between minor compactions.
+     *
+     * @return minor compaction interval
+     */
+    public Duration minorCompactionInterval() {
+        return minorCompactionInterval;
+    }
+
+    /**
+     * Returns the interval between major compactions.
+     *
+     * @return major compaction interval
+     */
+    public Duration majorCompactionInterval() {
+        return majorCompactionInterval;
+    }
+
+    /**
+     * Returns the maximum number of map updates the client submits as a
+     * single command.
+     *
+     * @return maximum command batch size
+     */
+    public int maxCommandBatchSize() {
+        return maxCommandBatchSize;
+    }
+
+    /**
+     * Builds the Copycat storage for a log kept in the specified directory.
+     *
+     * @param directory log directory
+     * @return storage
+     */
+    Storage toStorage(File directory) {
+        return Storage.builder()
+                .withStorageLevel(storageLevel)
+                .withCompactionThreads(1)
+                .withDirectory(directory)
+                .withMaxEntriesPerSegment(maxEntriesPerSegment)
+                .withCompactionThreshold(compactionThreshold)
+                .withMinorCompactionInterval(minorCompactionInterval)
+                .withMajorCompactionInterval(majorCompactionInterval)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("storageLevel", storageLevel)
+                .add("maxEntriesPerSegment", maxEntriesPerSegment)
+                .add("compactionThreshold", compactionThreshold)
+                .add("minorCompactionInterval", minorCompactionInterval)
+                .add("majorCompactionInterval", majorCompactionInterval)
+                .add("maxCommandBatchSize", maxCommandBatchSize)
+                .toString();
+    }
+}
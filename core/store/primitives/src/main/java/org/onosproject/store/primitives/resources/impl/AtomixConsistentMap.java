@@ -15,6 +15,8 @@
  */
 package org.onosproject.store.primitives.resources.impl;
 
+import io.atomix.copycat.Command;
+import io.atomix.copycat.Query;
 import io.atomix.copycat.client.CopycatClient;
 import io.atomix.resource.AbstractResource;
 import io.atomix.resource.ResourceTypeInfo;
@@ -29,7 +31,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -41,9 +43,12 @@ import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapComman
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.ContainsValue;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.EntrySet;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Get;
+import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.GetAll;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.IsEmpty;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.KeySet;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Listen;
+import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.PutAll;
+import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.RemoveAll;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Size;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.TransactionCommit;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.TransactionPrepare;
@@ -53,12 +58,17 @@ import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapComman
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.UpdateAndGet;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Values;
 import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.ConsistentMapException;
 import org.onosproject.store.service.MapEvent;
 import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.MapTransaction;
 import org.onosproject.store.service.Versioned;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -73,10 +83,56 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
 
     public static final String CHANGE_SUBJECT = "changeEvents";
 
+    private static final int MAX_COMPUTE_ATTEMPTS = 3;
+    private static final int COMPUTED_VALUES_CACHE_SIZE = 1000;
+
+    // Last known values of recently computed keys, used to compute updates
+    // without reading the current value first. Stale entries only cost a
+    // failed attempt as updates are conditional on the version.
+    private final Cache<String, Versioned<byte[]>> computedValues =
+            CacheBuilder.newBuilder().maximumSize(COMPUTED_VALUES_CACHE_SIZE).build();
+
+    // combines concurrent updates into batches; null if updates are submitted one by one
+    private volatile UpdateBatcher batcher;
+
     public AtomixConsistentMap(CopycatClient client, Properties properties) {
         super(client, properties);
     }
 
+    /**
+     * Enables batching of the updates submitted while earlier ones are still
+     * in flight.
+     *
+     * @param maxBatchSize maximum number of updates per batch
+     * @param observer receives the size and the latency in nanoseconds of
+     *                 every completed batch
+     */
+    public void enableBatching(int maxBatchSize, BiConsumer<Integer, Long> observer) {
+        batcher = new UpdateBatcher(client, maxBatchSize, observer);
+    }
+
+    private CompletableFuture<MapEntryUpdateResult<String, byte[]>> submitUpdate(UpdateAndGet update) {
+        UpdateBatcher current = batcher;
+        return current == null ? client.submit(update) : current.submit(update);
+    }
+
+    private <T> CompletableFuture<T> submit(Command<T> command) {
+        flushUpdates();
+        return client.submit(command);
+    }
+
+    private <T> CompletableFuture<T> submit(Query<T> query) {
+        flushUpdates();
+        return client.submit(query);
+    }
+
+    private void flushUpdates() {
+        UpdateBatcher current = batcher;
+        if (current != null) {
+            current.flush();
+        }
+    }
+
     @Override
     public String name() {
         return null;
@@ -102,48 +158,56 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
 
     @Override
     public CompletableFuture<Boolean> isEmpty() {
-        return client.submit(new IsEmpty());
+        return submit(new IsEmpty());
     }
 
     @Override
     public CompletableFuture<Integer> size() {
-        return client.submit(new Size());
+        return submit(new Size());
     }
 
     @Override
     public CompletableFuture<Boolean> containsKey(String key) {
-        return client.submit(new ContainsKey(key));
+        return submit(new ContainsKey(key));
     }
 
     @Override
     public CompletableFuture<Boolean> containsValue(byte[] value) {
-        return client.submit(new ContainsValue(value));
+        return submit(new ContainsValue(value));
     }
 
     @Override
     public CompletableFuture<Versioned<byte[]>> get(String key) {
-        return client.submit(new Get(key));
+        return submit(new Get(key));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Versioned<byte[]>>> getAll(Set<String> keys) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(ImmutableMap.of());
+        }
+        return submit(new GetAll(Sets.newHashSet(keys)));
     }
 
     @Override
     public CompletableFuture<Set<String>> keySet() {
-        return client.submit(new KeySet());
+        return submit(new KeySet());
     }
 
     @Override
     public CompletableFuture<Collection<Versioned<byte[]>>> values() {
-        return client.submit(new Values());
+        return submit(new Values());
     }
 
     @Override
     public CompletableFuture<Set<Entry<String, Versioned<byte[]>>>> entrySet() {
-        return client.submit(new EntrySet());
+        return submit(new EntrySet());
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Versioned<byte[]>> put(String key, byte[] value) {
-        return client.submit(new UpdateAndGet(key, value, Match.ANY, Match.ANY))
+        return submitUpdate(new UpdateAndGet(key, value, Match.ANY, Match.ANY))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.oldValue());
     }
@@ -151,7 +215,7 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Versioned<byte[]>> putAndGet(String key, byte[] value) {
-        return client.submit(new UpdateAndGet(key, value, Match.ANY, Match.ANY))
+        return submitUpdate(new UpdateAndGet(key, value, Match.ANY, Match.ANY))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.newValue());
     }
@@ -159,14 +223,14 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Versioned<byte[]>> putIfAbsent(String key, byte[] value) {
-        return client.submit(new UpdateAndGet(key, value, Match.NULL, Match.ANY))
+        return submitUpdate(new UpdateAndGet(key, value, Match.NULL, Match.ANY))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.oldValue());
     }
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Versioned<byte[]>> remove(String key) {
-        return client.submit(new UpdateAndGet(key, null, Match.ANY, Match.ANY))
+        return submitUpdate(new UpdateAndGet(key, null, Match.ANY, Match.ANY))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.oldValue());
     }
@@ -174,7 +238,7 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Boolean> remove(String key, byte[] value) {
-        return client.submit(new UpdateAndGet(key, null, Match.ifValue(value), Match.ANY))
+        return submitUpdate(new UpdateAndGet(key, null, Match.ifValue(value), Match.ANY))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.updated());
     }
@@ -182,7 +246,7 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Boolean> remove(String key, long version) {
-        return client.submit(new UpdateAndGet(key, null, Match.ANY, Match.ifValue(version)))
+        return submitUpdate(new UpdateAndGet(key, null, Match.ANY, Match.ifValue(version)))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.updated());
     }
@@ -190,7 +254,7 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Versioned<byte[]>> replace(String key, byte[] value) {
-        return client.submit(new UpdateAndGet(key, value, Match.NOT_NULL, Match.ANY))
+        return submitUpdate(new UpdateAndGet(key, value, Match.NOT_NULL, Match.ANY))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.oldValue());
     }
@@ -198,7 +262,7 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Boolean> replace(String key, byte[] oldValue, byte[] newValue) {
-        return client.submit(new UpdateAndGet(key, newValue, Match.ifValue(oldValue), Match.ANY))
+        return submitUpdate(new UpdateAndGet(key, newValue, Match.ifValue(oldValue), Match.ANY))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.updated());
     }
@@ -206,14 +270,34 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     @SuppressWarnings("unchecked")
     public CompletableFuture<Boolean> replace(String key, long oldVersion, byte[] newValue) {
-        return client.submit(new UpdateAndGet(key, newValue, Match.ANY, Match.ifValue(oldVersion)))
+        return submitUpdate(new UpdateAndGet(key, newValue, Match.ANY, Match.ifValue(oldVersion)))
                 .whenComplete((r, e) -> throwIfLocked(r.status()))
                 .thenApply(v -> v.updated());
     }
 
     @Override
     public CompletableFuture<Void> clear() {
-        return client.submit(new Clear())
+        return submit(new Clear())
+                .whenComplete((r, e) -> throwIfLocked(r))
+                .thenApply(v -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(Map<String, byte[]> entries) {
+        if (entries.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(new PutAll(Maps.newHashMap(entries)))
+                .whenComplete((r, e) -> throwIfLocked(r))
+                .thenApply(v -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAll(Set<String> keys) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(new RemoveAll(Sets.newHashSet(keys)))
                 .whenComplete((r, e) -> throwIfLocked(r))
                 .thenApply(v -> null);
     }
@@ -223,41 +307,71 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     public CompletableFuture<Versioned<byte[]>> computeIf(String key,
             Predicate<? super byte[]> condition,
                     BiFunction<? super String, ? super byte[], ? extends byte[]> remappingFunction) {
-        return get(key).thenCompose(r1 -> {
-            byte[] existingValue = r1 == null ? null : r1.value();
-            // if the condition evaluates to false, return existing value.
-            if (!condition.test(existingValue)) {
-                return CompletableFuture.completedFuture(r1);
-            }
-
-            AtomicReference<byte[]> computedValue = new AtomicReference<>();
-            // if remappingFunction throws an exception, return the exception.
-            try {
-                computedValue.set(remappingFunction.apply(key, existingValue));
-            } catch (Exception e) {
-                CompletableFuture<Versioned<byte[]>> future = new CompletableFuture<>();
-                future.completeExceptionally(e);
-                return future;
-            }
-            if (computedValue.get() == null && r1 == null) {
-                return CompletableFuture.completedFuture(null);
-            }
-            Match<byte[]> valueMatch = r1 == null ? Match.NULL : Match.ANY;
-            Match<Long> versionMatch = r1 == null ? Match.ANY : Match.ifValue(r1.version());
-            return client.submit(new UpdateAndGet(key,
-                    computedValue.get(),
-                    valueMatch,
-                    versionMatch))
-                    .whenComplete((r, e) -> throwIfLocked(r.status()))
-                    .thenApply(v -> v.newValue());
-        });
+        // A known value the condition holds for is speculatively used as the
+        // base of the update; if it turns out to be stale the update fails
+        // and is retried against the actual value.
+        Versioned<byte[]> known = computedValues.getIfPresent(key);
+        if (known != null && condition.test(known.value())) {
+            return computeIf(key, known, condition, remappingFunction, MAX_COMPUTE_ATTEMPTS);
+        }
+        return get(key).thenCompose(r -> computeIf(key, r, condition, remappingFunction, MAX_COMPUTE_ATTEMPTS));
+    }
+
+    private CompletableFuture<Versioned<byte[]>> computeIf(String key,
+            Versioned<byte[]> existing,
+            Predicate<? super byte[]> condition,
+            BiFunction<? super String, ? super byte[], ? extends byte[]> remappingFunction,
+            int attempts) {
+        byte[] existingValue = existing == null ? null : existing.value();
+        // if the condition evaluates to false, return existing value.
+        if (!condition.test(existingValue)) {
+            return CompletableFuture.completedFuture(existing);
+        }
+
+        byte[] computedValue;
+        // if remappingFunction throws an exception, return the exception.
+        try {
+            computedValue = remappingFunction.apply(key, existingValue);
+        } catch (Exception e) {
+            CompletableFuture<Versioned<byte[]>> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (computedValue == null && existing == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Match<byte[]> valueMatch = existing == null ? Match.NULL : Match.ANY;
+        Match<Long> versionMatch = existing == null ? Match.ANY : Match.ifValue(existing.version());
+        return submitUpdate(new UpdateAndGet(key,
+                computedValue,
+                valueMatch,
+                versionMatch))
+                .thenCompose(r -> {
+                    throwIfLocked(r.status());
+                    if (r.status() == MapEntryUpdateResult.Status.PRECONDITION_FAILED) {
+                        // a failed update reports the current value; compute
+                        // against it right away instead of reading it again
+                        computedValues.invalidate(key);
+                        if (attempts <= 1) {
+                            throw new ConsistentMapException.ConcurrentModification(
+                                    "Cannot update map: Concurrent updates to " + key);
+                        }
+                        return computeIf(key, r.oldValue(), condition, remappingFunction, attempts - 1);
+                    }
+                    if (r.newValue() == null) {
+                        computedValues.invalidate(key);
+                    } else {
+                        computedValues.put(key, r.newValue());
+                    }
+                    return CompletableFuture.completedFuture(r.newValue());
+                });
     }
 
     @Override
     public synchronized CompletableFuture<Void> addListener(MapEventListener<String, byte[]> listener,
                                                             Executor executor) {
         if (mapEventListeners.isEmpty()) {
-            return client.submit(new Listen()).thenRun(() -> mapEventListeners.putIfAbsent(listener, executor));
+            return submit(new Listen()).thenRun(() -> mapEventListeners.putIfAbsent(listener, executor));
         } else {
             mapEventListeners.put(listener, executor);
             return CompletableFuture.completedFuture(null);
@@ -267,7 +381,7 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
     @Override
     public synchronized CompletableFuture<Void> removeListener(MapEventListener<String, byte[]> listener) {
         if (mapEventListeners.remove(listener) != null && mapEventListeners.isEmpty()) {
-            return client.submit(new Unlisten()).thenApply(v -> null);
+            return submit(new Unlisten()).thenApply(v -> null);
         }
         return CompletableFuture.completedFuture(null);
     }
@@ -280,23 +394,23 @@ public class AtomixConsistentMap extends AbstractResource<AtomixConsistentMap>
 
     @Override
     public CompletableFuture<Boolean> prepare(MapTransaction<String, byte[]> transaction) {
-        return client.submit(new TransactionPrepare(transaction)).thenApply(v -> v == PrepareResult.OK);
+        return submit(new TransactionPrepare(transaction)).thenApply(v -> v == PrepareResult.OK);
     }
 
     @Override
     public CompletableFuture<Void> commit(TransactionId transactionId) {
-        return client.submit(new TransactionCommit(transactionId)).thenApply(v -> null);
+        return submit(new TransactionCommit(transactionId)).thenApply(v -> null);
     }
 
     @Override
     public CompletableFuture<Void> rollback(TransactionId transactionId) {
-        return client.submit(new TransactionRollback(transactionId))
+        return submit(new TransactionRollback(transactionId))
                 .thenApply(v -> null);
     }
 
     @Override
     public CompletableFuture<Boolean> prepareAndCommit(MapTransaction<String, byte[]> transaction) {
-        return client.submit(new TransactionPrepareAndCommit(transaction)).thenApply(v -> v == PrepareResult.OK);
+        return submit(new TransactionPrepareAndCommit(transaction)).thenApply(v -> v == PrepareResult.OK);
     }
 
     @Override
@@ -25,7 +25,9 @@ import io.atomix.catalyst.util.Assert;
 import io.atomix.copycat.Command;
 import io.atomix.copycat.Query;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -438,6 +440,48 @@ public final class AtomixConsistentMapCommands {
         }
     }
 
+    /**
+     * Get all query.
+     */
+    @SuppressWarnings("serial")
+    public static class GetAll extends MapQuery<Map<String, Versioned<byte[]>>> {
+        private Set<String> keys;
+
+        public GetAll() {
+        }
+
+        public GetAll(Set<String> keys) {
+            this.keys = Assert.notNull(keys, "keys");
+        }
+
+        /**
+         * Returns the keys.
+         * @return keys
+         */
+        public Set<String> keys() {
+            return keys;
+        }
+
+        @Override
+        public void writeObject(BufferOutput<?> buffer, Serializer serializer) {
+            super.writeObject(buffer, serializer);
+            serializer.writeObject(keys, buffer);
+        }
+
+        @Override
+        public void readObject(BufferInput<?> buffer, Serializer serializer) {
+            super.readObject(buffer, serializer);
+            keys = serializer.readObject(buffer);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(getClass())
+                    .add("keys", keys)
+                    .toString();
+        }
+    }
+
     /**
      * Is empty query.
      */
@@ -485,6 +529,153 @@ public final class AtomixConsistentMapCommands {
         }
     }
 
+    /**
+     * Put all command.
+     */
+    @SuppressWarnings("serial")
+    public static class PutAll extends MapCommand<MapEntryUpdateResult.Status> {
+        private Map<String, byte[]> entries;
+
+        public PutAll() {
+        }
+
+        public PutAll(Map<String, byte[]> entries) {
+            this.entries = Assert.notNull(entries, "entries");
+        }
+
+        /**
+         * Returns the entries.
+         * @return entries
+         */
+        public Map<String, byte[]> entries() {
+            return entries;
+        }
+
+        @Override
+        public CompactionMode compaction() {
+          return CompactionMode.QUORUM;
+        }
+
+        @Override
+        public void writeObject(BufferOutput<?> buffer, Serializer serializer) {
+            super.writeObject(buffer, serializer);
+            serializer.writeObject(entries, buffer);
+        }
+
+        @Override
+        public void readObject(BufferInput<?> buffer, Serializer serializer) {
+            super.readObject(buffer, serializer);
+            entries = serializer.readObject(buffer);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(getClass())
+                    .add("keys", entries.keySet())
+                    .toString();
+        }
+    }
+
+    /**
+     * Remove all command.
+     */
+    @SuppressWarnings("serial")
+    public static class RemoveAll extends MapCommand<MapEntryUpdateResult.Status> {
+        private Set<String> keys;
+
+        public RemoveAll() {
+        }
+
+        public RemoveAll(Set<String> keys) {
+            this.keys = Assert.notNull(keys, "keys");
+        }
+
+        /**
+         * Returns the keys.
+         * @return keys
+         */
+        public Set<String> keys() {
+            return keys;
+        }
+
+        @Override
+        public CompactionMode compaction() {
+          return CompactionMode.FULL;
+        }
+
+        @Override
+        public void writeObject(BufferOutput<?> buffer, Serializer serializer) {
+            super.writeObject(buffer, serializer);
+            serializer.writeObject(keys, buffer);
+        }
+
+        @Override
+        public void readObject(BufferInput<?> buffer, Serializer serializer) {
+            super.readObject(buffer, serializer);
+            keys = serializer.readObject(buffer);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(getClass())
+                    .add("keys", keys)
+                    .toString();
+        }
+    }
+
+    /**
+     * Batch of map updates that are applied one after the other.
+     */
+    @SuppressWarnings("serial")
+    public static class Batch extends MapCommand<List<MapEntryUpdateResult<String, byte[]>>> {
+        private List<UpdateAndGet> updates;
+
+        public Batch() {
+        }
+
+        public Batch(List<UpdateAndGet> updates) {
+            this.updates = Assert.notNull(updates, "updates");
+        }
+
+        /**
+         * Returns the updates in the order they are applied.
+         * @return updates
+         */
+        public List<UpdateAndGet> updates() {
+            return updates;
+        }
+
+        @Override
+        public CompactionMode compaction() {
+          return updates.stream().anyMatch(update -> update.value() == null)
+                  ? CompactionMode.FULL : CompactionMode.QUORUM;
+        }
+
+        @Override
+        public void writeObject(BufferOutput<?> buffer, Serializer serializer) {
+            super.writeObject(buffer, serializer);
+            buffer.writeInt(updates.size());
+            updates.forEach(update -> serializer.writeObject(update, buffer));
+        }
+
+        @Override
+        public void readObject(BufferInput<?> buffer, Serializer serializer) {
+            super.readObject(buffer, serializer);
+            int size = buffer.readInt();
+            updates = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                updates.add(serializer.readObject(buffer));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(getClass())
+                    .add("updates", updates)
+                    .toString();
+        }
+    }
+
     /**
      * Change listen.
      */
@@ -535,6 +726,10 @@ public final class AtomixConsistentMapCommands {
             registry.register(TransactionRollback.class, -774);
             registry.register(TransactionPrepareAndCommit.class, -775);
             registry.register(UpdateAndGet.class, -776);
+            registry.register(GetAll.class, -777);
+            registry.register(PutAll.class, -778);
+            registry.register(RemoveAll.class, -779);
+            registry.register(Batch.class, -780);
         }
     }
 }
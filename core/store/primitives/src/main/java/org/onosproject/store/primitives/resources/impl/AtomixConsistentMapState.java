@@ -36,20 +36,25 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
 
 import org.onlab.util.CountDownCompleter;
 import org.onlab.util.Match;
 import org.onosproject.store.primitives.MapUpdate;
 import org.onosproject.store.primitives.TransactionId;
+import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Batch;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Clear;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.ContainsKey;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.ContainsValue;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.EntrySet;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Get;
+import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.GetAll;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.IsEmpty;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.KeySet;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Listen;
+import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.PutAll;
+import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.RemoveAll;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.Size;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.TransactionCommit;
 import org.onosproject.store.primitives.resources.impl.AtomixConsistentMapCommands.TransactionPrepare;
@@ -106,13 +111,17 @@ public class AtomixConsistentMapState extends ResourceStateMachine implements Se
         executor.register(ContainsValue.class, this::containsValue);
         executor.register(EntrySet.class, this::entrySet);
         executor.register(Get.class, this::get);
+        executor.register(GetAll.class, this::getAll);
         executor.register(IsEmpty.class, this::isEmpty);
         executor.register(KeySet.class, this::keySet);
         executor.register(Size.class, this::size);
         executor.register(Values.class, this::values);
         // Commands
         executor.register(UpdateAndGet.class, this::updateAndGet);
+        executor.register(Batch.class, this::batch);
         executor.register(AtomixConsistentMapCommands.Clear.class, this::clear);
+        executor.register(PutAll.class, this::putAll);
+        executor.register(RemoveAll.class, this::removeAll);
         executor.register(TransactionPrepare.class, this::prepare);
         executor.register(TransactionCommit.class, this::commit);
         executor.register(TransactionRollback.class, this::rollback);
@@ -176,6 +185,27 @@ public class AtomixConsistentMapState extends ResourceStateMachine implements Se
         }
     }
 
+    /**
+     * Handles a get all commit.
+     *
+     * @param commit getAll commit
+     * @return values mapped to the keys present in the map
+     */
+    protected Map<String, Versioned<byte[]>> getAll(Commit<? extends GetAll> commit) {
+        try {
+            Map<String, Versioned<byte[]>> values = new HashMap<>();
+            for (String key : commit.operation().keys()) {
+                Versioned<byte[]> value = toVersioned(mapEntries.get(key));
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        } finally {
+            commit.close();
+        }
+    }
+
     /**
      * Handles a count commit.
      *
@@ -259,18 +289,66 @@ public class AtomixConsistentMapState extends ResourceStateMachine implements Se
      * @return update result
      */
     protected MapEntryUpdateResult<String, byte[]> updateAndGet(Commit<? extends UpdateAndGet> commit) {
-        MapEntryUpdateResult.Status updateStatus = validate(commit.operation());
-        String key = commit.operation().key();
-        MapEntryValue oldCommitValue = mapEntries.get(commit.operation().key());
+        List<MapEvent<String, byte[]>> eventsToPublish = Lists.newArrayList();
+        MapEntryUpdateResult<String, byte[]> result = update(commit.operation(),
+                version -> new NonTransactionalCommit(version, commit), eventsToPublish);
+        if (!isRetained(result)) {
+            commit.close();
+        }
+        publish(eventsToPublish);
+        return result;
+    }
+
+    /**
+     * Handles a batch commit.
+     * <p>
+     * The updates are applied in order, each one independently of whether
+     * the preceding ones succeeded.
+     *
+     * @param commit batch commit
+     * @return results of the updates in order
+     */
+    protected List<MapEntryUpdateResult<String, byte[]>> batch(Commit<? extends Batch> commit) {
+        List<UpdateAndGet> updates = commit.operation().updates();
+        // the commit is retained until the last of its values is discarded
+        CountDownCompleter<Commit<? extends Batch>> completer =
+                new CountDownCompleter<>(commit, updates.size(), Commit::close);
+        List<MapEvent<String, byte[]>> eventsToPublish = Lists.newArrayList();
+        List<MapEntryUpdateResult<String, byte[]>> results = Lists.newArrayListWithCapacity(updates.size());
+        for (UpdateAndGet update : updates) {
+            MapEntryUpdateResult<String, byte[]> result = update(update,
+                    version -> new BatchedCommit(update, version, completer), eventsToPublish);
+            if (!isRetained(result)) {
+                completer.countDown();
+            }
+            results.add(result);
+        }
+        publish(eventsToPublish);
+        return results;
+    }
+
+    /**
+     * Applies an update to the map.
+     *
+     * @param update update to apply
+     * @param valueFactory creates the map entry value of a given version
+     * @param events list the event of the update is added to
+     * @return update result
+     */
+    private MapEntryUpdateResult<String, byte[]> update(UpdateAndGet update,
+                                                        LongFunction<MapEntryValue> valueFactory,
+                                                        List<MapEvent<String, byte[]>> events) {
+        MapEntryUpdateResult.Status updateStatus = validate(update);
+        String key = update.key();
+        MapEntryValue oldCommitValue = mapEntries.get(key);
         Versioned<byte[]> oldMapValue = toVersioned(oldCommitValue);
 
         if (updateStatus != MapEntryUpdateResult.Status.OK) {
-            commit.close();
             return new MapEntryUpdateResult<>(updateStatus, "", key,
                     oldMapValue, oldMapValue);
         }
 
-        byte[] newValue = commit.operation().value();
+        byte[] newValue = update.value();
         long newVersion = versionCounter.incrementAndGet();
         Versioned<byte[]> newMapValue = newValue == null ? null
                 : new Versioned<>(newValue, newVersion);
@@ -282,15 +360,24 @@ public class AtomixConsistentMapState extends ResourceStateMachine implements Se
             oldCommitValue.discard();
         }
         if (updateType == INSERT || updateType == UPDATE) {
-            mapEntries.put(key, new NonTransactionalCommit(newVersion, commit));
-        } else {
-            commit.close();
+            mapEntries.put(key, valueFactory.apply(newVersion));
         }
-        publish(Lists.newArrayList(new MapEvent<>("", key, newMapValue, oldMapValue)));
+        events.add(new MapEvent<>("", key, newMapValue, oldMapValue));
         return new MapEntryUpdateResult<>(updateStatus, "", key, oldMapValue,
                 newMapValue);
     }
 
+    /**
+     * Returns if an update left a value in the map that holds on to the
+     * commit of the update.
+     *
+     * @param result update result
+     * @return true if the commit of the update is retained
+     */
+    private static boolean isRetained(MapEntryUpdateResult<String, byte[]> result) {
+        return result.status() == MapEntryUpdateResult.Status.OK && result.newValue() != null;
+    }
+
     /**
      * Handles a clear commit.
      *
@@ -317,6 +404,74 @@ public class AtomixConsistentMapState extends ResourceStateMachine implements Se
         }
     }
 
+    /**
+     * Handles a put all commit.
+     * <p>
+     * The entries are applied all together or, if any of the keys is locked
+     * by a pending transaction, not at all.
+     *
+     * @param commit putAll commit
+     * @return update status
+     */
+    protected MapEntryUpdateResult.Status putAll(Commit<? extends PutAll> commit) {
+        Map<String, byte[]> entries = commit.operation().entries();
+        if (entries.isEmpty()) {
+            commit.close();
+            return MapEntryUpdateResult.Status.NOOP;
+        }
+        if (entries.keySet().stream().anyMatch(preparedKeys::contains)) {
+            commit.close();
+            return MapEntryUpdateResult.Status.WRITE_LOCK;
+        }
+        // the commit is retained until the last of its values is discarded
+        CountDownCompleter<Commit<? extends PutAll>> completer =
+                new CountDownCompleter<>(commit, entries.size(), Commit::close);
+        List<MapEvent<String, byte[]>> eventsToPublish = Lists.newArrayList();
+        entries.keySet().forEach(key -> {
+            MapEntryValue newValue = new BulkCommit(key, versionCounter.incrementAndGet(), completer);
+            MapEntryValue previousValue = mapEntries.put(key, newValue);
+            eventsToPublish.add(new MapEvent<>("", key, toVersioned(newValue), toVersioned(previousValue)));
+            if (previousValue != null) {
+                previousValue.discard();
+            }
+        });
+        publish(eventsToPublish);
+        return MapEntryUpdateResult.Status.OK;
+    }
+
+    /**
+     * Handles a remove all commit.
+     * <p>
+     * The keys are removed all together or, if any of them is locked by a
+     * pending transaction, not at all.
+     *
+     * @param commit removeAll commit
+     * @return update status
+     */
+    protected MapEntryUpdateResult.Status removeAll(Commit<? extends RemoveAll> commit) {
+        try {
+            Set<String> keys = commit.operation().keys();
+            if (keys.stream().anyMatch(preparedKeys::contains)) {
+                return MapEntryUpdateResult.Status.WRITE_LOCK;
+            }
+            List<MapEvent<String, byte[]>> eventsToPublish = Lists.newArrayList();
+            for (String key : keys) {
+                MapEntryValue previousValue = mapEntries.remove(key);
+                if (previousValue != null) {
+                    eventsToPublish.add(new MapEvent<>("", key, null, toVersioned(previousValue)));
+                    previousValue.discard();
+                }
+            }
+            if (eventsToPublish.isEmpty()) {
+                return MapEntryUpdateResult.Status.NOOP;
+            }
+            publish(eventsToPublish);
+            return MapEntryUpdateResult.Status.OK;
+        } finally {
+            commit.close();
+        }
+    }
+
     /**
      * Handles a listen commit.
      *
@@ -655,4 +810,66 @@ public class AtomixConsistentMapState extends ResourceStateMachine implements Se
             return update == null ? null : update.value();
         }
     }
+
+    /**
+     * A {@code MapEntryValue} that is derived from a bulk put of several
+     * entries.
+     */
+    private class BulkCommit implements MapEntryValue {
+        private final String key;
+        private final long version;
+        private final CountDownCompleter<Commit<? extends PutAll>> completer;
+
+        public BulkCommit(String key, long version, CountDownCompleter<Commit<? extends PutAll>> completer) {
+            this.key = key;
+            this.version = version;
+            this.completer = completer;
+        }
+
+        @Override
+        public byte[] value() {
+            return completer.object().operation().entries().get(key);
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public void discard() {
+            completer.countDown();
+        }
+    }
+
+    /**
+     * A {@code MapEntryValue} that is derived from an update submitted as
+     * part of a batch.
+     */
+    private class BatchedCommit implements MapEntryValue {
+        private final UpdateAndGet update;
+        private final long version;
+        private final CountDownCompleter<Commit<? extends Batch>> completer;
+
+        public BatchedCommit(UpdateAndGet update, long version, CountDownCompleter<Commit<? extends Batch>> completer) {
+            this.update = update;
+            this.version = version;
+            this.completer = completer;
+        }
+
+        @Override
+        public byte[] value() {
+            return update.value();
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public void discard() {
+            completer.countDown();
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.store.LogicalTimestamp;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.serializers.StoreSerializer;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Unit tests for anti-entropy bucket hashes.
+ */
+public class AntiEntropyBucketsTest {
+
+    private static final NodeId NODE = new NodeId("node");
+
+    private static final StoreSerializer SERIALIZER = StoreSerializer.using(KryoNamespace.newBuilder()
+            .register(KryoNamespaces.API)
+            .register(LogicalTimestamp.class)
+            .register(AntiEntropyAdvertisement.class)
+            .register(AntiEntropyBucketAdvertisement.class)
+            .register(MapValue.Digest.class)
+            .build());
+
+    private static MapValue<String> value(String value, long timestamp) {
+        return new MapValue<>(value, new LogicalTimestamp(timestamp));
+    }
+
+    /**
+     * Tests that the bucket hashes do not depend on the order of updates.
+     */
+    @Test
+    public void testOrderIndependence() {
+        AntiEntropyBuckets first = new AntiEntropyBuckets();
+        first.update("a", null, value("1", 1));
+        first.update("b", null, value("2", 2));
+        first.update("a", value("1", 1), value("3", 3));
+
+        AntiEntropyBuckets second = new AntiEntropyBuckets();
+        second.update("b", null, value("2", 2));
+        second.update("a", null, value("3", 3));
+
+        assertArrayEquals(first.hashes(), second.hashes());
+        assertThat(first.diff(second.hashes()).isEmpty(), is(true));
+    }
+
+    /**
+     * Tests that removing all entries restores the initial hashes.
+     */
+    @Test
+    public void testRemoval() {
+        AntiEntropyBuckets buckets = new AntiEntropyBuckets();
+        buckets.update("a", null, value("1", 1));
+        buckets.update("a", value("1", 1), MapValue.tombstone(new LogicalTimestamp(2)));
+        assertThat(buckets.diff(new AntiEntropyBuckets().hashes()),
+                   is(ImmutableSet.of(AntiEntropyBuckets.bucket("a"))));
+
+        buckets.update("a", MapValue.tombstone(new LogicalTimestamp(2)), null);
+        assertArrayEquals(new AntiEntropyBuckets().hashes(), buckets.hashes());
+    }
+
+    /**
+     * Tests that only the bucket of a changed entry is reported as differing.
+     */
+    @Test
+    public void testDiff() {
+        AntiEntropyBuckets local = new AntiEntropyBuckets();
+        AntiEntropyBuckets remote = new AntiEntropyBuckets();
+        for (int i = 0; i < 100; i++) {
+            local.update("key" + i, null, value("v" + i, i));
+            remote.update("key" + i, null, value("v" + i, i));
+        }
+        remote.update("key7", value("v7", 7), value("v7", 100));
+
+        assertThat(local.diff(remote.hashes()), is(ImmutableSet.of(AntiEntropyBuckets.bucket("key7"))));
+    }
+
+    /**
+     * Compares the encoded size of a full digest advertisement with that of
+     * the bucket exchange for a large map that differs in a single entry.
+     */
+    @Test
+    public void testAdvertisementSize() {
+        int entries = 100_000;
+        Map<String, MapValue.Digest> digest = Maps.newHashMap();
+        AntiEntropyBuckets local = new AntiEntropyBuckets();
+        AntiEntropyBuckets remote = new AntiEntropyBuckets();
+        for (int i = 0; i < entries; i++) {
+            String key = "key" + i;
+            MapValue<String> value = value("value" + i, i);
+            digest.put(key, value.digest());
+            local.update(key, null, value);
+            remote.update(key, null, value);
+        }
+        remote.update("key42", value("value42", 42), value("value42", entries));
+
+        int fullBytes = SERIALIZER.encode(new AntiEntropyAdvertisement<>(NODE, digest)).length;
+
+        AntiEntropyBucketAdvertisement bucketAd = new AntiEntropyBucketAdvertisement(NODE, local.hashes());
+        Set<Integer> differing = remote.diff(bucketAd.bucketHashes());
+        assertThat(differing, is(ImmutableSet.of(AntiEntropyBuckets.bucket("key42"))));
+        Map<String, MapValue.Digest> bucketDigest = Maps.filterKeys(digest,
+                key -> differing.contains(AntiEntropyBuckets.bucket(key)));
+        int bucketedBytes = SERIALIZER.encode(bucketAd).length +
+                SERIALIZER.encode(new AntiEntropyAdvertisement<>(NODE, bucketDigest, differing)).length;
+
+        // bucket hashes plus ~100 digests versus 100k digests
+        assertThat(bucketedBytes * 50, lessThan(fullBytes));
+    }
+}
@@ -19,9 +19,11 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static junit.framework.TestCase.assertFalse;
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
@@ -39,6 +41,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -49,6 +52,8 @@ import java.util.function.Function;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.metrics.MetricsService;
 import org.onlab.packet.IpAddress;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cluster.ClusterService;
@@ -66,8 +71,10 @@ import org.onosproject.store.serializers.KryoNamespaces;
 import org.onosproject.store.service.EventuallyConsistentMap;
 import org.onosproject.store.service.EventuallyConsistentMapEvent;
 import org.onosproject.store.service.EventuallyConsistentMapListener;
+import com.codahale.metrics.MetricFilter;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -82,12 +89,15 @@ public class EventuallyConsistentMapImplTest {
     private ClusterService clusterService;
     private ClusterCommunicationService clusterCommunicator;
     private SequentialClockService<String, String> clockService;
+    private MetricsService metricsService;
 
     private static final String MAP_NAME = "test";
     private static final MessageSubject UPDATE_MESSAGE_SUBJECT
             = new MessageSubject("ecm-" + MAP_NAME + "-update");
     private static final MessageSubject ANTI_ENTROPY_MESSAGE_SUBJECT
             = new MessageSubject("ecm-" + MAP_NAME + "-anti-entropy");
+    private static final MessageSubject ANTI_ENTROPY_BUCKETS_SUBJECT
+            = new MessageSubject("ecm-" + MAP_NAME + "-anti-entropy-buckets");
     private static final MessageSubject UPDATE_REQUEST_SUBJECT
             = new MessageSubject("ecm-" + MAP_NAME + "-update-request");
 
@@ -96,12 +106,15 @@ public class EventuallyConsistentMapImplTest {
     private static final String VALUE1 = "oneValue";
     private static final String VALUE2 = "twoValue";
 
+    private static final NodeId PEER = new NodeId("peer");
+
     private final ControllerNode self =
             new DefaultControllerNode(new NodeId("local"), IpAddress.valueOf(1));
 
     private Consumer<Collection<UpdateEntry<String, String>>> updateHandler;
     private Consumer<Collection<UpdateRequest<String>>> requestHandler;
     private Function<AntiEntropyAdvertisement<String>, AntiEntropyResponse> antiEntropyHandler;
+    private Function<AntiEntropyBucketAdvertisement, AntiEntropyBucketResponse> antiEntropyBucketsHandler;
 
     @Before
     public void setUp() throws Exception {
@@ -125,7 +138,7 @@ public class EventuallyConsistentMapImplTest {
                                                           anyObject(Function.class),
                                                           anyObject(Function.class),
                                                           anyObject(Executor.class));
-        expectLastCall().andDelegateTo(new TestClusterCommunicationService()).times(1);
+        expectLastCall().andDelegateTo(new TestClusterCommunicationService()).times(2);
         clusterCommunicator.<Object>addSubscriber(anyObject(MessageSubject.class),
                 anyObject(Function.class), anyObject(Consumer.class), anyObject(Executor.class));
         expectLastCall().andDelegateTo(new TestClusterCommunicationService()).times(1);
@@ -138,8 +151,10 @@ public class EventuallyConsistentMapImplTest {
                 .register(KryoNamespaces.API)
                 .register(TestTimestamp.class);
 
+        metricsService = new MetricsManager();
+
         ecMap = new EventuallyConsistentMapBuilderImpl<String, String>(
-                        clusterService, clusterCommunicator, persistenceService)
+                        clusterService, clusterCommunicator, persistenceService, metricsService)
                 .withName(MAP_NAME)
                 .withSerializer(serializer)
                 .withTimestampProvider((k, v) -> clockService.getTimestamp(k, v))
@@ -194,6 +209,60 @@ public class EventuallyConsistentMapImplTest {
         assertTrue(ecMap.isEmpty());
     }
 
+    @Test
+    public void testEntryCountMetrics() throws Exception {
+        expectPeerMessage(clusterCommunicator);
+
+        ecMap.put(KEY1, VALUE1);
+        ecMap.put(KEY2, VALUE2);
+        ecMap.put(KEY2, VALUE1);
+        assertEquals(2, gaugeValue("liveEntries"));
+        assertEquals(0, gaugeValue("tombstones"));
+
+        ecMap.remove(KEY1);
+        assertEquals(1, gaugeValue("liveEntries"));
+        assertEquals(1, gaugeValue("tombstones"));
+
+        // a newer remote put revives the removed entry
+        Timestamp timestamp = clockService.getTimestamp(KEY1, VALUE1);
+        updateHandler.accept(ImmutableList.of(generatePutMessage(KEY1, VALUE1, timestamp)));
+        assertEquals(2, gaugeValue("liveEntries"));
+        assertEquals(0, gaugeValue("tombstones"));
+        assertEquals(2, ecMap.size());
+    }
+
+    @Test
+    public void testMetricsOwnership() throws Exception {
+        expectPeerMessage(clusterCommunicator);
+
+        ClusterCommunicationService newCommunicator = createNiceMock(ClusterCommunicationService.class);
+        replay(newCommunicator);
+
+        // a newer map of the same name takes over the gauges
+        EventuallyConsistentMap<String, String> newMap = new EventuallyConsistentMapBuilderImpl<String, String>(
+                        clusterService, newCommunicator, persistenceService, metricsService)
+                .withName(MAP_NAME)
+                .withSerializer(KryoNamespace.newBuilder().register(KryoNamespaces.API))
+                .withTimestampProvider((k, v) -> clockService.getTimestamp(k, v))
+                .build();
+        newMap.put(KEY1, VALUE1);
+        assertEquals(1, gaugeValue("liveEntries"));
+
+        // destroying the older map leaves the newer map's gauges in place
+        ecMap.destroy();
+        assertEquals(1, gaugeValue("liveEntries"));
+        assertEquals(0, gaugeValue("tombstones"));
+
+        newMap.destroy();
+        assertTrue(metricsService.getGauges(MetricFilter.ALL).isEmpty());
+    }
+
+    private int gaugeValue(String metric) {
+        return (Integer) metricsService.getGauges(MetricFilter.ALL)
+                .get("EventuallyConsistentMap." + MAP_NAME + "." + metric)
+                .getValue();
+    }
+
     @Test
     public void testContainsKey() throws Exception {
         expectPeerMessage(clusterCommunicator);
@@ -630,11 +699,79 @@ public class EventuallyConsistentMapImplTest {
         return true;
     }
 
+    @Test
+    public void testBucketAdvertisement() throws Exception {
+        expectPeerMessage(clusterCommunicator);
+
+        Timestamp timestamp1 = clockService.peek(1);
+        Timestamp timestamp2 = clockService.peek(2);
+        ecMap.put(KEY1, VALUE1);
+        ecMap.put(KEY2, VALUE2);
+
+        // a peer without any entries differs in the buckets of both keys
+        AntiEntropyBucketResponse response = antiEntropyBucketsHandler.apply(
+                new AntiEntropyBucketAdvertisement(PEER, new AntiEntropyBuckets().hashes()));
+        assertEquals(AntiEntropyResponse.PROCESSED, response.status());
+        assertEquals(ImmutableSet.of(AntiEntropyBuckets.bucket(KEY1), AntiEntropyBuckets.bucket(KEY2)),
+                     response.differingBuckets());
+
+        // a peer holding the same entries is in sync
+        AntiEntropyBuckets peerBuckets = new AntiEntropyBuckets();
+        peerBuckets.update(KEY1, null, new MapValue<>(VALUE1, timestamp1));
+        peerBuckets.update(KEY2, null, new MapValue<>(VALUE2, timestamp2));
+        response = antiEntropyBucketsHandler.apply(
+                new AntiEntropyBucketAdvertisement(PEER, peerBuckets.hashes()));
+        assertEquals(AntiEntropyResponse.PROCESSED, response.status());
+        assertTrue(response.differingBuckets().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPartialAdvertisement() throws Exception {
+        expectPeerMessage(clusterCommunicator);
+
+        ecMap.put(KEY1, VALUE1);
+        ecMap.put(KEY2, VALUE2);
+        assertTrue(AntiEntropyBuckets.bucket(KEY1) != AntiEntropyBuckets.bucket(KEY2));
+
+        List<UpdateEntry<String, String>> sentUpdates = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.<Object>unicast(anyObject(),
+                                                   eq(UPDATE_MESSAGE_SUBJECT),
+                                                   anyObject(Function.class),
+                                                   eq(PEER)))
+                .andAnswer(() -> {
+                    sentUpdates.addAll((Collection<UpdateEntry<String, String>>) getCurrentArguments()[0]);
+                    latch.countDown();
+                    return CompletableFuture.completedFuture(null);
+                })
+                .anyTimes();
+        expect(clusterCommunicator.<Object>unicast(anyObject(),
+                                                   eq(UPDATE_REQUEST_SUBJECT),
+                                                   anyObject(Function.class),
+                                                   eq(PEER)))
+                .andReturn(CompletableFuture.completedFuture(null))
+                .anyTimes();
+        replay(clusterCommunicator);
+
+        // the peer advertises an empty bucket of KEY2 only; KEY1 must not be pushed
+        AntiEntropyResponse response = antiEntropyHandler.apply(
+                new AntiEntropyAdvertisement<>(PEER, ImmutableMap.of(),
+                                               ImmutableSet.of(AntiEntropyBuckets.bucket(KEY2))));
+        assertEquals(AntiEntropyResponse.PROCESSED, response);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, sentUpdates.size());
+        assertEquals(KEY2, sentUpdates.get(0).key());
+    }
+
     @Test
     public void testDestroy() throws Exception {
         clusterCommunicator.removeSubscriber(UPDATE_MESSAGE_SUBJECT);
         clusterCommunicator.removeSubscriber(UPDATE_REQUEST_SUBJECT);
         clusterCommunicator.removeSubscriber(ANTI_ENTROPY_MESSAGE_SUBJECT);
+        clusterCommunicator.removeSubscriber(ANTI_ENTROPY_BUCKETS_SUBJECT);
 
         replay(clusterCommunicator);
 
@@ -793,6 +930,9 @@ public class EventuallyConsistentMapImplTest {
                 Function<byte[], M> decoder, Function<M, R> handler, Function<R, byte[]> encoder, Executor executor) {
             if (subject.equals(ANTI_ENTROPY_MESSAGE_SUBJECT)) {
                 antiEntropyHandler = (Function<AntiEntropyAdvertisement<String>, AntiEntropyResponse>) handler;
+            } else if (subject.equals(ANTI_ENTROPY_BUCKETS_SUBJECT)) {
+                antiEntropyBucketsHandler =
+                        (Function<AntiEntropyBucketAdvertisement, AntiEntropyBucketResponse>) handler;
             } else {
                 throw new RuntimeException("Unexpected message subject " + subject.toString());
             }
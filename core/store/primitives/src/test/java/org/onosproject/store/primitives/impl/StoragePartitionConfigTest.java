@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import io.atomix.copycat.server.storage.Storage;
+import io.atomix.copycat.server.storage.StorageLevel;
+
+import java.io.File;
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for StoragePartitionConfig.
+ */
+public class StoragePartitionConfigTest {
+
+    private static final double DELTA = 1e-9;
+
+    private final StoragePartitionConfig config =
+            new StoragePartitionConfig(StorageLevel.DISK, 1000, 0.25,
+                                       Duration.ofSeconds(30), Duration.ofMinutes(10));
+
+    @Test
+    public void testConstruction() {
+        assertEquals(StorageLevel.DISK, config.storageLevel());
+        assertEquals(1000, config.maxEntriesPerSegment());
+        assertEquals(0.25, config.compactionThreshold(), DELTA);
+        assertEquals(Duration.ofSeconds(30), config.minorCompactionInterval());
+        assertEquals(Duration.ofMinutes(10), config.majorCompactionInterval());
+        assertEquals(StoragePartitionConfig.DEFAULT_MAX_COMMAND_BATCH_SIZE, config.maxCommandBatchSize());
+    }
+
+    @Test
+    public void testDefaultConfig() {
+        StoragePartitionConfig defaults = StoragePartitionConfig.defaultConfig();
+        assertEquals(StoragePartitionConfig.DEFAULT_STORAGE_LEVEL, defaults.storageLevel());
+        assertEquals(StoragePartitionConfig.DEFAULT_MAX_ENTRIES_PER_SEGMENT, defaults.maxEntriesPerSegment());
+        assertEquals(StoragePartitionConfig.DEFAULT_COMPACTION_THRESHOLD, defaults.compactionThreshold(), DELTA);
+        assertEquals(StoragePartitionConfig.DEFAULT_MINOR_COMPACTION_INTERVAL, defaults.minorCompactionInterval());
+        assertEquals(StoragePartitionConfig.DEFAULT_MAJOR_COMPACTION_INTERVAL, defaults.majorCompactionInterval());
+        assertEquals(StoragePartitionConfig.DEFAULT_MAX_COMMAND_BATCH_SIZE, defaults.maxCommandBatchSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveMaxEntriesPerSegment() {
+        new StoragePartitionConfig(StorageLevel.DISK, 0, 0.5, Duration.ofMinutes(1), Duration.ofHours(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCompactionThreshold() {
+        new StoragePartitionConfig(StorageLevel.DISK, 1000, 0, Duration.ofMinutes(1), Duration.ofHours(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompactionThresholdAboveOne() {
+        config.withCompactionThreshold(1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveMaxCommandBatchSize() {
+        config.withMaxCommandBatchSize(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullStorageLevel() {
+        new StoragePartitionConfig(null, 1000, 0.5, Duration.ofMinutes(1), Duration.ofHours(1));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullCompactionInterval() {
+        new StoragePartitionConfig(StorageLevel.DISK, 1000, 0.5, null, Duration.ofHours(1));
+    }
+
+    @Test
+    public void testWithCompactionThreshold() {
+        StoragePartitionConfig copy = config.withMaxCommandBatchSize(16).withCompactionThreshold(1);
+        assertEquals(1, copy.compactionThreshold(), DELTA);
+        assertEquals(16, copy.maxCommandBatchSize());
+        assertEquals(config.storageLevel(), copy.storageLevel());
+        assertEquals(config.maxEntriesPerSegment(), copy.maxEntriesPerSegment());
+        assertEquals(config.minorCompactionInterval(), copy.minorCompactionInterval());
+        assertEquals(config.majorCompactionInterval(), copy.majorCompactionInterval());
+        assertEquals(0.25, config.compactionThreshold(), DELTA);
+    }
+
+    @Test
+    public void testWithMaxCommandBatchSize() {
+        StoragePartitionConfig copy = config.withMaxCommandBatchSize(1);
+        assertEquals(1, copy.maxCommandBatchSize());
+        assertEquals(config.storageLevel(), copy.storageLevel());
+        assertEquals(config.maxEntriesPerSegment(), copy.maxEntriesPerSegment());
+        assertEquals(config.compactionThreshold(), copy.compactionThreshold(), DELTA);
+        assertEquals(config.minorCompactionInterval(), copy.minorCompactionInterval());
+        assertEquals(config.majorCompactionInterval(), copy.majorCompactionInterval());
+        assertEquals(StoragePartitionConfig.DEFAULT_MAX_COMMAND_BATCH_SIZE, config.maxCommandBatchSize());
+    }
+
+    @Test
+    public void testToStorage() {
+        File directory = new File("target/partitions/p1");
+        Storage storage = config.toStorage(directory);
+        assertEquals(StorageLevel.DISK, storage.level());
+        assertEquals(directory, storage.directory());
+        assertEquals(1000, storage.maxEntriesPerSegment());
+        assertEquals(0.25, storage.compactionThreshold(), DELTA);
+        assertEquals(Duration.ofSeconds(30), storage.minorCompactionInterval());
+        assertEquals(Duration.ofMinutes(10), storage.majorCompactionInterval());
+    }
+}
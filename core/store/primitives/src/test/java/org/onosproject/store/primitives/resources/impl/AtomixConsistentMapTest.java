@@ -16,12 +16,19 @@
 package org.onosproject.store.primitives.resources.impl;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
 import io.atomix.resource.ResourceType;
 import org.junit.Test;
 import org.onlab.util.Tools;
+import org.onosproject.store.primitives.DefaultConsistentMap;
 import org.onosproject.store.primitives.MapUpdate;
+import org.onosproject.store.primitives.impl.CachingAsyncConsistentMap;
 import org.onosproject.store.primitives.TransactionId;
+import org.onosproject.store.service.ConsistentMapException;
 import org.onosproject.store.service.MapEvent;
 import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.MapTransaction;
@@ -30,9 +37,12 @@ import org.onosproject.store.service.Versioned;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.is;
@@ -44,6 +54,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.onlab.junit.TestTools.assertAfter;
 
 /**
  * Unit tests for {@link AtomixConsistentMap}.
@@ -71,6 +82,38 @@ public class AtomixConsistentMapTest extends AtomixTestBase {
         mapComputeOperationTests(3);
     }
 
+    /**
+     * Tests concurrent compute operations from different clients.
+     */
+    @Test
+    public void testConcurrentComputeOperations() throws Throwable {
+        concurrentComputeTests(3);
+    }
+
+    /**
+     * Tests bulk map operations.
+     */
+    @Test
+    public void testBulkMapOperations() throws Throwable {
+        bulkMapOperationTests(3);
+    }
+
+    /**
+     * Tests reads served from a near cache.
+     */
+    @Test
+    public void testNearCache() throws Throwable {
+        nearCacheTests(3);
+    }
+
+    /**
+     * Tests batching of concurrent updates.
+     */
+    @Test
+    public void testBatching() throws Throwable {
+        batchingTests(3);
+    }
+
     /**
      * Tests map event notifications.
      */
@@ -263,6 +306,160 @@ public class AtomixConsistentMapTest extends AtomixTestBase {
     }
 
 
+    protected void concurrentComputeTests(int clusterSize) throws Throwable {
+        createCopycatServers(clusterSize);
+
+        AtomixConsistentMap map1 = createAtomixClient().getResource("test", AtomixConsistentMap.class).join();
+        AtomixConsistentMap map2 = createAtomixClient().getResource("test", AtomixConsistentMap.class).join();
+
+        BiFunction<String, byte[], byte[]> increment = (k, v) ->
+                Longs.toByteArray(v == null ? 1 : Longs.fromByteArray(v) + 1);
+        List<CompletableFuture<Versioned<byte[]>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            futures.add(map1.compute("foo", increment));
+            futures.add(map2.compute("foo", increment));
+        }
+        // updates that lose too many races are reported as concurrent
+        // modifications, which the synchronous map retries
+        DefaultConsistentMap<String, byte[]> syncMap1 = new DefaultConsistentMap<>(map1, 5000);
+        int retried = 0;
+        for (CompletableFuture<Versioned<byte[]>> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                assertThat(Throwables.getRootCause(e) instanceof ConsistentMapException.ConcurrentModification,
+                           is(true));
+                syncMap1.compute("foo", increment);
+                retried++;
+            }
+        }
+
+        Versioned<byte[]> result = map1.get("foo").join();
+        assertEquals("retried " + retried, futures.size(), Longs.fromByteArray(result.value()));
+
+        // a further update starts from the value known from the last one
+        map1.compute("foo", increment).join();
+        assertEquals(futures.size() + 1, Longs.fromByteArray(map2.get("foo").join().value()));
+    }
+
+    protected void nearCacheTests(int clusterSize) throws Throwable {
+        createCopycatServers(clusterSize);
+        final byte[] value1 = Tools.getBytesUtf8("value1");
+        final byte[] value2 = Tools.getBytesUtf8("value2");
+        final byte[] value3 = Tools.getBytesUtf8("value3");
+
+        AtomixConsistentMap map1 = createAtomixClient().getResource("test", AtomixConsistentMap.class).join();
+        AtomixConsistentMap map2 = createAtomixClient().getResource("test", AtomixConsistentMap.class).join();
+        CachingAsyncConsistentMap<String, byte[]> cached = new CachingAsyncConsistentMap<>(map1, 100, false);
+
+        // absent keys are cached too
+        assertNull(cached.get("foo").join());
+        assertNull(cached.get("foo").join());
+
+        // updates made elsewhere reach the cache through events
+        Versioned<byte[]> remote = map2.putAndGet("foo", value1).join();
+        assertAfter(2000, () -> {
+            Versioned<byte[]> value = cached.get("foo").join();
+            assertNotNull(value);
+            assertEquals(remote.version(), value.version());
+        });
+
+        // updates made through the cache are read back right away
+        Versioned<byte[]> local = cached.putAndGet("foo", value2).join();
+        assertArrayEquals(value2, cached.get("foo").join().value());
+        assertEquals(local.version(), cached.get("foo").join().version());
+
+        cached.remove("foo").join();
+        assertNull(cached.get("foo").join());
+
+        map2.put("bar", value3).join();
+        assertAfter(2000, () -> {
+            Map<String, Versioned<byte[]>> values = cached.getAll(ImmutableSet.of("foo", "bar")).join();
+            assertThat(values.keySet(), is(ImmutableSet.of("bar")));
+            assertArrayEquals(value3, values.get("bar").value());
+        });
+    }
+
+    protected void bulkMapOperationTests(int clusterSize) throws Throwable {
+        createCopycatServers(clusterSize);
+        final byte[] value1 = Tools.getBytesUtf8("value1");
+        final byte[] value2 = Tools.getBytesUtf8("value2");
+        final byte[] value3 = Tools.getBytesUtf8("value3");
+
+        AtomixConsistentMap map = createAtomixClient().getResource("test", AtomixConsistentMap.class).join();
+
+        map.putAll(ImmutableMap.of("foo", value1, "bar", value2)).join();
+        Map<String, Versioned<byte[]>> values = map.getAll(ImmutableSet.of("foo", "bar", "baz")).join();
+        assertEquals(ImmutableSet.of("foo", "bar"), values.keySet());
+        assertArrayEquals(value1, values.get("foo").value());
+        assertArrayEquals(value2, values.get("bar").value());
+
+        // a bulk put replaces existing values like a put
+        long oldVersion = values.get("bar").version();
+        map.putAll(ImmutableMap.of("bar", value3, "baz", value1)).join();
+        Versioned<byte[]> bar = map.get("bar").join();
+        assertArrayEquals(value3, bar.value());
+        assertTrue(bar.version() > oldVersion);
+        assertEquals(3, map.size().join().intValue());
+
+        map.removeAll(ImmutableSet.of("foo", "baz", "qux")).join();
+        assertEquals(ImmutableSet.of("bar"), map.keySet().join());
+        assertTrue(map.getAll(ImmutableSet.of("foo", "baz")).join().isEmpty());
+
+        // bulk updates are rejected as a whole if any key is locked by a transaction
+        MapUpdate<String, byte[]> update = MapUpdate.<String, byte[]>newBuilder()
+                .withType(MapUpdate.Type.PUT_IF_ABSENT)
+                .withKey("foo")
+                .withValue(value1)
+                .build();
+        assertTrue(map.prepare(new MapTransaction<>(TransactionId.from("tx1"), Arrays.asList(update))).join());
+        try {
+            map.putAll(ImmutableMap.of("foo", value2, "qux", value2)).join();
+            fail();
+        } catch (CompletionException e) {
+            assertThat(Throwables.getRootCause(e) instanceof ConcurrentModificationException, is(true));
+        }
+        assertNull(map.get("qux").join());
+        map.rollback(TransactionId.from("tx1")).join();
+    }
+
+    protected void batchingTests(int clusterSize) throws Throwable {
+        createCopycatServers(clusterSize);
+        final byte[] value1 = Tools.getBytesUtf8("value1");
+
+        AtomixConsistentMap map = createAtomixClient().getResource("test", AtomixConsistentMap.class).join();
+        List<Integer> batchSizes = Lists.newCopyOnWriteArrayList();
+        map.enableBatching(16, (size, latency) -> batchSizes.add(size));
+
+        // updates issued without waiting are applied in order
+        List<CompletableFuture<Versioned<byte[]>>> puts = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            puts.add(map.put("foo", Longs.toByteArray(i)));
+        }
+        CompletableFuture<Versioned<byte[]>> putIfAbsent = map.putIfAbsent("foo", value1);
+        CompletableFuture<Boolean> remove = map.remove("bar", value1);
+        CompletableFuture<Versioned<byte[]>> get = map.get("foo");
+
+        assertNull(puts.get(0).join());
+        for (int i = 1; i < 100; i++) {
+            assertArrayEquals(Longs.toByteArray(i - 1), puts.get(i).join().value());
+        }
+        assertArrayEquals(Longs.toByteArray(99), putIfAbsent.join().value());
+        assertFalse(remove.join());
+        assertArrayEquals(Longs.toByteArray(99), get.join().value());
+
+        assertEquals(102, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().anyMatch(size -> size > 1));
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 16));
+
+        // values written in a batch survive later updates of other keys in it
+        map.put("bar", value1);
+        map.put("baz", value1);
+        map.remove("baz").join();
+        assertArrayEquals(value1, map.get("bar").join().value());
+        assertEquals(ImmutableSet.of("foo", "bar"), map.keySet().join());
+    }
+
     protected void mapListenerTests(int clusterSize) throws Throwable {
         createCopycatServers(clusterSize);
         final byte[] value1 = Tools.getBytesUtf8("value1");
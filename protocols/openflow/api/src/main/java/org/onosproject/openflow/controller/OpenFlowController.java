@@ -108,6 +108,10 @@ public interface OpenFlowController {
 
     /**
      * Register a listener for OF msg events.
+     * <p>
+     * Flow and port statistics replies are passed to the listener one part
+     * at a time, with {@code REPLY_MORE} set on all but the last part; see
+     * {@link OpenFlowEventListener}.
      *
      * @param listener the listener to notify
      */
@@ -20,11 +20,26 @@ import org.projectfloodlight.openflow.protocol.OFMessage;
 
 /**
  * Notifies providers about openflow msg events.
+ * <p>
+ * Multipart flow and port statistics replies are not aggregated by the
+ * controller: each part is delivered as its own message, and every part
+ * but the last has the {@code REPLY_MORE} flag set. Listeners that need a
+ * complete flow or port table must collect the parts of a reply, keyed by
+ * its xid, until a part without {@code REPLY_MORE} arrives. Table, group
+ * and group description statistics are still delivered as one aggregated
+ * reply.
+ * <p>
+ * The parts of one flow statistics reply are delivered in order, on a
+ * single thread per switch.
  */
 public interface OpenFlowEventListener {
 
     /**
      * Handles the message event.
+     * <p>
+     * A flow or port statistics reply may be one part of a multipart reply;
+     * check its flags for {@code REPLY_MORE} before treating its entries as
+     * the complete table.
      *
      * @param dpid switch data path identifier
      * @param msg the message
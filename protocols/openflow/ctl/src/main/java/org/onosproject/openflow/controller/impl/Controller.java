@@ -23,7 +23,10 @@ import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
 
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.ItemNotFoundException;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.driver.DefaultDriverData;
@@ -53,6 +56,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -81,6 +85,10 @@ public class Controller {
     // Configuration options
     protected List<Integer> openFlowPorts = ImmutableList.of(6633, 6653);
     protected int workerThreads = 16;
+    // Flow, group and meter modifications are coalesced into writes of up to
+    // this many bytes; 0 writes every message right away
+    protected int outboundBufferSize = 64 * 1024;
+    protected int outboundFlushDelayMillis = 2;
 
     // Start time of the controller
     protected long systemStartTime;
@@ -98,6 +106,8 @@ public class Controller {
     // Perf. related configuration
     protected static final int SEND_BUFFER_SIZE = 4 * 1024 * 1024;
     private DriverService driverService;
+    private MetricsService metricsService;
+    private Timer flushTimer;
     private boolean enableOfTls = TLS_DISABLED;
 
     // ***************
@@ -175,6 +185,35 @@ public class Controller {
             this.workerThreads = Integer.parseInt(threads);
         }
         log.debug("Number of worker threads set to {}", this.workerThreads);
+
+        String bufferSize = get(properties, "outboundBufferSize");
+        if (!Strings.isNullOrEmpty(bufferSize)) {
+            this.outboundBufferSize = Integer.parseInt(bufferSize.trim());
+        }
+        String flushDelay = get(properties, "outboundFlushDelayMillis");
+        if (!Strings.isNullOrEmpty(flushDelay)) {
+            this.outboundFlushDelayMillis = Integer.parseInt(flushDelay.trim());
+        }
+        log.debug("Outbound buffer size set to {} bytes with a flush delay of {} ms",
+                  this.outboundBufferSize, this.outboundFlushDelayMillis);
+    }
+
+    /**
+     * Returns the metrics service, if any.
+     *
+     * @return metrics service; may be null
+     */
+    protected MetricsService metricsService() {
+        return metricsService;
+    }
+
+    /**
+     * Returns the timer that flushes coalesced outbound messages.
+     *
+     * @return flush timer
+     */
+    protected Timer flushTimer() {
+        return flushTimer;
     }
 
     /**
@@ -304,9 +343,16 @@ public class Controller {
     }
 
     public void start(OpenFlowAgent ag, DriverService driverService) {
+        start(ag, driverService, null);
+    }
+
+    public void start(OpenFlowAgent ag, DriverService driverService, MetricsService metricsService) {
         log.info("Starting OpenFlow IO");
         this.agent = ag;
         this.driverService = driverService;
+        this.metricsService = metricsService;
+        this.flushTimer = new HashedWheelTimer(groupedThreads("onos/of", "flush-timer", log),
+                                               1, TimeUnit.MILLISECONDS);
         this.init();
         this.run();
     }
@@ -316,6 +362,7 @@ public class Controller {
         log.info("Stopping OpenFlow IO");
         cg.close();
         execFactory.shutdown();
+        flushTimer.stop();
     }
 
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.google.common.hash.PrimitiveSink;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.projectfloodlight.openflow.exceptions.OFParseError;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+
+/**
+ * OpenFlow message backed by the bytes of its frame.
+ * <p>
+ * The OpenFlow header is read from the frame on access. The body is decoded
+ * into the regular LoxiGen message the first time one of its fields is
+ * requested, which happens on whichever thread consumes the message rather
+ * than on the channel I/O thread. Messages that are routed or dropped based
+ * on their header alone are never decoded.
+ * <p>
+ * The frame is a slice of the buffer the channel read it from, so it is not
+ * copied. It is released once the message has been decoded; from then on all
+ * accessors are answered by the decoded message.
+ *
+ * @param <M> type of the decoded message
+ */
+abstract class LazyOFMessage<M extends OFMessage> implements OFMessage {
+
+    private static final int XID_OFFSET = 4;
+
+    private final OFVersion version;
+    private final OFType type;
+    private volatile ChannelBuffer frame;
+    private volatile M message;
+
+    /**
+     * Creates a message over the given frame.
+     *
+     * @param frame   buffer holding exactly one OpenFlow message
+     * @param version version of the message
+     * @param type    type of the message
+     */
+    protected LazyOFMessage(ChannelBuffer frame, OFVersion version, OFType type) {
+        this.frame = frame;
+        this.version = version;
+        this.type = type;
+    }
+
+    /**
+     * Returns the fully decoded message, decoding it on first use.
+     *
+     * @return decoded message
+     * @throws IllegalStateException if the frame does not hold a valid message
+     */
+    @SuppressWarnings("unchecked")
+    M message() {
+        M decoded = message;
+        if (decoded == null) {
+            synchronized (this) {
+                decoded = message;
+                if (decoded == null) {
+                    try {
+                        decoded = (M) OFFactories.getGenericReader().readFrom(frame.duplicate());
+                    } catch (OFParseError e) {
+                        throw new IllegalStateException("Unable to decode " + type + " message", e);
+                    }
+                    message = decoded;
+                    frame = null;
+                }
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns whether the body has been decoded.
+     *
+     * @return true if the message has been decoded
+     */
+    boolean isDecoded() {
+        return message != null;
+    }
+
+    /**
+     * Returns the frame of the message, or null once it has been decoded.
+     *
+     * @return frame holding exactly one OpenFlow message, or null
+     */
+    protected ChannelBuffer frame() {
+        return frame;
+    }
+
+    @Override
+    public OFVersion getVersion() {
+        return version;
+    }
+
+    @Override
+    public OFType getType() {
+        return type;
+    }
+
+    @Override
+    public long getXid() {
+        ChannelBuffer f = frame;
+        return f != null ? f.getUnsignedInt(f.readerIndex() + XID_OFFSET) : message().getXid();
+    }
+
+    @Override
+    public void writeTo(ChannelBuffer bb) {
+        ChannelBuffer f = frame;
+        if (f != null) {
+            bb.writeBytes(f, f.readerIndex(), f.readableBytes());
+        } else {
+            message().writeTo(bb);
+        }
+    }
+
+    @Override
+    public void putTo(PrimitiveSink sink) {
+        message().putTo(sink);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof LazyOFMessage) {
+            return message().equals(((LazyOFMessage<?>) obj).message());
+        }
+        return message().equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return message().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return message().toString();
+    }
+}
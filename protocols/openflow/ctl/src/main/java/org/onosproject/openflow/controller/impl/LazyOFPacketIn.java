@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.projectfloodlight.openflow.protocol.OFPacketIn;
+import org.projectfloodlight.openflow.protocol.OFPacketInReason;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.Match;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.TableId;
+import org.projectfloodlight.openflow.types.U64;
+
+/**
+ * Packet-in whose match and payload are decoded on first access. The buffer
+ * id and total length are read from the frame.
+ * <p>
+ * Only used for OpenFlow 1.0 and 1.2 or later, where the buffer id and total
+ * length share the same offsets.
+ */
+final class LazyOFPacketIn extends LazyOFMessage<OFPacketIn> implements OFPacketIn {
+
+    private static final int BUFFER_ID_OFFSET = 8;
+    private static final int TOTAL_LEN_OFFSET = 12;
+
+    /**
+     * Creates a packet-in over the given frame.
+     *
+     * @param frame   buffer holding exactly one packet-in message
+     * @param version version of the message
+     */
+    LazyOFPacketIn(ChannelBuffer frame, OFVersion version) {
+        super(frame, version, OFType.PACKET_IN);
+    }
+
+    @Override
+    public OFBufferId getBufferId() {
+        ChannelBuffer f = frame();
+        return f != null ? OFBufferId.of(f.getInt(f.readerIndex() + BUFFER_ID_OFFSET)) : message().getBufferId();
+    }
+
+    @Override
+    public int getTotalLen() {
+        ChannelBuffer f = frame();
+        return f != null ? f.getUnsignedShort(f.readerIndex() + TOTAL_LEN_OFFSET) : message().getTotalLen();
+    }
+
+    @Override
+    public OFPacketInReason getReason() {
+        return message().getReason();
+    }
+
+    @Override
+    public TableId getTableId() {
+        return message().getTableId();
+    }
+
+    @Override
+    public Match getMatch() {
+        return message().getMatch();
+    }
+
+    @Override
+    public byte[] getData() {
+        return message().getData();
+    }
+
+    @Override
+    public OFPort getInPort() {
+        return message().getInPort();
+    }
+
+    @Override
+    public OFPort getInPhyPort() {
+        return message().getInPhyPort();
+    }
+
+    @Override
+    public U64 getCookie() {
+        return message().getCookie();
+    }
+
+    @Override
+    public OFPacketIn.Builder createBuilder() {
+        return message().createBuilder();
+    }
+}
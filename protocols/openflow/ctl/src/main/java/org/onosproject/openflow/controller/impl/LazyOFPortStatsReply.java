@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.projectfloodlight.openflow.protocol.OFPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFPortStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+
+import java.util.List;
+
+/**
+ * Port statistics reply whose entries are decoded on first access.
+ */
+final class LazyOFPortStatsReply extends LazyOFStatsReply<OFPortStatsReply> implements OFPortStatsReply {
+
+    /**
+     * Creates a port statistics reply over the given frame.
+     *
+     * @param frame   buffer holding exactly one port statistics reply
+     * @param version version of the message
+     */
+    LazyOFPortStatsReply(ChannelBuffer frame, OFVersion version) {
+        super(frame, version, OFStatsType.PORT);
+    }
+
+    @Override
+    public List<OFPortStatsEntry> getEntries() {
+        return message().getEntries();
+    }
+
+    @Override
+    public OFPortStatsReply.Builder createBuilder() {
+        return message().createBuilder();
+    }
+}
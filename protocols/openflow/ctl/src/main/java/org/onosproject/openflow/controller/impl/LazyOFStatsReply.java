@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.google.common.collect.ImmutableSet;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+
+import java.util.Set;
+
+/**
+ * Multipart reply backed by the bytes of its frame. The statistics type and
+ * flags are read from the multipart header; the entries are decoded on first
+ * access.
+ *
+ * @param <M> type of the decoded reply
+ */
+abstract class LazyOFStatsReply<M extends OFStatsReply> extends LazyOFMessage<M> implements OFStatsReply {
+
+    private static final int FLAGS_OFFSET = 10;
+    private static final int REPLY_MORE = 0x1;
+
+    private static final Set<OFStatsReplyFlags> NO_FLAGS = ImmutableSet.of();
+    private static final Set<OFStatsReplyFlags> MORE_FLAGS = ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE);
+
+    private final OFStatsType statsType;
+
+    /**
+     * Creates a reply over the given frame.
+     *
+     * @param frame     buffer holding exactly one multipart reply
+     * @param version   version of the message
+     * @param statsType statistics type of the reply
+     */
+    protected LazyOFStatsReply(ChannelBuffer frame, OFVersion version, OFStatsType statsType) {
+        super(frame, version, OFType.STATS_REPLY);
+        this.statsType = statsType;
+    }
+
+    @Override
+    public OFStatsType getStatsType() {
+        return statsType;
+    }
+
+    @Override
+    public Set<OFStatsReplyFlags> getFlags() {
+        ChannelBuffer f = frame();
+        int flags = f != null ? f.getUnsignedShort(f.readerIndex() + FLAGS_OFFSET) : ~REPLY_MORE;
+        if ((flags & ~REPLY_MORE) != 0) {
+            // decoded replies and unknown flags are left to the regular reader
+            return message().getFlags();
+        }
+        return flags == REPLY_MORE ? MORE_FLAGS : NO_FLAGS;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.projectfloodlight.openflow.protocol.OFFlowMod;
+import org.projectfloodlight.openflow.protocol.OFGroupMod;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFMeterMod;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.google.common.collect.Lists;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Coalesces the flow, group and meter modifications written to a switch
+ * channel into larger writes.
+ * <p>
+ * Modifications are encoded into a pending buffer as they are written. The
+ * buffer goes out once it holds {@code maxPendingBytes}, once the flush delay
+ * since the first pending modification expires, or together with any other
+ * message, such as a barrier request, so that the switch still receives all
+ * messages in the order they were written.
+ */
+public class OFMessageCoalescer extends SimpleChannelHandler {
+
+    private static final String QUEUE_DEPTH = "queueDepth";
+    private static final String FLUSH_BYTES = "flushBytes";
+
+    private final Timer timer;
+    private final int maxPendingBytes;
+    private final long flushDelayMillis;
+    private final MetricsService metricsService;
+
+    private ChannelBuffer pending;
+    private List<ChannelFuture> pendingFutures = Lists.newArrayList();
+    private volatile int pendingMessages;
+    private Timeout flushTimeout;
+
+    private MetricsComponent metricsComponent;
+    private MetricsFeature metricsFeature;
+    private Histogram flushBytes;
+
+    /**
+     * Creates a coalescer for a switch channel.
+     *
+     * @param timer timer scheduling deadline flushes
+     * @param maxPendingBytes number of pending bytes that triggers a flush
+     * @param flushDelayMillis longest time a modification is held
+     * @param metricsService metrics service; may be null
+     */
+    public OFMessageCoalescer(Timer timer, int maxPendingBytes, long flushDelayMillis,
+                              MetricsService metricsService) {
+        checkArgument(maxPendingBytes > 0, "maxPendingBytes must be positive");
+        checkArgument(flushDelayMillis >= 0, "flushDelayMillis must not be negative");
+        this.timer = checkNotNull(timer);
+        this.maxPendingBytes = maxPendingBytes;
+        this.flushDelayMillis = flushDelayMillis;
+        this.metricsService = metricsService;
+    }
+
+    private static boolean isCoalesced(OFMessage message) {
+        return message instanceof OFFlowMod
+                || message instanceof OFGroupMod
+                || message instanceof OFMeterMod;
+    }
+
+    @Override
+    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent("OpenFlowController");
+            metricsFeature = metricsComponent.registerFeature("outbound-" + ctx.getChannel().getRemoteAddress());
+            flushBytes = metricsService.createHistogram(metricsComponent, metricsFeature, FLUSH_BYTES);
+            metricsService.removeMetric(metricsComponent, metricsFeature, QUEUE_DEPTH);
+            metricsService.registerMetric(metricsComponent, metricsFeature, QUEUE_DEPTH,
+                                          (Gauge<Integer>) () -> pendingMessages);
+        }
+        super.channelConnected(ctx, e);
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (!(e.getMessage() instanceof List)) {
+            synchronized (this) {
+                flush(ctx);
+                ctx.sendDownstream(e);
+            }
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<OFMessage> messages = (List<OFMessage>) e.getMessage();
+        synchronized (this) {
+            if (pending == null) {
+                pending = ChannelBuffers.dynamicBuffer(Math.min(maxPendingBytes, 1024));
+            }
+            boolean flushNow = false;
+            int writerIndex = pending.writerIndex();
+            int count = 0;
+            try {
+                for (OFMessage message : messages) {
+                    if (message != null) {
+                        message.writeTo(pending);
+                        count++;
+                        flushNow |= !isCoalesced(message);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                // keep partially encoded messages out of the stream
+                pending.writerIndex(writerIndex);
+                throw ex;
+            }
+            pendingMessages += count;
+            pendingFutures.add(e.getFuture());
+            if (flushNow || pending.readableBytes() >= maxPendingBytes || flushDelayMillis == 0) {
+                flush(ctx);
+            } else if (flushTimeout == null) {
+                flushTimeout = timer.newTimeout(timeout -> flushOnDeadline(ctx),
+                                                flushDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized void flushOnDeadline(ChannelHandlerContext ctx) {
+        flushTimeout = null;
+        flush(ctx);
+    }
+
+    private void flush(ChannelHandlerContext ctx) {
+        if (flushTimeout != null) {
+            flushTimeout.cancel();
+            flushTimeout = null;
+        }
+        if (pendingFutures.isEmpty()) {
+            return;
+        }
+        ChannelBuffer buffer = pending;
+        List<ChannelFuture> futures = pendingFutures;
+        pending = null;
+        pendingFutures = Lists.newArrayList();
+        pendingMessages = 0;
+        if (flushBytes != null) {
+            flushBytes.update(buffer.readableBytes());
+        }
+
+        ChannelFuture future = Channels.future(ctx.getChannel());
+        future.addListener(f -> futures.forEach(pendingFuture -> {
+            if (f.isSuccess()) {
+                pendingFuture.setSuccess();
+            } else {
+                pendingFuture.setFailure(f.getCause());
+            }
+        }));
+        Channels.write(ctx, future, buffer);
+    }
+
+    @Override
+    public void closeRequested(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        synchronized (this) {
+            flush(ctx);
+        }
+        super.closeRequested(ctx, e);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        synchronized (this) {
+            if (flushTimeout != null) {
+                flushTimeout.cancel();
+                flushTimeout = null;
+            }
+            pendingFutures.forEach(future -> future.setFailure(new ClosedChannelException()));
+            pendingFutures = Lists.newArrayList();
+            pending = null;
+            pendingMessages = 0;
+        }
+        if (metricsFeature != null) {
+            metricsService.removeMetric(metricsComponent, metricsFeature, QUEUE_DEPTH);
+            metricsService.removeMetric(metricsComponent, metricsFeature, FLUSH_BYTES);
+        }
+        super.channelClosed(ctx, e);
+    }
+}
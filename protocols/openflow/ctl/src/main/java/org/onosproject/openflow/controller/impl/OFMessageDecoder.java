@@ -24,12 +24,27 @@ import org.jboss.netty.handler.codec.frame.FrameDecoder;
 import org.projectfloodlight.openflow.protocol.OFFactories;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFMessageReader;
+import org.projectfloodlight.openflow.protocol.OFVersion;
 
 /**
  * Decode an openflow message from a Channel, for use in a netty pipeline.
+ * <p>
+ * Packet-ins and flow and port statistics replies are not decoded here.
+ * They are handed on as views over a slice of the channel buffer that decode
+ * their body on first access; see {@link LazyOFMessage}.
  */
 public class OFMessageDecoder extends FrameDecoder {
 
+    private static final int HEADER_LENGTH = 8;
+    private static final int STATS_HEADER_LENGTH = 12;
+    private static final int PACKET_IN_HEADER_LENGTH = 16;
+
+    private static final byte PACKET_IN = 10;
+    private static final byte OF10_STATS_REPLY = 17;
+    private static final byte STATS_REPLY = 19;
+    private static final int FLOW_STATS = 1;
+    private static final int PORT_STATS = 4;
+
     @Override
     protected Object decode(ChannelHandlerContext ctx, Channel channel,
             ChannelBuffer buffer) throws Exception {
@@ -46,10 +61,57 @@ public class OFMessageDecoder extends FrameDecoder {
         // where we parsed all the messages in the buffer, before passing on
         // a list of the parsed messages to the controller.
         // The performance *may or may not* not be as good as before.
+        if (buffer.readableBytes() < HEADER_LENGTH) {
+            return null;
+        }
+        int start = buffer.readerIndex();
+        OFVersion version = version(buffer.getByte(start));
+        int length = buffer.getUnsignedShort(start + 2);
+        if (version != null && length >= STATS_HEADER_LENGTH) {
+            if (buffer.readableBytes() < length) {
+                return null;
+            }
+            byte type = buffer.getByte(start + 1);
+            if (type == PACKET_IN && length >= PACKET_IN_HEADER_LENGTH) {
+                return new LazyOFPacketIn(buffer.readSlice(length), version);
+            }
+            if (type == (version == OFVersion.OF_10 ? OF10_STATS_REPLY : STATS_REPLY)) {
+                int statsType = buffer.getUnsignedShort(start + HEADER_LENGTH);
+                if (statsType == FLOW_STATS) {
+                    return new LazyOFFlowStatsReply(buffer.readSlice(length), version);
+                } else if (statsType == PORT_STATS) {
+                    return new LazyOFPortStatsReply(buffer.readSlice(length), version);
+                }
+            }
+        }
+
         OFMessageReader<OFMessage> reader = OFFactories.getGenericReader();
         OFMessage message = reader.readFrom(buffer);
 
         return message;
     }
 
+    /**
+     * Returns the version of a message with lazily decoded types, or null if
+     * messages of the given wire version are always decoded eagerly.
+     *
+     * @param wireVersion version byte of the OpenFlow header
+     * @return message version or null
+     */
+    private static OFVersion version(byte wireVersion) {
+        switch (wireVersion) {
+            case 1:
+                return OFVersion.OF_10;
+            case 3:
+                return OFVersion.OF_12;
+            case 4:
+                return OFVersion.OF_13;
+            case 5:
+                return OFVersion.OF_14;
+            default:
+                // OpenFlow 1.1 packs the packet-in header differently
+                return null;
+        }
+    }
+
 }
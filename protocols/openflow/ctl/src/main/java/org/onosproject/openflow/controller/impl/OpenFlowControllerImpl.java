@@ -15,8 +15,9 @@
  */
 package org.onosproject.openflow.controller.impl;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -26,6 +27,7 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.CoreService;
 import org.onosproject.net.driver.DefaultDriverProviderService;
@@ -68,9 +70,9 @@ import org.projectfloodlight.openflow.protocol.instruction.OFInstruction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Dictionary;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -80,7 +82,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
 
+import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 
 @Component(immediate = true)
@@ -89,6 +93,12 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     private static final String APP_ID = "org.onosproject.openflow-base";
     private static final String DEFAULT_OFPORT = "6633,6653";
     private static final int DEFAULT_WORKER_THREADS = 16;
+    private static final boolean DEFAULT_PACKET_IN_DISPATCH_ENABLED = true;
+    private static final int DEFAULT_PACKET_IN_THREADS = 0;
+    private static final int DEFAULT_PACKET_IN_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_OUTBOUND_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_OUTBOUND_FLUSH_DELAY_MILLIS = 2;
+    private static final int FLOW_STATS_THREADS = 8;
 
     private static final Logger log =
             LoggerFactory.getLogger(OpenFlowControllerImpl.class);
@@ -106,6 +116,9 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService cfgService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     @Property(name = "openflowPorts", value = DEFAULT_OFPORT,
             label = "Port numbers (comma separated) used by OpenFlow protocol; default is 6633,6653")
     private String openflowPorts = DEFAULT_OFPORT;
@@ -114,9 +127,39 @@ public class OpenFlowControllerImpl implements OpenFlowController {
             label = "Number of controller worker threads; default is 16")
     private int workerThreads = DEFAULT_WORKER_THREADS;
 
+    @Property(name = "packetInDispatchEnabled", boolValue = DEFAULT_PACKET_IN_DISPATCH_ENABLED,
+            label = "Process packet-ins on a dedicated thread pool instead of the I/O threads; default is true")
+    private boolean packetInDispatchEnabled = DEFAULT_PACKET_IN_DISPATCH_ENABLED;
+
+    @Property(name = "packetInThreads", intValue = DEFAULT_PACKET_IN_THREADS,
+            label = "Number of packet-in processing threads; default is 0, i.e. the number of cores")
+    private int packetInThreads = DEFAULT_PACKET_IN_THREADS;
+
+    @Property(name = "packetInQueueSize", intValue = DEFAULT_PACKET_IN_QUEUE_SIZE,
+            label = "Maximum number of pending packet-ins per device before dropping; default is 1000")
+    private int packetInQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+
+    @Property(name = "outboundBufferSize", intValue = DEFAULT_OUTBOUND_BUFFER_SIZE,
+            label = "Bytes of flow, group and meter modifications coalesced into one write to a switch; " +
+                    "0 disables coalescing; default is 65536")
+    private int outboundBufferSize = DEFAULT_OUTBOUND_BUFFER_SIZE;
+
+    @Property(name = "outboundFlushDelayMillis", intValue = DEFAULT_OUTBOUND_FLUSH_DELAY_MILLIS,
+            label = "Longest time in milliseconds a modification is held for coalescing; default is 2")
+    private int outboundFlushDelayMillis = DEFAULT_OUTBOUND_FLUSH_DELAY_MILLIS;
+
+    protected volatile PacketInDispatcher packetInDispatcher;
+
     protected ExecutorService executorMsgs =
         Executors.newFixedThreadPool(32, groupedThreads("onos/of", "event-stats-%d", log));
 
+    // the parts of a multipart flow stats reply are handed on one at a time
+    // and in order, so every switch is bound to one of these executors
+    protected ExecutorService[] executorFlowStats = IntStream.range(0, FLOW_STATS_THREADS)
+            .mapToObj(i -> Executors.newSingleThreadExecutor(
+                    groupedThreads("onos/of", "event-flow-stats-" + i, log)))
+            .toArray(ExecutorService[]::new);
+
     private final ExecutorService executorBarrier =
         Executors.newFixedThreadPool(4, groupedThreads("onos/of", "event-barrier-%d", log));
 
@@ -137,19 +180,16 @@ public class OpenFlowControllerImpl implements OpenFlowController {
 
     protected Set<OpenFlowMessageListener> ofMessageListener = new CopyOnWriteArraySet<>();
 
-    protected Multimap<Dpid, OFFlowStatsEntry> fullFlowStats =
+    protected ListMultimap<Dpid, OFTableStatsEntry> fullTableStats =
             ArrayListMultimap.create();
 
-    protected Multimap<Dpid, OFTableStatsEntry> fullTableStats =
+    protected ListMultimap<Dpid, OFGroupStatsEntry> fullGroupStats =
             ArrayListMultimap.create();
 
-    protected Multimap<Dpid, OFGroupStatsEntry> fullGroupStats =
+    protected ListMultimap<Dpid, OFGroupDescStatsEntry> fullGroupDescStats =
             ArrayListMultimap.create();
 
-    protected Multimap<Dpid, OFGroupDescStatsEntry> fullGroupDescStats =
-            ArrayListMultimap.create();
-
-    protected Multimap<Dpid, OFPortStatsEntry> fullPortStats =
+    protected ListMultimap<Dpid, OFPortStatsEntry> fullPortStats =
             ArrayListMultimap.create();
 
     private final Controller ctrl = new Controller();
@@ -158,8 +198,10 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     public void activate(ComponentContext context) {
         coreService.registerApplication(APP_ID, this::cleanup);
         cfgService.registerProperties(getClass());
-        ctrl.setConfigParams(context.getProperties());
-        ctrl.start(agent, driverService);
+        Dictionary<?, ?> properties = context.getProperties();
+        ctrl.setConfigParams(properties);
+        setPacketInConfig(properties);
+        ctrl.start(agent, driverService, metricsService);
     }
 
     private void cleanup() {
@@ -178,13 +220,57 @@ public class OpenFlowControllerImpl implements OpenFlowController {
             cleanup();
         }
         cfgService.unregisterProperties(getClass(), false);
+        stopPacketInDispatcher();
     }
 
     @Modified
     public void modified(ComponentContext context) {
         ctrl.stop();
-        ctrl.setConfigParams(context.getProperties());
-        ctrl.start(agent, driverService);
+        Dictionary<?, ?> properties = context.getProperties();
+        ctrl.setConfigParams(properties);
+        setPacketInConfig(properties);
+        ctrl.start(agent, driverService, metricsService);
+    }
+
+    private void setPacketInConfig(Dictionary<?, ?> properties) {
+        try {
+            String s = get(properties, "packetInDispatchEnabled");
+            packetInDispatchEnabled = Strings.isNullOrEmpty(s) ?
+                    packetInDispatchEnabled : Boolean.parseBoolean(s.trim());
+
+            s = get(properties, "packetInThreads");
+            packetInThreads = Strings.isNullOrEmpty(s) ? packetInThreads : Integer.parseInt(s.trim());
+
+            s = get(properties, "packetInQueueSize");
+            packetInQueueSize = Strings.isNullOrEmpty(s) ? packetInQueueSize : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            log.warn("Invalid packet-in configuration; using defaults", e);
+            packetInDispatchEnabled = DEFAULT_PACKET_IN_DISPATCH_ENABLED;
+            packetInThreads = DEFAULT_PACKET_IN_THREADS;
+            packetInQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+        }
+
+        stopPacketInDispatcher();
+        if (packetInDispatchEnabled) {
+            int threads = packetInThreads > 0 ? packetInThreads : Runtime.getRuntime().availableProcessors();
+            int queueSize = packetInQueueSize > 0 ? packetInQueueSize : DEFAULT_PACKET_IN_QUEUE_SIZE;
+            packetInDispatcher = new PacketInDispatcher(threads, queueSize, this::handlePacketIn, metricsService);
+        }
+        log.info("Packet-in dispatch enabled = {}, threads = {}, queue size = {}",
+                 packetInDispatchEnabled, packetInThreads, packetInQueueSize);
+    }
+
+    private void stopPacketInDispatcher() {
+        if (packetInDispatcher != null) {
+            packetInDispatcher.shutdown();
+            packetInDispatcher = null;
+        }
+    }
+
+    private void handlePacketIn(OpenFlowPacketContext pktCtx) {
+        for (PacketListener p : ofPacketListener.values()) {
+            p.handlePacket(pktCtx);
+        }
     }
 
     @Override
@@ -266,11 +352,10 @@ public class OpenFlowControllerImpl implements OpenFlowController {
 
     @Override
     public void processPacket(Dpid dpid, OFMessage msg) {
-        Collection<OFFlowStatsEntry> flowStats;
-        Collection<OFTableStatsEntry> tableStats;
-        Collection<OFGroupStatsEntry> groupStats;
-        Collection<OFGroupDescStatsEntry> groupDescStats;
-        Collection<OFPortStatsEntry> portStats;
+        List<OFTableStatsEntry> tableStats;
+        List<OFGroupStatsEntry> groupStats;
+        List<OFGroupDescStatsEntry> groupDescStats;
+        List<OFPortStatsEntry> portStats;
 
         switch (msg.getType()) {
         case PORT_STATUS:
@@ -287,8 +372,12 @@ public class OpenFlowControllerImpl implements OpenFlowController {
             OpenFlowPacketContext pktCtx = DefaultOpenFlowPacketContext
             .packetContextFromPacketIn(this.getSwitch(dpid),
                     (OFPacketIn) msg);
-            for (PacketListener p : ofPacketListener.values()) {
-                p.handlePacket(pktCtx);
+            PacketInDispatcher dispatcher = packetInDispatcher;
+            if (dispatcher != null) {
+                // keep slow packet processors off the channel I/O thread
+                dispatcher.dispatch(dpid, pktCtx);
+            } else {
+                handlePacketIn(pktCtx);
             }
             break;
         // TODO: Consider using separate threadpool for sensitive messages.
@@ -306,21 +395,14 @@ public class OpenFlowControllerImpl implements OpenFlowController {
                     }
                     break;
                 case FLOW:
-                    flowStats = publishFlowStats(dpid, (OFFlowStatsReply) reply);
-                    if (flowStats != null) {
-                        OFFlowStatsReply.Builder rep =
-                                OFFactories.getFactory(msg.getVersion()).buildFlowStatsReply();
-                        rep.setEntries(Lists.newLinkedList(flowStats));
-                        rep.setXid(reply.getXid());
-                        executorMsgs.execute(new OFMessageHandler(dpid, rep.build()));
-                    }
+                    flowStatsExecutor(dpid).execute(new OFMessageHandler(dpid, reply));
                     break;
                 case TABLE:
                     tableStats = publishTableStats(dpid, (OFTableStatsReply) reply);
                     if (tableStats != null) {
                         OFTableStatsReply.Builder rep =
                                 OFFactories.getFactory(msg.getVersion()).buildTableStatsReply();
-                        rep.setEntries(Lists.newLinkedList(tableStats));
+                        rep.setEntries(tableStats);
                         executorMsgs.execute(new OFMessageHandler(dpid, rep.build()));
                     }
                     break;
@@ -329,7 +411,7 @@ public class OpenFlowControllerImpl implements OpenFlowController {
                     if (groupStats != null) {
                         OFGroupStatsReply.Builder rep =
                                 OFFactories.getFactory(msg.getVersion()).buildGroupStatsReply();
-                        rep.setEntries(Lists.newLinkedList(groupStats));
+                        rep.setEntries(groupStats);
                         rep.setXid(reply.getXid());
                         executorMsgs.execute(new OFMessageHandler(dpid, rep.build()));
                     }
@@ -340,7 +422,7 @@ public class OpenFlowControllerImpl implements OpenFlowController {
                     if (groupDescStats != null) {
                         OFGroupDescStatsReply.Builder rep =
                                 OFFactories.getFactory(msg.getVersion()).buildGroupDescStatsReply();
-                        rep.setEntries(Lists.newLinkedList(groupDescStats));
+                        rep.setEntries(groupDescStats);
                         rep.setXid(reply.getXid());
                         executorMsgs.execute(new OFMessageHandler(dpid, rep.build()));
                     }
@@ -356,7 +438,7 @@ public class OpenFlowControllerImpl implements OpenFlowController {
                         // Convert Calient flow statistics to regular flow stats
                         // TODO: parse remaining fields such as power levels etc. when we have proper monitoring API
                         OFFlowStatsReply.Builder fsr = getSwitch(dpid).factory().buildFlowStatsReply();
-                        List<OFFlowStatsEntry> entries = new LinkedList<>();
+                        List<OFFlowStatsEntry> entries = new ArrayList<>();
                         for (OFCalientFlowStatsEntry entry : ((OFCalientFlowStatsReply) msg).getEntries()) {
 
                             // Single instruction, i.e., output to port
@@ -384,15 +466,10 @@ public class OpenFlowControllerImpl implements OpenFlowController {
                                     .build();
                             entries.add(fs);
                         }
-                        fsr.setEntries(entries);
-
-                        flowStats = publishFlowStats(dpid, fsr.build());
-                        if (flowStats != null) {
-                            OFFlowStatsReply.Builder rep =
-                                    OFFactories.getFactory(msg.getVersion()).buildFlowStatsReply();
-                            rep.setEntries(Lists.newLinkedList(flowStats));
-                            executorMsgs.execute(new OFMessageHandler(dpid, rep.build()));
-                        }
+                        fsr.setEntries(entries)
+                                .setFlags(reply.getFlags())
+                                .setXid(reply.getXid());
+                        flowStatsExecutor(dpid).execute(new OFMessageHandler(dpid, fsr.build()));
                     } else {
                         executorMsgs.execute(new OFMessageHandler(dpid, reply));
                     }
@@ -432,53 +509,49 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         }
     }
 
-    private synchronized Collection<OFFlowStatsEntry> publishFlowStats(Dpid dpid,
-                                                                       OFFlowStatsReply reply) {
-        //TODO: Get rid of synchronized
-        fullFlowStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullFlowStats.removeAll(dpid);
-        }
-        return null;
+    private ExecutorService flowStatsExecutor(Dpid dpid) {
+        return executorFlowStats[(int) Math.floorMod(dpid.value(), (long) executorFlowStats.length)];
     }
 
-    private synchronized Collection<OFTableStatsEntry> publishTableStats(Dpid dpid,
-                                                                       OFTableStatsReply reply) {
+    private synchronized List<OFTableStatsEntry> publishTableStats(Dpid dpid, OFTableStatsReply reply) {
         //TODO: Get rid of synchronized
-        fullTableStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullTableStats.removeAll(dpid);
-        }
-        return null;
+        return publishStats(fullTableStats, dpid, reply, reply.getEntries());
     }
 
-    private synchronized Collection<OFGroupStatsEntry> publishGroupStats(Dpid dpid,
-                                                                      OFGroupStatsReply reply) {
+    private synchronized List<OFGroupStatsEntry> publishGroupStats(Dpid dpid, OFGroupStatsReply reply) {
         //TODO: Get rid of synchronized
-        fullGroupStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullGroupStats.removeAll(dpid);
-        }
-        return null;
+        return publishStats(fullGroupStats, dpid, reply, reply.getEntries());
     }
 
-    private synchronized Collection<OFGroupDescStatsEntry> publishGroupDescStats(Dpid dpid,
-                                                                  OFGroupDescStatsReply reply) {
+    private synchronized List<OFGroupDescStatsEntry> publishGroupDescStats(Dpid dpid, OFGroupDescStatsReply reply) {
         //TODO: Get rid of synchronized
-        fullGroupDescStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullGroupDescStats.removeAll(dpid);
-        }
-        return null;
+        return publishStats(fullGroupDescStats, dpid, reply, reply.getEntries());
     }
 
-    private synchronized Collection<OFPortStatsEntry> publishPortStats(Dpid dpid,
-                                                                 OFPortStatsReply reply) {
-        fullPortStats.putAll(dpid, reply.getEntries());
-        if (!reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-            return fullPortStats.removeAll(dpid);
+    private synchronized List<OFPortStatsEntry> publishPortStats(Dpid dpid, OFPortStatsReply reply) {
+        return publishStats(fullPortStats, dpid, reply, reply.getEntries());
+    }
+
+    /**
+     * Aggregates the entries of multipart stats replies.
+     *
+     * @param pending entries of the parts received so far, per switch
+     * @param dpid switch the reply came from
+     * @param reply stats reply
+     * @param entries entries of the reply
+     * @param <E> type of the stats entries
+     * @return entries of all parts once the last part is received; null
+     *         while more parts are expected
+     */
+    private static <E> List<E> publishStats(ListMultimap<Dpid, E> pending, Dpid dpid,
+                                            OFStatsReply reply, List<E> entries) {
+        boolean more = reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE);
+        if (!more && !pending.containsKey(dpid)) {
+            // single part reply; hand its entries on without copying them
+            return entries;
         }
-        return null;
+        pending.putAll(dpid, entries);
+        return more ? null : pending.removeAll(dpid);
     }
 
     @Override
@@ -620,6 +693,10 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         @Override
         public void removeConnectedSwitch(Dpid dpid) {
             connectedSwitches.remove(dpid);
+            PacketInDispatcher dispatcher = packetInDispatcher;
+            if (dispatcher != null) {
+                dispatcher.removeDevice(dpid);
+            }
             OpenFlowSwitch sw = activeMasterSwitches.remove(dpid);
             if (sw == null) {
                 log.debug("sw was null for {}", dpid);
@@ -83,6 +83,13 @@ public class OpenflowPipelineFactory
         }
         pipeline.addLast("ofmessagedecoder", new OFMessageDecoder());
         pipeline.addLast("ofmessageencoder", new OFMessageEncoder());
+        if (controller.outboundBufferSize > 0) {
+            pipeline.addLast("ofmessagecoalescer",
+                             new OFMessageCoalescer(controller.flushTimer(),
+                                                    controller.outboundBufferSize,
+                                                    controller.outboundFlushDelayMillis,
+                                                    controller.metricsService()));
+        }
         pipeline.addLast("idle", idleHandler);
         pipeline.addLast("timeout", readTimeoutHandler);
         // XXX S ONOS: was 15 increased it to fix Issue #296
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.openflow.controller.Dpid;
+import org.onosproject.openflow.controller.OpenFlowPacketContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Packet-in processing stage decoupled from the OpenFlow channel I/O threads.
+ * <p>
+ * Each device gets its own bounded queue so that packets from one device are
+ * processed in order. Devices are served round-robin by a shared worker pool,
+ * each turn draining at most a fixed number of packets, so that a packet-in
+ * storm from one switch cannot starve the others. Packets arriving at a full
+ * queue are dropped.
+ */
+final class PacketInDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(PacketInDispatcher.class);
+
+    private static final int PACKETS_PER_TURN = 32;
+
+    private final int queueSize;
+    private final Consumer<OpenFlowPacketContext> processor;
+    private final ExecutorService workers;
+    private final ConcurrentMap<Dpid, DeviceQueue> deviceQueues = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedPackets = new AtomicInteger();
+
+    private Counter dropCounter;
+    private Timer latencyTimer;
+
+    /**
+     * Creates a new packet-in dispatcher.
+     *
+     * @param threads number of worker threads
+     * @param queueSize maximum number of pending packets per device
+     * @param processor packet processor invoked on the worker threads
+     * @param metricsService metrics service; may be null
+     */
+    PacketInDispatcher(int threads, int queueSize,
+                       Consumer<OpenFlowPacketContext> processor,
+                       MetricsService metricsService) {
+        checkArgument(threads > 0, "threads must be positive");
+        checkArgument(queueSize > 0, "queueSize must be positive");
+        this.queueSize = queueSize;
+        this.processor = processor;
+        this.workers = Executors.newFixedThreadPool(threads,
+                groupedThreads("onos/of", "packet-in-%d", log));
+        if (metricsService != null) {
+            MetricsComponent metricsComponent = metricsService.registerComponent("OpenFlowController");
+            MetricsFeature metricsFeature = metricsComponent.registerFeature("packetIn");
+            dropCounter = metricsService.createCounter(metricsComponent, metricsFeature, "drops");
+            latencyTimer = metricsService.createTimer(metricsComponent, metricsFeature, "latency");
+            // replace the gauge of a previous dispatcher instance, if any
+            metricsService.removeMetric(metricsComponent, metricsFeature, "queueDepth");
+            metricsService.registerMetric(metricsComponent, metricsFeature, "queueDepth",
+                                          (Gauge<Integer>) queuedPackets::get);
+        }
+    }
+
+    /**
+     * Queues a packet-in for processing.
+     *
+     * @param dpid device the packet was received from
+     * @param context packet context
+     * @return true if the packet was queued; false if it was dropped
+     */
+    boolean dispatch(Dpid dpid, OpenFlowPacketContext context) {
+        DeviceQueue queue = deviceQueues.computeIfAbsent(dpid, DeviceQueue::new);
+        if (!queue.offer(new PendingPacket(context))) {
+            if (dropCounter != null) {
+                dropCounter.inc();
+            }
+            log.trace("Dropped packet-in from {}; queue is full", dpid);
+            return false;
+        }
+        queuedPackets.incrementAndGet();
+        queue.schedule();
+        return true;
+    }
+
+    /**
+     * Discards the pending packets of a disconnected device.
+     *
+     * @param dpid device identifier
+     */
+    void removeDevice(Dpid dpid) {
+        DeviceQueue queue = deviceQueues.remove(dpid);
+        if (queue != null) {
+            queuedPackets.addAndGet(-queue.clear());
+        }
+    }
+
+    /**
+     * Returns the total number of packets waiting to be processed.
+     *
+     * @return number of queued packets
+     */
+    int queueDepth() {
+        return queuedPackets.get();
+    }
+
+    /**
+     * Stops the worker threads; pending packets are discarded.
+     */
+    void shutdown() {
+        workers.shutdownNow();
+        deviceQueues.clear();
+        queuedPackets.set(0);
+    }
+
+    // Packet context along with the time it was queued.
+    private static final class PendingPacket {
+        private final OpenFlowPacketContext context;
+        private final long queuedAt = System.nanoTime();
+
+        private PendingPacket(OpenFlowPacketContext context) {
+            this.context = context;
+        }
+    }
+
+    // Pending packets of one device; at most one worker drains it at a time.
+    private final class DeviceQueue implements Runnable {
+
+        private final Dpid dpid;
+        private final Queue<PendingPacket> packets = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private DeviceQueue(Dpid dpid) {
+            this.dpid = dpid;
+        }
+
+        private boolean offer(PendingPacket packet) {
+            return packets.offer(packet);
+        }
+
+        private int clear() {
+            int cleared = 0;
+            while (packets.poll() != null) {
+                cleared++;
+            }
+            return cleared;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    workers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    log.debug("Packet-in workers are shut down; dropping packets from {}", dpid);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            PendingPacket packet;
+            int processed = 0;
+            while (processed < PACKETS_PER_TURN && (packet = packets.poll()) != null) {
+                queuedPackets.decrementAndGet();
+                processed++;
+                try {
+                    processor.accept(packet.context);
+                } catch (Exception e) {
+                    log.warn("Unable to process packet-in from {}", dpid, e);
+                }
+                if (latencyTimer != null) {
+                    latencyTimer.update(System.nanoTime() - packet.queuedAt, TimeUnit.NANOSECONDS);
+                }
+            }
+            scheduled.set(false);
+            // give other devices a turn before draining the rest of this queue
+            if (!packets.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
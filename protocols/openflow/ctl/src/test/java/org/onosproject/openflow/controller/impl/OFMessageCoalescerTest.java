@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DownstreamMessageEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.openflow.ChannelHandlerContextAdapter;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the OpenFlow message coalescer.
+ */
+public class OFMessageCoalescerTest {
+
+    private final OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+
+    private TestContext ctx;
+    private TestTimer timer;
+
+    /**
+     * Handler context recording the events sent downstream.
+     */
+    static class TestContext extends ChannelHandlerContextAdapter {
+        final Channel channel = createNiceMock(Channel.class);
+        final List<MessageEvent> written = Lists.newArrayList();
+
+        TestContext() {
+            replay(channel);
+        }
+
+        @Override
+        public Channel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public void sendDownstream(ChannelEvent channelEvent) {
+            written.add((MessageEvent) channelEvent);
+        }
+    }
+
+    /**
+     * Timer that runs its task only when asked to.
+     */
+    static class TestTimer implements Timer {
+        TimerTask task;
+        boolean cancelled;
+
+        @Override
+        public Timeout newTimeout(TimerTask timerTask, long delay, TimeUnit unit) {
+            task = timerTask;
+            cancelled = false;
+            return new Timeout() {
+                @Override
+                public Timer getTimer() {
+                    return TestTimer.this;
+                }
+
+                @Override
+                public TimerTask getTask() {
+                    return timerTask;
+                }
+
+                @Override
+                public boolean isExpired() {
+                    return false;
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return cancelled;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            };
+        }
+
+        @Override
+        public Set<Timeout> stop() {
+            return ImmutableSet.of();
+        }
+
+        void expire() throws Exception {
+            TimerTask timerTask = task;
+            task = null;
+            timerTask.run(null);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        ctx = new TestContext();
+        timer = new TestTimer();
+    }
+
+    private OFMessage flowMod() {
+        return factory.buildFlowAdd().build();
+    }
+
+    private ChannelFuture write(OFMessageCoalescer coalescer, Object message) throws Exception {
+        ChannelFuture future = Channels.future(ctx.channel);
+        coalescer.writeRequested(ctx, new DownstreamMessageEvent(ctx.channel, future, message, null));
+        return future;
+    }
+
+    private static ChannelBuffer encode(OFMessage... messages) {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        for (OFMessage message : messages) {
+            message.writeTo(buffer);
+        }
+        return buffer;
+    }
+
+    private ChannelBuffer written(int index) {
+        return (ChannelBuffer) ctx.written.get(index).getMessage();
+    }
+
+    /**
+     * Tests that modifications are held until another message is written and
+     * then go out together with it, in order.
+     *
+     * @throws Exception on exception in the coalescer
+     */
+    @Test
+    public void testFlushOnOtherMessage() throws Exception {
+        OFMessageCoalescer coalescer = new OFMessageCoalescer(timer, 64 * 1024, 10, null);
+        OFMessage flowMod1 = flowMod();
+        OFMessage flowMod2 = flowMod();
+        OFMessage barrier = factory.buildBarrierRequest().build();
+
+        ChannelFuture future1 = write(coalescer, ImmutableList.of(flowMod1));
+        ChannelFuture future2 = write(coalescer, ImmutableList.of(flowMod2));
+        assertThat(ctx.written, hasSize(0));
+        assertThat(timer.task, notNullValue());
+
+        ChannelFuture future3 = write(coalescer, ImmutableList.of(barrier));
+        assertThat(ctx.written, hasSize(1));
+        assertThat(timer.cancelled, is(true));
+        assertThat(written(0), is(encode(flowMod1, flowMod2, barrier)));
+
+        assertThat(future1.isDone(), is(false));
+        ctx.written.get(0).getFuture().setSuccess();
+        assertThat(future1.isSuccess(), is(true));
+        assertThat(future2.isSuccess(), is(true));
+        assertThat(future3.isSuccess(), is(true));
+    }
+
+    /**
+     * Tests that held modifications go out once the flush delay expires.
+     *
+     * @throws Exception on exception in the coalescer
+     */
+    @Test
+    public void testFlushOnDeadline() throws Exception {
+        OFMessageCoalescer coalescer = new OFMessageCoalescer(timer, 64 * 1024, 10, null);
+        OFMessage flowMod1 = flowMod();
+        OFMessage flowMod2 = flowMod();
+
+        write(coalescer, ImmutableList.of(flowMod1, flowMod2));
+        assertThat(ctx.written, hasSize(0));
+
+        timer.expire();
+        assertThat(ctx.written, hasSize(1));
+        assertThat(written(0), is(encode(flowMod1, flowMod2)));
+
+        write(coalescer, ImmutableList.of(flowMod1));
+        assertThat(timer.task, notNullValue());
+    }
+
+    /**
+     * Tests that modifications go out once the pending buffer is full.
+     *
+     * @throws Exception on exception in the coalescer
+     */
+    @Test
+    public void testFlushOnSize() throws Exception {
+        OFMessage flowMod = flowMod();
+        int size = encode(flowMod).readableBytes();
+        OFMessageCoalescer coalescer = new OFMessageCoalescer(timer, 2 * size, 10, null);
+
+        write(coalescer, ImmutableList.of(flowMod));
+        assertThat(ctx.written, hasSize(0));
+        write(coalescer, ImmutableList.of(flowMod));
+        assertThat(ctx.written, hasSize(1));
+        assertThat(written(0), is(encode(flowMod, flowMod)));
+        assertThat(timer.cancelled, is(true));
+    }
+
+    /**
+     * Tests that writes other than message lists flush the pending
+     * modifications first and then pass through.
+     *
+     * @throws Exception on exception in the coalescer
+     */
+    @Test
+    public void testPassThrough() throws Exception {
+        OFMessageCoalescer coalescer = new OFMessageCoalescer(timer, 64 * 1024, 10, null);
+        OFMessage flowMod = flowMod();
+        ChannelBuffer raw = ChannelBuffers.wrappedBuffer(new byte[]{1, 2, 3});
+
+        write(coalescer, ImmutableList.of(flowMod));
+        write(coalescer, raw);
+        assertThat(ctx.written, hasSize(2));
+        assertThat(written(0), is(encode(flowMod)));
+        assertThat(written(1), is(raw));
+    }
+
+    /**
+     * Tests that a zero flush delay disables coalescing.
+     *
+     * @throws Exception on exception in the coalescer
+     */
+    @Test
+    public void testNoDelay() throws Exception {
+        OFMessageCoalescer coalescer = new OFMessageCoalescer(timer, 64 * 1024, 0, null);
+
+        write(coalescer, ImmutableList.of(flowMod()));
+        write(coalescer, ImmutableList.of(flowMod()));
+        assertThat(ctx.written, hasSize(2));
+        assertThat(timer.task, nullValue());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.onosproject.openflow.ChannelHandlerContextAdapter;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.EthType;
+import org.projectfloodlight.openflow.types.IPv4Address;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decode benchmark for multipart flow statistics replies.
+ * <p>
+ * Not run as part of the unit tests. Run the main method with the test
+ * classpath, optionally passing a file holding the raw OpenFlow messages of
+ * a captured stats cycle (e.g. the switch-to-controller TCP payload exported
+ * from a packet capture). Without a file, a cycle of an OpenFlow 1.3 switch
+ * with 20000 flows is generated.
+ * <p>
+ * For each cycle it reports the time and the bytes allocated by the thread
+ * running the decoder when messages are decoded eagerly, when they are
+ * decoded lazily and only their header is read, as the channel I/O thread
+ * does, and when they are decoded lazily and all entries are read.
+ */
+public final class OFMessageDecoderBenchmark {
+
+    private static final int FLOWS = 20000;
+    private static final int MAX_PART_LENGTH = 0xffff;
+    private static final int WARMUP_CYCLES = 200;
+    private static final int CYCLES = 200;
+
+    private static final DecimalFormat FORMAT = new DecimalFormat("#,###");
+
+    private OFMessageDecoderBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        byte[] cycle = args.length > 0 ? Files.readAllBytes(Paths.get(args[0])) : generateCycle();
+        System.out.println("Stats cycle of " + FORMAT.format(cycle.length) + " bytes in "
+                                   + decodeLazy(cycle, false) + " messages");
+
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            decodeEager(cycle);
+            decodeLazy(cycle, false);
+            decodeLazy(cycle, true);
+        }
+        report("eager", () -> decodeEager(cycle));
+        report("lazy, headers only", () -> decodeLazy(cycle, false));
+        report("lazy, all entries", () -> decodeLazy(cycle, true));
+    }
+
+    private static void report(String name, Cycle decoder) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < CYCLES; i++) {
+            decoder.run();
+        }
+        long nanos = (System.nanoTime() - start) / CYCLES;
+        allocated = (threads.getThreadAllocatedBytes(thread) - allocated) / CYCLES;
+        System.out.println(String.format("%-20s %12s ns/cycle %14s bytes allocated/cycle",
+                                         name, FORMAT.format(nanos), FORMAT.format(allocated)));
+    }
+
+    private static int decodeEager(byte[] cycle) throws Exception {
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(cycle);
+        int entries = 0;
+        while (buffer.readable()) {
+            OFMessage message = OFFactories.getGenericReader().readFrom(buffer);
+            if (message instanceof OFFlowStatsReply) {
+                entries += ((OFFlowStatsReply) message).getEntries().size();
+            }
+        }
+        return entries;
+    }
+
+    private static int decodeLazy(byte[] cycle, boolean readEntries) throws Exception {
+        OFMessageDecoder decoder = new OFMessageDecoder();
+        ChannelHandlerContextAdapter ctx = new ChannelHandlerContextAdapter();
+        OFMessageDecoderTest.ConnectedChannel channel = new OFMessageDecoderTest.ConnectedChannel();
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(cycle);
+        int count = 0;
+        while (buffer.readable()) {
+            OFStatsReply message = (OFStatsReply) decoder.decode(ctx, channel, buffer);
+            // the controller routes replies on their type and flags
+            message.getFlags();
+            if (readEntries && message instanceof OFFlowStatsReply) {
+                count += ((OFFlowStatsReply) message).getEntries().size();
+            } else {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] generateCycle() {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+        List<OFFlowStatsEntry> entries = new ArrayList<>();
+        for (int i = 0; i < FLOWS; i++) {
+            entries.add(factory.buildFlowStatsEntry()
+                                .setCookie(U64.of(i))
+                                .setPriority(40000)
+                                .setDurationSec(i)
+                                .setPacketCount(U64.of(i * 10L))
+                                .setByteCount(U64.of(i * 1000L))
+                                .setMatch(factory.buildMatch()
+                                                  .setExact(MatchField.IN_PORT, OFPort.of(i % 48 + 1))
+                                                  .setExact(MatchField.ETH_TYPE, EthType.IPv4)
+                                                  .setExact(MatchField.IPV4_DST, IPv4Address.of(0x0a000000 + i))
+                                                  .build())
+                                .setInstructions(ImmutableList.of(
+                                        factory.instructions().applyActions(ImmutableList.of(
+                                                factory.actions().output(OFPort.of(i % 48 + 1), 0)))))
+                                .build());
+        }
+
+        // split the entries into parts no longer than a multipart message
+        ChannelBuffer cycle = ChannelBuffers.dynamicBuffer();
+        List<OFFlowStatsEntry> part = new ArrayList<>();
+        int partLength = 0;
+        for (OFFlowStatsEntry entry : entries) {
+            int length = length(entry);
+            if (partLength + length > MAX_PART_LENGTH - 16) {
+                writePart(factory, part, true, cycle);
+                part.clear();
+                partLength = 0;
+            }
+            part.add(entry);
+            partLength += length;
+        }
+        writePart(factory, part, false, cycle);
+
+        byte[] bytes = new byte[cycle.readableBytes()];
+        cycle.readBytes(bytes);
+        return bytes;
+    }
+
+    private static int length(OFFlowStatsEntry entry) {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        entry.writeTo(buffer);
+        return buffer.readableBytes();
+    }
+
+    private static void writePart(OFFactory factory, List<OFFlowStatsEntry> entries,
+                                  boolean more, ChannelBuffer cycle) {
+        factory.buildFlowStatsReply()
+                .setXid(1)
+                .setFlags(more ? ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE) : ImmutableSet.of())
+                .setEntries(ImmutableList.copyOf(entries))
+                .build()
+                .writeTo(cycle);
+    }
+
+    private interface Cycle {
+        void run() throws Exception;
+    }
+}
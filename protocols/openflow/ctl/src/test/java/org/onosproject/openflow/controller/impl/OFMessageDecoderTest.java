@@ -16,15 +16,40 @@
 package org.onosproject.openflow.controller.impl;
 
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.Test;
 import org.onosproject.core.netty.ChannelAdapter;
 import org.onosproject.openflow.ChannelHandlerContextAdapter;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
 import org.projectfloodlight.openflow.protocol.OFHello;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFPacketIn;
+import org.projectfloodlight.openflow.protocol.OFPacketInReason;
+import org.projectfloodlight.openflow.protocol.OFPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFPortStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.protocol.match.MatchField;
+import org.projectfloodlight.openflow.types.OFBufferId;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.TableId;
+import org.projectfloodlight.openflow.types.U64;
+
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -81,4 +106,195 @@ public class OFMessageDecoderTest {
         assertThat(message, instanceOf(OFHello.class));
     }
 
+    private static ChannelBuffer write(OFMessage... messages) {
+        ChannelBuffer channelBuffer = ChannelBuffers.dynamicBuffer();
+        for (OFMessage message : messages) {
+            message.writeTo(channelBuffer);
+        }
+        return channelBuffer;
+    }
+
+    private static Object decode(ChannelBuffer channelBuffer) throws Exception {
+        return new OFMessageDecoder().decode(new ChannelHandlerContextAdapter(),
+                                             new ConnectedChannel(),
+                                             channelBuffer);
+    }
+
+    private static OFPacketIn packetIn(OFFactory factory) {
+        OFPacketIn.Builder builder = factory.buildPacketIn()
+                .setXid(42)
+                .setBufferId(OFBufferId.of(7))
+                .setTotalLen(4)
+                .setReason(OFPacketInReason.NO_MATCH)
+                .setData(new byte[]{1, 2, 3, 4});
+        if (factory.getVersion() == OFVersion.OF_10) {
+            return builder.setInPort(OFPort.of(3)).build();
+        }
+        return builder.setTableId(TableId.of(1))
+                .setCookie(U64.of(5))
+                .setMatch(factory.buildMatch().setExact(MatchField.IN_PORT, OFPort.of(3)).build())
+                .build();
+    }
+
+    private static OFFlowStatsReply flowStatsReply(OFFactory factory, int flows, boolean more) {
+        ImmutableList.Builder<OFFlowStatsEntry> entries = ImmutableList.builder();
+        for (int i = 0; i < flows; i++) {
+            entries.add(factory.buildFlowStatsEntry()
+                                .setCookie(U64.of(i))
+                                .setPacketCount(U64.of(i * 10))
+                                .setMatch(factory.buildMatch()
+                                                  .setExact(MatchField.IN_PORT, OFPort.of(i + 1))
+                                                  .build())
+                                .build());
+        }
+        return factory.buildFlowStatsReply()
+                .setXid(43)
+                .setFlags(more ? ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE) : ImmutableSet.of())
+                .setEntries(entries.build())
+                .build();
+    }
+
+    private static OFPortStatsReply portStatsReply(OFFactory factory) {
+        return factory.buildPortStatsReply()
+                .setXid(44)
+                .setEntries(ImmutableList.of(
+                        factory.buildPortStatsEntry().setPortNo(OFPort.of(1)).setRxBytes(U64.of(100)).build(),
+                        factory.buildPortStatsEntry().setPortNo(OFPort.of(2)).setTxBytes(U64.of(200)).build()))
+                .build();
+    }
+
+    /**
+     * Tests that packet-in headers are read without decoding the message
+     * and that the decoded message matches the one sent.
+     *
+     * @throws Exception when an exception is thrown from the decoder
+     */
+    @Test
+    public void testDecodePacketIn() throws Exception {
+        for (OFVersion version : new OFVersion[]{OFVersion.OF_10, OFVersion.OF_13}) {
+            OFPacketIn sent = packetIn(OFFactories.getFactory(version));
+            Object message = decode(write(sent));
+            assertThat(message, instanceOf(LazyOFPacketIn.class));
+
+            LazyOFPacketIn packetIn = (LazyOFPacketIn) message;
+            assertThat(packetIn.getVersion(), is(version));
+            assertThat(packetIn.getType(), is(OFType.PACKET_IN));
+            assertThat(packetIn.getXid(), is(42L));
+            assertThat(packetIn.getBufferId(), is(OFBufferId.of(7)));
+            assertThat(packetIn.getTotalLen(), is(4));
+            assertThat(packetIn.isDecoded(), is(false));
+
+            assertThat(packetIn.getData(), equalTo(sent.getData()));
+            assertThat(packetIn.getReason(), is(OFPacketInReason.NO_MATCH));
+            assertThat(packetIn.isDecoded(), is(true));
+            assertThat(packetIn.getXid(), is(42L));
+            assertThat(packetIn.getBufferId(), is(OFBufferId.of(7)));
+            assertThat(packetIn.equals(sent), is(true));
+            assertThat(packetIn.hashCode(), is(sent.hashCode()));
+        }
+        OFPacketIn sent = packetIn(OFFactories.getFactory(OFVersion.OF_13));
+        LazyOFPacketIn packetIn = (LazyOFPacketIn) decode(write(sent));
+        assertThat(packetIn.getMatch().get(MatchField.IN_PORT), is(OFPort.of(3)));
+        assertThat(packetIn.getCookie(), is(U64.of(5)));
+    }
+
+    /**
+     * Tests that flow statistics reply headers are read without decoding
+     * the entries.
+     *
+     * @throws Exception when an exception is thrown from the decoder
+     */
+    @Test
+    public void testDecodeFlowStatsReply() throws Exception {
+        for (OFVersion version : new OFVersion[]{OFVersion.OF_10, OFVersion.OF_13}) {
+            OFFlowStatsReply sent = flowStatsReply(OFFactories.getFactory(version), 3, true);
+            Object message = decode(write(sent));
+            assertThat(message, instanceOf(LazyOFFlowStatsReply.class));
+
+            LazyOFFlowStatsReply reply = (LazyOFFlowStatsReply) message;
+            assertThat(reply.getType(), is(OFType.STATS_REPLY));
+            assertThat(reply.getStatsType(), is(OFStatsType.FLOW));
+            assertThat(reply.getXid(), is(43L));
+            assertThat(reply.getFlags(), is(ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE)));
+            assertThat(reply.isDecoded(), is(false));
+
+            assertThat(reply.getEntries(), equalTo(sent.getEntries()));
+            assertThat(reply.isDecoded(), is(true));
+            assertThat(reply.getFlags(), is(ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE)));
+        }
+
+        OFFlowStatsReply last = flowStatsReply(OFFactories.getFactory(OFVersion.OF_13), 0, false);
+        LazyOFFlowStatsReply reply = (LazyOFFlowStatsReply) decode(write(last));
+        assertThat(reply.getFlags(), is(empty()));
+        assertThat(reply.getEntries(), is(empty()));
+    }
+
+    /**
+     * Tests decoding port statistics replies.
+     *
+     * @throws Exception when an exception is thrown from the decoder
+     */
+    @Test
+    public void testDecodePortStatsReply() throws Exception {
+        for (OFVersion version : new OFVersion[]{OFVersion.OF_10, OFVersion.OF_13}) {
+            OFPortStatsReply sent = portStatsReply(OFFactories.getFactory(version));
+            Object message = decode(write(sent));
+            assertThat(message, instanceOf(LazyOFPortStatsReply.class));
+
+            LazyOFPortStatsReply reply = (LazyOFPortStatsReply) message;
+            assertThat(reply.getStatsType(), is(OFStatsType.PORT));
+            assertThat(reply.getXid(), is(44L));
+            assertThat(reply.getFlags(), is(empty()));
+            assertThat(reply.isDecoded(), is(false));
+
+            List<OFPortStatsEntry> entries = reply.getEntries();
+            assertThat(entries, equalTo(sent.getEntries()));
+            assertThat(entries.get(0).getRxBytes(), is(U64.of(100)));
+        }
+    }
+
+    /**
+     * Tests that frames are sliced off the channel buffer one at a time and
+     * that incomplete frames are left in the buffer.
+     *
+     * @throws Exception when an exception is thrown from the decoder
+     */
+    @Test
+    public void testDecodeFrames() throws Exception {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+        OFFlowStatsReply first = flowStatsReply(factory, 2, true);
+        OFFlowStatsReply second = flowStatsReply(factory, 1, false);
+        ChannelBuffer channelBuffer = write(first, factory.hello(ImmutableList.of()), second);
+        ChannelBuffer partial = channelBuffer.slice(0, channelBuffer.readableBytes() - 1);
+
+        OFFlowStatsReply reply = (OFFlowStatsReply) decode(partial);
+        assertThat(decode(partial), instanceOf(OFHello.class));
+        int remaining = partial.readableBytes();
+        assertThat(decode(partial), nullValue());
+        assertThat(partial.readableBytes(), is(remaining));
+        assertThat(reply.getEntries(), equalTo(first.getEntries()));
+
+        channelBuffer.readerIndex(partial.readerIndex());
+        OFFlowStatsReply last = (OFFlowStatsReply) decode(channelBuffer);
+        assertThat(last.getFlags(), is(empty()));
+        assertThat(last.getEntries(), equalTo(second.getEntries()));
+        assertThat(channelBuffer.readable(), is(false));
+    }
+
+    /**
+     * Tests that a lazily decoded message is written back unchanged.
+     *
+     * @throws Exception when an exception is thrown from the decoder
+     */
+    @Test
+    public void testWriteTo() throws Exception {
+        OFFlowStatsReply sent = flowStatsReply(OFFactories.getFactory(OFVersion.OF_13), 2, false);
+        ChannelBuffer expected = write(sent);
+        OFMessage message = (OFMessage) decode(expected.duplicate());
+
+        assertThat(write(message), equalTo(expected));
+        ((LazyOFFlowStatsReply) message).getEntries();
+        assertThat(write(message), equalTo(expected));
+    }
+
 }
@@ -27,19 +27,31 @@ import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowPacketContext;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.PacketListener;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
 import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
 import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.U64;
+
+import com.google.common.collect.ImmutableSet;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import static junit.framework.TestCase.fail;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 
 /**
  * Tests for packet processing in the open flow controller impl class.
@@ -111,6 +123,7 @@ public class OpenFlowControllerImplPacketsTest {
         statsExecutorService = new TestExecutorService();
 
         controller.executorMsgs = statsExecutorService;
+        Arrays.fill(controller.executorFlowStats, statsExecutorService);
     }
 
     /**
@@ -150,4 +163,37 @@ public class OpenFlowControllerImplPacketsTest {
         assertThat(statsExecutorService.submittedMessages(), hasSize(1));
         assertThat(statsExecutorService.submittedMessages().get(0), is(errorPacket));
     }
+
+    private static OFFlowStatsReply flowStatsReply(Set<OFStatsReplyFlags> flags, long... cookies) {
+        OFFactory factory = OFFactories.getFactory(OFVersion.OF_13);
+        List<OFFlowStatsEntry> entries = new ArrayList<>();
+        for (long cookie : cookies) {
+            entries.add(factory.buildFlowStatsEntry().setCookie(U64.of(cookie)).build());
+        }
+        return factory.buildFlowStatsReply()
+                .setXid(7)
+                .setFlags(flags)
+                .setEntries(entries)
+                .build();
+    }
+
+    /**
+     * Tests that the parts of a multipart flow stats reply are handed on one
+     * by one, in order and without being aggregated.
+     */
+    @Test
+    public void testMultipartFlowStats() {
+        Set<OFStatsReplyFlags> more = ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE);
+        OFFlowStatsReply part1 = flowStatsReply(more, 1, 2);
+        OFFlowStatsReply part2 = flowStatsReply(more, 3);
+        OFFlowStatsReply part3 = flowStatsReply(ImmutableSet.of(), 4);
+
+        controller.processPacket(dpid1, part1);
+        controller.processPacket(dpid1, part2);
+        controller.processPacket(dpid1, part3);
+        assertThat(statsExecutorService.submittedMessages(), hasSize(3));
+        assertThat(statsExecutorService.submittedMessages().get(0), sameInstance(part1));
+        assertThat(statsExecutorService.submittedMessages().get(1), sameInstance(part2));
+        assertThat(statsExecutorService.submittedMessages().get(2), sameInstance(part3));
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.google.common.collect.Lists;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Test;
+import org.onosproject.openflow.controller.Dpid;
+import org.onosproject.openflow.controller.OpenFlowPacketContext;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for the packet-in dispatcher.
+ */
+public class PacketInDispatcherTest {
+
+    private static final Dpid DPID1 = new Dpid(1);
+    private static final Dpid DPID2 = new Dpid(2);
+
+    private PacketInDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private OpenFlowPacketContext context() {
+        return EasyMock.createMock(OpenFlowPacketContext.class);
+    }
+
+    /**
+     * Tests that packets from one device are processed in arrival order.
+     */
+    @Test
+    public void testPerDeviceOrdering() throws InterruptedException {
+        List<OpenFlowPacketContext> processed = Lists.newCopyOnWriteArrayList();
+        CountDownLatch done = new CountDownLatch(100);
+        dispatcher = new PacketInDispatcher(4, 100, ctx -> {
+            processed.add(ctx);
+            done.countDown();
+        }, null);
+
+        List<OpenFlowPacketContext> sent = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            OpenFlowPacketContext ctx = context();
+            sent.add(ctx);
+            assertThat(dispatcher.dispatch(DPID1, ctx), is(true));
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(processed, contains(sent.toArray()));
+        assertThat(dispatcher.queueDepth(), is(0));
+    }
+
+    /**
+     * Tests that packets are dropped once a device queue is full without
+     * affecting other devices.
+     */
+    @Test
+    public void testDropWhenFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDevice = new CountDownLatch(1);
+        OpenFlowPacketContext first = context();
+        OpenFlowPacketContext other = context();
+        dispatcher = new PacketInDispatcher(2, 2, ctx -> {
+            if (ctx == first) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (ctx == other) {
+                otherDevice.countDown();
+            }
+        }, null);
+
+        assertThat(dispatcher.dispatch(DPID1, first), is(true));
+        assertThat(blocked.await(5, TimeUnit.SECONDS), is(true));
+
+        // the worker is stuck on the first packet; fill the queue
+        assertThat(dispatcher.dispatch(DPID1, context()), is(true));
+        assertThat(dispatcher.dispatch(DPID1, context()), is(true));
+        assertThat(dispatcher.dispatch(DPID1, context()), is(false));
+
+        // another device is still served
+        assertThat(dispatcher.dispatch(DPID2, other), is(true));
+        assertThat(otherDevice.await(5, TimeUnit.SECONDS), is(true));
+
+        release.countDown();
+    }
+}
@@ -15,7 +15,6 @@
  */
 package org.onosproject.provider.of.flow.impl;
 
-import org.onlab.util.SharedExecutors;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.RoleState;
 import org.projectfloodlight.openflow.protocol.OFFlowStatsRequest;
@@ -23,78 +22,104 @@ import org.projectfloodlight.openflow.types.OFPort;
 import org.projectfloodlight.openflow.types.TableId;
 import org.slf4j.Logger;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
- * Collects flow statistics for the specified switch.
+ * Collects flow statistics for the specified switch, when asked to by the
+ * {@link FlowStatsPollScheduler poll scheduler}.
  */
 class FlowStatsCollector implements SwitchDataCollector {
 
     private final Logger log = getLogger(getClass());
 
-    public static final int SECONDS = 1000;
+    static final long NO_XID = -1;
 
+    private final FlowStatsPollScheduler scheduler;
     private final OpenFlowSwitch sw;
-    private Timer timer;
-    private TimerTask task;
 
-    private int pollInterval;
+    // flow modifications sent since the last reply
+    final AtomicInteger modifications = new AtomicInteger();
+
+    // poll state, guarded by the scheduler
+    long interval;
+    long nextPoll;
+    long sentAt;
+    long xid = NO_XID;
+    int flowCount;
+    int partialFlowCount;
 
     /**
-     * Creates a new collector for the given switch and poll frequency.
+     * Creates a new collector for the given switch.
      *
-     * @param timer        timer to use for scheduling
-     * @param sw           switch to pull
-     * @param pollInterval poll frequency in seconds
+     * @param scheduler scheduler polling the switch
+     * @param sw        switch to pull
      */
-    FlowStatsCollector(Timer timer, OpenFlowSwitch sw, int pollInterval) {
-        this.timer = timer;
+    FlowStatsCollector(FlowStatsPollScheduler scheduler, OpenFlowSwitch sw) {
+        this.scheduler = scheduler;
         this.sw = sw;
-        this.pollInterval = pollInterval;
     }
 
     /**
-     * Adjusts poll frequency.
+     * Returns the identifier of the switch.
      *
-     * @param pollInterval poll frequency in seconds
+     * @return switch identifier
      */
-    synchronized void adjustPollInterval(int pollInterval) {
-        this.pollInterval = pollInterval;
-        task.cancel();
-        task = new InternalTimerTask();
-        timer.scheduleAtFixedRate(task, pollInterval * SECONDS, pollInterval * 1000);
+    String id() {
+        return sw.getStringId();
     }
 
-    private class InternalTimerTask extends TimerTask {
-        @Override
-        public void run() {
-            if (sw.getRole() == RoleState.MASTER) {
-                log.trace("Collecting stats for {}", sw.getStringId());
-                OFFlowStatsRequest request = sw.factory().buildFlowStatsRequest()
-                        .setMatch(sw.factory().matchWildcardAll())
-                        .setTableId(TableId.ALL)
-                        .setOutPort(OFPort.NO_MASK)
-                        .build();
-                sw.sendMsg(request);
-            }
+    /**
+     * Sends a flow stats request to the switch if this instance is its
+     * master.
+     *
+     * @return transaction id of the request sent; {@link #NO_XID} if none was
+     */
+    long poll() {
+        if (sw.getRole() != RoleState.MASTER) {
+            return NO_XID;
         }
+        log.trace("Collecting stats for {}", sw.getStringId());
+        OFFlowStatsRequest request = sw.factory().buildFlowStatsRequest()
+                .setMatch(sw.factory().matchWildcardAll())
+                .setTableId(TableId.ALL)
+                .setOutPort(OFPort.NO_MASK)
+                .build();
+        sw.sendMsg(request);
+        return request.getXid();
+    }
+
+    /**
+     * Records flow modifications sent to the switch.
+     *
+     * @param count number of modifications
+     */
+    void flowsModified(int count) {
+        modifications.addAndGet(count);
+    }
+
+    /**
+     * Records a part of a flow stats reply of the switch.
+     *
+     * @param xid      transaction id of the reply
+     * @param count    number of flow entries of the part
+     * @param lastPart true if this is the last part of the reply
+     */
+    void received(long xid, int count, boolean lastPart) {
+        scheduler.received(this, xid, count, lastPart);
     }
 
-    public synchronized void start() {
-        // Initially start polling quickly. Then drop down to configured value
-        log.debug("Starting Stats collection thread for {}", sw.getStringId());
-        task = new InternalTimerTask();
-        SharedExecutors.getTimer().scheduleAtFixedRate(task, 1 * SECONDS,
-                                                       pollInterval * SECONDS);
+    @Override
+    public void start() {
+        log.debug("Starting Stats collection for {}", sw.getStringId());
+        scheduler.add(this);
     }
 
-    public synchronized void stop() {
-        log.debug("Stopping Stats collection thread for {}", sw.getStringId());
-        task.cancel();
-        task = null;
+    @Override
+    public void stop() {
+        log.debug("Stopping Stats collection for {}", sw.getStringId());
+        scheduler.remove(this);
     }
 
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.of.flow.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.google.common.collect.Sets;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.slf4j.Logger;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Schedules the flow statistics polls of all switches.
+ * <p>
+ * Switches are polled on a common tick. The first poll of every switch is
+ * placed at a random point of the poll interval, and the number of polls per
+ * tick is limited by a token bucket filled at the rate that polls every
+ * switch once per interval, so polls stay spread over the interval instead
+ * of going out in bursts.
+ * <p>
+ * The interval of each switch adapts to it: switches whose flows did not
+ * change since the last poll back off up to {@link #MAX_BACKOFF} intervals,
+ * large tables are polled less often, and so are switches whose replies take
+ * longer than their interval to be processed. No switch has more than one
+ * request in flight, and no polls go out while {@code maxInFlight} requests
+ * are awaiting their reply. Replies are matched to requests by transaction
+ * id, so late or duplicate replies do not count.
+ */
+final class FlowStatsPollScheduler {
+
+    private final Logger log = getLogger(getClass());
+
+    static final long TICK_MILLIS = 100;
+    static final int MAX_BACKOFF = 4;
+    static final int LARGE_TABLE_FLOWS = 10000;
+    static final int BURST_TICKS = 10;
+
+    private static final String COMPONENT = "OpenFlowRuleProvider";
+    private static final String FEATURE = "flowStatsPolling";
+    private static final String IN_FLIGHT = "inFlightRequests";
+    private static final String POLL_LAG = "pollLagMillis";
+    private static final String REPLY_LATENCY = "replyLatencyMillis";
+
+    private final Set<FlowStatsCollector> collectors = Sets.newHashSet();
+    private final int maxInFlight;
+    private final MetricsService metricsService;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService executor;
+
+    private long pollIntervalMillis;
+    private double tokens;
+    private int inFlight;
+
+    private MetricsComponent metricsComponent;
+    private MetricsFeature metricsFeature;
+    private Histogram pollLag;
+    private Histogram replyLatency;
+
+    /**
+     * Creates a scheduler and starts ticking.
+     *
+     * @param pollInterval   base poll interval in seconds
+     * @param maxInFlight    maximum number of requests awaiting their reply
+     * @param metricsService metrics service; may be null
+     */
+    FlowStatsPollScheduler(int pollInterval, int maxInFlight, MetricsService metricsService) {
+        this(pollInterval, maxInFlight, metricsService, System::currentTimeMillis,
+             Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/of", "flow-stats-poller")));
+    }
+
+    /**
+     * Creates a scheduler driven by the specified clock and ticker.
+     *
+     * @param pollInterval   base poll interval in seconds
+     * @param maxInFlight    maximum number of requests awaiting their reply
+     * @param metricsService metrics service; may be null
+     * @param clock          current time in milliseconds
+     * @param ticker         executor running the ticks of the scheduler
+     */
+    FlowStatsPollScheduler(int pollInterval, int maxInFlight, MetricsService metricsService,
+                           LongSupplier clock, ScheduledExecutorService ticker) {
+        checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        this.maxInFlight = maxInFlight;
+        this.metricsService = metricsService;
+        this.clock = clock;
+        setPollInterval(pollInterval);
+
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent(COMPONENT);
+            metricsFeature = metricsComponent.registerFeature(FEATURE);
+            pollLag = metricsService.createHistogram(metricsComponent, metricsFeature, POLL_LAG);
+            replyLatency = metricsService.createHistogram(metricsComponent, metricsFeature, REPLY_LATENCY);
+            metricsService.removeMetric(metricsComponent, metricsFeature, IN_FLIGHT);
+            metricsService.registerMetric(metricsComponent, metricsFeature, IN_FLIGHT,
+                                          (Gauge<Integer>) this::inFlight);
+        }
+
+        executor = ticker;
+        executor.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling all switches.
+     */
+    void stop() {
+        executor.shutdownNow();
+        if (metricsService != null) {
+            metricsService.removeMetric(metricsComponent, metricsFeature, IN_FLIGHT);
+        }
+    }
+
+    /**
+     * Adjusts the base poll interval.
+     *
+     * @param pollInterval poll interval in seconds
+     */
+    synchronized void setPollInterval(int pollInterval) {
+        checkArgument(pollInterval > 0, "pollInterval must be positive");
+        pollIntervalMillis = TimeUnit.SECONDS.toMillis(pollInterval);
+        long now = clock.getAsLong();
+        collectors.forEach(c -> {
+            c.interval = pollIntervalMillis;
+            c.nextPoll = Math.min(c.nextPoll, now + jitter());
+        });
+    }
+
+    private long jitter() {
+        return ThreadLocalRandom.current().nextLong(pollIntervalMillis);
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Starts polling the switch of the specified collector.
+     *
+     * @param collector collector
+     */
+    synchronized void add(FlowStatsCollector collector) {
+        collector.interval = pollIntervalMillis;
+        collector.nextPoll = clock.getAsLong() + jitter();
+        collectors.add(collector);
+    }
+
+    /**
+     * Stops polling the switch of the specified collector.
+     *
+     * @param collector collector
+     */
+    synchronized void remove(FlowStatsCollector collector) {
+        if (collectors.remove(collector) && collector.sentAt != 0) {
+            collector.sentAt = 0;
+            inFlight--;
+        }
+    }
+
+    /**
+     * Records the flow entries of a part of a flow stats reply.
+     *
+     * @param collector collector of the replying switch
+     * @param xid       transaction id of the reply
+     * @param flowCount number of flow entries of the part
+     * @param lastPart  true if this is the last part of the reply
+     */
+    synchronized void received(FlowStatsCollector collector, long xid, int flowCount, boolean lastPart) {
+        if (collector.sentAt == 0 || collector.xid != xid) {
+            // reply to a request that timed out, was already answered or was not ours
+            return;
+        }
+        collector.partialFlowCount += flowCount;
+        if (!lastPart) {
+            return;
+        }
+        int flows = collector.partialFlowCount;
+        collector.partialFlowCount = 0;
+
+        long now = clock.getAsLong();
+        long latency = now - collector.sentAt;
+        if (replyLatency != null) {
+            replyLatency.update(latency);
+        }
+        collector.sentAt = 0;
+        inFlight--;
+
+        boolean changed = collector.modifications.getAndSet(0) > 0 || flows != collector.flowCount;
+        collector.flowCount = flows;
+
+        long interval;
+        if (latency > collector.interval) {
+            // replies are not processed in time; give the pipeline room
+            interval = collector.interval * 2;
+        } else if (changed) {
+            interval = pollIntervalMillis * (1 + flows / LARGE_TABLE_FLOWS);
+        } else {
+            interval = collector.interval * 2;
+        }
+        collector.interval = Math.min(interval, pollIntervalMillis * MAX_BACKOFF);
+        collector.nextPoll = now - latency + collector.interval;
+    }
+
+    private void tick() {
+        try {
+            poll(clock.getAsLong());
+        } catch (Exception e) {
+            log.warn("Unable to poll flow statistics", e);
+        }
+    }
+
+    private synchronized void poll(long now) {
+        double rate = (double) collectors.size() * TICK_MILLIS / pollIntervalMillis;
+        tokens = Math.min(tokens + rate, Math.max(1, rate * BURST_TICKS));
+
+        List<FlowStatsCollector> due = collectors.stream()
+                .filter(c -> c.nextPoll <= now)
+                .sorted(Comparator.comparingLong(c -> c.nextPoll))
+                .collect(Collectors.toList());
+        for (FlowStatsCollector collector : due) {
+            if (collector.sentAt != 0) {
+                if (now - collector.sentAt < pollIntervalMillis * MAX_BACKOFF) {
+                    // previous request still in flight
+                    continue;
+                }
+                log.debug("Flow stats reply of {} timed out", collector.id());
+                collector.sentAt = 0;
+                collector.partialFlowCount = 0;
+                inFlight--;
+            }
+            if (tokens < 1 || inFlight >= maxInFlight) {
+                break;
+            }
+            long xid = collector.poll();
+            if (xid == FlowStatsCollector.NO_XID) {
+                collector.nextPoll = now + collector.interval;
+                continue;
+            }
+            if (pollLag != null) {
+                pollLag.update(now - collector.nextPoll);
+            }
+            tokens--;
+            inFlight++;
+            collector.sentAt = now;
+            collector.xid = xid;
+            collector.nextPoll = now + collector.interval;
+        }
+    }
+}
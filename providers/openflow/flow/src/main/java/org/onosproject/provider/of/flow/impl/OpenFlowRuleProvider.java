@@ -28,6 +28,7 @@ import org.apache.felix.scr.annotations.Modified;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.DeviceId;
@@ -65,6 +66,7 @@ import org.projectfloodlight.openflow.protocol.OFFlowStatsReply;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFPortStatus;
 import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
 import org.projectfloodlight.openflow.protocol.OFStatsType;
 import org.projectfloodlight.openflow.protocol.OFTableStatsEntry;
 import org.projectfloodlight.openflow.protocol.OFTableStatsReply;
@@ -110,6 +112,11 @@ public class OpenFlowRuleProvider extends AbstractProvider
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DriverService driverService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    private static final int MAX_FLOW_STATS_REQUESTS_IN_FLIGHT = 32;
+
     private static final int DEFAULT_POLL_FREQUENCY = 5;
     @Property(name = "flowPollFrequency", intValue = DEFAULT_POLL_FREQUENCY,
             label = "Frequency (in seconds) for polling flow statistics")
@@ -127,6 +134,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
     private Cache<Long, InternalCacheEntry> pendingBatches;
 
     private final Timer timer = new Timer("onos-openflow-collector");
+    private FlowStatsPollScheduler pollScheduler;
     private final Map<Dpid, FlowStatsCollector> simpleCollectors = Maps.newHashMap();
 
     // NewAdaptiveFlowStatsCollector Set
@@ -147,6 +155,8 @@ public class OpenFlowRuleProvider extends AbstractProvider
         controller.addListener(listener);
         controller.addEventListener(listener);
 
+        pollScheduler = new FlowStatsPollScheduler(flowPollFrequency, MAX_FLOW_STATS_REQUESTS_IN_FLIGHT,
+                                                   metricsService);
         modified(context);
 
         pendingBatches = createBatchCache();
@@ -161,6 +171,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
     protected void deactivate(ComponentContext context) {
         cfgService.unregisterProperties(getClass(), false);
         stopCollectors();
+        pollScheduler.stop();
         providerRegistry.unregister(this);
         providerService = null;
 
@@ -224,7 +235,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
             fsc.start();
             stopCollectorIfNeeded(afsCollectors.put(new Dpid(sw.getId()), fsc));
         } else {
-            FlowStatsCollector fsc = new FlowStatsCollector(timer, sw, flowPollFrequency);
+            FlowStatsCollector fsc = new FlowStatsCollector(pollScheduler, sw);
             fsc.start();
             stopCollectorIfNeeded(simpleCollectors.put(new Dpid(sw.getId()), fsc));
         }
@@ -258,7 +269,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
             // NewAdaptiveFlowStatsCollector calAndPollInterval
             afsCollectors.values().forEach(fsc -> fsc.adjustCalAndPollInterval(flowPollFrequency));
         } else {
-            simpleCollectors.values().forEach(fsc -> fsc.adjustPollInterval(flowPollFrequency));
+            pollScheduler.setPollInterval(flowPollFrequency);
         }
         tableStatsCollectors.values().forEach(tsc -> tsc.adjustPollInterval(flowPollFrequency));
     }
@@ -286,6 +297,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
         }
         sw.sendMsg(FlowModBuilder.builder(flowRule, sw.factory(),
                 Optional.empty(), Optional.of(driverService)).buildFlowAdd());
+        flowsModified(dpid, 1);
 
         if (adaptiveFlowSampling) {
             // Add TypedFlowEntry to deviceFlowEntries in NewAdaptiveFlowStatsCollector
@@ -319,6 +331,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
         }
         sw.sendMsg(FlowModBuilder.builder(flowRule, sw.factory(),
                                           Optional.empty(), Optional.of(driverService)).buildFlowDel());
+        flowsModified(dpid, 1);
 
         if (adaptiveFlowSampling) {
             // Remove TypedFlowEntry to deviceFlowEntries in NewAdaptiveFlowStatsCollector
@@ -329,6 +342,15 @@ public class OpenFlowRuleProvider extends AbstractProvider
         }
     }
 
+    private void flowsModified(Dpid dpid, int count) {
+        if (!adaptiveFlowSampling) {
+            FlowStatsCollector collector = simpleCollectors.get(dpid);
+            if (collector != null) {
+                collector.flowsModified(count);
+            }
+        }
+    }
+
     @Override
     public void removeRulesById(ApplicationId id, FlowRule... flowRules) {
         // TODO: optimize using the ApplicationId
@@ -343,6 +365,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
 
         Dpid dpid = Dpid.dpid(batch.deviceId().uri());
         OpenFlowSwitch sw = controller.getSwitch(dpid);
+        flowsModified(dpid, batch.size());
         OFFlowMod mod;
         for (FlowRuleBatchEntry fbe : batch.getOperations()) {
             // flow is the third party privacy flow
@@ -438,6 +461,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
 
                     FlowEntry fr = new FlowEntryBuilder(deviceId, removed, driverService).build();
                     providerService.flowRemoved(fr);
+                    flowsModified(dpid, 1);
 
                     if (adaptiveFlowSampling) {
                         // Removed TypedFlowEntry to deviceFlowEntries in NewAdaptiveFlowStatsCollector
@@ -512,6 +536,8 @@ public class OpenFlowRuleProvider extends AbstractProvider
         private void pushFlowMetrics(Dpid dpid, OFFlowStatsReply replies) {
 
             DeviceId did = DeviceId.deviceId(Dpid.uri(dpid));
+            // multipart replies arrive one part at a time and in order
+            boolean lastPart = !replies.getFlags().contains(OFStatsReplyFlags.REPLY_MORE);
 
             List<FlowEntry> flowEntries = replies.getEntries().stream()
                     .map(entry -> new FlowEntryBuilder(did, entry, driverService).build())
@@ -528,14 +554,15 @@ public class OpenFlowRuleProvider extends AbstractProvider
                     }
 
                     // Check that OFFlowStatsReply Xid is same with the one of OFFlowStatsRequest?
-                    if (afsc.getFlowMissingXid() != NewAdaptiveFlowStatsCollector.NO_FLOW_MISSING_XID) {
-                        if (afsc.getFlowMissingXid() == replies.getXid()) {
-                            // call entire flow stats update with flowMissing synchronization.
-                            // used existing pushFlowMetrics
-                            providerService.pushFlowMetrics(did, flowEntries);
+                    if (afsc.getFlowMissingXid() != NewAdaptiveFlowStatsCollector.NO_FLOW_MISSING_XID
+                            && afsc.getFlowMissingXid() == replies.getXid()) {
+                        // call entire flow stats update with flowMissing synchronization.
+                        providerService.pushFlowMetricsPart(did, replies.getXid(), flowEntries, lastPart);
+                        // reset flowMissingXid to NO_FLOW_MISSING_XID after its last part;
+                        // parts of other replies in between must not end it early
+                        if (lastPart) {
+                            afsc.setFlowMissingXid(NewAdaptiveFlowStatsCollector.NO_FLOW_MISSING_XID);
                         }
-                        // reset flowMissingXid to NO_FLOW_MISSING_XID
-                        afsc.setFlowMissingXid(NewAdaptiveFlowStatsCollector.NO_FLOW_MISSING_XID);
 
                     } else {
                         // call individual flow stats update
@@ -546,8 +573,12 @@ public class OpenFlowRuleProvider extends AbstractProvider
                     afsc.pushFlowMetrics(flowEntries);
                 }
             } else {
-                // call existing entire flow stats update with flowMissing synchronization
-                providerService.pushFlowMetrics(did, flowEntries);
+                // call entire flow stats update with flowMissing synchronization
+                providerService.pushFlowMetricsPart(did, replies.getXid(), flowEntries, lastPart);
+                FlowStatsCollector collector = simpleCollectors.get(dpid);
+                if (collector != null) {
+                    collector.received(replies.getXid(), flowEntries.size(), lastPart);
+                }
             }
         }
 
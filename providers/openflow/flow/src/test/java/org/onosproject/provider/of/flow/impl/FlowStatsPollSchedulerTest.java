@@ -0,0 +1,260 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.of.flow.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import org.onlab.junit.NullScheduledExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the flow statistics poll scheduler.
+ */
+public class FlowStatsPollSchedulerTest {
+
+    private static final int POLL_INTERVAL = 1;
+    private static final long POLL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(POLL_INTERVAL);
+
+    private final ManualTicker ticker = new ManualTicker();
+    private final List<TestCollector> collectors = new ArrayList<>();
+    private long now;
+    private long nextXid = 1;
+    private FlowStatsPollScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    private void createScheduler(int maxInFlight, int switches) {
+        scheduler = new FlowStatsPollScheduler(POLL_INTERVAL, maxInFlight, null, () -> now, ticker);
+        for (int i = 0; i < switches; i++) {
+            TestCollector collector = new TestCollector(scheduler);
+            collectors.add(collector);
+            scheduler.add(collector);
+        }
+        // every first poll is placed within the first interval
+        now += POLL_INTERVAL_MILLIS;
+    }
+
+    private void tick(int count) {
+        for (int i = 0; i < count; i++) {
+            now += FlowStatsPollScheduler.TICK_MILLIS;
+            ticker.tick.run();
+        }
+    }
+
+    private int requestsSent() {
+        return collectors.stream().mapToInt(c -> c.sent.size()).sum();
+    }
+
+    private void pollOnce(TestCollector collector) {
+        int sent = collector.sent.size();
+        for (int i = 0; i < 1000 && collector.sent.size() == sent; i++) {
+            tick(1);
+        }
+        assertEquals("switch should have been polled", sent + 1, collector.sent.size());
+    }
+
+    private void reply(TestCollector collector, int flows) {
+        scheduler.received(collector, collector.xid, flows, true);
+    }
+
+    /**
+     * Tests that polls are spread over ticks by the token bucket.
+     */
+    @Test
+    public void tokenBucket() {
+        // 20 switches per 1000ms interval allow 2 polls per 100ms tick
+        createScheduler(100, 20);
+        tick(1);
+        assertEquals(2, requestsSent());
+        tick(1);
+        assertEquals(4, requestsSent());
+        tick(8);
+        assertEquals(20, requestsSent());
+    }
+
+    /**
+     * Tests that no polls go out while the maximum number of requests is
+     * awaiting a reply.
+     */
+    @Test
+    public void inFlightCap() {
+        createScheduler(3, 20);
+        tick(5);
+        assertEquals(3, requestsSent());
+        assertEquals(3, scheduler.inFlight());
+
+        TestCollector answered = collectors.stream().filter(c -> c.sentAt != 0).findFirst().get();
+        reply(answered, 10);
+        assertEquals(2, scheduler.inFlight());
+        tick(1);
+        assertEquals(4, requestsSent());
+        assertEquals(3, scheduler.inFlight());
+    }
+
+    /**
+     * Tests that a switch never has more than one request in flight.
+     */
+    @Test
+    public void oneRequestPerSwitch() {
+        createScheduler(10, 1);
+        TestCollector collector = collectors.get(0);
+        pollOnce(collector);
+        tick(20);
+        assertEquals(1, collector.sent.size());
+
+        reply(collector, 10);
+        pollOnce(collector);
+    }
+
+    /**
+     * Tests that unchanged switches back off up to the maximum and that
+     * changes bring them back to the base interval.
+     */
+    @Test
+    public void backoff() {
+        createScheduler(10, 1);
+        TestCollector collector = collectors.get(0);
+
+        pollOnce(collector);
+        reply(collector, 5);
+        assertEquals(POLL_INTERVAL_MILLIS, collector.interval);
+
+        long expected = POLL_INTERVAL_MILLIS;
+        for (int i = 0; i < 4; i++) {
+            pollOnce(collector);
+            reply(collector, 5);
+            expected = Math.min(expected * 2, POLL_INTERVAL_MILLIS * FlowStatsPollScheduler.MAX_BACKOFF);
+            assertEquals(expected, collector.interval);
+        }
+
+        pollOnce(collector);
+        collector.flowsModified(1);
+        reply(collector, 5);
+        assertEquals(POLL_INTERVAL_MILLIS, collector.interval);
+
+        pollOnce(collector);
+        reply(collector, FlowStatsPollScheduler.LARGE_TABLE_FLOWS * 2);
+        assertEquals(POLL_INTERVAL_MILLIS * 3, collector.interval);
+    }
+
+    /**
+     * Tests that switches whose replies take longer than their interval are
+     * polled less often even though their flows changed.
+     */
+    @Test
+    public void slowReplyBackoff() {
+        createScheduler(10, 1);
+        TestCollector collector = collectors.get(0);
+
+        pollOnce(collector);
+        now += POLL_INTERVAL_MILLIS + 1;
+        collector.flowsModified(1);
+        reply(collector, 5);
+        assertEquals(POLL_INTERVAL_MILLIS * 2, collector.interval);
+    }
+
+    /**
+     * Tests that replies are matched to requests by transaction id, so late
+     * and duplicate replies are ignored.
+     */
+    @Test
+    public void repliesMatchedByXid() {
+        createScheduler(10, 1);
+        TestCollector collector = collectors.get(0);
+
+        pollOnce(collector);
+        long xid = collector.xid;
+        scheduler.received(collector, xid - 1, 7, true);
+        assertEquals(1, scheduler.inFlight());
+        assertNotEquals(0, collector.sentAt);
+
+        scheduler.received(collector, xid, 5, false);
+        scheduler.received(collector, xid, 5, true);
+        assertEquals(0, scheduler.inFlight());
+        assertEquals(10, collector.flowCount);
+
+        scheduler.received(collector, xid, 5, true);
+        assertEquals(0, scheduler.inFlight());
+        assertEquals(10, collector.flowCount);
+        assertEquals(0, collector.partialFlowCount);
+    }
+
+    /**
+     * Tests that an unanswered request times out and frees its slot.
+     */
+    @Test
+    public void requestTimeout() {
+        createScheduler(1, 1);
+        TestCollector collector = collectors.get(0);
+
+        pollOnce(collector);
+        long xid = collector.xid;
+        long sentAt = collector.sentAt;
+        pollOnce(collector);
+        assertTrue("poll should have waited for the timeout",
+                   now - sentAt >= POLL_INTERVAL_MILLIS * FlowStatsPollScheduler.MAX_BACKOFF);
+        assertEquals(1, scheduler.inFlight());
+        assertNotEquals(xid, collector.xid);
+
+        // the reply to the timed out request no longer counts
+        scheduler.received(collector, xid, 5, true);
+        assertEquals(1, scheduler.inFlight());
+    }
+
+    private final class TestCollector extends FlowStatsCollector {
+        private final List<Long> sent = new ArrayList<>();
+
+        private TestCollector(FlowStatsPollScheduler scheduler) {
+            super(scheduler, null);
+        }
+
+        @Override
+        long poll() {
+            long xid = nextXid++;
+            sent.add(xid);
+            return xid;
+        }
+
+        @Override
+        String id() {
+            return "of:" + System.identityHashCode(this);
+        }
+    }
+
+    private static final class ManualTicker extends NullScheduledExecutor {
+        private Runnable tick;
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+                                                      long period, TimeUnit unit) {
+            tick = command;
+            return null;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.pool.KryoCallback;
 import com.esotericsoftware.kryo.pool.KryoFactory;
 import com.esotericsoftware.kryo.pool.KryoPool;
@@ -35,7 +36,9 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -54,6 +57,13 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
     public static final int DEFAULT_BUFFER_SIZE = 4096;
     public static final int MAX_BUFFER_SIZE = 100 * 1000 * 1000;
 
+    /**
+     * Largest buffer kept for reuse by a pooled Kryo instance; larger
+     * buffers are dropped after use so that a single huge object does not
+     * pin its memory.
+     */
+    static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
     /**
      * ID to use if this KryoNamespace does not define registration id.
      */
@@ -65,6 +75,9 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
     public static final int INITIAL_ID = 16;
 
     private static final String NO_NAME = "(no name)";
+    private static final String BUFFERS_KEY = "onlab.kryoNamespace.buffers";
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
 
     private static final Logger log = getLogger(KryoNamespace.class);
 
@@ -79,6 +92,11 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
     private final boolean registrationRequired;
     private final String friendlyName;
 
+    // largest serialized size seen so far, by type of the serialized object,
+    // capped at the pooled buffer size so one outlier does not make every
+    // later serialization of the type allocate a buffer too big to be pooled
+    private final Map<Class<?>, Integer> sizeHints = new ConcurrentHashMap<>();
+
 
     /**
      * KryoNamespace builder.
@@ -261,7 +279,19 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
      * @return serialized bytes
      */
     public byte[] serialize(final Object obj) {
-        return serialize(obj, DEFAULT_BUFFER_SIZE);
+        Kryo kryo = borrow();
+        try {
+            Output out = buffers(kryo).output(sizeHint(obj));
+            try {
+                kryo.writeClassAndObject(out, obj);
+                updateSizeHint(obj, out.position());
+                return out.toBytes();
+            } finally {
+                buffers(kryo).releaseOutput();
+            }
+        } finally {
+            release(kryo);
+        }
     }
 
     /**
@@ -294,11 +324,16 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
      * @param buffer to write to
      */
     public void serialize(final Object obj, final ByteBuffer buffer) {
-        ByteBufferOutput out = new ByteBufferOutput(buffer);
         Kryo kryo = borrow();
         try {
-            kryo.writeClassAndObject(out, obj);
-            out.flush();
+            ByteBufferOutput out = buffers(kryo).byteBufferOutput;
+            out.setBuffer(buffer);
+            try {
+                kryo.writeClassAndObject(out, obj);
+                out.flush();
+            } finally {
+                out.setBuffer(EMPTY_BUFFER);
+            }
         } finally {
             release(kryo);
         }
@@ -340,12 +375,17 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
      * @return deserialized Object
      */
     public <T> T deserialize(final byte[] bytes) {
-        Input in = new Input(bytes);
         Kryo kryo = borrow();
         try {
-            @SuppressWarnings("unchecked")
-            T obj = (T) kryo.readClassAndObject(in);
-            return obj;
+            Input in = buffers(kryo).input;
+            in.setBuffer(bytes);
+            try {
+                @SuppressWarnings("unchecked")
+                T obj = (T) kryo.readClassAndObject(in);
+                return obj;
+            } finally {
+                in.setBuffer(EMPTY_BYTES);
+            }
         } finally {
             release(kryo);
         }
@@ -359,12 +399,17 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
      * @return deserialized Object
      */
     public <T> T deserialize(final ByteBuffer buffer) {
-        ByteBufferInput in = new ByteBufferInput(buffer);
         Kryo kryo = borrow();
         try {
-            @SuppressWarnings("unchecked")
-            T obj = (T) kryo.readClassAndObject(in);
-            return obj;
+            ByteBufferInput in = buffers(kryo).byteBufferInput;
+            in.setBuffer(buffer);
+            try {
+                @SuppressWarnings("unchecked")
+                T obj = (T) kryo.readClassAndObject(in);
+                return obj;
+            } finally {
+                in.setBuffer(EMPTY_BUFFER);
+            }
         } finally {
             release(kryo);
         }
@@ -378,7 +423,20 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
      * @return deserialized Object
      */
     public <T> T deserialize(final InputStream stream) {
-        return deserialize(stream, DEFAULT_BUFFER_SIZE);
+        Kryo kryo = borrow();
+        try {
+            Input in = buffers(kryo).streamInput;
+            in.setInputStream(stream);
+            try {
+                @SuppressWarnings("unchecked")
+                T obj = (T) kryo.readClassAndObject(in);
+                return obj;
+            } finally {
+                in.setInputStream(null);
+            }
+        } finally {
+            release(kryo);
+        }
     }
 
     /**
@@ -401,6 +459,45 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
         }
     }
 
+    /**
+     * Returns the expected serialized size of the specified object, learnt
+     * from the objects of the same type serialized so far.
+     *
+     * @param obj object to be serialized
+     * @return expected serialized size in bytes
+     */
+    public int sizeHint(final Object obj) {
+        if (obj == null) {
+            return DEFAULT_BUFFER_SIZE;
+        }
+        return sizeHints.getOrDefault(obj.getClass(), DEFAULT_BUFFER_SIZE);
+    }
+
+    private void updateSizeHint(Object obj, int size) {
+        if (obj != null && size > sizeHint(obj)) {
+            sizeHints.merge(obj.getClass(), Math.min(size, MAX_POOLED_BUFFER_SIZE), Math::max);
+        }
+    }
+
+    /**
+     * Returns the output buffer kept for reuse with the specified Kryo instance.
+     *
+     * @param kryo Kryo instance
+     * @return pooled output buffer
+     */
+    static byte[] pooledOutputBuffer(Kryo kryo) {
+        return buffers(kryo).output.getBuffer();
+    }
+
+    private static Buffers buffers(Kryo kryo) {
+        Buffers buffers = (Buffers) kryo.getContext().get(BUFFERS_KEY);
+        if (buffers == null) {
+            buffers = new Buffers();
+            kryo.getContext().put(BUFFERS_KEY, buffers);
+        }
+        return buffers;
+    }
+
     private String friendlyName() {
         return friendlyName;
     }
@@ -497,6 +594,45 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
                     .toString();
     }
 
+    /**
+     * Input and output buffers owned by a Kryo instance.
+     * <p>
+     * They are kept in the context of the Kryo instance and hence reused by
+     * whoever borrows that instance from the pool, which guarantees exclusive
+     * access to them.
+     */
+    private static final class Buffers {
+        private final Input input = new Input();
+        private final ByteBufferInput byteBufferInput = new ByteBufferInput();
+        private final ByteBufferOutput byteBufferOutput = new ByteBufferOutput();
+        private final Input streamInput = new Input(DEFAULT_BUFFER_SIZE);
+        private Output output = new Output(DEFAULT_BUFFER_SIZE, MAX_BUFFER_SIZE);
+
+        /**
+         * Returns the output buffer ready to be written from the beginning.
+         *
+         * @param sizeHint expected number of bytes to be written
+         * @return output buffer
+         */
+        Output output(int sizeHint) {
+            output.clear();
+            if (output.getBuffer().length < sizeHint) {
+                // allocate once rather than doubling on the way up
+                output.setBuffer(new byte[Math.min(sizeHint, MAX_BUFFER_SIZE)], MAX_BUFFER_SIZE);
+            }
+            return output;
+        }
+
+        /**
+         * Drops the output buffer if it grew too large to be kept around.
+         */
+        void releaseOutput() {
+            if (output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+                output = new Output(DEFAULT_BUFFER_SIZE, MAX_BUFFER_SIZE);
+            }
+        }
+    }
+
     static final class RegistrationBlock {
         private final int begin;
         private final ImmutableList<Pair<Class<?>, Serializer<?>>> types;
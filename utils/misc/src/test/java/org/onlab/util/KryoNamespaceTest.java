@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.util;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for KryoNamespace serialization with reused buffers.
+ */
+public class KryoNamespaceTest {
+
+    private final KryoNamespace namespace = KryoNamespace.newBuilder()
+            .register(ArrayList.class, byte[].class)
+            .build();
+
+    /**
+     * Tests that consecutive objects of different sizes serialize
+     * independently of what was written to the reused buffer before.
+     */
+    @Test
+    public void testBufferReuse() {
+        String big = Strings.repeat("x", 10_000);
+        byte[] bigBytes = namespace.serialize(big);
+        byte[] smallBytes = namespace.serialize("small");
+        assertEquals(big, namespace.deserialize(bigBytes));
+        assertEquals("small", namespace.deserialize(smallBytes));
+        assertArrayEquals(smallBytes, namespace.serialize("small"));
+    }
+
+    /**
+     * Tests that objects larger than the pooled buffer limit still serialize
+     * and teach the namespace their size, up to the pooled buffer limit.
+     */
+    @Test
+    public void testLargeObjects() {
+        byte[] payload = new byte[KryoNamespace.MAX_POOLED_BUFFER_SIZE * 2];
+        payload[payload.length - 1] = 42;
+        byte[] bytes = namespace.serialize(payload);
+        assertArrayEquals(payload, namespace.deserialize(bytes));
+        assertEquals(KryoNamespace.MAX_POOLED_BUFFER_SIZE, namespace.sizeHint(payload));
+        assertEquals(KryoNamespace.DEFAULT_BUFFER_SIZE, namespace.sizeHint(Lists.newArrayList()));
+
+        assertEquals("small", namespace.deserialize(namespace.serialize("small")));
+    }
+
+    /**
+     * Tests that a single large outlier does not stop the later, smaller
+     * objects of the same type from reusing the pooled output buffer.
+     */
+    @Test
+    public void testLargeOutlierKeepsBufferPooled() {
+        namespace.serialize(new byte[KryoNamespace.MAX_POOLED_BUFFER_SIZE * 2]);
+
+        byte[] payload = new byte[64 * 1024];
+        namespace.serialize(payload);
+        byte[] pooled = pooledOutputBuffer();
+        assertTrue(pooled.length <= KryoNamespace.MAX_POOLED_BUFFER_SIZE);
+
+        assertArrayEquals(payload, namespace.deserialize(namespace.serialize(payload)));
+        assertSame(pooled, pooledOutputBuffer());
+    }
+
+    private byte[] pooledOutputBuffer() {
+        Kryo kryo = namespace.borrow();
+        try {
+            return KryoNamespace.pooledOutputBuffer(kryo);
+        } finally {
+            namespace.release(kryo);
+        }
+    }
+
+    /**
+     * Tests serialization into and out of caller supplied buffers and streams.
+     */
+    @Test
+    public void testBuffersAndStreams() {
+        ArrayList<String> list = Lists.newArrayList("a", "b", "c");
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        namespace.serialize(list, buffer);
+        buffer.flip();
+        assertEquals(list, namespace.deserialize(buffer));
+        buffer.clear();
+        namespace.serialize("second", buffer);
+        buffer.flip();
+        assertEquals("second", namespace.deserialize(buffer));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        namespace.serialize(list, out);
+        assertArrayEquals(namespace.serialize(list), out.toByteArray());
+        assertEquals(list, namespace.deserialize(new ByteArrayInputStream(out.toByteArray())));
+    }
+}